@@ -0,0 +1,40 @@
+package util;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar (built with "mvn -P jmh package"). Takes the usual JMH command line options, and
+ * runs the selected benchmarks with 1, 8 and 32 threads unless the number of threads is given with -t. For example,
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar IntSetBenchmark -p shapeFile=metrics.jsonl
+ * </pre>
+ *
+ * runs the int set benchmarks on sets shaped like those of the analysis that wrote metrics.jsonl (see
+ * {@link PointsToSetShape}).
+ */
+public class IntCollectionBenchmarks {
+
+    /**
+     * Numbers of threads to run each benchmark with
+     */
+    private static final int[] THREADS = { 1, 8, 32 };
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions cmdLine = new CommandLineOptions(args);
+        if (cmdLine.getThreads().hasValue() || cmdLine.shouldHelp() || cmdLine.shouldList()) {
+            Main.main(args);
+            return;
+        }
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder().parent(cmdLine).threads(threads).build()).run();
+        }
+    }
+}
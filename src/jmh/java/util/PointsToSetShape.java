@@ -0,0 +1,205 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.json.JSONObject;
+
+/**
+ * Distribution of the sizes of points-to sets and of the instance key ids in them, used to generate realistic
+ * workloads for the int set and int map benchmarks.
+ * <p>
+ * A shape can be captured from a real analysis by running it with -solverMetricsFile: the final line of that file has
+ * the histogram of the sizes of the points-to sets ("pointsToSetSizes"), the histogram of the gaps between consecutive
+ * ids in each set ("pointsToSetIdGaps") and the largest id ("maxInstanceKey"). Without a file the built-in,
+ * synthetic {@link #DEFAULT} shape is used.
+ */
+public final class PointsToSetShape {
+
+    /**
+     * A synthetic shape, made up rather than captured from an analysis: a few very common small sets and a long tail
+     * of large ones, with ids that are mostly close together. Results measured with it say nothing about a particular
+     * program; replace it with a shape captured from the program being analyzed where possible.
+     */
+    public static final PointsToSetShape DEFAULT = new PointsToSetShape(new JSONObject("{"
+            + "\"pointsToSetSizes\": {\"0-0\": 20000, \"1-1\": 300000, \"2-2\": 90000, \"3-3\": 40000, "
+            + "\"4-4\": 25000, \"5-5\": 15000, \"6-10\": 30000, \"11-50\": 25000, \"51-100\": 6000, "
+            + "\"101-500\": 5000, \"501-1000\": 1500, \"1001-5000\": 600}, "
+            + "\"pointsToSetIdGaps\": {\"1-1\": 400000, \"2-2\": 150000, \"3-3\": 90000, \"4-4\": 60000, "
+            + "\"5-5\": 45000, \"6-10\": 150000, \"11-50\": 250000, \"51-100\": 120000, \"101-500\": 180000, "
+            + "\"501-1000\": 60000, \"1001-5000\": 70000, \"5001-10000\": 20000, \"10001-50000\": 15000}, "
+            + "\"maxInstanceKey\": 60000}"));
+
+    private final Buckets sizes;
+    private final Buckets gaps;
+    private final int maxInstanceKey;
+
+    private PointsToSetShape(JSONObject o) {
+        this.sizes = new Buckets(o.getJSONObject("pointsToSetSizes"));
+        this.gaps = new Buckets(o.getJSONObject("pointsToSetIdGaps"));
+        this.maxInstanceKey = o.getInt("maxInstanceKey");
+    }
+
+    /**
+     * Load the shape from the last complete line of a solver metrics file
+     *
+     * @param file JSON lines file written by an analysis run with -solverMetricsFile, or the empty string for the
+     *            default shape
+     * @return the shape of the points-to sets of that analysis
+     */
+    public static PointsToSetShape load(String file) {
+        if (file == null || file.isEmpty()) {
+            return DEFAULT;
+        }
+        JSONObject last = null;
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                JSONObject o = new JSONObject(line);
+                if (o.has("pointsToSetIdGaps") && !o.isNull("pointsToSetIdGaps")) {
+                    last = o;
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Could not read " + file, e);
+        }
+        if (last == null) {
+            throw new IllegalArgumentException(file + " has no final line with the shape of the points-to sets");
+        }
+        return new PointsToSetShape(last);
+    }
+
+    /**
+     * Largest instance key id
+     */
+    public int maxInstanceKey() {
+        return this.maxInstanceKey;
+    }
+
+    /**
+     * Generate the elements of a random points-to set. The elements are distinct and in no particular order.
+     *
+     * @param r source of randomness
+     * @return elements of the set
+     */
+    public int[] randomSet(Random r) {
+        int size = Math.min(this.sizes.sample(r), this.maxInstanceKey + 1);
+        int[] elements = new int[size];
+        if (size == 0) {
+            return elements;
+        }
+        int n = 0;
+        int next = r.nextInt(this.maxInstanceKey + 1);
+        while (n < size && next <= this.maxInstanceKey) {
+            elements[n++] = next;
+            next += Math.max(this.gaps.sample(r), 1);
+        }
+        if (n < size) {
+            // ran past the largest id, the set is smaller than sampled
+            int[] truncated = new int[n];
+            System.arraycopy(elements, 0, truncated, 0, n);
+            elements = truncated;
+        }
+        // the analysis does not add ids in order
+        for (int i = elements.length - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            int tmp = elements[i];
+            elements[i] = elements[j];
+            elements[j] = tmp;
+        }
+        return elements;
+    }
+
+    /**
+     * Generate the elements of numSets random points-to sets
+     *
+     * @param numSets number of sets
+     * @param seed seed for the random number generator, so that runs with the same seed use the same sets
+     * @return elements of the sets
+     */
+    public int[][] randomSets(int numSets, long seed) {
+        Random r = new Random(seed);
+        int[][] sets = new int[numSets][];
+        for (int i = 0; i < numSets; i++) {
+            sets[i] = randomSet(r);
+        }
+        return sets;
+    }
+
+    /**
+     * Generate ids to look up in sets, half of which are in the set (if it is not empty) and half of which are
+     * uniformly distributed
+     *
+     * @param sets elements of the sets
+     * @param probesPerSet number of ids to look up per set
+     * @param seed seed for the random number generator
+     * @return ids to look up in each set
+     */
+    public int[][] probes(int[][] sets, int probesPerSet, long seed) {
+        Random r = new Random(seed);
+        int[][] probes = new int[sets.length][probesPerSet];
+        for (int i = 0; i < sets.length; i++) {
+            for (int j = 0; j < probesPerSet; j++) {
+                if (sets[i].length > 0 && r.nextBoolean()) {
+                    probes[i][j] = sets[i][r.nextInt(sets[i].length)];
+                }
+                else {
+                    probes[i][j] = r.nextInt(this.maxInstanceKey + 1);
+                }
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * Histogram read from a JSON object mapping ranges "lo-hi" to counts, as written by {@link Histogram#toJSON()}.
+     * Values are sampled by picking a bucket with probability proportional to its count, then a value in its range
+     * uniformly. Sampling an empty histogram gives 0.
+     */
+    private static final class Buckets {
+        private final int[] lo;
+        private final int[] hi;
+        /**
+         * Sum of the counts of the buckets up to and including each bucket
+         */
+        private final long[] cumulative;
+
+        Buckets(JSONObject o) {
+            int n = o.length();
+            this.lo = new int[n];
+            this.hi = new int[n];
+            this.cumulative = new long[n];
+            long total = 0;
+            int i = 0;
+            Iterator<String> keys = o.keys();
+            while (keys.hasNext()) {
+                String range = keys.next();
+                int dash = range.indexOf('-');
+                this.lo[i] = Integer.parseInt(range.substring(0, dash));
+                this.hi[i] = Integer.parseInt(range.substring(dash + 1));
+                total += o.getLong(range);
+                this.cumulative[i] = total;
+                i++;
+            }
+        }
+
+        int sample(Random r) {
+            if (this.cumulative.length == 0) {
+                // e.g., no set has two elements, so there are no gaps
+                return 0;
+            }
+            long x = (long) (r.nextDouble() * this.cumulative[this.cumulative.length - 1]);
+            int b = 0;
+            while (this.cumulative[b] <= x) {
+                b++;
+            }
+            // the last bucket of a Histogram ends at Integer.MAX_VALUE
+            long width = Math.min((long) this.hi[b] - this.lo[b] + 1, Integer.MAX_VALUE);
+            return this.lo[b] + r.nextInt((int) width);
+        }
+    }
+}
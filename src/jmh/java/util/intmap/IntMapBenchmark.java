@@ -0,0 +1,159 @@
+package util.intmap;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.PointsToSetShape;
+
+import com.ibm.wala.util.intset.IntIterator;
+
+/**
+ * Operations on int maps that each thread has to itself. The keys of each map are the elements of a set shaped like
+ * a points-to set (see {@link PointsToSetShape}), which is how the keys of the maps in GraphDelta and the
+ * points-to graph are distributed. Each invocation works on the next map of a fixed sequence of maps.
+ * ConcurrentMonotonicIntHashMap shared between threads is measured by the MutableIntSetFromMap case of
+ * util.intset.SharedIntSetBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntMapBenchmark {
+
+    @Param({ "SparseIntMap", "DenseIntMap", "ConcurrentMonotonicIntHashMap" })
+    public String impl;
+
+    /**
+     * Solver metrics file to take the shape of the keys from, or empty for the synthetic default shape
+     */
+    @Param("")
+    public String shapeFile;
+
+    @Param("4096")
+    public int numMaps;
+
+    /**
+     * Keys of each map
+     */
+    private int[][] keys;
+
+    /**
+     * Maps with the keys, built in setup
+     */
+    private IntMap<Object>[] maps;
+
+    /**
+     * Keys to look up in each map
+     */
+    private int[][] probes;
+
+    private int next = 0;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setup() {
+        PointsToSetShape shape = PointsToSetShape.load(this.shapeFile);
+        this.keys = shape.randomSets(this.numMaps, 42);
+        this.probes = shape.probes(this.keys, 8, 43);
+        this.maps = new IntMap[this.numMaps];
+        for (int i = 0; i < this.numMaps; i++) {
+            this.maps[i] = build(this.keys[i]);
+        }
+    }
+
+    private IntMap<Object> newMap() {
+        switch (this.impl) {
+        case "SparseIntMap":
+            return new SparseIntMap<>();
+        case "DenseIntMap":
+            return new DenseIntMap<>();
+        case "ConcurrentMonotonicIntHashMap":
+            return new ConcurrentMonotonicIntHashMap<>(4);
+        default:
+            throw new IllegalArgumentException("Unknown map " + this.impl);
+        }
+    }
+
+    private IntMap<Object> build(int[] ks) {
+        IntMap<Object> m = newMap();
+        for (int k : ks) {
+            m.put(k, this);
+        }
+        return m;
+    }
+
+    private int nextIndex() {
+        int i = this.next;
+        this.next = i + 1 == this.numMaps ? 0 : i + 1;
+        return i;
+    }
+
+    /**
+     * Create a map and put the keys of the next map one at a time
+     */
+    @Benchmark
+    public IntMap<Object> add() {
+        return build(this.keys[nextIndex()]);
+    }
+
+    /**
+     * Look up eight keys in the next map, about half of which are present
+     */
+    @Benchmark
+    public int contains() {
+        int i = nextIndex();
+        IntMap<Object> m = this.maps[i];
+        int found = 0;
+        for (int k : this.probes[i]) {
+            if (m.get(k) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Iterate over the keys of the next map, getting the value of each
+     */
+    @Benchmark
+    public int iterate() {
+        IntMap<Object> m = this.maps[nextIndex()];
+        IntIterator iter = m.keyIterator();
+        int found = 0;
+        while (iter.hasNext()) {
+            if (m.get(iter.next()) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Create a map with the keys of the next map, then put all the entries of the map after that, as when combining
+     * two GraphDeltas. Includes the cost of {@link #add()}.
+     */
+    @Benchmark
+    public IntMap<Object> addAll() {
+        IntMap<Object> m = build(this.keys[nextIndex()]);
+        IntMap<Object> other = this.maps[nextIndex()];
+        IntIterator iter = other.keyIterator();
+        while (iter.hasNext()) {
+            int k = iter.next();
+            m.put(k, other.get(k));
+        }
+        return m;
+    }
+}
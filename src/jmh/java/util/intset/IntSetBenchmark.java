@@ -0,0 +1,149 @@
+package util.intset;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.PointsToSetShape;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.MutableIntSet;
+
+/**
+ * Operations on int sets that each thread has to itself, on sets shaped like points-to sets (see
+ * {@link PointsToSetShape}). Each invocation works on the next set of a fixed sequence of sets, so the score is the
+ * average over the distribution of set sizes. See {@link SharedIntSetBenchmark} for sets shared between threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntSetBenchmark {
+
+    @Param({ "ConcurrentMonotonicIntHashSet", "ConcurrentMonotonicIntBitSet", "MutableDenseIntSet" })
+    public String impl;
+
+    /**
+     * Solver metrics file to take the shape of the sets from, or empty for the default shape
+     */
+    @Param("")
+    public String shapeFile;
+
+    @Param("4096")
+    public int numSets;
+
+    /**
+     * Elements of each set
+     */
+    private int[][] elements;
+
+    /**
+     * Sets containing the elements, built in setup
+     */
+    private MutableIntSet[] sets;
+
+    /**
+     * Ids to look up in each set
+     */
+    private int[][] probes;
+
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        PointsToSetShape shape = PointsToSetShape.load(this.shapeFile);
+        this.elements = shape.randomSets(this.numSets, 42);
+        this.probes = shape.probes(this.elements, 8, 43);
+        this.sets = new MutableIntSet[this.numSets];
+        for (int i = 0; i < this.numSets; i++) {
+            this.sets[i] = build(this.elements[i]);
+        }
+    }
+
+    static MutableIntSet newSet(String impl) {
+        switch (impl) {
+        case "ConcurrentMonotonicIntHashSet":
+            return new ConcurrentMonotonicIntHashSet(4);
+        case "ConcurrentMonotonicIntBitSet":
+            return new ConcurrentMonotonicIntBitSet();
+        case "MutableDenseIntSet":
+            return MutableDenseIntSet.makeEmpty();
+        default:
+            throw new IllegalArgumentException("Unknown set " + impl);
+        }
+    }
+
+    private MutableIntSet build(int[] ids) {
+        MutableIntSet s = newSet(this.impl);
+        for (int id : ids) {
+            s.add(id);
+        }
+        return s;
+    }
+
+    private int nextIndex() {
+        int i = this.next;
+        this.next = i + 1 == this.numSets ? 0 : i + 1;
+        return i;
+    }
+
+    /**
+     * Create a set and add the elements of the next set one at a time
+     */
+    @Benchmark
+    public MutableIntSet add() {
+        return build(this.elements[nextIndex()]);
+    }
+
+    /**
+     * Look up eight ids in the next set, about half of which are present
+     */
+    @Benchmark
+    public int contains() {
+        int i = nextIndex();
+        MutableIntSet s = this.sets[i];
+        int found = 0;
+        for (int id : this.probes[i]) {
+            if (s.contains(id)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Iterate over the elements of the next set
+     */
+    @Benchmark
+    public int iterate() {
+        IntIterator iter = this.sets[nextIndex()].intIterator();
+        int sum = 0;
+        while (iter.hasNext()) {
+            sum += iter.next();
+        }
+        return sum;
+    }
+
+    /**
+     * Create a set with the elements of the next set, then add all the elements of the set after that, as when
+     * propagating along a subset edge. Includes the cost of {@link #add()}.
+     */
+    @Benchmark
+    public MutableIntSet addAll() {
+        MutableIntSet s = build(this.elements[nextIndex()]);
+        s.addAll(this.sets[nextIndex()]);
+        return s;
+    }
+}
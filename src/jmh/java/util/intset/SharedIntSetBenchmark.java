@@ -0,0 +1,198 @@
+package util.intset;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import util.PointsToSetShape;
+import util.intmap.ConcurrentMonotonicIntHashMap;
+import util.intmap.MutableIntSetFromMap;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.MutableIntSet;
+
+/**
+ * Operations on thread-safe int sets shared by all the threads, as the points-to sets are in the multi-threaded
+ * engine. Sets are shaped like points-to sets (see {@link PointsToSetShape}), and each thread visits them in its own
+ * random order.
+ * <p>
+ * The sets used by {@link #add(Cursor)} and {@link #addAll(Cursor)} start empty at each iteration and fill up as the
+ * iteration goes on, so most later adds find the element already present, as most adds do in the analysis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=4g")
+public class SharedIntSetBenchmark {
+
+    /**
+     * MutableIntSetFromMap is backed by a ConcurrentMonotonicIntHashMap
+     */
+    @Param({ "ConcurrentMonotonicIntHashSet", "ConcurrentMonotonicIntBitSet", "OffHeapIntSet",
+            "MutableIntSetFromMap" })
+    public String impl;
+
+    /**
+     * Solver metrics file to take the shape of the sets from, or empty for the synthetic default shape
+     */
+    @Param("")
+    public String shapeFile;
+
+    @Param("4096")
+    public int numSets;
+
+    /**
+     * Elements of each set
+     */
+    int[][] elements;
+
+    /**
+     * Sets containing the elements, built in setup and only read by the benchmarks
+     */
+    MutableIntSet[] full;
+
+    /**
+     * Ids to look up in each set
+     */
+    int[][] probes;
+
+    /**
+     * Sets that the benchmarks add to, emptied at each iteration
+     */
+    MutableIntSet[] growing;
+
+    /**
+     * Memory for the OffHeapIntSets
+     */
+    private OffHeapArena arena;
+
+    @Setup
+    public void setup() {
+        PointsToSetShape shape = PointsToSetShape.load(this.shapeFile);
+        this.elements = shape.randomSets(this.numSets, 42);
+        this.probes = shape.probes(this.elements, 8, 43);
+        this.arena = new OffHeapArena();
+        this.full = new MutableIntSet[this.numSets];
+        for (int i = 0; i < this.numSets; i++) {
+            this.full[i] = newSet();
+            for (int id : this.elements[i]) {
+                this.full[i].add(id);
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyGrowingSets() {
+        this.growing = new MutableIntSet[this.numSets];
+        for (int i = 0; i < this.numSets; i++) {
+            this.growing[i] = newSet();
+        }
+    }
+
+    private MutableIntSet newSet() {
+        switch (this.impl) {
+        case "ConcurrentMonotonicIntHashSet":
+            return new ConcurrentMonotonicIntHashSet(32);
+        case "ConcurrentMonotonicIntBitSet":
+            return new ConcurrentMonotonicIntBitSet();
+        case "OffHeapIntSet":
+            return new OffHeapIntSet(this.arena);
+        case "MutableIntSetFromMap":
+            return new MutableIntSetFromMap(new ConcurrentMonotonicIntHashMap<Boolean>(32));
+        default:
+            throw new IllegalArgumentException("Unknown set " + this.impl);
+        }
+    }
+
+    /**
+     * Order in which a thread visits the sets
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int[] order;
+        private int next = 0;
+
+        @Setup
+        public void setup(SharedIntSetBenchmark b, ThreadParams threads) {
+            Random r = new Random(threads.getThreadIndex());
+            this.order = new int[b.numSets];
+            for (int i = 0; i < this.order.length; i++) {
+                this.order[i] = r.nextInt(b.numSets);
+            }
+        }
+
+        int nextIndex() {
+            int i = this.order[this.next];
+            this.next = this.next + 1 == this.order.length ? 0 : this.next + 1;
+            return i;
+        }
+    }
+
+    /**
+     * Add the elements of the next set, one at a time, to the shared set
+     */
+    @Benchmark
+    public int add(Cursor c) {
+        int i = c.nextIndex();
+        MutableIntSet s = this.growing[i];
+        int added = 0;
+        for (int id : this.elements[i]) {
+            if (s.add(id)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Look up eight ids in the next set, about half of which are present
+     */
+    @Benchmark
+    public int contains(Cursor c) {
+        int i = c.nextIndex();
+        MutableIntSet s = this.full[i];
+        int found = 0;
+        for (int id : this.probes[i]) {
+            if (s.contains(id)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Iterate over the elements of the next set
+     */
+    @Benchmark
+    public int iterate(Cursor c) {
+        IntIterator iter = this.full[c.nextIndex()].intIterator();
+        int sum = 0;
+        while (iter.hasNext()) {
+            sum += iter.next();
+        }
+        return sum;
+    }
+
+    /**
+     * Add all the elements of one set to another shared set, as when propagating along a subset edge
+     */
+    @Benchmark
+    public boolean addAll(Cursor c) {
+        return this.growing[c.nextIndex()].addAll(this.full[c.nextIndex()]);
+    }
+}
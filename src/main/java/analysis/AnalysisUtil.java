@@ -3,9 +3,11 @@ package analysis;
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.lang.ref.SoftReference;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import main.AccrueAnalysisMain;
 import signatures.Signatures;
@@ -31,6 +33,7 @@ import com.ibm.wala.ssa.DefUse;
 import com.ibm.wala.ssa.IR;
 import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
 import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.MethodReference;
 import com.ibm.wala.types.Selector;
 import com.ibm.wala.types.TypeName;
 import com.ibm.wala.types.TypeReference;
@@ -118,6 +121,12 @@ public class AnalysisUtil {
      * may be necessary to compare to other analyses.
      */
     private static boolean disableSignatures = false;
+    /**
+     * IR (and def-use results) for methods without signatures, built outside of WALA's (non-thread-safe) SSA cache so
+     * that it can be built by several threads at once. Like the SSA cache the entries are softly reachable, so they are
+     * reclaimed when memory runs low. Null unless {@link #useConcurrentIRCache()} has been called.
+     */
+    private static ConcurrentMap<IMethod, SoftReference<CachedIR>> concurrentIRCache = null;
     /**
      * Resolved class for java.lang.Class
      */
@@ -192,6 +201,7 @@ public class AnalysisUtil {
         AnalysisUtil.disableObjectClone = disableObjectClone;
 
         AnalysisUtil.cache = new AnalysisCacheImpl();
+        AnalysisUtil.concurrentIRCache = null;
 
         AnalysisUtil.scope = AnalysisScopeReader.readJavaScope(PRIMORDIAL_FILENAME,
                                                                EXCLUSIONS_FILE,
@@ -202,6 +212,7 @@ public class AnalysisUtil {
         long start = System.currentTimeMillis();
 
         AnalysisUtil.cha = ClassHierarchyFactory.make(scope);
+        DispatchCache.clear();
         System.err.println(AnalysisUtil.cha.getNumberOfClasses() + " classes loaded. It took "
                 + (System.currentTimeMillis() - start) + "ms");
         if (!AccrueAnalysisMain.testMode) {
@@ -305,6 +316,33 @@ public class AnalysisUtil {
         return cha;
     }
 
+    /**
+     * Resolve a method reference while holding the lock on the class hierarchy. Method resolution fills in caches in
+     * the classes, which are not thread-safe (see {@link DispatchCache}), so this is used when methods may be
+     * registered by several threads.
+     *
+     * @param m method reference to resolve
+     * @return resolved method or null if there is none
+     */
+    public static IMethod resolveMethod(MethodReference m) {
+        synchronized (cha) {
+            return cha.resolveMethod(m);
+        }
+    }
+
+    /**
+     * Find the methods a virtual call to the given method reference may dispatch to, while holding the lock on the
+     * class hierarchy (see {@link #resolveMethod(MethodReference)})
+     *
+     * @param m declared target of the call
+     * @return possible targets of the call
+     */
+    public static Set<IMethod> getPossibleTargets(MethodReference m) {
+        synchronized (cha) {
+            return cha.getPossibleTargets(m);
+        }
+    }
+
     /**
      * The root method that calls the entry-points
      *
@@ -333,7 +371,86 @@ public class AnalysisUtil {
             return null;
         }
 
-        return cache.getSSACache().findOrCreateIR(resolvedMethod, Everywhere.EVERYWHERE, options.getSSAOptions());
+        return findOrCreateIR(resolvedMethod);
+    }
+
+    /**
+     * Get the IR for the given method, ignoring signatures
+     *
+     * @param resolvedMethod method with bytecode (or synthetic method) to get the IR for
+     * @return the code for the given method
+     */
+    private static IR findOrCreateIR(IMethod resolvedMethod) {
+        ConcurrentMap<IMethod, SoftReference<CachedIR>> irs = concurrentIRCache;
+        if (irs == null) {
+            return cache.getSSACache().findOrCreateIR(resolvedMethod, Everywhere.EVERYWHERE, options.getSSAOptions());
+        }
+        return findOrCreateCachedIR(irs, resolvedMethod).ir;
+    }
+
+    /**
+     * Get the entry for the given method in the concurrent IR cache, building the IR if there is no entry or the entry
+     * has been reclaimed
+     * <p>
+     * The IR is built without any lock, so WALA's IR factory may be building IR for several methods (or for the same
+     * method) at once. It decodes the bytecode of the method (more than once if several threads race to do so) and
+     * looks up classes, and each call builds a new IR, so this is safe as long as the class hierarchy is not changing.
+     * If two threads build IR for the same method, the first one installed is used by both. TestConcurrentIRCache
+     * builds the IR for the methods of a test program on several threads and compares it to the IR from the SSA cache.
+     *
+     * @param irs concurrent IR cache
+     * @param resolvedMethod method with bytecode (or synthetic method) to get the IR for
+     * @return entry in the cache for the method
+     */
+    private static CachedIR findOrCreateCachedIR(ConcurrentMap<IMethod, SoftReference<CachedIR>> irs,
+                                                 IMethod resolvedMethod) {
+        SoftReference<CachedIR> ref = irs.get(resolvedMethod);
+        while (true) {
+            CachedIR cached = ref == null ? null : ref.get();
+            if (cached != null) {
+                return cached;
+            }
+            CachedIR created = new CachedIR(cache.getIRFactory().makeIR(resolvedMethod,
+                                                                        Everywhere.EVERYWHERE,
+                                                                        options.getSSAOptions()));
+            SoftReference<CachedIR> newRef = new SoftReference<>(created);
+            boolean installed;
+            if (ref == null) {
+                installed = irs.putIfAbsent(resolvedMethod, newRef) == null;
+            }
+            else {
+                // Replace the reclaimed entry
+                installed = irs.replace(resolvedMethod, ref, newRef);
+            }
+            if (installed) {
+                return created;
+            }
+            // Another thread built it first, use that one so that every caller sees the same instructions
+            ref = irs.get(resolvedMethod);
+        }
+    }
+
+    /**
+     * IR in the concurrent IR cache, and the def-use results for it (computed when first requested)
+     */
+    private static final class CachedIR {
+        final IR ir;
+        volatile DefUse du;
+
+        CachedIR(IR ir) {
+            this.ir = ir;
+        }
+    }
+
+    /**
+     * Keep the IR for methods without signatures in a thread-safe cache rather than in WALA's SSA cache, so that it can
+     * be built concurrently (e.g., when methods are registered in parallel). As in the SSA cache, the IR can be
+     * reclaimed when memory runs low and is then built again when it is next requested.
+     */
+    public static void useConcurrentIRCache() {
+        if (concurrentIRCache == null) {
+            concurrentIRCache = createConcurrentHashMap();
+        }
     }
 
     /**
@@ -353,7 +470,18 @@ public class AnalysisUtil {
             return null;
         }
 
-        return cache.getSSACache().findOrCreateDU(resolvedMethod, Everywhere.EVERYWHERE, options.getSSAOptions());
+        ConcurrentMap<IMethod, SoftReference<CachedIR>> irs = concurrentIRCache;
+        if (irs == null) {
+            return cache.getSSACache().findOrCreateDU(resolvedMethod, Everywhere.EVERYWHERE, options.getSSAOptions());
+        }
+        CachedIR cached = findOrCreateCachedIR(irs, resolvedMethod);
+        DefUse du = cached.du;
+        if (du == null) {
+            // Two threads may both compute it, the results are the same
+            du = new DefUse(cached.ir);
+            cached.du = du;
+        }
+        return du;
     }
 
     /**
@@ -10,6 +10,7 @@ import analysis.pointer.engine.PointsToAnalysis;
 import com.ibm.wala.classLoader.IClass;
 import com.ibm.wala.classLoader.IField;
 import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
 import com.ibm.wala.ssa.SSAGetInstruction;
 import com.ibm.wala.ssa.SSAInstruction;
 import com.ibm.wala.ssa.SSAInvokeInstruction;
@@ -19,7 +20,8 @@ import com.ibm.wala.ssa.SSAPutInstruction;
 import com.ibm.wala.types.TypeReference;
 
 /**
- * Find classes that may need to be initialized
+ * Find classes that may need to be initialized. Safe to use from several threads (e.g., when methods are registered in
+ * parallel) since methods are only looked up in the class hierarchy while holding its lock.
  */
 public class ClassInitFinder {
 
@@ -67,7 +69,7 @@ public class ClassInitFinder {
         if (i instanceof SSAInvokeInstruction) {
             SSAInvokeInstruction ins = (SSAInvokeInstruction) i;
             if (ins.isStatic()) {
-                IMethod callee = AnalysisUtil.getClassHierarchy().resolveMethod(ins.getDeclaredTarget());
+                IMethod callee = AnalysisUtil.resolveMethod(ins.getDeclaredTarget());
                 if (callee == null) {
                     if (PointsToAnalysis.outputLevel >= 2) {
                         System.err.println("Trying to get class initializer for " + i + " and could not resolve "
@@ -133,21 +135,26 @@ public class ClassInitFinder {
      */
     public static List<IMethod> getClassInitializersForClass(IClass klass) {
         if (klass != null) {
-            IClass objectClass = AnalysisUtil.getClassHierarchy().getRootClass();
+            IClassHierarchy cha = AnalysisUtil.getClassHierarchy();
+            IClass objectClass = cha.getRootClass();
             LinkedList<IMethod> inits = new LinkedList<>();
             // Need to also add clinit for any super classes
 
-            // Interface clinits are not called until a static field is actually accessed
-            while (!klass.isInterface()) {
-                if (klass.getClassInitializer() != null) {
-                    // class has an initializer so add it
-                    inits.addFirst(klass.getClassInitializer());
-                }
-                if (klass == objectClass) {
-                    // No super class for java.lang.Object
-                    break;
+            // Finding the initializer fills in the methods of the class (as method resolution does), so lock the class
+            // hierarchy as in AnalysisUtil.resolveMethod
+            synchronized (cha) {
+                // Interface clinits are not called until a static field is actually accessed
+                while (!klass.isInterface()) {
+                    if (klass.getClassInitializer() != null) {
+                        // class has an initializer so add it
+                        inits.addFirst(klass.getClassInitializer());
+                    }
+                    if (klass == objectClass) {
+                        // No super class for java.lang.Object
+                        break;
+                    }
+                    klass = klass.getSuperclass();
                 }
-                klass = klass.getSuperclass();
             }
             return inits;
         }
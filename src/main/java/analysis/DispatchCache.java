@@ -0,0 +1,140 @@
+package analysis;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.types.Selector;
+
+/**
+ * Thread-safe cache of the results of virtual dispatch, i.e., of
+ * {@link IClassHierarchy#resolveMethod(IClass, Selector)}. The class hierarchy is not thread-safe, so each lookup that
+ * misses the cache resolves the method while holding the lock on the class hierarchy. Lookups that hit the cache do not
+ * take the lock.
+ * <p>
+ * The cache is filled in by the statement registration pass (see {@link #prewarm(IClass, Selector)}), so that the
+ * points-to analysis rarely needs the lock.
+ */
+public class DispatchCache {
+
+    /**
+     * Map from receiver class to the method each selector resolves to for that class, or {@link #NO_METHOD} if the
+     * selector does not resolve to a method
+     */
+    private static final ConcurrentMap<IClass, ConcurrentMap<Selector, Object>> cache =
+            AnalysisUtil.createConcurrentHashMap();
+
+    /**
+     * Recorded in the cache for a selector that does not resolve to a method
+     */
+    private static final Object NO_METHOD = new Object();
+
+    /**
+     * Number of lookups
+     */
+    private static final AtomicLong lookups = new AtomicLong(0);
+
+    /**
+     * Number of lookups that missed the cache and had to lock the class hierarchy
+     */
+    private static final AtomicLong lockedLookups = new AtomicLong(0);
+
+    /**
+     * Total time (in nanoseconds) spent waiting for the lock on the class hierarchy
+     */
+    private static final AtomicLong lockWaitNanos = new AtomicLong(0);
+
+    /**
+     * Use this class statically
+     */
+    private DispatchCache() {
+        // Intentionally left blank
+    }
+
+    /**
+     * Find the method that would be called for the selector on a receiver of the given class.
+     *
+     * @param receiverClass concrete class of the receiver, must not be null
+     * @param selector selector of the method being called
+     * @return the resolved method or null if there is none
+     */
+    public static IMethod resolveMethod(IClass receiverClass, Selector selector) {
+        if (receiverClass == null) {
+            throw new IllegalArgumentException("Null receiver class resolving " + selector);
+        }
+        lookups.incrementAndGet();
+        ConcurrentMap<Selector, Object> forClass = cache.get(receiverClass);
+        if (forClass != null) {
+            Object m = forClass.get(selector);
+            if (m != null) {
+                return m == NO_METHOD ? null : (IMethod) m;
+            }
+        }
+        lockedLookups.incrementAndGet();
+        return resolveAndRecord(receiverClass, selector);
+    }
+
+    /**
+     * Resolve the method and record it in the cache (even if there is no method), without counting a lookup. Used to
+     * fill in the cache before it is used. Does nothing if the selector has already been resolved for the class.
+     *
+     * @param receiverClass concrete class of the receiver
+     * @param selector selector of the method being called
+     */
+    public static void prewarm(IClass receiverClass, Selector selector) {
+        ConcurrentMap<Selector, Object> forClass = cache.get(receiverClass);
+        if (forClass == null || !forClass.containsKey(selector)) {
+            resolveAndRecord(receiverClass, selector);
+        }
+    }
+
+    private static IMethod resolveAndRecord(IClass receiverClass, Selector selector) {
+        IClassHierarchy cha = AnalysisUtil.getClassHierarchy();
+        IMethod m;
+        long start = System.nanoTime();
+        synchronized (cha) {
+            lockWaitNanos.addAndGet(System.nanoTime() - start);
+            m = cha.resolveMethod(receiverClass, selector);
+        }
+        ConcurrentMap<Selector, Object> forClass = cache.get(receiverClass);
+        if (forClass == null) {
+            forClass = AnalysisUtil.createConcurrentHashMap();
+            ConcurrentMap<Selector, Object> existing = cache.putIfAbsent(receiverClass, forClass);
+            if (existing != null) {
+                forClass = existing;
+            }
+        }
+        // Record failures too, so that a selector that does not resolve does not take the lock again
+        forClass.put(selector, m == null ? NO_METHOD : m);
+        return m;
+    }
+
+    /**
+     * Remove all cached methods and reset the counts, e.g., when a new class hierarchy is created
+     */
+    public static void clear() {
+        cache.clear();
+        lookups.set(0);
+        lockedLookups.set(0);
+        lockWaitNanos.set(0);
+    }
+
+    /**
+     * Number of lookups that missed the cache since it was last cleared
+     */
+    static long numLockedLookups() {
+        return lockedLookups.get();
+    }
+
+    /**
+     * Print the number of lookups and how many of them needed the lock on the class hierarchy. Without the cache every
+     * lookup takes the lock.
+     */
+    public static void printStatistics() {
+        System.err.println("   Dispatch lookups       : " + lookups.get());
+        System.err.println("   Dispatch lookups locked: " + lockedLookups.get() + " (waited "
+                + lockWaitNanos.get() / 1000000 + "ms for the lock)");
+    }
+}
@@ -1,7 +1,10 @@
 package analysis.dataflow;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -42,9 +45,13 @@ public abstract class DataFlow<F> {
      */
     private final boolean forward;
     /**
-     * Map from basic block to record containing analysis input and results
+     * Whether to use the work-list solver, see {@link #setUseWorklist(boolean)}
      */
-    private final Map<ISSABasicBlock, AnalysisRecord<F>> bbToRecord;
+    private static boolean useWorklist = false;
+    /**
+     * Record containing analysis input and results for each basic block, indexed by basic block number
+     */
+    private AnalysisRecord<F>[] bbToRecord;
     /**
      * determines printing volume
      */
@@ -62,7 +69,19 @@ public abstract class DataFlow<F> {
      */
     public DataFlow(boolean forward) {
         this.forward = forward;
-        bbToRecord = new HashMap<>();
+        bbToRecord = newRecordArray(0);
+    }
+
+    /**
+     * Set whether data-flow analyses use a priority work-list (see {@link #dataflowWorklist}) rather than iterating
+     * over each strongly connected component of the control flow graph until nothing changes. Both compute the same
+     * results.
+     *
+     * @param useWorklist
+     *            whether to use the work-list solver
+     */
+    public static void setUseWorklist(boolean useWorklist) {
+        DataFlow.useWorklist = useWorklist;
     }
 
     /**
@@ -80,6 +99,13 @@ public abstract class DataFlow<F> {
         if (!forward) {
             flowGraph = new InvertedGraph<>(flowGraph);
         }
+        ensureRecordCapacity(g.getMaxNumber() + 1);
+
+        if (useWorklist) {
+            dataflowWorklist(ir, g, flowGraph);
+            post(ir);
+            return;
+        }
 
         // Compute SCCs and iterate through them
         SCCIterator<ISSABasicBlock> sccs = new SCCIterator<>(flowGraph);
@@ -93,115 +119,229 @@ public abstract class DataFlow<F> {
             while (changed) {
                 changed = false;
                 for (ISSABasicBlock current : scc) {
-                    Set<F> inItems = new LinkedHashSet<>(getNumPreds(current, g));
-                    AnalysisRecord<F> previousResults = getAnalysisRecord(current);
-                    Map<ISSABasicBlock, F> oldOutItems = previousResults == null ? null : previousResults.getOutput();
-
-                    // If all incoming edges unreachable then this block is
-                    // unreachable and we do not need to analyze
-                    // Note that all entry blocks are considered reachable
-                    boolean isBasicBlockunreachable = !current.isEntryBlock();
-
-                    // Get all out items for predecessors
-                    Iterator<ISSABasicBlock> preds = getPreds(current, g);
-                    while (preds.hasNext()) {
-                        ISSABasicBlock pred = preds.next();
-
-                        boolean isUnreachableEdge = isUnreachable(pred, current);
-                        isBasicBlockunreachable &= isUnreachableEdge;
-                        if (isUnreachableEdge || getAnalysisRecord(pred) == null) {
-                            // There is no input on this edge if current is
-                            // unreachable from the predecessor
-
-                            // The output items could be null for a predecessor
-                            // if there is a back edge and that predecessor has
-                            // not been analyzed yet
-                            continue;
-                        }
-
-                        Map<ISSABasicBlock, F> items = getAnalysisRecord(pred).getOutput();
-                        F item = items.get(current);
-                        inItems.add(item);
-                        if (item == null) {
-                            // We do not allow null output for reachable
-                            // successors
-                            String edgeType = getExceptionalSuccs(pred, g).contains(current) ? "exceptional" : "normal";
-                            throw new RuntimeException("null data-flow item in "
-                                                            + PrettyPrinter.methodString(ir.getMethod()) + " from BB"
-                                                            + g.getNumber(pred) + " to BB" + g.getNumber(current)
-                                                            + " on " + edgeType + " edge");
-                        }
-                        inItems.add(item);
-                    }
+                    changed |= flowBlock(current, g, ir);
+                }
+                iterations++;
+                if (iterations >= 100) {
+                    throw new RuntimeException("Analyzed the same SCC 100 times for method: "
+                                                    + PrettyPrinter.methodString(ir.getMethod()));
+                }
+            }
+        }
+        post(ir);
+    }
 
-                    Map<ISSABasicBlock, F> outItems = null;
-                    if (isBasicBlockunreachable) {
-                        // Do not analyze this block if it cannot be reached
-                        // from any predecessor
-                        if (outputLevel >= 2) {
-                            System.err.println("UNREACHABLE basic block: BB" + current.getNumber() + " in "
-                                                            + PrettyPrinter.methodString(ir.getMethod()));
-                        }
-                        outItems = flowUnreachableBlock(inItems, current, g);
-                        if (outItems == null) {
-                            continue;
-                        }
-                    }
+    /**
+     * Perform the dataflow using a work-list of basic blocks ordered by their position in a reverse post-order of the
+     * data-flow graph, so that (apart from back edges) the predecessors of a block are analyzed before it. Every block
+     * is analyzed at least once, after that a block is only re-analyzed if the output of one of its predecessors
+     * changed.
+     *
+     * @param ir
+     *            code for the method to perform the dataflow for
+     * @param g
+     *            control flow graph
+     * @param flowGraph
+     *            graph the data-flow facts flow along (the inverted control flow graph for a backward analysis)
+     */
+    private void dataflowWorklist(IR ir, ControlFlowGraph<SSAInstruction, ISSABasicBlock> g,
+                                    Graph<ISSABasicBlock> flowGraph) {
+        ISSABasicBlock[] order = reversePostOrder(flowGraph, getInitialBlock(g), g.getMaxNumber() + 1);
+        // Position of each block (indexed by block number) in the order
+        int[] position = new int[g.getMaxNumber() + 1];
+        for (int i = 0; i < order.length; i++) {
+            position[order[i].getNumber()] = i;
+        }
 
-                    if (previousResults != null && existingResultsSuitable(inItems, previousResults)) {
-                        // no need to reanalyze we can re-use the results
-                        continue;
-                    }
+        // Positions of the blocks that need to be analyzed, the block with the lowest position is analyzed first
+        BitSet worklist = new BitSet(order.length);
+        worklist.set(0, order.length);
+        int[] visits = new int[order.length];
+
+        int next = worklist.nextSetBit(0);
+        while (next >= 0) {
+            worklist.clear(next);
+            ISSABasicBlock current = order[next];
+            visits[next]++;
+            if (visits[next] >= 1000) {
+                // Inner loops are analyzed again for each iteration of an outer loop, so allow more iterations than
+                // for an SCC
+                throw new RuntimeException("Analyzed BB" + current.getNumber() + " 1000 times for method: "
+                                                + PrettyPrinter.methodString(ir.getMethod()));
+            }
 
-                    if (outputLevel >= 3) {
-                        System.err.println("FLOWING BB" + current.getNumber() + ": in "
-                                                        + PrettyPrinter.methodString(ir.getMethod()));
-                    }
+            if (flowBlock(current, g, ir)) {
+                Iterator<ISSABasicBlock> succs = getSuccs(current, g);
+                while (succs.hasNext()) {
+                    worklist.set(position[succs.next().getNumber()]);
+                }
+            }
+            next = worklist.nextSetBit(0);
+        }
+    }
 
-                    if (inItems.isEmpty() && getPreds(current, g).hasNext()) {
-                        if (outputLevel >= 2) {
-                            System.err.print("NO INPUT for BB" + current.getGraphNodeId() + " in "
-                                                            + PrettyPrinter.methodString(ir.getMethod())
-                                                            + " SKIPPING. Preds: [");
-                            Iterator<ISSABasicBlock> iter = getPreds(current, g);
-                            ISSABasicBlock first = iter.next();
-                            System.err.print("BB" + first.getNumber());
-                            while (iter.hasNext()) {
-                                System.err.print(", BB" + iter.next().getNumber());
-                            }
-                            System.err.println("]");
-                        }
-                        // This is reachable and there is no input which means
-                        // we are not starting at a BB in this SCC that is
-                        // connected to the previous SCC. Continue looking until
-                        // we do.
-                        continue;
+    /**
+     * Compute a reverse post-order of all the nodes in a graph, starting a depth first search from the initial block and
+     * then from any node not yet visited (e.g. blocks with no predecessors)
+     *
+     * @param flowGraph
+     *            graph to order
+     * @param initial
+     *            first node to search from
+     * @param maxNumber
+     *            one more than the largest basic block number
+     * @return all the nodes in the graph in reverse post-order
+     */
+    private static ISSABasicBlock[] reversePostOrder(Graph<ISSABasicBlock> flowGraph, ISSABasicBlock initial,
+                                    int maxNumber) {
+        ISSABasicBlock[] order = new ISSABasicBlock[flowGraph.getNumberOfNodes()];
+        int size = order.length;
+        boolean[] visited = new boolean[maxNumber];
+        Deque<OrderedPair<ISSABasicBlock, Iterator<ISSABasicBlock>>> stack = new ArrayDeque<>();
+
+        List<ISSABasicBlock> roots = new ArrayList<>(order.length + 1);
+        roots.add(initial);
+        for (ISSABasicBlock bb : flowGraph) {
+            roots.add(bb);
+        }
+        for (ISSABasicBlock root : roots) {
+            if (visited[root.getNumber()]) {
+                continue;
+            }
+            visited[root.getNumber()] = true;
+            stack.push(new OrderedPair<>(root, flowGraph.getSuccNodes(root)));
+            while (!stack.isEmpty()) {
+                Iterator<ISSABasicBlock> succs = stack.peek().snd();
+                if (succs.hasNext()) {
+                    ISSABasicBlock succ = succs.next();
+                    if (!visited[succ.getNumber()]) {
+                        visited[succ.getNumber()] = true;
+                        stack.push(new OrderedPair<>(succ, flowGraph.getSuccNodes(succ)));
                     }
+                } else {
+                    // All successors are finished, fill the order from the back
+                    order[--size] = stack.pop().fst();
+                }
+            }
+        }
+        assert size == 0 : "Not all nodes were ordered " + size;
+        return order;
+    }
 
-                    if (!isBasicBlockunreachable) {
-                        outItems = flow(inItems, g, current);
-                    }
+    /**
+     * Analyze a basic block with the current outputs of its predecessors as input, unless it is unreachable, has no
+     * input yet, or its previous results can be reused
+     *
+     * @param current
+     *            basic block to analyze
+     * @param g
+     *            control flow graph
+     * @param ir
+     *            code for the method the data-flow is performed over
+     * @return whether the output of the block changed
+     */
+    private boolean flowBlock(ISSABasicBlock current, ControlFlowGraph<SSAInstruction, ISSABasicBlock> g, IR ir) {
+        Set<F> inItems = new LinkedHashSet<>(getNumPreds(current, g));
+        AnalysisRecord<F> previousResults = getAnalysisRecord(current);
+        Map<ISSABasicBlock, F> oldOutItems = previousResults == null ? null : previousResults.getOutput();
+
+        // If all incoming edges unreachable then this block is
+        // unreachable and we do not need to analyze
+        // Note that all entry blocks are considered reachable
+        boolean isBasicBlockunreachable = !current.isEntryBlock();
+
+        // Get all out items for predecessors
+        Iterator<ISSABasicBlock> preds = getPreds(current, g);
+        while (preds.hasNext()) {
+            ISSABasicBlock pred = preds.next();
+
+            boolean isUnreachableEdge = isUnreachable(pred, current);
+            isBasicBlockunreachable &= isUnreachableEdge;
+            if (isUnreachableEdge || getAnalysisRecord(pred) == null) {
+                // There is no input on this edge if current is
+                // unreachable from the predecessor
+
+                // The output items could be null for a predecessor
+                // if there is a back edge and that predecessor has
+                // not been analyzed yet
+                continue;
+            }
 
-                    assert outItems != null : "Null out items for " + current.getNumber() + " with inputs: " + inItems;
+            Map<ISSABasicBlock, F> items = getAnalysisRecord(pred).getOutput();
+            F item = items.get(current);
+            inItems.add(item);
+            if (item == null) {
+                // We do not allow null output for reachable
+                // successors
+                String edgeType = getExceptionalSuccs(pred, g).contains(current) ? "exceptional" : "normal";
+                throw new RuntimeException("null data-flow item in "
+                                                + PrettyPrinter.methodString(ir.getMethod()) + " from BB"
+                                                + g.getNumber(pred) + " to BB" + g.getNumber(current)
+                                                + " on " + edgeType + " edge");
+            }
+            inItems.add(item);
+        }
 
-                    AnalysisRecord<F> newResults = new AnalysisRecord<>(inItems, outItems);
-                    putRecord(current, newResults);
+        Map<ISSABasicBlock, F> outItems = null;
+        if (isBasicBlockunreachable) {
+            // Do not analyze this block if it cannot be reached
+            // from any predecessor
+            if (outputLevel >= 2) {
+                System.err.println("UNREACHABLE basic block: BB" + current.getNumber() + " in "
+                                                + PrettyPrinter.methodString(ir.getMethod()));
+            }
+            outItems = flowUnreachableBlock(inItems, current, g);
+            if (outItems == null) {
+                return false;
+            }
+        }
 
-                    if (oldOutItems == null || !oldOutItems.equals(outItems)) {
-                        if (outputLevel >= 3) {
-                            System.err.println("OUTPUT BB" + current.getNumber() + ":\n\t" + outItems);
-                        }
-                        changed = true;
-                    }
-                }
-                iterations++;
-                if (iterations >= 100) {
-                    throw new RuntimeException("Analyzed the same SCC 100 times for method: "
-                                                    + PrettyPrinter.methodString(ir.getMethod()));
+        if (previousResults != null && existingResultsSuitable(inItems, previousResults)) {
+            // no need to reanalyze we can re-use the results
+            return false;
+        }
+
+        if (outputLevel >= 3) {
+            System.err.println("FLOWING BB" + current.getNumber() + ": in "
+                                            + PrettyPrinter.methodString(ir.getMethod()));
+        }
+
+        if (inItems.isEmpty() && getPreds(current, g).hasNext()) {
+            if (outputLevel >= 2) {
+                System.err.print("NO INPUT for BB" + current.getGraphNodeId() + " in "
+                                                + PrettyPrinter.methodString(ir.getMethod())
+                                                + " SKIPPING. Preds: [");
+                Iterator<ISSABasicBlock> iter = getPreds(current, g);
+                ISSABasicBlock first = iter.next();
+                System.err.print("BB" + first.getNumber());
+                while (iter.hasNext()) {
+                    System.err.print(", BB" + iter.next().getNumber());
                 }
+                System.err.println("]");
             }
+            // This is reachable and there is no input which means
+            // we are not starting at a BB in this SCC that is
+            // connected to the previous SCC. Continue looking until
+            // we do.
+            return false;
         }
-        post(ir);
+
+        if (!isBasicBlockunreachable) {
+            outItems = flow(inItems, g, current);
+        }
+
+        assert outItems != null : "Null out items for " + current.getNumber() + " with inputs: " + inItems;
+
+        AnalysisRecord<F> newResults = new AnalysisRecord<>(inItems, outItems);
+        putRecord(current, newResults);
+
+        if (oldOutItems == null || !oldOutItems.equals(outItems)) {
+            if (outputLevel >= 3) {
+                System.err.println("OUTPUT BB" + current.getNumber() + ":\n\t" + outItems);
+            }
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -438,7 +578,26 @@ public abstract class DataFlow<F> {
      *            input and output data-flow facts for the basic block
      */
     private final void putRecord(ISSABasicBlock bb, AnalysisRecord<F> record) {
-        bbToRecord.put(bb, record);
+        bbToRecord[bb.getNumber()] = record;
+    }
+
+    /**
+     * Make sure there is room for the records of the given number of basic blocks, keeping any existing records
+     *
+     * @param numBlocks
+     *            one more than the largest basic block number
+     */
+    private void ensureRecordCapacity(int numBlocks) {
+        if (bbToRecord.length < numBlocks) {
+            AnalysisRecord<F>[] larger = newRecordArray(numBlocks);
+            System.arraycopy(bbToRecord, 0, larger, 0, bbToRecord.length);
+            bbToRecord = larger;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> AnalysisRecord<T>[] newRecordArray(int size) {
+        return new AnalysisRecord[size];
     }
 
     /**
@@ -451,7 +610,8 @@ public abstract class DataFlow<F> {
      * @return input and output data-flow facts for the basic block
      */
     protected final AnalysisRecord<F> getAnalysisRecord(ISSABasicBlock bb) {
-        return bbToRecord.get(bb);
+        int i = bb.getNumber();
+        return i < bbToRecord.length ? bbToRecord[i] : null;
     }
 
     /**
@@ -0,0 +1,577 @@
+package analysis.dataflow.interprocedural;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import util.WorkQueue;
+
+/**
+ * Schedules the analysis of the nodes of a graph (e.g., a call graph) one strongly connected component (SCC) at a
+ * time. Each component has its own work-queue and is run by at most one thread at a time, which takes nodes from that
+ * queue until it is empty. Components with work are run concurrently.
+ * <p>
+ * If the analysis of a node needs the results of a node in another (callee) component that is not finished, and no
+ * thread is running that component, then the current thread runs the callee component to the end (see
+ * {@link #runHere(Object, Runnable)}) and reads its completed results. If another thread is running the callee
+ * component, then the analysis posts a request to that component (see {@link #suspend(Object, Runnable)}) and throws
+ * the returned {@link Suspended} exception, which unwinds the nodes being analyzed on the stack, and the thread goes on
+ * with other work. Those nodes are analyzed again once the callee component is finished, and then read its completed
+ * results. So a component is released to its callers as soon as it and the components it calls are done, and a thread
+ * never waits for another thread.
+ * <p>
+ * A component is finished (see {@link #lockIfFinished(Object)}) when its work-queue and requests are empty, it is not
+ * running, and none of its nodes is waiting for another component. A finished component can receive new requests
+ * later, and is then run again.
+ * <p>
+ * The work-queues, requests and waiting nodes of the components are an explicit continuation of the analysis: a run
+ * can be paused after a number of analyses (see {@link #run(Collection, int)}) or from another thread (see
+ * {@link #pause()}), and calling {@link #run(Collection, int)} again resumes it where it stopped. A suspended analysis
+ * is not resumed in the middle of the node, the node is analyzed again from the start.
+ *
+ * @param <N> type of the nodes
+ */
+final class ComponentScheduler<N> {
+
+    /**
+     * Analysis of a single node
+     *
+     * @param <N> type of the nodes
+     */
+    interface NodeAnalysis<N> {
+        /**
+         * Analyze a node taken from the work-queue of its component, the thread running the component is the only
+         * thread running analyses in that component
+         *
+         * @param n node to analyze
+         */
+        void analyze(N n);
+    }
+
+    /**
+     * Thrown by an analysis that needs the results of a component that is not finished. Every analysis of a node
+     * that this passes through must record the node with {@link #addNode(Object)}, so the node is analyzed again when
+     * the component is finished.
+     */
+    static final class Suspended extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        /**
+         * Component the analysis is waiting for
+         */
+        final Object component;
+        /**
+         * Nodes whose analysis was abandoned, innermost first
+         */
+        final List<Object> nodes = new ArrayList<>();
+
+        Suspended(Object component) {
+            super(null, null, false, false);
+            this.component = component;
+        }
+
+        /**
+         * Record that the analysis of the given node was abandoned
+         *
+         * @param n node
+         */
+        void addNode(Object n) {
+            nodes.add(n);
+        }
+    }
+
+    /**
+     * A strongly connected component of the graph. The fields are guarded by the lock.
+     */
+    private final class Component {
+        /**
+         * Lock guarding the component, held while nodes are added to it and while the results of a finished
+         * component are read, but not while its nodes are analyzed
+         */
+        final ReentrantLock lock = new ReentrantLock();
+        /**
+         * Nodes of the component to analyze
+         */
+        final WorkQueue<N> queue = new WorkQueue<>();
+        /**
+         * Requests from other components, run by the thread running this component before it takes the next node
+         */
+        final List<Runnable> requests = new ArrayList<>();
+        /**
+         * Nodes of other components waiting for this component to be finished
+         */
+        final List<Waiter> waiters = new ArrayList<>();
+        /**
+         * Whether a thread is running the component (or it has been handed to the executor)
+         */
+        boolean scheduled = false;
+        /**
+         * Number of groups of nodes of this component waiting for other components
+         */
+        int waiting = 0;
+
+        boolean isFinished() {
+            return !scheduled && waiting == 0 && queue.isEmpty() && requests.isEmpty();
+        }
+
+        /**
+         * Run the component on a thread of the executor until it has no work left
+         */
+        void run() {
+            try {
+                drain();
+            }
+            catch (RuntimeException | Error e) {
+                fail(e);
+            }
+            finally {
+                componentDone();
+            }
+        }
+
+        /**
+         * Whether the component has requests or nodes to analyze
+         */
+        boolean hasWork() {
+            return !queue.isEmpty() || !requests.isEmpty();
+        }
+
+        /**
+         * Run the requests and analyze the nodes in the work-queue until there are none left or the run is paused, then
+         * release the nodes waiting for this component if it is finished
+         */
+        void drain() {
+            while (true) {
+                List<Runnable> todo;
+                N n = null;
+                lock.lock();
+                try {
+                    if (runs.get() >= pauseAt) {
+                        // Leave the rest of the work for the next run
+                        scheduled = false;
+                        break;
+                    }
+                    todo = new ArrayList<>(requests);
+                    requests.clear();
+                    if (todo.isEmpty()) {
+                        n = queue.isEmpty() ? null : queue.poll();
+                        if (n == null) {
+                            scheduled = false;
+                            break;
+                        }
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+                for (Runnable r : todo) {
+                    r.run();
+                }
+                if (n != null) {
+                    runs.incrementAndGet();
+                    try {
+                        analysis.analyze(n);
+                    }
+                    catch (Suspended e) {
+                        suspensions.incrementAndGet();
+                        waitFor(this, e);
+                    }
+                }
+            }
+            releaseWaiters(this);
+        }
+    }
+
+    /**
+     * Nodes of a component waiting for another component
+     */
+    private final class Waiter {
+        final Component component;
+        final List<N> nodes;
+
+        Waiter(Component component, List<N> nodes) {
+            this.component = component;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * Component containing each node
+     */
+    private final Map<N, Component> components = new HashMap<>();
+    /**
+     * All the components
+     */
+    private final List<Component> allComponents = new ArrayList<>();
+    /**
+     * Analysis of a node
+     */
+    private final NodeAnalysis<N> analysis;
+    /**
+     * Number of threads running components
+     */
+    private final int numThreads;
+    /**
+     * Executor running the components, null unless {@link #run(Collection, int)} is in progress
+     */
+    private volatile ExecutorService exec;
+    /**
+     * Number of components that threads are running or that have been handed to the executor, guarded by this
+     */
+    private int active = 0;
+    /**
+     * First failure of an analysis, guarded by this
+     */
+    private Throwable failure = null;
+    /**
+     * Number of nodes analyzed (including analyses that were suspended)
+     */
+    private final AtomicInteger runs = new AtomicInteger(0);
+    /**
+     * Number of analyses suspended waiting for another component
+     */
+    private final AtomicInteger suspensions = new AtomicInteger(0);
+    /**
+     * Components stop taking work once this many nodes have been analyzed
+     */
+    private volatile long pauseAt = Long.MAX_VALUE;
+
+    /**
+     * Create a scheduler for the given components
+     *
+     * @param sccs strongly connected components of the graph
+     * @param analysis analysis of a node
+     * @param numThreads number of threads running components
+     */
+    ComponentScheduler(Iterator<Set<N>> sccs, NodeAnalysis<N> analysis, int numThreads) {
+        while (sccs.hasNext()) {
+            Component c = new Component();
+            for (N n : sccs.next()) {
+                components.put(n, c);
+            }
+            allComponents.add(c);
+        }
+        this.analysis = analysis;
+        this.numThreads = numThreads;
+    }
+
+    private Component getComponent(N n) {
+        Component c = components.get(n);
+        assert c != null : "Not in the graph " + n;
+        return c;
+    }
+
+    /**
+     * Whether the two nodes are in the same component
+     */
+    boolean sameComponent(N n1, N n2) {
+        return getComponent(n1) == getComponent(n2);
+    }
+
+    /**
+     * Analyze the given nodes, and the nodes added while they are analyzed, until no component has work left or the
+     * run is paused. If an earlier run was paused then the work it left is resumed as well.
+     *
+     * @param initial nodes to analyze
+     * @param maxRuns number of nodes to analyze before pausing, {@link Integer#MAX_VALUE} to run until there is no work
+     *            left. The nodes being analyzed when the limit is reached are finished, so a few more may be analyzed.
+     * @return true if no component has work left, false if the run was paused
+     */
+    boolean run(Collection<N> initial, int maxRuns) {
+        pauseAt = maxRuns == Integer.MAX_VALUE ? Long.MAX_VALUE : (long) runs.get() + maxRuns;
+        exec = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (N n : initial) {
+                submit(n);
+            }
+            for (Component c : allComponents) {
+                c.lock.lock();
+                try {
+                    if (c.hasWork()) {
+                        // Left by a paused run
+                        schedule(c);
+                    }
+                }
+                finally {
+                    c.lock.unlock();
+                }
+            }
+            synchronized (this) {
+                while (active > 0 && failure == null) {
+                    wait();
+                }
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+            }
+            for (Component c : allComponents) {
+                c.lock.lock();
+                try {
+                    if (c.hasWork()) {
+                        return false;
+                    }
+                }
+                finally {
+                    c.lock.unlock();
+                }
+            }
+            return true;
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while analyzing the components", e);
+        }
+        finally {
+            exec.shutdownNow();
+            exec = null;
+        }
+    }
+
+    /**
+     * Ask the run in progress to pause: the threads finish the analyses they are running and take no more work, and
+     * {@link #run(Collection, int)} returns false once they are done. Does nothing if no run is in progress.
+     */
+    void pause() {
+        if (exec != null) {
+            pauseAt = 0;
+        }
+    }
+
+    /**
+     * Add a node to the work-queue of its component, and run the component if it is not running
+     *
+     * @param n node to analyze
+     */
+    void submit(N n) {
+        Component c = getComponent(n);
+        c.lock.lock();
+        try {
+            c.queue.add(n);
+            schedule(c);
+        }
+        finally {
+            c.lock.unlock();
+        }
+    }
+
+    /**
+     * Post a request to the component of the given node, to be run by the thread running that component, and run the
+     * component if it is not running. The request usually sets up the node's analysis record and adds the node to the
+     * work-queue.
+     *
+     * @param n node in the component
+     * @param request request to run
+     * @return exception the caller must throw to abandon its analysis until the component is finished
+     */
+    Suspended suspend(N n, Runnable request) {
+        Component c = getComponent(n);
+        c.lock.lock();
+        try {
+            c.requests.add(request);
+            schedule(c);
+        }
+        finally {
+            c.lock.unlock();
+        }
+        return new Suspended(c);
+    }
+
+    /**
+     * Run the component of the given node on the current thread, starting with the given request, if no other thread
+     * is running it. The component is run until it has no work left, it may still not be finished if some of its nodes
+     * are waiting for other components.
+     *
+     * @param n node in the component
+     * @param request request to run first, usually sets up the node's analysis record and adds the node to the
+     *            work-queue
+     * @return true if the component was run, false if another thread is running it (and the request was not run)
+     */
+    boolean runHere(N n, Runnable request) {
+        Component c = getComponent(n);
+        c.lock.lock();
+        try {
+            if (c.scheduled) {
+                return false;
+            }
+            c.requests.add(request);
+            c.scheduled = true;
+            synchronized (this) {
+                active++;
+            }
+        }
+        finally {
+            c.lock.unlock();
+        }
+        try {
+            c.drain();
+        }
+        finally {
+            componentDone();
+        }
+        return true;
+    }
+
+    /**
+     * Lock the component of the given node if it is finished. The component cannot be run (and stays finished) until
+     * {@link #unlock(Object)} is called, so the results of its nodes can be read and dependencies on them recorded.
+     * The thread must not call other methods of the scheduler while the component is locked.
+     *
+     * @param n node in the component
+     * @return true if the component is finished and is locked, false if it is not finished (and is not locked)
+     */
+    boolean lockIfFinished(N n) {
+        Component c = getComponent(n);
+        c.lock.lock();
+        if (c.isFinished()) {
+            return true;
+        }
+        c.lock.unlock();
+        return false;
+    }
+
+    /**
+     * Unlock a component locked by {@link #lockIfFinished(Object)}
+     *
+     * @param n node in the component
+     */
+    void unlock(N n) {
+        getComponent(n).lock.unlock();
+    }
+
+    /**
+     * Number of nodes analyzed, including analyses that were suspended
+     */
+    int getNumRuns() {
+        return runs.get();
+    }
+
+    /**
+     * Number of analyses suspended waiting for another component
+     */
+    int getNumSuspensions() {
+        return suspensions.get();
+    }
+
+    /**
+     * Number of components
+     */
+    int getNumComponents() {
+        return allComponents.size();
+    }
+
+    /**
+     * Hand the component to the executor if no thread is running it, the lock of the component is held
+     */
+    private void schedule(final Component c) {
+        if (c.scheduled) {
+            return;
+        }
+        c.scheduled = true;
+        synchronized (this) {
+            active++;
+        }
+        exec.execute(new Runnable() {
+            @Override
+            public void run() {
+                c.run();
+            }
+        });
+    }
+
+    /**
+     * Make the nodes abandoned by the given exception wait for the component the exception is for
+     */
+    @SuppressWarnings("unchecked")
+    private void waitFor(Component c, Suspended e) {
+        List<N> nodes = new ArrayList<>(e.nodes.size());
+        for (Object n : e.nodes) {
+            nodes.add((N) n);
+        }
+        Waiter w = new Waiter(c, nodes);
+        c.lock.lock();
+        try {
+            c.waiting++;
+        }
+        finally {
+            c.lock.unlock();
+        }
+        Component target = (Component) e.component;
+        boolean finished;
+        target.lock.lock();
+        try {
+            finished = target.isFinished();
+            if (!finished) {
+                target.waiters.add(w);
+            }
+        }
+        finally {
+            target.lock.unlock();
+        }
+        if (finished) {
+            // The component finished before the nodes could wait for it
+            release(Collections.singletonList(w));
+        }
+    }
+
+    /**
+     * Release the nodes waiting for the given component, if it is finished
+     */
+    private void releaseWaiters(Component c) {
+        List<Waiter> release;
+        c.lock.lock();
+        try {
+            if (!c.isFinished()) {
+                return;
+            }
+            release = new ArrayList<>(c.waiters);
+            c.waiters.clear();
+        }
+        finally {
+            c.lock.unlock();
+        }
+        release(release);
+    }
+
+    /**
+     * Put the waiting nodes back on the work-queues of their components, no component lock is held
+     */
+    private void release(List<Waiter> waiters) {
+        for (Waiter w : waiters) {
+            w.component.lock.lock();
+            try {
+                w.component.waiting--;
+                for (N n : w.nodes) {
+                    w.component.queue.add(n);
+                }
+                schedule(w.component);
+            }
+            finally {
+                w.component.lock.unlock();
+            }
+        }
+    }
+
+    private synchronized void fail(Throwable t) {
+        if (failure == null) {
+            failure = t;
+        }
+        notifyAll();
+    }
+
+    private synchronized void componentDone() {
+        active--;
+        if (active == 0) {
+            notifyAll();
+        }
+    }
+}
@@ -1,24 +1,29 @@
 package analysis.dataflow.interprocedural;
 
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import main.AccrueAnalysisMain;
 import util.WorkQueue;
 import util.print.PrettyPrinter;
 import analysis.AnalysisUtil;
+import analysis.dataflow.interprocedural.ComponentScheduler.Suspended;
 import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
 import analysis.dataflow.util.AbstractLocation;
 import analysis.dataflow.util.AbstractValue;
-import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToResults;
 import analysis.pointer.graph.ReferenceVariableCache;
 import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
@@ -26,16 +31,74 @@ import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import com.ibm.wala.ipa.callgraph.CGNode;
 import com.ibm.wala.ipa.callgraph.CallGraph;
 import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ssa.IR;
 import com.ibm.wala.types.FieldReference;
 import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.graph.traverse.SCCIterator;
 
 /**
  * Manages the running of an inter-procedural data-flow analysis
+ * <p>
+ * If {@link #setParallel(boolean)} is set (and the analysis allows it, see {@link #canRunInParallel()}) then the
+ * strongly connected components (SCCs) of the call graph are analyzed by several threads (see
+ * {@link ComponentScheduler}). Each SCC has its own work-queue and is analyzed by one thread at a time, just as in the
+ * single-threaded analysis, while independent SCCs are analyzed concurrently. A caller that needs the results of a
+ * callee in another SCC uses the callee's record if that SCC is finished. Otherwise, if no thread is running the
+ * callee's SCC, the caller's thread runs it to the end and uses the completed record. If another thread is running
+ * it, the caller is abandoned instead of waiting, and is analyzed again once the callee's SCC (and so every SCC it
+ * calls) is finished. No thread ever waits for another, and there are no waves to wait for.
+ * <p>
+ * A caller's analysis is suspended while a callee it needs results for is analyzed, on the same Java stack, so deep
+ * call chains would need a very deep stack. Once {@link #setMaxCallDepth(int) too many} analyses are nested on a
+ * thread, a callee in the same SCC that needs to be analyzed is instead added to the work-queue, and the caller gets
+ * the latest output and is re-analyzed if the callee's output changes, just as for a recursive call. A caller of a
+ * callee in another SCC is abandoned, as above, and analyzed again once that SCC is finished. The work-queues, waiting
+ * callers and analysis records then hold the pending work that would otherwise be on the stack, and the results are
+ * the same.
+ * <p>
+ * When the analysis runs on the {@link ComponentScheduler} (see {@link #setParallel(boolean)}, which may use a
+ * single thread) that pending work is all the state of the analysis, so it can be paused between the analyses of two
+ * nodes (see {@link #runAnalysis(int)} and {@link #pause()}) and resumed later by running it again. The state is kept
+ * in memory, it is not written out.
+ * <p>
+ * If the {@link SummaryStore} is on, and the analysis can write its data-flow facts as strings (see
+ * {@link #encodeFact(AbstractValue)}), then the output for each node is stored at the end of the analysis, and a
+ * stored output is used in place of the default output the first time a node is requested with the same input, but
+ * only if it is at or below the default output. The initial output of a node only matters for recursive calls (and
+ * callees deferred by the call depth), and there a larger initial output can settle on a larger (less precise) fixed
+ * point, so a stored output above the default is never used. A stored output computed by this analysis for the same
+ * program is a fixed point, so the results are the same as without the store. A stored output from other code (the key
+ * only has the class of the context, and a file can be written for another program) can lead a recursive method to a
+ * smaller fixed point than the default output would, which is still sound. No node is ever skipped: every node is
+ * still analyzed, so the store can only save passes over recursive methods, and only for an analysis whose default
+ * output is not already the least output. The number of times a stored output is read before its node is analyzed is
+ * printed with the other summary statistics.
  *
  * <F> Type of data-flow facts propagated by this analysis
  */
 public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
 
+    /**
+     * Whether analyses created after this is set analyze independent parts of the call graph on several threads
+     */
+    private static boolean parallel = false;
+    /**
+     * Default for {@link #setMaxCallDepth(int)}. Each nested analysis puts about 13 frames on the stack (from
+     * processCallGraphNode through the intra-procedural data-flow and its instruction dispatch back to getResults). A
+     * chain of 13 such methods nests about 550 times in the default 1 MB thread stack (-Xss1m on 64-bit HotSpot, also
+     * used by the worker threads) when interpreted, so 200 leaves room for larger frames and for building IRs.
+     */
+    public static final int DEFAULT_MAX_CALL_DEPTH = 200;
+    /**
+     * Number of analyses of call graph nodes that can be nested on a thread before callees are put on the work-queue
+     */
+    private static int maxCallDepth = DEFAULT_MAX_CALL_DEPTH;
+
+    /**
+     * Whether this analysis may analyze the call graph on several threads, the value of {@link #parallel} when it was
+     * created
+     */
+    private final boolean multiThreaded = parallel;
     /**
      * Procedure call graph
      */
@@ -43,24 +106,26 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
     /**
      * Points-to graph
      */
-    private final PointsToGraph ptg;
+    private final PointsToResults ptg;
     /**
-     * Analysis work-queue containing call graph nodes to be processed
+     * Analysis work-queue containing call graph nodes to be processed, when the analysis runs on several threads the
+     * nodes are put on the work-queues of their SCCs instead (see {@link ComponentScheduler})
      */
     private final WorkQueue<CGNode> q = new WorkQueue<>();
     /**
      * Nodes that are currently being processed, used to detect recursive calls
      */
-    protected final Set<CGNode> currentlyProcessing = new HashSet<>();
+    protected final Set<CGNode> currentlyProcessing =
+            Collections.newSetFromMap(AnalysisUtil.<CGNode, Boolean> createConcurrentHashMap());
     /**
      * Record of which CG nodes need to be re-analyzed if a given node changes
      */
-    private final Map<CGNode, Set<CGNode>> dependencyMap = new HashMap<>();
+    private final Map<CGNode, Set<CGNode>> dependencyMap = AnalysisUtil.createConcurrentHashMap();
     /**
      * Whether the analysis results for the given CGNode were soundly computed i.e. they did not use unsound results for
      * a recursive call
      */
-    private final Map<CGNode, Boolean> soundResultsSoFar = new HashMap<>();
+    private final Map<CGNode, Boolean> soundResultsSoFar = AnalysisUtil.createConcurrentHashMap();
     /**
      * Specifies the logging level
      */
@@ -68,7 +133,7 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
     /**
      * debugging map to make sure there are infinite loops
      */
-    private final Map<CGNode, Integer> iterations = new HashMap<>();
+    private final Map<CGNode, Integer> iterations = AnalysisUtil.createConcurrentHashMap();
     /**
      * Results of a reachability analysis
      */
@@ -76,7 +141,7 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
     /**
      * debugging map to make sure there are infinite loops
      */
-    private final Map<CGNode, Integer> requests = new HashMap<>();
+    private final Map<CGNode, Integer> requests = AnalysisUtil.createConcurrentHashMap();
     /**
      * Mapping from local variable to reference variable
      */
@@ -85,6 +150,45 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
      * Analysis records (input and output) for each call graph node
      */
     protected final AnalysisRecordMap recordedResults = new AnalysisRecordMap();
+    /**
+     * Scheduler running the strongly connected components of the call graph, null unless the analysis is running on
+     * several threads
+     */
+    private volatile ComponentScheduler<CGNode> scheduler = null;
+    /**
+     * IRs of the methods with signatures, kept reachable while the analysis runs on several threads
+     */
+    private List<IR> signatureIRs = null;
+    /**
+     * Number of nodes whose initial output was taken from the summary store
+     */
+    private final AtomicInteger storedSummariesUsed = new AtomicInteger(0);
+    /**
+     * Number of stored summaries not used as they are above the default output
+     */
+    private final AtomicInteger storedSummariesRejected = new AtomicInteger(0);
+    /**
+     * Nodes whose record still has the output taken from the summary store, as they have not been analyzed yet
+     */
+    private final Set<CGNode> seededNodes =
+            Collections.newSetFromMap(AnalysisUtil.<CGNode, Boolean> createConcurrentHashMap());
+    /**
+     * Number of times a caller got an output taken from the summary store, before the callee was analyzed
+     */
+    private final AtomicInteger storedSummariesRead = new AtomicInteger(0);
+    /**
+     * Number of analyses of call graph nodes in progress on the current thread (in an array so it can be updated)
+     */
+    private final ThreadLocal<int[]> callDepth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+    /**
+     * Number of times a callee was put on the work-queue rather than analyzed because the call depth was reached
+     */
+    private final AtomicInteger deferredCallees = new AtomicInteger(0);
 
     /**
      * Construct a new inter-procedural analysis over the given call graph
@@ -96,7 +200,7 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
      * @param rvCache
      *            Mapping from local variable to reference variable
      */
-    public InterproceduralDataFlow(PointsToGraph ptg, ReachabilityResults reachable, ReferenceVariableCache rvCache) {
+    public InterproceduralDataFlow(PointsToResults ptg, ReachabilityResults reachable, ReferenceVariableCache rvCache) {
         this.cg = ptg.getCallGraph();
         this.ptg = ptg;
         this.reachable = reachable;
@@ -104,42 +208,106 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
     }
 
     /**
-     * Run the inter-procedural analysis
+     * Set whether inter-procedural analyses created after this call analyze independent strongly connected components
+     * of the call graph on several threads. The results are the same as for the single-threaded analysis.
+     *
+     * @param parallel if true then analyze the call graph on several threads
+     */
+    public static void setParallel(boolean parallel) {
+        InterproceduralDataFlow.parallel = parallel;
+    }
+
+    /**
+     * Set the number of analyses of call graph nodes that inter-procedural analyses created after this call can nest on
+     * one thread. Deeper callees are analyzed later from the work-queue (on several threads, a deeper callee in another
+     * SCC is analyzed by the thread running that SCC while the caller is suspended). The results are the same, smaller
+     * numbers need less stack but may re-analyze more callers.
+     *
+     * @param maxCallDepth maximum number of nested analyses, at least 1
+     */
+    public static void setMaxCallDepth(int maxCallDepth) {
+        if (maxCallDepth < 1) {
+            throw new IllegalArgumentException("The call depth must be at least 1, not " + maxCallDepth);
+        }
+        InterproceduralDataFlow.maxCallDepth = maxCallDepth;
+    }
+
+    /**
+     * Create a map keyed by call graph node, for an analysis created after this call or its results. If analyses
+     * analyze the call graph on several threads (see {@link #setParallel(boolean)}) then the map is concurrent,
+     * otherwise the given map is returned, so that a single-threaded analysis visits (and prints) the nodes in the same
+     * order whether or not analyses could run on several threads.
+     *
+     * @param singleThreadedMap map to use if analyses run on a single thread
+     * @return map to use for the analysis or its results
+     */
+    public static <K, V> Map<K, V> createNodeMap(Map<K, V> singleThreadedMap) {
+        return parallel ? AnalysisUtil.<K, V> createConcurrentHashMap() : singleThreadedMap;
+    }
+
+    /**
+     * Whether this analysis can analyze different call graph nodes on several threads. This requires that the
+     * analysis of a node only modifies state belonging to that node (e.g., the results for that node) or thread-safe
+     * state.
+     *
+     * @return true if this analysis can run on several threads
      */
-    public final void runAnalysis() {
-        System.err.println("RUNNING: " + getAnalysisName());
+    protected boolean canRunInParallel() {
+        return true;
+    }
+
+    /**
+     * Run the inter-procedural analysis, or resume it if it was paused
+     *
+     * @return true if the analysis is finished, false if it was paused (see {@link #pause()})
+     */
+    public final boolean runAnalysis() {
+        return runAnalysis(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Run the inter-procedural analysis, or resume it if it was paused, and pause it after about the given number of
+     * analyses of call graph nodes. Call this again to resume the analysis. Only an analysis running on the
+     * {@link ComponentScheduler} (see {@link #setParallel(boolean)}) can be paused, any other analysis runs to the
+     * end.
+     *
+     * @param maxNodeAnalyses number of analyses of call graph nodes after which to pause, {@link Integer#MAX_VALUE} to
+     *            run to the end
+     * @return true if the analysis is finished, false if it was paused
+     */
+    public final boolean runAnalysis(int maxNodeAnalyses) {
+        if (maxNodeAnalyses < 1) {
+            throw new IllegalArgumentException("The number of analyses must be at least 1, not " + maxNodeAnalyses);
+        }
+        boolean resumed = scheduler != null;
+        System.err.println((resumed ? "RESUMING: " : "RUNNING: ") + getAnalysisName());
         long start = System.currentTimeMillis();
 
         Collection<CGNode> entryPoints = cg.getEntrypointNodes();
 
-        // These are the class initializers
-        q.addAll(entryPoints);
-        // Also add the fake root method (which calls main)
-        q.add(cg.getFakeRootNode());
+        if (!resumed) {
+            // These are the class initializers
+            q.addAll(entryPoints);
+            // Also add the fake root method (which calls main)
+            q.add(cg.getFakeRootNode());
+        }
 
-        while (!q.isEmpty()) {
-            CGNode current = q.poll();
-            if (getOutputLevel() >= 2) {
-                System.err.println("QUEUE_POLL: " + PrettyPrinter.cgNodeString(current));
+        if (multiThreaded && canRunInParallel()) {
+            if (!runInParallel(entryPoints, maxNodeAnalyses)) {
+                System.err.println("PAUSED: " + getAnalysisName() + " after " + scheduler.getNumRuns()
+                        + " analyses, this part took " + ((System.currentTimeMillis() - start) / 1000.0) + "s");
+                return false;
             }
-
-            F input;
-            if (current.equals(cg.getFakeRootNode()) || entryPoints.contains(current)) {
-                // This is an entry node
-                if (!recordedResults.containsRecord(current)) {
-                    // Initialize the analysis record
-                    input = getInputForEntryPoint();
-                    recordedResults.setInitialRecord(current, new AnalysisRecord<>(input, null, true));
-                }
-            } else {
-                AnalysisRecord<F> results = recordedResults.getRecord(current);
-                if (getOutputLevel() >= 2) {
-                    System.err.println("\tPREVIOUS RESULTS: " + results);
-                }
-                input = results.getInput();
+        } else {
+            while (!q.isEmpty()) {
+                processFromQueue(q.poll(), entryPoints);
             }
+        }
 
-            processCallGraphNode(current);
+        storeSummaries();
+        if (getOutputLevel() >= 1 && deferredCallees.get() > 0) {
+            System.err.println(getAnalysisName() + " put " + deferredCallees.get()
+                    + " callees on the work-queue after reaching a call depth of " + maxCallDepth);
         }
 
         long time = System.currentTimeMillis() - start;
@@ -154,6 +322,117 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
             System.err.println("Memory used so far: "
                     + (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1000000) + "MB");
         }
+        return true;
+    }
+
+    /**
+     * Ask an analysis running on the {@link ComponentScheduler} (see {@link #setParallel(boolean)}) to pause. The
+     * analyses of call graph nodes in progress are finished, then {@link #runAnalysis()} returns false, and calling
+     * it again resumes the analysis. Does nothing if the analysis is not running or cannot be paused.
+     */
+    public void pause() {
+        ComponentScheduler<CGNode> s = scheduler;
+        if (s != null) {
+            s.pause();
+        }
+    }
+
+    /**
+     * Process a node taken from the work-queue
+     *
+     * @param current node to process
+     * @param entryPoints entry points of the call graph, which are initialized with the input for entry points
+     */
+    private void processFromQueue(CGNode current, Collection<CGNode> entryPoints) {
+        if (getOutputLevel() >= 2) {
+            System.err.println("QUEUE_POLL: " + PrettyPrinter.cgNodeString(current));
+        }
+
+        F input;
+        if (current.equals(cg.getFakeRootNode()) || entryPoints.contains(current)) {
+            // This is an entry node
+            if (!recordedResults.containsRecord(current)) {
+                // Initialize the analysis record
+                input = getInputForEntryPoint();
+                recordedResults.setInitialRecord(current, new AnalysisRecord<>(input, null, true));
+            }
+        } else {
+            AnalysisRecord<F> results = recordedResults.getRecord(current);
+            if (getOutputLevel() >= 2) {
+                System.err.println("\tPREVIOUS RESULTS: " + results);
+            }
+            input = results.getInput();
+        }
+
+        processCallGraphNode(current);
+    }
+
+    /**
+     * Process the work-queue on several threads, scheduling the strongly connected components of the call graph
+     * bottom-up (see {@link ComponentScheduler}), or resume the analysis if it was paused
+     *
+     * @param entryPoints entry points of the call graph
+     * @param maxNodeAnalyses number of analyses of call graph nodes after which to pause
+     * @return true if the analysis is finished, false if it was paused
+     */
+    private boolean runInParallel(final Collection<CGNode> entryPoints, int maxNodeAnalyses) {
+        if (scheduler == null) {
+            // WALA's IR cache is not thread-safe, so keep the IR of methods without signatures in the concurrent IR
+            // cache, where the threads can build it (and build it again if it is reclaimed). Signatures are not
+            // thread-safe either: look up every method now, and keep the IR of the (few) methods with signatures
+            // reachable until the analysis is done so that it is not reclaimed and rebuilt while the threads run.
+            AnalysisUtil.useConcurrentIRCache();
+            signatureIRs = new ArrayList<>();
+            for (CGNode n : cg) {
+                if (AnalysisUtil.hasSignature(n.getMethod())) {
+                    signatureIRs.add(AnalysisUtil.getIR(n));
+                }
+            }
+            scheduler = new ComponentScheduler<>(new SCCIterator<>(cg),
+                                                 new ComponentScheduler.NodeAnalysis<CGNode>() {
+                                                     @Override
+                                                     public void analyze(CGNode n) {
+                                                         processFromQueue(n, entryPoints);
+                                                     }
+                                                 },
+                                                 AnalysisUtil.numThreads);
+        }
+
+        List<CGNode> initial = new ArrayList<>();
+        while (!q.isEmpty()) {
+            initial.add(q.poll());
+        }
+        boolean paused = false;
+        try {
+            paused = !scheduler.run(initial, maxNodeAnalyses);
+        }
+        finally {
+            if (getOutputLevel() >= 1) {
+                System.err.println(getAnalysisName() + " analyzed " + scheduler.getNumComponents() + " SCCs on "
+                        + AnalysisUtil.numThreads + " threads: " + scheduler.getNumRuns() + " analyses, "
+                        + scheduler.getNumSuspensions() + " suspended waiting for callee SCCs ("
+                        + signatureIRs.size() + " signature IRs)");
+            }
+            if (!paused) {
+                // Keep the pending work of a paused analysis so it can be resumed
+                scheduler = null;
+                signatureIRs = null;
+            }
+        }
+        return !paused;
+    }
+
+    /**
+     * Add a node to the work-queue
+     *
+     * @param n node to add
+     */
+    private void enqueue(CGNode n) {
+        if (scheduler != null) {
+            scheduler.submit(n);
+            return;
+        }
+        q.add(n);
     }
 
     protected abstract String getAnalysisName();
@@ -223,9 +502,11 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
      *            node that depends on the output of analyzing n1
      */
     private void addDependency(CGNode n1, CGNode n2) {
+        // The set for n1 is only modified by the thread running n1's SCC, or while that SCC is finished and locked
         Set<CGNode> deps = dependencyMap.get(n1);
         if (deps == null) {
-            deps = new HashSet<>();
+            deps = multiThreaded ? Collections.newSetFromMap(AnalysisUtil.<CGNode, Boolean> createConcurrentHashMap())
+                    : new HashSet<CGNode>();
             dependencyMap.put(n1, deps);
         }
         deps.add(n2);
@@ -245,7 +526,7 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
      *
      * @return points-to graph
      */
-    public PointsToGraph getPointsToGraph() {
+    public PointsToResults getPointsToGraph() {
         return ptg;
     }
 
@@ -268,28 +549,98 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
             System.err.println("\tINPUT: " + input);
         }
 
+        if (scheduler == null || scheduler.sameComponent(caller, callee)) {
+            // Only the thread running the callee's SCC can analyze the callee or change its record
+            return getResultsInComponent(caller, callee, input);
+        }
+        return getResultsFromComponent(caller, callee, input);
+    }
+
+    /**
+     * Get the results of analyzing a callee in another strongly connected component of the call graph, when the
+     * analysis is running on several threads. The callee's record is used if it covers the input and is sound, or if
+     * the callee's SCC is finished. Otherwise the callee's SCC is run on this thread, if no other thread is running it
+     * and the call depth allows, and the completed record is used. Failing that, the callee's SCC is asked to analyze
+     * the callee with the input, and the analysis of the caller is abandoned until that SCC is finished.
+     */
+    private Map<ExitType, F> getResultsFromComponent(CGNode caller, final CGNode callee, final F input) {
+        if (recordedResults.containsRecord(callee)) {
+            // A sound record is a fixed point for its input and is never changed for that input
+            AnalysisRecord<F> results = recordedResults.getRecord(callee);
+            if (results.isSoundResult() && coversInput(input, results)) {
+                printResults(callee, "COMPLETED", results);
+                return results.getOutput();
+            }
+        }
+        if (scheduler.lockIfFinished(callee)) {
+            try {
+                if (recordedResults.containsRecord(callee) && coversInput(input, recordedResults.getRecord(callee))) {
+                    printResults(callee, "COMPLETED", recordedResults.getRecord(callee));
+                    return useResults(caller, callee);
+                }
+            }
+            finally {
+                scheduler.unlock(callee);
+            }
+        }
+        Runnable request = new Runnable() {
+            @Override
+            public void run() {
+                // Run by the thread running the callee's SCC
+                if (!recordedResults.containsRecord(callee) || !coversInput(input, recordedResults.getRecord(callee))) {
+                    setUpRecord(callee, input);
+                    enqueue(callee);
+                }
+            }
+        };
+        if (callDepth.get()[0] < maxCallDepth && scheduler.runHere(callee, request)
+                && scheduler.lockIfFinished(callee)) {
+            try {
+                if (coversInput(input, recordedResults.getRecord(callee))) {
+                    printResults(callee, "COMPLETED", recordedResults.getRecord(callee));
+                    return useResults(caller, callee);
+                }
+            }
+            finally {
+                scheduler.unlock(callee);
+            }
+        }
+        // Another thread is running the callee's SCC, or some of its nodes are waiting for other SCCs
+        if (outputLevel >= 4) {
+            System.err.println("WAITING FOR SCC OF: " + PrettyPrinter.cgNodeString(callee) + " requested from "
+                    + PrettyPrinter.cgNodeString(caller));
+        }
+        throw scheduler.suspend(callee, request);
+    }
+
+    /**
+     * Whether the output in the given record holds for the given input, either because it is suitable (see
+     * {@link #existingResultSuitable(AbstractValue, AnalysisRecord)}) or because analyzing the node with the join of
+     * the input and the record's input would give the same output
+     */
+    private boolean coversInput(F input, AnalysisRecord<F> existingResults) {
+        return existingResults.getOutput() != null
+                && (existingResultSuitable(input, existingResults) || input.leq(existingResults.getInput()));
+    }
+
+    /**
+     * Get the results of analyzing a callee in the same strongly connected component as the caller (or any callee if
+     * the analysis is single-threaded)
+     */
+    private Map<ExitType, F> getResultsInComponent(CGNode caller, CGNode callee, F input) {
         incrementRequestCounter(callee);
 
         if (recordedResults.containsRecord(callee) && existingResultSuitable(input, recordedResults.getRecord(callee))) {
             // The previous results are suitable, do nothing and leave them in the analysis record
             printResults(callee, "PREVIOUS", recordedResults.getRecord(callee));
         } else {
-            if (!recordedResults.containsRecord(callee)) {
-                AnalysisRecord<F> initial = new AnalysisRecord<>(input, getDefaultOutput(input), false);
-                if (callee.getMethod().isClinit()) {
-                    System.err.println("INITIALIZING FROM GET RESULTS: " + callee);
-                }
-                recordedResults.setInitialRecord(callee, initial);
-            } else {
-                // TODO use widen for back edges
-                recordedResults.updateInput(callee, input.join(recordedResults.getRecord(callee).getInput()), false);
-            }
+            setUpRecord(callee, input);
 
             if (currentlyProcessing.contains(callee)) {
                 // Already processing the callee, this is a recursive call.
                 // Use the latest output and process this later with the new input
                 // (the latest output and new input are both already in the analysis record)
-                q.add(callee);
+                enqueue(callee);
 
                 if (outputLevel >= 4) {
                     System.err.println("ALREADY PROCESSING: " + PrettyPrinter.cgNodeString(callee) + " requested from "
@@ -297,11 +648,49 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
                 }
                 printResults(callee, "LATEST", recordedResults.getRecord(callee));
             } else {
-                processCallGraphNode(callee);
+                processCallee(caller, callee);
             }
         }
+        return useResults(caller, callee);
+    }
 
+    /**
+     * Set up the analysis record of a callee for the given input: create an initial record if there is none, or join
+     * the input with the input in the record. The record is unsound until the callee is analyzed.
+     *
+     * @param callee node to set up the record for
+     * @param input input to the callee
+     */
+    private void setUpRecord(CGNode callee, F input) {
+        if (!recordedResults.containsRecord(callee)) {
+            // A stored summary (at or below the default output) is only a better guess for a recursive call,
+            // the callee is still analyzed and the callers re-analyzed if the output differs
+            Map<ExitType, F> stored = getStoredSummary(callee, input);
+            AnalysisRecord<F> initial = new AnalysisRecord<>(input, stored == null ? getDefaultOutput(input)
+                    : stored, false);
+            if (stored != null) {
+                seededNodes.add(callee);
+            }
+            if (callee.getMethod().isClinit()) {
+                System.err.println("INITIALIZING FROM GET RESULTS: " + callee);
+            }
+            recordedResults.setInitialRecord(callee, initial);
+        } else {
+            // TODO use widen for back edges
+            recordedResults.updateInput(callee, input.join(recordedResults.getRecord(callee).getInput()), false);
+        }
+    }
+
+    /**
+     * Return the output in the callee's record to the caller, making the caller depend on the callee if the record is
+     * unsound
+     */
+    private Map<ExitType, F> useResults(CGNode caller, CGNode callee) {
         AnalysisRecord<F> results = recordedResults.getRecord(callee);
+        if (seededNodes.contains(callee)) {
+            // A recursive call, or a callee put on the work-queue, that the stored output was a better guess for
+            storedSummariesRead.incrementAndGet();
+        }
         if (!results.isSoundResult()) {
             // Ensure that the caller will be re-analyzed if the results for the
             // callee change
@@ -313,6 +702,125 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
         return results.getOutput();
     }
 
+    /**
+     * Analyze a callee whose analysis record is set up, unless too many analyses are already nested on this thread, in
+     * which case the callee is added to the work-queue and the caller uses the latest output in the record for now.
+     * The record for a callee that is not analyzed must be marked as unsound so that the caller depends on it.
+     *
+     * @param caller node requesting the results, only used for logging
+     * @param callee node to analyze
+     * @return true if the callee was analyzed, false if it was added to the work-queue
+     */
+    protected final boolean processCallee(CGNode caller, CGNode callee) {
+        if (callDepth.get()[0] < maxCallDepth) {
+            processCallGraphNode(callee);
+            return true;
+        }
+        // Analyze the callee later, at the bottom of the stack, rather than deeper on the stack
+        deferredCallees.incrementAndGet();
+        enqueue(callee);
+        if (outputLevel >= 4) {
+            System.err.println("CALL DEPTH REACHED: " + PrettyPrinter.cgNodeString(callee) + " requested from "
+                    + PrettyPrinter.cgNodeString(caller));
+        }
+        printResults(callee, "LATEST", recordedResults.getRecord(callee));
+        return false;
+    }
+
+    /**
+     * Get the output stored in the summary store for the given node and input, if it is at or below the default output
+     * for the input. A larger initial output could make a recursive method settle on a less precise fixed point.
+     *
+     * @param n node to get the summary for
+     * @param input input to the node
+     * @return output for each exit type, or null if the store is off or has no summary that can be read and used
+     */
+    private Map<ExitType, F> getStoredSummary(CGNode n, F input) {
+        SummaryStore store = SummaryStore.getInstance();
+        if (store == null) {
+            return null;
+        }
+        String encodedInput = encodeFact(input);
+        if (encodedInput == null) {
+            return null;
+        }
+        Map<ExitType, String> stored = store.get(SummaryStore.key(getSummaryName(), n, encodedInput));
+        if (stored == null) {
+            return null;
+        }
+        Map<ExitType, F> defaultOutput = getDefaultOutput(input);
+        Map<ExitType, F> output = new HashMap<>();
+        for (ExitType exit : ExitType.values()) {
+            String encoded = stored.get(exit);
+            F fact = encoded == null ? null : decodeFact(encoded);
+            if (fact == null) {
+                // e.g. an exception type that is not loaded in this run
+                return null;
+            }
+            F defaultFact = defaultOutput.get(exit);
+            if (defaultFact == null || !fact.leq(defaultFact)) {
+                storedSummariesRejected.incrementAndGet();
+                return null;
+            }
+            output.put(exit, fact);
+        }
+        storedSummariesUsed.incrementAndGet();
+        return output;
+    }
+
+    /**
+     * Put the output for each node analyzed in the summary store (if it is on), and write the store to its file. If
+     * nodes with the same key (see {@link SummaryStore#key}) have different outputs then no summary is kept for that
+     * key.
+     */
+    private void storeSummaries() {
+        SummaryStore store = SummaryStore.getInstance();
+        if (store == null) {
+            return;
+        }
+        Map<String, Map<ExitType, String>> computed = new HashMap<>();
+        Set<String> conflicting = new HashSet<>();
+        for (CGNode n : recordedResults.getNodes()) {
+            AnalysisRecord<F> rec = recordedResults.getRecord(n);
+            String encodedInput = encodeFact(rec.getInput());
+            if (encodedInput == null || rec.getOutput() == null) {
+                continue;
+            }
+            Map<ExitType, String> encodedOutput = new EnumMap<>(ExitType.class);
+            for (ExitType exit : ExitType.values()) {
+                F fact = rec.getOutput().get(exit);
+                String encoded = fact == null ? null : encodeFact(fact);
+                if (encoded == null) {
+                    encodedOutput = null;
+                    break;
+                }
+                encodedOutput.put(exit, encoded);
+            }
+            if (encodedOutput == null) {
+                continue;
+            }
+            String key = SummaryStore.key(getSummaryName(), n, encodedInput);
+            Map<ExitType, String> previous = computed.put(key, encodedOutput);
+            if (previous != null && !previous.equals(encodedOutput)) {
+                conflicting.add(key);
+            }
+        }
+        if (computed.isEmpty()) {
+            // This analysis does not store summaries
+            return;
+        }
+        for (String key : conflicting) {
+            computed.remove(key);
+            store.remove(key);
+        }
+        store.putAll(computed);
+        store.write();
+        System.err.println(getAnalysisName() + " used " + storedSummariesUsed.get() + " stored summaries (rejected "
+                + storedSummariesRejected.get() + " above the default output), which callers read "
+                + storedSummariesRead.get() + " times before the node was analyzed, and stored " + computed.size()
+                + " (" + conflicting.size() + " dropped as they differ between contexts)");
+    }
+
     /**
      * Print the results to the screen if the logging level is high enough
      *
@@ -356,24 +864,41 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
     protected final void processCallGraphNode(CGNode n) {
         incrementCounter(n);
         currentlyProcessing.add(n);
+        int[] depth = callDepth.get();
+        depth[0]++;
 
-        AnalysisRecord<F> latest = recordedResults.getRecord(n);
+        AnalysisRecord<F> latest;
         Map<ExitType, F> output;
-        F input = latest.getInput();
-        assert input != null;
+        try {
+            latest = recordedResults.getRecord(n);
+            F input = latest.getInput();
+            assert input != null;
 
-        if (n.getMethod().isNative() && !AnalysisUtil.hasSignature(n.getMethod())) {
-            output = analyzeMissingCode(n, input);
-        } else {
-            output = analyze(n, input);
+            if (n.getMethod().isNative() && !AnalysisUtil.hasSignature(n.getMethod())) {
+                output = analyzeMissingCode(n, input);
+            } else {
+                output = analyze(n, input);
+            }
+        }
+        catch (Suspended e) {
+            // The analysis of n is abandoned, it is analyzed again when the callee's SCC is finished
+            e.addNode(n);
+            throw e;
+        }
+        finally {
+            // The depth is per thread, so it must be restored even if the analysis fails
+            depth[0]--;
+            currentlyProcessing.remove(n);
         }
-        currentlyProcessing.remove(n);
+        seededNodes.remove(n);
 
         if (latest.getOutput() == null || outputChanged(latest.getOutput(), output)) {
             // The output changed record the change and add dependencies to the queue
             recordedResults.updateOutput(n, output, isSoundResultsSoFar(n));
 
-            q.addAll(getDependencies(n));
+            for (CGNode dep : getDependencies(n)) {
+                enqueue(dep);
+            }
 
             if (outputLevel >= 4) {
                 System.err.println("OUTPUT CHANGED from\n\t" + latest.getOutput() + " TO\n\t" + output);
@@ -482,6 +1007,37 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
      */
     protected abstract boolean existingResultSuitable(F newInput, AnalysisRecord<F> existingResults);
 
+    /**
+     * Write a data-flow fact as a string for the {@link SummaryStore}. The string must not contain tabs or line
+     * breaks, and {@link #decodeFact(String)} must give back an equal fact (in a later run as well).
+     *
+     * @param fact data-flow fact to write
+     * @return the fact as a string, or null if this analysis does not store summaries
+     */
+    protected String encodeFact(F fact) {
+        return null;
+    }
+
+    /**
+     * Read a data-flow fact written by {@link #encodeFact(AbstractValue)}
+     *
+     * @param encoded fact written as a string
+     * @return data-flow fact, or null if the fact cannot be read
+     */
+    protected F decodeFact(String encoded) {
+        return null;
+    }
+
+    /**
+     * Name summaries computed by this analysis are stored under in the {@link SummaryStore}. Analyses whose results
+     * depend on how they were configured must include the configuration.
+     *
+     * @return name used to key summaries
+     */
+    protected String getSummaryName() {
+        return getAnalysisName();
+    }
+
     /**
      * Class holding the input and output values for a specific call graph node
      *
@@ -654,13 +1210,16 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
     }
 
     /**
-     * Computed results for each call graph node analyzed
+     * Computed results for each call graph node analyzed. When the analysis runs on several threads the map is
+     * concurrent, and the record for a node is only changed by the thread running the node's SCC. Otherwise the
+     * nodes are kept in the order they were first analyzed.
      */
     protected class AnalysisRecordMap {
         /**
          * Internal map of computed results for each call graph node analyzed
          */
-        private final Map<CGNode, AnalysisRecord<F>> recordMap = new LinkedHashMap<>();
+        private final Map<CGNode, AnalysisRecord<F>> recordMap =
+                createNodeMap(new LinkedHashMap<CGNode, AnalysisRecord<F>>());
 
         /**
          * Update the input for the given call graph node
@@ -721,5 +1280,14 @@ public abstract class InterproceduralDataFlow<F extends AbstractValue<F>> {
         public boolean containsRecord(CGNode n) {
             return recordMap.containsKey(n);
         }
+
+        /**
+         * Get the call graph nodes that have a record in the map
+         *
+         * @return nodes with a record
+         */
+        public Set<CGNode> getNodes() {
+            return recordMap.keySet();
+        }
     }
 }
@@ -9,7 +9,7 @@ import java.util.Set;
 import util.print.PrettyPrinter;
 import analysis.dataflow.InstructionDispatchDataFlow;
 import analysis.dataflow.util.AbstractValue;
-import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToResults;
 
 import com.ibm.wala.cfg.ControlFlowGraph;
 import com.ibm.wala.ipa.callgraph.CGNode;
@@ -34,7 +34,7 @@ public abstract class IntraproceduralDataFlow<F extends AbstractValue<F>> extend
     /**
      * Points-to graph
      */
-    protected final PointsToGraph ptg;
+    protected final PointsToResults ptg;
     /**
      * Call graph node currently being analyzed
      */
@@ -0,0 +1,203 @@
+package analysis.dataflow.interprocedural;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+
+import analysis.AnalysisUtil;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+
+/**
+ * Procedure summaries (the output of a method for a given input) computed by inter-procedural analyses. A summary is
+ * keyed by the name of the analysis, the method, the kind of context (the class of the context, not the context
+ * itself, so that summaries can be used for other contexts and in later runs) and the input. Summaries are written
+ * as strings, an analysis that can write its data-flow facts as strings uses the store (see
+ * {@link InterproceduralDataFlow#encodeFact}).
+ * <p>
+ * The store is shared by all the inter-procedural analyses in a run, and if there is a file it is read when the store
+ * is enabled and rewritten after each analysis. Nothing in the file records the program it was written for, so a
+ * summary may come from another context of the method, or from other code with the same method signature. A summary
+ * is only used as the initial output of a method, and only if it is at or below the default output; the method is
+ * still analyzed and the callers re-analyzed if the output differs. The initial output only matters for recursive
+ * calls: summaries written for the same program and options give the same results as the default output, and fewer
+ * passes over recursive methods, while other summaries can give a recursive method a smaller fixed point (see
+ * {@link InterproceduralDataFlow}). No method is skipped, so the store never saves the analysis of a method, only
+ * passes over recursive methods.
+ * <p>
+ * Only the reachability analyses store summaries. The default output of the precise exceptions analysis is already
+ * empty, so a stored output could never be used, and the facts of the non-null and interval analyses mention heap
+ * locations that are specific to a run. The store is off unless {@link #enable(File)} has been called; while it is off
+ * {@link #getInstance()} returns null.
+ */
+public class SummaryStore {
+
+    /**
+     * Separates the parts of a key and of a line of the file
+     */
+    private static final String SEPARATOR = "\t";
+    /**
+     * Number of parts of a key: analysis name, method, kind of context and input
+     */
+    private static final int KEY_PARTS = 4;
+
+    /**
+     * Store used by analyses, null if summaries are not stored
+     */
+    private static SummaryStore instance = null;
+
+    /**
+     * File the summaries are read from and written to, or null
+     */
+    private final File file;
+
+    /**
+     * Map from key (see {@link #key}) to output for each exit
+     */
+    private final ConcurrentMap<String, Map<ExitType, String>> summaries = AnalysisUtil.createConcurrentHashMap();
+
+    private SummaryStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Turn on the summary store for inter-procedural analyses started after this call
+     *
+     * @param file if non-null then summaries are read from this file (if it exists) and written to it after each
+     *            analysis
+     */
+    public static void enable(File file) {
+        instance = new SummaryStore(file);
+        if (file != null && file.exists()) {
+            instance.read();
+        }
+    }
+
+    /**
+     * Turn off the summary store for inter-procedural analyses started after this call
+     */
+    public static void disable() {
+        instance = null;
+    }
+
+    /**
+     * Get the summary store, or null if the store is off
+     */
+    public static SummaryStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Key for the summary of the given node
+     *
+     * @param analysisName name of the analysis (and its configuration) the summary was computed by
+     * @param n call graph node
+     * @param input input written as a string
+     * @return key for the summary
+     */
+    static String key(String analysisName, CGNode n, String input) {
+        return analysisName + SEPARATOR + n.getMethod().getReference() + SEPARATOR
+                + n.getContext().getClass().getName() + SEPARATOR + input;
+    }
+
+    /**
+     * Get the stored summary for the given key
+     *
+     * @param key key for the summary (see {@link #key})
+     * @return map from exit type to output written as a string, null if there is no summary
+     */
+    Map<ExitType, String> get(String key) {
+        return summaries.get(key);
+    }
+
+    /**
+     * Record summaries, replacing any previous summaries for the same keys
+     *
+     * @param newSummaries map from key to output for each exit
+     */
+    void putAll(Map<String, Map<ExitType, String>> newSummaries) {
+        summaries.putAll(newSummaries);
+    }
+
+    /**
+     * Remove the summary for the given key
+     *
+     * @param key key for the summary (see {@link #key})
+     */
+    void remove(String key) {
+        summaries.remove(key);
+    }
+
+    /**
+     * Number of summaries in the store
+     */
+    public int size() {
+        return summaries.size();
+    }
+
+    /**
+     * Read the summaries in the file, one per line: the key, then the output for each exit type. Badly formed lines
+     * are skipped.
+     */
+    private void read() {
+        ExitType[] exits = ExitType.values();
+        int skipped = 0;
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split(SEPARATOR, -1);
+                if (parts.length != KEY_PARTS + exits.length) {
+                    skipped++;
+                    continue;
+                }
+                StringBuilder key = new StringBuilder(parts[0]);
+                for (int i = 1; i < KEY_PARTS; i++) {
+                    key.append(SEPARATOR).append(parts[i]);
+                }
+                Map<ExitType, String> output = new EnumMap<>(ExitType.class);
+                for (int i = 0; i < exits.length; i++) {
+                    output.put(exits[i], parts[KEY_PARTS + i]);
+                }
+                summaries.put(key.toString(), output);
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Could not read procedure summaries from " + file + ", " + e.getMessage());
+            return;
+        }
+        System.err.println("Read " + summaries.size() + " procedure summaries from " + file
+                + (skipped > 0 ? " (skipped " + skipped + " bad lines)" : ""));
+    }
+
+    /**
+     * Write the summaries to the file, if there is one. Keys are sorted so that the file is the same for the same
+     * summaries.
+     */
+    void write() {
+        if (file == null) {
+            return;
+        }
+        Map<String, Map<ExitType, String>> sorted = new TreeMap<>(summaries);
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            for (Map.Entry<String, Map<ExitType, String>> e : sorted.entrySet()) {
+                out.print(e.getKey());
+                for (ExitType exit : ExitType.values()) {
+                    out.print(SEPARATOR);
+                    out.print(e.getValue().get(exit));
+                }
+                out.println();
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Could not write procedure summaries to " + file + ", " + e.getMessage());
+        }
+    }
+}
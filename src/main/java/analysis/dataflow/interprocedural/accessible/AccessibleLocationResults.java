@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.Set;
 
 import analysis.dataflow.interprocedural.AnalysisResults;
+import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 import analysis.dataflow.util.AbstractLocation;
 
 import com.ibm.wala.ipa.callgraph.CGNode;
@@ -17,7 +18,8 @@ public class AccessibleLocationResults implements AnalysisResults {
     private final Map<CGNode, AbstractLocationSet> accessibleLocations;
 
     public AccessibleLocationResults() {
-        this.accessibleLocations = new LinkedHashMap<>();
+        this.accessibleLocations =
+                InterproceduralDataFlow.createNodeMap(new LinkedHashMap<CGNode, AbstractLocationSet>());
     }
 
     public void setResults(CGNode n, AbstractLocationSet results) {
@@ -8,7 +8,7 @@ import util.SingletonValueMap;
 import analysis.dataflow.interprocedural.ExitType;
 import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
-import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToResults;
 import analysis.pointer.graph.ReferenceVariableCache;
 
 import com.ibm.wala.ipa.callgraph.CGNode;
@@ -30,7 +30,7 @@ public class AccessibleLocationsInterproceduralDataFlow extends InterproceduralD
      * @param reachable results of running a reachability analysis
      * @param rvCache cache of reference variables
      */
-    public AccessibleLocationsInterproceduralDataFlow(PointsToGraph ptg, ReachabilityResults reachable,
+    public AccessibleLocationsInterproceduralDataFlow(PointsToResults ptg, ReachabilityResults reachable,
                                                       ReferenceVariableCache rvCache) {
         super(ptg, reachable, rvCache);
     }
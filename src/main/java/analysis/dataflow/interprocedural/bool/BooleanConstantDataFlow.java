@@ -11,7 +11,7 @@ import util.print.PrettyPrinter;
 import analysis.AnalysisUtil;
 import analysis.dataflow.InstructionDispatchDataFlow;
 import analysis.dataflow.util.VarContext;
-import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToResults;
 import analysis.pointer.graph.ReferenceVariableCache;
 import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
@@ -64,12 +64,12 @@ public class BooleanConstantDataFlow extends InstructionDispatchDataFlow<VarCont
 
     private final TypeRepository types;
     private final CGNode currentNode;
-    private final PointsToGraph ptg;
+    private final PointsToResults ptg;
     private final ReferenceVariableCache rvCache;
     private final BooleanConstantResults results;
     private final SymbolTable st;
 
-    public BooleanConstantDataFlow(CGNode currentNode, PointsToGraph ptg, ReferenceVariableCache rvCache) {
+    public BooleanConstantDataFlow(CGNode currentNode, PointsToResults ptg, ReferenceVariableCache rvCache) {
         super(true);
         this.currentNode = currentNode;
         IR ir = currentNode.getIR();
@@ -1,7 +1,6 @@
 package analysis.dataflow.interprocedural.bool;
 
-import java.util.LinkedHashMap;
-
+import util.PersistentHashMap;
 import analysis.dataflow.util.AbstractLocation;
 import analysis.dataflow.util.VarContext;
 
@@ -14,8 +13,9 @@ public class BooleanConstantVarContext extends VarContext<BooleanAbsVal> {
      * Create an empty variable context
      */
     protected BooleanConstantVarContext() {
-        super(new LinkedHashMap<Integer, BooleanAbsVal>(), new LinkedHashMap<AbstractLocation, BooleanAbsVal>(), null,
-                                        null, true, BooleanAbsVal.UNKNOWN);
+        super(PersistentHashMap.<Integer, BooleanAbsVal> empty(), PersistentHashMap
+                                        .<AbstractLocation, BooleanAbsVal> empty(), null, null, true,
+                                        BooleanAbsVal.UNKNOWN);
     }
 
 }
@@ -11,7 +11,7 @@ import analysis.dataflow.interprocedural.ExitType;
 import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 import analysis.dataflow.interprocedural.nonnull.NonNullResults;
 import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
-import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToResults;
 import analysis.pointer.graph.ReferenceVariableCache;
 
 import com.ibm.wala.ipa.callgraph.CGNode;
@@ -47,7 +47,7 @@ public class PreciseExceptionInterproceduralDataFlow extends InterproceduralData
      * @param reachable
      *            results of a reachability analysis
      */
-    public PreciseExceptionInterproceduralDataFlow(PointsToGraph ptg, NonNullResults nonNull,
+    public PreciseExceptionInterproceduralDataFlow(PointsToResults ptg, NonNullResults nonNull,
                                     ReachabilityResults reachable, ReferenceVariableCache rvCache) {
         super(ptg, reachable, rvCache);
         preciseEx = new PreciseExceptionResults();
@@ -18,6 +18,7 @@ import util.print.CFGWriter;
 import util.print.PrettyPrinter;
 import analysis.AnalysisUtil;
 import analysis.dataflow.interprocedural.AnalysisResults;
+import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
 
 import com.ibm.wala.cfg.ControlFlowGraph;
@@ -40,7 +41,8 @@ import com.ibm.wala.types.TypeReference;
  */
 public class PreciseExceptionResults implements AnalysisResults {
 
-    private final Map<CGNode, ResultsForNode> allResults = new HashMap<>();
+    private final Map<CGNode, ResultsForNode> allResults =
+            InterproceduralDataFlow.createNodeMap(new HashMap<CGNode, ResultsForNode>());
 
     /**
      * Get the set of exceptions that can be thrown by the given basic block in
@@ -9,7 +9,7 @@ import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 import analysis.dataflow.interprocedural.accessible.AccessibleLocationResults;
 import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
 import analysis.dataflow.util.VarContext;
-import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToResults;
 import analysis.pointer.graph.ReferenceVariableCache;
 
 import com.ibm.wala.ipa.callgraph.CGNode;
@@ -39,7 +39,7 @@ public class IntervalInterProceduralDataFlow extends InterproceduralDataFlow<Var
      */
     private final boolean trackHeapLocations;
 
-    public IntervalInterProceduralDataFlow(PointsToGraph ptg, ReachabilityResults reachable,
+    public IntervalInterProceduralDataFlow(PointsToResults ptg, ReachabilityResults reachable,
                                            ReferenceVariableCache rvCache, boolean trackHeapLocations,
                                            AccessibleLocationResults accessibleLocs) {
         super(ptg, reachable, rvCache);
@@ -12,6 +12,7 @@ import java.util.Set;
 import util.print.CFGWriter;
 import util.print.PrettyPrinter;
 import analysis.dataflow.interprocedural.AnalysisResults;
+import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
 import analysis.dataflow.util.AbstractLocation;
 
@@ -22,7 +23,8 @@ import com.ibm.wala.ssa.SSAInstruction;
 
 public class IntervalResults implements AnalysisResults {
 
-    private final Map<CGNode, ResultsForNode> allResults = new HashMap<>();
+    private final Map<CGNode, ResultsForNode> allResults =
+            InterproceduralDataFlow.createNodeMap(new HashMap<CGNode, ResultsForNode>());
 
     public void replaceIntervalExitMapForLocals(Map<Integer, IntervalAbsVal> intervalExitMap, SSAInstruction i,
                                                 CGNode containingNode) {
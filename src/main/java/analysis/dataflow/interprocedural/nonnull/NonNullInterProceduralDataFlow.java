@@ -8,7 +8,7 @@ import analysis.dataflow.interprocedural.ExitType;
 import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
 import analysis.dataflow.util.VarContext;
-import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToResults;
 import analysis.pointer.graph.ReferenceVariableCache;
 
 import com.ibm.wala.ipa.callgraph.CGNode;
@@ -36,7 +36,7 @@ public class NonNullInterProceduralDataFlow extends InterproceduralDataFlow<VarC
      * @param reachable
      *            results of a reachability analysis
      */
-    public NonNullInterProceduralDataFlow(PointsToGraph ptg, ReachabilityResults reachable,
+    public NonNullInterProceduralDataFlow(PointsToResults ptg, ReachabilityResults reachable,
                                     ReferenceVariableCache rvCache) {
         super(ptg, reachable, rvCache);
     }
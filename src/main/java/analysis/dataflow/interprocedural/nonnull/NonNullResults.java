@@ -14,6 +14,7 @@ import types.TypeRepository;
 import util.print.CFGWriter;
 import util.print.PrettyPrinter;
 import analysis.dataflow.interprocedural.AnalysisResults;
+import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
 
 import com.ibm.wala.cfg.ControlFlowGraph;
@@ -27,7 +28,8 @@ import com.ibm.wala.types.TypeReference;
  */
 public class NonNullResults implements AnalysisResults {
 
-    private final Map<CGNode, ResultsForNode> allResults = new HashMap<>();
+    private final Map<CGNode, ResultsForNode> allResults =
+            InterproceduralDataFlow.createNodeMap(new HashMap<CGNode, ResultsForNode>());
 
     /**
      * Whether the variable with the given value number is non-null just <i>before</i> executing the given instruction
@@ -18,7 +18,7 @@ import analysis.dataflow.interprocedural.pdg.graph.node.PDGNodeFactory;
 import analysis.dataflow.interprocedural.pdg.graph.node.ProcedureSummaryPDGNodes;
 import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
 import analysis.dataflow.util.Unit;
-import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToResults;
 import analysis.pointer.graph.ReferenceVariableCache;
 
 import com.ibm.wala.ipa.callgraph.CGNode;
@@ -45,7 +45,7 @@ public class PDGInterproceduralDataFlow extends InterproceduralDataFlow<Unit> {
      * @param nonNull results of a non-null analysis
      * @param rvCache mapping of local variables to reference variables (used by the points-to graph)
      */
-    public PDGInterproceduralDataFlow(PointsToGraph ptg, PreciseExceptionResults preciseEx,
+    public PDGInterproceduralDataFlow(PointsToResults ptg, PreciseExceptionResults preciseEx,
                                       ReachabilityResults reachable, NonNullResults nonNull,
                                       ReferenceVariableCache rvCache) {
         super(ptg, reachable, rvCache);
@@ -114,6 +114,15 @@ public class PDGInterproceduralDataFlow extends InterproceduralDataFlow<Unit> {
         return existingResults.getOutput() != null;
     }
 
+    /**
+     * The program dependence graph and the factories for its nodes are shared by all call graph nodes, and number
+     * the PDG nodes in the order they are created, so the PDG is always built on one thread
+     */
+    @Override
+    protected boolean canRunInParallel() {
+        return false;
+    }
+
     public PreciseExceptionResults getPreciseExceptionResults() {
         return preciseEx;
     }
@@ -137,7 +146,8 @@ public class PDGInterproceduralDataFlow extends InterproceduralDataFlow<Unit> {
     public Map<ExitType, Unit> getResults(CGNode caller, CGNode callee, Unit input) {
         if (!currentlyProcessing.contains(callee) && !recordedResults.containsRecord(callee)) {
             recordedResults.setInitialRecord(callee, new AnalysisRecord<>(Unit.VALUE, null, true));
-            processCallGraphNode(callee);
+            // The output is always the same, so a callee put on the work-queue does not affect the caller
+            processCallee(caller, callee);
         }
         return EXIT_MAP;
     }
@@ -7,7 +7,7 @@ import util.print.PrettyPrinter;
 import analysis.dataflow.interprocedural.ExitType;
 import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 import analysis.dataflow.interprocedural.exceptions.PreciseExceptionResults;
-import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToResults;
 import analysis.pointer.graph.ReferenceVariableCache;
 
 import com.ibm.wala.ipa.callgraph.CGNode;
@@ -30,7 +30,7 @@ public class ReachabilityInterProceduralDataFlow extends InterproceduralDataFlow
      * @param preciseEx
      *            results of an inter-procedural precise exceptions analysis (null if no results are available)
      */
-    public ReachabilityInterProceduralDataFlow(PointsToGraph ptg, ReferenceVariableCache rvCache,
+    public ReachabilityInterProceduralDataFlow(PointsToResults ptg, ReferenceVariableCache rvCache,
                                     PreciseExceptionResults preciseEx) {
         super(ptg, ReachabilityResults.ALWAYS_REACHABLE, rvCache);
         this.preciseEx = preciseEx;
@@ -95,6 +95,31 @@ public class ReachabilityInterProceduralDataFlow extends InterproceduralDataFlow
         return existingResults != null && newInput.equals(existingResults.getInput());
     }
 
+    @Override
+    protected String encodeFact(ReachabilityAbsVal fact) {
+        return fact.isUnreachable() ? "UNREACHABLE" : "REACHABLE";
+    }
+
+    @Override
+    protected ReachabilityAbsVal decodeFact(String encoded) {
+        switch (encoded) {
+        case "REACHABLE":
+            return ReachabilityAbsVal.REACHABLE;
+        case "UNREACHABLE":
+            return ReachabilityAbsVal.UNREACHABLE;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Results using the results of a precise exceptions analysis can be more precise, so they are stored separately
+     */
+    @Override
+    protected String getSummaryName() {
+        return preciseEx == null ? getAnalysisName() : getAnalysisName() + " with precise exceptions";
+    }
+
     @Override
     public ReachabilityResults getAnalysisResults() {
         return results;
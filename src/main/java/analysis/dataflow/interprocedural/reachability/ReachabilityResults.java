@@ -13,6 +13,7 @@ import util.print.CFGWriter;
 import util.print.PrettyPrinter;
 import analysis.AnalysisUtil;
 import analysis.dataflow.interprocedural.AnalysisResults;
+import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 
 import com.ibm.wala.classLoader.IMethod;
 import com.ibm.wala.ipa.callgraph.CGNode;
@@ -31,7 +32,8 @@ public class ReachabilityResults implements AnalysisResults {
         }
     };
 
-    private final Map<CGNode, ResultsForNode> allResults = new HashMap<>();
+    private final Map<CGNode, ResultsForNode> allResults =
+            InterproceduralDataFlow.createNodeMap(new HashMap<CGNode, ResultsForNode>());
 
     public void replaceUnreachable(Set<OrderedPair<ISSABasicBlock, ISSABasicBlock>> unreachableEdges,
                                     CGNode containingNode) {
@@ -1,13 +1,17 @@
 package analysis.dataflow.util;
 
 import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
+import util.PersistentHashMap;
+import util.PersistentHashMap.ValueMerger;
+
 /**
  * Mapping from local variables and abstract heap locations to abstract values
+ * <p>
+ * The maps are persistent, so a context created by changing or joining other contexts shares all the unchanged parts
+ * of their maps, and joining or comparing contexts that share parts of their maps skips those parts.
  *
  * @param <T>
  *            type of abstract values
@@ -26,11 +30,26 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
     /**
      * Map from local variables to abstract values
      */
-    private final Map<Integer, T> locals;
+    private final PersistentHashMap<Integer, T> locals;
     /**
      * Map from abstract heap location to abstract values
      */
-    private final Map<AbstractLocation, T> locations;
+    private final PersistentHashMap<AbstractLocation, T> locations;
+    /**
+     * Joins the values for a variable or location in two contexts
+     */
+    @SuppressWarnings("rawtypes")
+    private static final ValueMerger JOIN = new ValueMerger() {
+        @SuppressWarnings("unchecked")
+        @Override
+        public Object merge(Object v1, Object v2) {
+            Object joined = safeJoinValues((AbstractValue) v1, (AbstractValue) v2);
+            if (joined == null) {
+                throw new RuntimeException("Null AbsVal when joining: " + v1 + " and " + v2);
+            }
+            return joined;
+        }
+    };
     /**
      * Abstract value for the return result of a procedure
      */
@@ -54,8 +73,8 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
      */
     protected VarContext(Map<Integer, T> locals, Map<AbstractLocation, T> locations, T returnResult, T exceptionValue,
                                     boolean trackHeapLocations, T untrackedHeapLocationValue) {
-        this.locals = locals;
-        this.locations = locations;
+        this.locals = PersistentHashMap.copyOf(locals);
+        this.locations = PersistentHashMap.copyOf(locations);
         this.returnResult = returnResult;
         this.exceptionValue = exceptionValue;
         this.trackHeapLocations = trackHeapLocations;
@@ -143,10 +162,8 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
         if (val.equals(getLocal(valueNumber))) {
             return this;
         }
-        Map<Integer, T> newLocals = new LinkedHashMap<>(locals);
-        newLocals.put(valueNumber, val);
-        return new VarContext<>(newLocals, locations, returnResult, exceptionValue, trackHeapLocations,
-                                        untrackedHeapLocationValue);
+        return new VarContext<>(locals.plus(valueNumber, val), locations, returnResult, exceptionValue,
+                                        trackHeapLocations, untrackedHeapLocationValue);
     }
 
     /**
@@ -164,9 +181,7 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
             return this;
         }
         assert val != null : "No null values for locations";
-        Map<AbstractLocation, T> newLocations = new LinkedHashMap<>(locations);
-        newLocations.put(loc, val);
-        return new VarContext<>(locals, newLocations, returnResult, exceptionValue, trackHeapLocations,
+        return new VarContext<>(locals, locations.plus(loc, val), returnResult, exceptionValue, trackHeapLocations,
                                         untrackedHeapLocationValue);
     }
 
@@ -181,8 +196,10 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
             return this;
         }
 
-        Map<AbstractLocation, T> newLocations = new LinkedHashMap<>(locations);
-        newLocations.putAll(updatedLocations);
+        PersistentHashMap<AbstractLocation, T> newLocations = locations.plusAll(updatedLocations);
+        if (newLocations == locations) {
+            return this;
+        }
         return new VarContext<>(locals,
                                 newLocations,
                                 returnResult,
@@ -202,9 +219,8 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
             return this;
         }
         assert locs != null : "No null values for retained locations";
-        Map<AbstractLocation, T> newLocs = new LinkedHashMap<>(this.locations);
-        boolean changed = newLocs.keySet().retainAll(locs);
-        assert changed : "Set didn't change, should have returned _this_";
+        PersistentHashMap<AbstractLocation, T> newLocs = this.locations.retainAll(locs);
+        assert newLocs != this.locations : "Set didn't change, should have returned _this_";
         return new VarContext<>(locals,
                                 newLocs,
                                 returnResult,
@@ -221,6 +237,9 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
      * @return copy of the variable context with the new return value
      */
     public VarContext<T> setReturnResult(T returnAbsVal) {
+        if (returnAbsVal == returnResult) {
+            return this;
+        }
         return new VarContext<>(locals, locations, returnAbsVal, exceptionValue, trackHeapLocations,
                                         untrackedHeapLocationValue);
     }
@@ -233,6 +252,9 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
      * @return copy of the variable context with the new exception value
      */
     public VarContext<T> setExceptionValue(T exceptionAbsVal) {
+        if (exceptionAbsVal == exceptionValue) {
+            return this;
+        }
         return new VarContext<>(locals, locations, returnResult, exceptionAbsVal, trackHeapLocations,
                                         untrackedHeapLocationValue);
     }
@@ -242,11 +264,16 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
         if (that == null) {
             return false;
         }
+        if (this == that) {
+            return true;
+        }
 
-        for (Integer i : this.getLocals()) {
-            T thatAbsVal = that.getLocal(i);
-            if (thatAbsVal == null || !this.getLocal(i).leq(thatAbsVal)) {
-                return false;
+        if (this.locals != that.locals) {
+            for (Map.Entry<Integer, T> e : this.locals.entrySet()) {
+                T thatAbsVal = that.locals.get(e.getKey());
+                if (thatAbsVal == null || !e.getValue().leq(thatAbsVal)) {
+                    return false;
+                }
             }
         }
 
@@ -255,10 +282,10 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
                                             "Inconsistent trackHeapLocations. Should be same for all VarContexts in an analysis");
         }
 
-        if (this.trackHeapLocations) {
-            for (AbstractLocation l : getLocations()) {
-                T thatAbsVal = that.locations.get(l);
-                if (thatAbsVal == null || !this.locations.get(l).leq(thatAbsVal)) {
+        if (this.trackHeapLocations && this.locations != that.locations) {
+            for (Map.Entry<AbstractLocation, T> e : this.locations.entrySet()) {
+                T thatAbsVal = that.locations.get(e.getKey());
+                if (thatAbsVal == null || !e.getValue().leq(thatAbsVal)) {
                     return false;
                 }
             }
@@ -320,41 +347,37 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
             return c2;
         }
 
-        Map<Integer, T> newLocals = new LinkedHashMap<>();
-        Set<Integer> allLocals = new LinkedHashSet<>(c1.getLocals());
-        allLocals.addAll(c2.getLocals());
-        for (Integer i : allLocals) {
-            T joined = safeJoinValues(c1.getLocal(i), c2.getLocal(i));
-            if (joined == null) {
-                throw new RuntimeException("Null AbsVal when joining: " + c1.getLocal(i) + " and " + c2.getLocal(i));
-            }
-            newLocals.put(i, joined);
+        if (c1 == c2) {
+            return c1;
         }
 
+        @SuppressWarnings("unchecked")
+        ValueMerger<T> join = JOIN;
+        PersistentHashMap<Integer, T> newLocals = c1.locals.merge(c2.locals, join);
+
         if (c1.trackHeapLocations != c2.trackHeapLocations) {
             throw new RuntimeException(
                                             "Inconsistent trackHeapLocations. Should be same for all VarContexts in an analysis");
         }
 
-        Map<AbstractLocation, T> newLocations = null;
+        PersistentHashMap<AbstractLocation, T> newLocations = PersistentHashMap.empty();
         if (c1.trackHeapLocations) {
-            newLocations = new LinkedHashMap<>();
-            Set<AbstractLocation> allLocations = new LinkedHashSet<>(c1.getLocations());
-            allLocations.addAll(c2.getLocations());
-            for (AbstractLocation loc : allLocations) {
-                T joined = safeJoinValues(c1.getLocation(loc), c2.getLocation(loc));
-                if (joined == null) {
-                    throw new RuntimeException("Null AbsVal when joining: " + c1.getLocation(loc) + " and "
-                                                    + c2.getLocation(loc));
-                }
-                newLocations.put(loc, joined);
-            }
+            newLocations = c1.locations.merge(c2.locations, join);
         }
 
         T newReturnResult = c1.getReturnResult() == null ? c2.getReturnResult() : c1.getReturnResult().join(
                                         c2.getReturnResult());
         T newExceptionValue = c1.getException() == null ? c2.getException() : c1.getException().join(c2.getException());
 
+        if (newLocals == c1.locals && newLocations == c1.locations && newReturnResult == c1.returnResult
+                && newExceptionValue == c1.exceptionValue) {
+            return c1;
+        }
+        if (newLocals == c2.locals && newLocations == c2.locations && newReturnResult == c2.returnResult
+                && newExceptionValue == c2.exceptionValue) {
+            return c2;
+        }
+
         return new VarContext<>(newLocals, newLocations, newReturnResult, newExceptionValue, c1.trackHeapLocations,
                                         c1.untrackedHeapLocationValue);
     }
@@ -386,7 +409,7 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
      * @return variable context with no locals and no exits
      */
     public VarContext<T> clearLocalsAndExits() {
-        return new VarContext<>(new LinkedHashMap<Integer, T>(), locations, null, null, trackHeapLocations,
+        return new VarContext<>(PersistentHashMap.<Integer, T> empty(), locations, null, null, trackHeapLocations,
                                         untrackedHeapLocationValue);
     }
 
@@ -416,7 +439,8 @@ public class VarContext<T extends AbstractValue<T>> implements AbstractValue<Var
         if (obj == null) {
             return false;
         }
-        if (getClass() != obj.getClass()) {
+        if (!(obj instanceof VarContext)) {
+            // Subclasses only differ in how they are constructed
             return false;
         }
         @SuppressWarnings("rawtypes")
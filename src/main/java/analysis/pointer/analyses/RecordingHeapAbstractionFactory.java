@@ -0,0 +1,134 @@
+package analysis.pointer.analyses;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import util.OrderedPair;
+import analysis.AnalysisUtil;
+import analysis.pointer.statements.AllocSiteNodeFactory.AllocSiteNode;
+import analysis.pointer.statements.CallSiteLabel;
+
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+
+/**
+ * Heap abstraction factory that creates contexts and heap contexts using another factory, and remembers how each of
+ * them was first created. Since the results of the other factory are memoized, calling it again with the same
+ * arguments (e.g., in a later run, after the allocation sites and call sites have been registered again) gives back
+ * an equivalent context or heap context. This is used to save a points-to graph in a form that can be rebuilt against
+ * the class hierarchy of a later run (see {@link analysis.pointer.graph.PointsToGraphSnapshot}).
+ * <p>
+ * Recording costs a map lookup for every context and heap context created, so only use this when the points-to graph
+ * is going to be saved.
+ */
+public class RecordingHeapAbstractionFactory extends HeapAbstractionFactory {
+
+    /**
+     * Factory that actually creates the contexts and heap contexts
+     */
+    private final HeapAbstractionFactory haf;
+    /**
+     * Allocation site and allocation context each heap context was first created from
+     */
+    private final ConcurrentHashMap<InstanceKey, OrderedPair<AllocSiteNode, Context>> records = AnalysisUtil
+                                    .createConcurrentHashMap();
+    /**
+     * Arguments each context (other than the initial context) was first created from
+     */
+    private final ConcurrentHashMap<Context, Merge> merges = AnalysisUtil
+                                    .createConcurrentHashMap();
+
+    /**
+     * Record how the contexts and heap contexts created by the given factory are created
+     *
+     * @param haf factory creating contexts and heap contexts
+     */
+    public RecordingHeapAbstractionFactory(HeapAbstractionFactory haf) {
+        this.haf = haf;
+    }
+
+    @Override
+    public InstanceKey record(AllocSiteNode allocationSite, Context context) {
+        InstanceKey ik = haf.record(allocationSite, context);
+        if (!records.containsKey(ik)) {
+            records.putIfAbsent(ik, new OrderedPair<>(allocationSite, context));
+        }
+        return ik;
+    }
+
+    @Override
+    public Context merge(CallSiteLabel callSite, InstanceKey receiver, Context callerContext) {
+        Context c = haf.merge(callSite, receiver, callerContext);
+        if (c != haf.initialContext() && !merges.containsKey(c)) {
+            merges.putIfAbsent(c, new Merge(callSite, receiver, callerContext));
+        }
+        return c;
+    }
+
+    @Override
+    public Context initialContext() {
+        return haf.initialContext();
+    }
+
+    /**
+     * Allocation site and allocation context the given heap context was first created from
+     *
+     * @param ik heap context created by this factory
+     * @return the arguments to {@link #record(AllocSiteNode, Context)}, or null if this factory did not create ik
+     */
+    public OrderedPair<AllocSiteNode, Context> getRecord(InstanceKey ik) {
+        return records.get(ik);
+    }
+
+    /**
+     * Arguments the given context was first created from
+     *
+     * @param c context created by this factory
+     * @return the arguments to {@link #merge(CallSiteLabel, InstanceKey, Context)}, or null if c is the initial context
+     *         or this factory did not create c
+     */
+    public Merge getMerge(Context c) {
+        return merges.get(c);
+    }
+
+    /**
+     * Factory that actually creates the contexts and heap contexts
+     */
+    public HeapAbstractionFactory getRecordedFactory() {
+        return haf;
+    }
+
+    @Override
+    public String toString() {
+        return haf.toString();
+    }
+
+    /**
+     * Arguments to {@link HeapAbstractionFactory#merge(CallSiteLabel, InstanceKey, Context)}
+     */
+    public static final class Merge {
+        private final CallSiteLabel callSite;
+        private final InstanceKey receiver;
+        private final Context callerContext;
+
+        Merge(CallSiteLabel callSite, InstanceKey receiver, Context callerContext) {
+            this.callSite = callSite;
+            this.receiver = receiver;
+            this.callerContext = callerContext;
+        }
+
+        public CallSiteLabel getCallSite() {
+            return callSite;
+        }
+
+        /**
+         * Receiver of the call, null for a static call
+         */
+        public InstanceKey getReceiver() {
+            return receiver;
+        }
+
+        public Context getCallerContext() {
+            return callerContext;
+        }
+    }
+}
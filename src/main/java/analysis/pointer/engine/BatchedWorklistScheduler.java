@@ -0,0 +1,472 @@
+package analysis.pointer.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+import analysis.pointer.graph.GraphDelta;
+
+/**
+ * Scheduler for the multi-threaded points-to analysis that uses a fixed set of worker threads, rather than one
+ * ForkJoinTask per (statement, context) pair.
+ * <p>
+ * Each worker has its own deque of pending (statement, context) pairs. A worker takes a batch of pairs from the front
+ * of its own deque (or steals from the back of another worker's deque), merges the deltas of pairs that occur more than
+ * once in the batch, and processes the batch in the topological order of the subset graph, so that changes are
+ * processed before the changes they cause. The topological order is recomputed periodically.
+ * <p>
+ * Termination detection does not use a shared counter. Each worker counts the tasks it has submitted and the tasks it
+ * has completed (only the owner writes these counts), and an idle worker decides that the analysis is finished if the
+ * sum of completed counts (read first) equals the sum of submitted counts (read second).
+ */
+class BatchedWorklistScheduler extends StmtAndContextScheduler {
+    /**
+     * Maximum number of tasks taken from a deque at once
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Minimum time between computations of the topological order of the subset graph
+     */
+    private static final long MIN_ORDER_REFRESH_MS = 2000;
+
+    /**
+     * The topological order is recomputed at most once per this many times the time it took to compute it.
+     */
+    private static final int ORDER_REFRESH_COST_FACTOR = 10;
+
+    /**
+     * Number of times an idle worker yields before it starts parking
+     */
+    private static final int IDLE_YIELDS = 64;
+
+    /**
+     * How long an idle worker parks before looking for work again
+     */
+    private static final long IDLE_PARK_NANOS = 100000;
+
+    /**
+     * Priority of tasks with no delta. These are processed after tasks with deltas in the same batch.
+     */
+    private static final int NO_DELTA_PRIORITY = Integer.MAX_VALUE;
+
+    /**
+     * Priority of tasks for nodes that are not in the current topological order
+     */
+    private static final int UNKNOWN_PRIORITY = Integer.MAX_VALUE - 1;
+
+    /**
+     * Analysis that processes the statements
+     */
+    private final PointsToAnalysisMultiThreaded analysis;
+    private final Worker[] workers;
+
+    /**
+     * Number of tasks submitted by threads that are not workers
+     */
+    private final AtomicLong externalSubmitted = new AtomicLong(0);
+    /**
+     * Used to pick a worker deque for tasks submitted by threads that are not workers
+     */
+    private final AtomicInteger nextExternalWorker = new AtomicInteger(0);
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile boolean terminated = false;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    /**
+     * Topological number of each points-to graph node, see {@link analysis.pointer.graph.PointsToGraph#subsetGraphTopologicalOrder()}
+     */
+    private volatile int[] topologicalOrder = new int[0];
+    private final AtomicBoolean computingOrder = new AtomicBoolean(false);
+    private volatile long nextOrderRefresh = 0;
+
+    BatchedWorklistScheduler(PointsToAnalysisMultiThreaded analysis, int numThreads, boolean coalesceDeltas) {
+        super(coalesceDeltas);
+        this.analysis = analysis;
+        this.workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            this.workers[i] = new Worker(i);
+        }
+    }
+
+    @Override
+    public void submitTask(StmtAndContext sac, GraphDelta delta) {
+        submitTask(sac, delta, -1);
+    }
+
+    @Override
+    public void submitTask(StmtAndContext sac, GraphDelta delta, /*PointsToGraphNode*/int changedNode) {
+        PendingDeltaTable.Entry entry = null;
+        if (this.pendingDeltas != null) {
+            entry = this.pendingDeltas.submit(sac, delta, this.g);
+            if (entry == null) {
+                // merged into a run that hasn't started yet
+                return;
+            }
+        }
+        Task t = new Task(sac, delta, changedNode, entry);
+        Thread current = Thread.currentThread();
+        if (current instanceof Worker && ((Worker) current).scheduler() == this) {
+            Worker w = (Worker) current;
+            // count the task before it can be taken by anyone
+            w.submitted++;
+            w.deque.addFirst(t);
+        }
+        else {
+            this.externalSubmitted.incrementAndGet();
+            int i = (this.nextExternalWorker.getAndIncrement() & Integer.MAX_VALUE) % this.workers.length;
+            this.workers[i].deque.addLast(t);
+        }
+    }
+
+    @Override
+    public void submitTask(Set<StmtAndContext> sacs, GraphDelta delta) {
+        for (StmtAndContext sac : sacs) {
+            submitTask(sac, delta);
+        }
+    }
+
+    @Override
+    public boolean containsPending() {
+        return !this.terminated;
+    }
+
+    /**
+     * Start the worker threads, if they have not been started already. The workers are not started when the scheduler
+     * is created, since with no tasks submitted they would immediately decide that the analysis is finished.
+     */
+    private void ensureStarted() {
+        if (this.started.compareAndSet(false, true)) {
+            for (Worker w : this.workers) {
+                w.start();
+            }
+        }
+    }
+
+    @Override
+    public void waitUntilAllFinished() {
+        ensureStarted();
+        try {
+            this.finished.await();
+        }
+        catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void shutdownAndAwaitTermination() {
+        this.terminated = true;
+        if (!this.started.get()) {
+            return;
+        }
+        for (Worker w : this.workers) {
+            boolean joined = false;
+            // keep waiting until the worker has stopped
+            do {
+                try {
+                    w.join();
+                    joined = true;
+                }
+                catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            } while (!joined);
+        }
+    }
+
+    @Override
+    public void printStatistics() {
+        long submitted = this.externalSubmitted.get();
+        long runs = 0;
+        long merged = 0;
+        long stolen = 0;
+        for (Worker w : this.workers) {
+            submitted += w.submitted;
+            runs += w.runs;
+            merged += w.merged;
+            stolen += w.stolen;
+        }
+        System.err.println("   Num tasks submitted    : " + submitted);
+        System.err.println("   Num statement runs     : " + runs);
+        System.err.println("   Num tasks merged       : " + merged);
+        System.err.println("   Num tasks stolen       : " + stolen);
+        this.printCoalescingStatistics();
+    }
+
+    @Override
+    public long numPendingTasks() {
+        // same order of reads as isQuiescent, so the result is never negative
+        long completed = 0;
+        for (Worker w : this.workers) {
+            completed += w.completed;
+        }
+        long submitted = this.externalSubmitted.get();
+        for (Worker w : this.workers) {
+            submitted += w.submitted;
+        }
+        return submitted - completed;
+    }
+
+    /**
+     * Is there nothing left to do? Must only be called by an idle worker.
+     */
+    private boolean isQuiescent() {
+        // Read all the completed counts before any of the submitted counts. Counts only increase, and a task is
+        // counted as submitted before it is visible and as completed after everything it submitted is counted, so if
+        // the sums are equal then at the point between the two reads there was no task pending or running.
+        long completed = 0;
+        for (Worker w : this.workers) {
+            completed += w.completed;
+        }
+        long submitted = this.externalSubmitted.get();
+        for (Worker w : this.workers) {
+            submitted += w.submitted;
+        }
+        return completed == submitted;
+    }
+
+    /**
+     * Recompute the topological order of the subset graph if it is time to do so and nobody else is.
+     */
+    private void maybeRefreshTopologicalOrder() {
+        long now = System.currentTimeMillis();
+        if (now < this.nextOrderRefresh || !this.computingOrder.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.topologicalOrder = this.g.subsetGraphTopologicalOrder();
+            long elapsed = System.currentTimeMillis() - now;
+            this.nextOrderRefresh = now + Math.max(MIN_ORDER_REFRESH_MS, ORDER_REFRESH_COST_FACTOR * elapsed);
+        }
+        finally {
+            this.computingOrder.set(false);
+        }
+    }
+
+    private int priority(GraphDelta delta, /*PointsToGraphNode*/int changedNode) {
+        if (delta == null) {
+            return NO_DELTA_PRIORITY;
+        }
+        int[] order = this.topologicalOrder;
+        if (changedNode < 0 || changedNode >= order.length) {
+            return UNKNOWN_PRIORITY;
+        }
+        return order[changedNode];
+    }
+
+    /**
+     * A (statement, context) pair to process with a delta
+     */
+    private static final class Task {
+        final StmtAndContext sac;
+        /**
+         * Delta the task was submitted with
+         */
+        final GraphDelta delta;
+        final int changedNode;
+        /**
+         * Entry in the pending delta table holding the delta to process, null if deltas are not coalesced
+         */
+        final PendingDeltaTable.Entry entry;
+
+        Task(StmtAndContext sac, GraphDelta delta, int changedNode, PendingDeltaTable.Entry entry) {
+            this.sac = sac;
+            this.delta = delta;
+            this.changedNode = changedNode;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * The delta to process for the task. If deltas are coalesced this starts the pending run of the task.
+     */
+    GraphDelta deltaToProcess(Task t) {
+        return t.entry == null ? t.delta : this.pendingDeltas.take(t.sac, t.entry);
+    }
+
+    /**
+     * All the tasks in a batch for the same (statement, context) pair
+     */
+    private final class MergedTask {
+        final StmtAndContext sac;
+        /**
+         * Union of the deltas of the tasks, or null if any of them had no delta (since then the statement will read
+         * entire points-to sets anyway)
+         */
+        GraphDelta delta;
+        /**
+         * Is delta a fresh GraphDelta created for this merge? Deltas of submitted tasks are shared by many tasks and
+         * must not be modified.
+         */
+        boolean ownsDelta = false;
+        int priority;
+        /**
+         * Number of tasks merged together
+         */
+        int count = 1;
+
+        MergedTask(Task t) {
+            this.sac = t.sac;
+            this.delta = deltaToProcess(t);
+            this.priority = priority(t.delta, t.changedNode);
+        }
+
+        @SuppressWarnings("synthetic-access")
+        void merge(Task t) {
+            this.count++;
+            this.priority = Math.min(this.priority, priority(t.delta, t.changedNode));
+            GraphDelta d = deltaToProcess(t);
+            if (this.delta == null) {
+                return;
+            }
+            if (d == null) {
+                this.delta = null;
+                return;
+            }
+            if (d == this.delta) {
+                return;
+            }
+            if (!this.ownsDelta) {
+                this.delta = new GraphDelta(BatchedWorklistScheduler.this.g).combine(this.delta);
+                this.ownsDelta = true;
+            }
+            this.delta.combine(d);
+        }
+    }
+
+    private static final Comparator<MergedTask> BY_PRIORITY = new Comparator<MergedTask>() {
+        @Override
+        public int compare(MergedTask o1, MergedTask o2) {
+            return Integer.compare(o1.priority, o2.priority);
+        }
+    };
+
+    private final class Worker extends Thread {
+        private final int id;
+        final ConcurrentLinkedDeque<Task> deque = new ConcurrentLinkedDeque<>();
+
+        /*
+         * Counts used for termination detection. Only written by this worker.
+         */
+        volatile long submitted = 0;
+        volatile long completed = 0;
+
+        /*
+         * The following fields are for statistics purposes. Only written by this worker.
+         */
+        long runs = 0;
+        long merged = 0;
+        long stolen = 0;
+
+        Worker(int id) {
+            super("points-to-worker-" + id);
+            this.id = id;
+            this.setDaemon(true);
+        }
+
+        BatchedWorklistScheduler scheduler() {
+            return BatchedWorklistScheduler.this;
+        }
+
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public void run() {
+            List<Task> batch = new ArrayList<>(BATCH_SIZE);
+            int idleCount = 0;
+            while (!BatchedWorklistScheduler.this.terminated) {
+                takeBatch(batch);
+                if (!batch.isEmpty()) {
+                    idleCount = 0;
+                    maybeRefreshTopologicalOrder();
+                    runBatch(batch);
+                    batch.clear();
+                    continue;
+                }
+
+                // nothing to do
+                if (isQuiescent()) {
+                    BatchedWorklistScheduler.this.terminated = true;
+                    BatchedWorklistScheduler.this.finished.countDown();
+                    return;
+                }
+                idleCount++;
+                if (idleCount < IDLE_YIELDS) {
+                    Thread.yield();
+                }
+                else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+
+        /**
+         * Take up to BATCH_SIZE tasks from the front of our deque, or if it is empty, up to half of that from the
+         * back of some other worker's deque.
+         */
+        @SuppressWarnings("synthetic-access")
+        private void takeBatch(List<Task> batch) {
+            Task t;
+            while (batch.size() < BATCH_SIZE && (t = this.deque.pollFirst()) != null) {
+                batch.add(t);
+            }
+            if (!batch.isEmpty()) {
+                return;
+            }
+            Worker[] ws = BatchedWorklistScheduler.this.workers;
+            for (int i = 1; i < ws.length && batch.isEmpty(); i++) {
+                Worker victim = ws[(this.id + i) % ws.length];
+                while (batch.size() < BATCH_SIZE / 2 && (t = victim.deque.pollLast()) != null) {
+                    batch.add(t);
+                }
+            }
+            this.stolen += batch.size();
+        }
+
+        @SuppressWarnings("synthetic-access")
+        private void runBatch(List<Task> batch) {
+            Map<StmtAndContext, MergedTask> merged = new LinkedHashMap<>();
+            for (Task t : batch) {
+                MergedTask m = merged.get(t.sac);
+                if (m == null) {
+                    merged.put(t.sac, new MergedTask(t));
+                }
+                else {
+                    m.merge(t);
+                    this.merged++;
+                }
+            }
+            List<MergedTask> toRun = new ArrayList<>(merged.values());
+            if (toRun.size() > 1) {
+                Collections.sort(toRun, BY_PRIORITY);
+            }
+
+            for (MergedTask m : toRun) {
+                try {
+                    BatchedWorklistScheduler.this.analysis.processSaC(m.sac, m.delta, BatchedWorklistScheduler.this);
+                }
+                catch (Throwable e) {
+                    e.printStackTrace();
+                    System.exit(0);
+                    // No seriously DIE!
+                    Runtime.getRuntime().halt(0);
+                }
+                this.runs++;
+                // Only count the tasks as completed once everything they submitted has been counted
+                this.completed += m.count;
+            }
+        }
+    }
+}
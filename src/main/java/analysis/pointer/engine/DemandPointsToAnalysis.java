@@ -0,0 +1,818 @@
+package analysis.pointer.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import util.OrderedPair;
+import analysis.AnalysisUtil;
+import analysis.pointer.analyses.AllocationName;
+import analysis.pointer.analyses.RecordingHeapAbstractionFactory;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.ReferenceVariableReplica;
+import analysis.pointer.graph.TypeFilter;
+import analysis.pointer.registrar.MethodSummaryNodes;
+import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.statements.AllocSiteNodeFactory.AllocSiteNode;
+import analysis.pointer.statements.ArrayToLocalStatement;
+import analysis.pointer.statements.CallStatement;
+import analysis.pointer.statements.ClassInitStatement;
+import analysis.pointer.statements.ExceptionAssignmentStatement;
+import analysis.pointer.statements.FieldToLocalStatement;
+import analysis.pointer.statements.LocalToArrayStatement;
+import analysis.pointer.statements.LocalToFieldStatement;
+import analysis.pointer.statements.LocalToLocalStatement;
+import analysis.pointer.statements.NewStatement;
+import analysis.pointer.statements.PointsToStatement;
+import analysis.pointer.statements.SpecialCallStatement;
+import analysis.pointer.statements.StaticCallStatement;
+import analysis.pointer.statements.VirtualCallStatement;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.types.Selector;
+
+/**
+ * Answers points-to queries for individual reference variables on demand, without computing the points-to graph for
+ * the whole program. Only the statements that the queried variables (transitively) depend on are processed: the
+ * statements defining a variable, the stores to fields that are loaded, and the calls that reach a method whose formals
+ * are needed. Results are memoized, so later queries reuse the work done for earlier ones.
+ * <p>
+ * The demand analysis is context-insensitive, and the results are allocation sites. It applies the type filters of the
+ * exhaustive analysis (on casts, caught exceptions and stores into arrays), and a call only happens for the receivers
+ * that dispatch to the callee. It does not know which methods are reachable, however, and it treats every registered
+ * method as reachable, merges all the contexts of a method, and identifies fields by name. The result for a variable
+ * therefore includes the allocation sites of every abstract object the variable points to in the exhaustive analysis,
+ * in any context, but it may include more. A query for a variable in a given context gets the same answer as a query
+ * for every context, until the exhaustive graph is available; the answer is then projected onto the context.
+ * <p>
+ * The constraints are solved with a worklist: a constraint is evaluated when it is added and again only when a set it
+ * reads grows. Each query has a budget, which is the number of constraint evaluations for it, so a query is only
+ * charged for new work and not for the constraints earlier queries already solved. If a query goes over budget (or
+ * needs a feature the demand analysis does not handle, such as the special treatment of clone) the exhaustive
+ * points-to analysis is run instead, and that query and all later ones are answered from the resulting points-to
+ * graph. With a budget of 0 every query is answered by the exhaustive analysis. Answers from the exhaustive graph may
+ * be more precise than the answer the demand analysis gave to the same query before the fallback. The instance keys of
+ * the exhaustive analysis must be {@link AllocationName}s, or be created by a {@link RecordingHeapAbstractionFactory},
+ * so that their allocation sites can be found.
+ */
+public class DemandPointsToAnalysis {
+
+    /**
+     * Registrar containing the statements for the whole program
+     */
+    private final StatementRegistrar registrar;
+    /**
+     * Analysis used if a query goes over budget
+     */
+    private final PointsToAnalysis exhaustiveAnalysis;
+    /**
+     * Maximum number of constraint evaluations for a query before falling back on the exhaustive analysis
+     */
+    private final int budget;
+
+    // Indices of the statements, built once
+
+    /**
+     * Statements defining each reference variable (including call statements for the variable holding the exception
+     * thrown by the call)
+     */
+    private final Map<ReferenceVariable, List<PointsToStatement>> defs = new HashMap<>();
+    /**
+     * Stores into fields, indexed by field name
+     */
+    private final Map<String, List<LocalToFieldStatement>> fieldStores = new HashMap<>();
+    /**
+     * Stores into arrays
+     */
+    private final List<LocalToArrayStatement> arrayStores = new ArrayList<>();
+    /**
+     * Static and special calls, indexed by callee
+     */
+    private final Map<IMethod, List<CallStatement>> directCallsTo = new HashMap<>();
+    /**
+     * Virtual calls, indexed by the selector of the callee
+     */
+    private final Map<Selector, List<VirtualCallStatement>> virtualCalls = new HashMap<>();
+    /**
+     * Methods for which each reference variable is a formal
+     */
+    private final Map<ReferenceVariable, IMethod> formalOf = new HashMap<>();
+    /**
+     * Method containing the statements that use or define each non-singleton reference variable
+     */
+    private final Map<ReferenceVariable, IMethod> methodOf = new HashMap<>();
+
+    // Memoized state of the demand analysis
+
+    /**
+     * Points-to sets for reference variables that have been demanded
+     */
+    private final Map<ReferenceVariable, Set<AllocSiteNode>> pointsTo = new HashMap<>();
+    /**
+     * Points-to sets of fields of allocation sites, for fields that are loaded
+     */
+    private final Map<OrderedPair<AllocSiteNode, String>, Set<AllocSiteNode>> fieldPointsTo = new HashMap<>();
+    /**
+     * Constraints that need to be evaluated, because they are new or a set they read has grown
+     */
+    private final Deque<Constraint> worklist = new ArrayDeque<>();
+    /**
+     * Constraints that read each points-to set (of a variable or of a field of an allocation site)
+     */
+    private final Map<Set<AllocSiteNode>, List<Constraint>> readers = new IdentityHashMap<>();
+    /**
+     * Fields for which the stores have been added as constraints
+     */
+    private final Set<String> loadedFields = new HashSet<>();
+    /**
+     * Methods whose formals have been demanded
+     */
+    private final Set<IMethod> demandedFormals = new HashSet<>();
+    /**
+     * Constraint for each call statement that has been demanded
+     */
+    private final Map<CallStatement, CallConstraint> callConstraints = new HashMap<>();
+    /**
+     * Number of constraint evaluations for the current query
+     */
+    private int work;
+
+    /**
+     * Result of the exhaustive analysis, null until a query goes over budget
+     */
+    private PointsToGraph exhaustiveGraph = null;
+
+    // Statistics
+    private int numQueries = 0;
+    private int numExhaustiveQueries = 0;
+    private long totalWork = 0;
+
+    /**
+     * Create an analysis answering points-to queries for the statements in the given registrar
+     *
+     * @param registrar registrar containing the statements for the whole program
+     * @param exhaustiveAnalysis analysis to use if a query goes over budget
+     * @param budget maximum number of constraint evaluations for a query, 0 to answer every query with the exhaustive
+     *            analysis
+     */
+    public DemandPointsToAnalysis(StatementRegistrar registrar, PointsToAnalysis exhaustiveAnalysis, int budget) {
+        this.registrar = registrar;
+        this.exhaustiveAnalysis = exhaustiveAnalysis;
+        this.budget = budget;
+        buildIndices();
+    }
+
+    private static <K, V> void addToIndex(Map<K, List<V>> index, K key, V value) {
+        List<V> l = index.get(key);
+        if (l == null) {
+            l = new ArrayList<>(2);
+            index.put(key, l);
+        }
+        l.add(value);
+    }
+
+    private void buildIndices() {
+        for (IMethod m : this.registrar.getRegisteredMethods()) {
+            MethodSummaryNodes summary = this.registrar.findOrCreateMethodSummary(m);
+            for (int i = 0; i < m.getNumberOfParameters(); i++) {
+                if (summary.getFormal(i) != null) {
+                    this.formalOf.put(summary.getFormal(i), m);
+                }
+            }
+
+            for (PointsToStatement s : this.registrar.getStatementsForMethod(m)) {
+                if (s.getDef() != null) {
+                    addToIndex(this.defs, s.getDef(), s);
+                    recordMethod(s.getDef(), m);
+                }
+                for (ReferenceVariable use : s.getUses()) {
+                    if (use != null) {
+                        recordMethod(use, m);
+                    }
+                }
+                if (s instanceof LocalToFieldStatement) {
+                    LocalToFieldStatement store = (LocalToFieldStatement) s;
+                    addToIndex(this.fieldStores, store.getField().getName().toString(), store);
+                }
+                else if (s instanceof LocalToArrayStatement) {
+                    this.arrayStores.add((LocalToArrayStatement) s);
+                }
+                else if (s instanceof ExceptionAssignmentStatement) {
+                    // The caught exception is not reported as a definition, see ExceptionAssignmentStatement.getDef
+                    ReferenceVariable caught = ((ExceptionAssignmentStatement) s).getCaughtException();
+                    addToIndex(this.defs, caught, s);
+                    recordMethod(caught, m);
+                }
+                else if (s instanceof CallStatement) {
+                    CallStatement call = (CallStatement) s;
+                    addToIndex(this.defs, call.getException(), s);
+                    if (s instanceof StaticCallStatement) {
+                        addToIndex(this.directCallsTo, ((StaticCallStatement) s).getResolvedCallee(), call);
+                    }
+                    else if (s instanceof SpecialCallStatement) {
+                        addToIndex(this.directCallsTo, ((SpecialCallStatement) s).getResolvedCallee(), call);
+                    }
+                    else {
+                        addToIndex(this.virtualCalls, call.getCallee().getSelector(), (VirtualCallStatement) s);
+                    }
+                }
+            }
+        }
+    }
+
+    private void recordMethod(ReferenceVariable rv, IMethod m) {
+        if (!rv.isSingleton()) {
+            this.methodOf.put(rv, m);
+        }
+    }
+
+    /**
+     * Get the allocation sites of the objects the given reference variable may point to
+     *
+     * @param rv reference variable to get the points-to set for
+     * @return allocation sites rv may point to (in any context)
+     */
+    public Set<AllocSiteNode> pointsTo(ReferenceVariable rv) {
+        return pointsTo(rv, null);
+    }
+
+    /**
+     * Get the allocation sites of the objects the given reference variable may point to in the given context. The
+     * demand analysis merges contexts, so the answer is only specific to the context once a query has fallen back on
+     * the exhaustive analysis.
+     *
+     * @param rv reference variable to get the points-to set for
+     * @param context context of the method containing rv (ignored if rv is a static field), null for every context
+     * @return allocation sites rv may point to in the context
+     */
+    public Set<AllocSiteNode> pointsTo(ReferenceVariable rv, Context context) {
+        this.numQueries++;
+        if (this.exhaustiveGraph == null && this.budget == 0) {
+            this.exhaustiveGraph = this.exhaustiveAnalysis.solve(this.registrar);
+        }
+        if (this.exhaustiveGraph == null) {
+            this.work = 0;
+            try {
+                demand(rv);
+                solve();
+                return Collections.unmodifiableSet(this.pointsTo.get(rv));
+            }
+            catch (DemandFailedException e) {
+                if (PointsToAnalysis.outputLevel >= 1) {
+                    System.err.println("Demand query for " + rv + " failed (" + e.getMessage()
+                            + "), running the exhaustive points-to analysis");
+                }
+                this.exhaustiveGraph = this.exhaustiveAnalysis.solve(this.registrar);
+                // The demand results are no longer needed
+                this.pointsTo.clear();
+                this.fieldPointsTo.clear();
+                this.worklist.clear();
+                this.readers.clear();
+                this.callConstraints.clear();
+            }
+            finally {
+                this.totalWork += this.work;
+            }
+        }
+        this.numExhaustiveQueries++;
+        return exhaustivePointsTo(rv, context);
+    }
+
+    /**
+     * Get the points-to set for rv from the result of the exhaustive analysis, in the given context or, if it is null,
+     * in every context rv is analyzed in
+     */
+    private Set<AllocSiteNode> exhaustivePointsTo(ReferenceVariable rv, Context context) {
+        PointsToGraph g = this.exhaustiveGraph;
+        Set<Context> contexts;
+        if (rv.isSingleton()) {
+            contexts = Collections.singleton(g.getHaf().initialContext());
+        }
+        else if (context != null) {
+            contexts = Collections.singleton(context);
+        }
+        else if (this.methodOf.containsKey(rv)) {
+            contexts = g.getContexts(this.methodOf.get(rv));
+        }
+        else if (this.formalOf.containsKey(rv)) {
+            contexts = g.getContexts(this.formalOf.get(rv));
+        }
+        else {
+            return Collections.emptySet();
+        }
+
+        Set<AllocSiteNode> result = new LinkedHashSet<>();
+        for (Context c : contexts) {
+            Iterator<InstanceKey> iter = g.pointsToIterator(new ReferenceVariableReplica(c, rv, g.getHaf()));
+            while (iter.hasNext()) {
+                result.add(allocationSite(iter.next(), g));
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Get the allocation site of an instance key of the exhaustive analysis
+     */
+    private static AllocSiteNode allocationSite(InstanceKey ik, PointsToGraph g) {
+        if (ik instanceof AllocationName) {
+            return ((AllocationName<?>) ik).getAllocationSite();
+        }
+        if (g.getHaf() instanceof RecordingHeapAbstractionFactory) {
+            return ((RecordingHeapAbstractionFactory) g.getHaf()).getRecord(ik).fst();
+        }
+        throw new IllegalArgumentException("Cannot find the allocation site of " + ik + " created by " + g.getHaf()
+                + ", use a RecordingHeapAbstractionFactory for the exhaustive analysis");
+    }
+
+    /**
+     * Evaluate the constraints on the worklist until it is empty. Evaluating a constraint may add constraints, and
+     * puts the readers of any set that grows back on the worklist.
+     */
+    private void solve() {
+        Constraint c;
+        while ((c = this.worklist.poll()) != null) {
+            c.queued = false;
+            if (++this.work > this.budget) {
+                throw new DemandFailedException("over budget");
+            }
+            c.evaluate();
+        }
+    }
+
+    /**
+     * Put the constraint on the worklist, if it is not already there
+     */
+    private void enqueue(Constraint c) {
+        if (!c.queued) {
+            c.queued = true;
+            this.worklist.add(c);
+        }
+    }
+
+    /**
+     * Record that the constraint reads the given set, so that it is evaluated again whenever the set grows
+     */
+    private void addReader(Set<AllocSiteNode> s, Constraint c) {
+        List<Constraint> l = this.readers.get(s);
+        if (l == null) {
+            l = new ArrayList<>(2);
+            this.readers.put(s, l);
+        }
+        l.add(c);
+    }
+
+    /**
+     * Add the elements of from to the set to, and put the readers of to on the worklist if it grew
+     */
+    private void addAll(Set<AllocSiteNode> to, Collection<AllocSiteNode> from) {
+        if (to.addAll(from)) {
+            changed(to);
+        }
+    }
+
+    /**
+     * Add the elements of from that satisfy the filter to the set to, and put the readers of to on the worklist if it
+     * grew
+     *
+     * @param filter type filter, null to add every element
+     */
+    private void addAll(Set<AllocSiteNode> to, Collection<AllocSiteNode> from, TypeFilter filter) {
+        if (filter == null) {
+            addAll(to, from);
+            return;
+        }
+        boolean grew = false;
+        for (AllocSiteNode o : from) {
+            if (filter.satisfies(o.getAllocatedClass())) {
+                grew |= to.add(o);
+            }
+        }
+        if (grew) {
+            changed(to);
+        }
+    }
+
+    /**
+     * Add o to the set to, and put the readers of to on the worklist if it grew
+     */
+    private void add(Set<AllocSiteNode> to, AllocSiteNode o) {
+        if (to.add(o)) {
+            changed(to);
+        }
+    }
+
+    private void changed(Set<AllocSiteNode> s) {
+        List<Constraint> l = this.readers.get(s);
+        if (l != null) {
+            for (Constraint c : l) {
+                enqueue(c);
+            }
+        }
+    }
+
+    /**
+     * Get the points-to set for the variable, adding the constraints for the statements it depends on if it has not
+     * been demanded before
+     */
+    private Set<AllocSiteNode> demand(ReferenceVariable rv) {
+        Set<AllocSiteNode> s = this.pointsTo.get(rv);
+        if (s != null) {
+            return s;
+        }
+        s = new LinkedHashSet<>();
+        this.pointsTo.put(rv, s);
+
+        List<PointsToStatement> stmts = this.defs.get(rv);
+        if (stmts != null) {
+            for (PointsToStatement stmt : stmts) {
+                addConstraintsForDef(rv, stmt);
+            }
+        }
+
+        IMethod m = this.formalOf.get(rv);
+        if (m != null && this.demandedFormals.add(m)) {
+            demandCallsTo(m);
+        }
+        return s;
+    }
+
+    private void addConstraintsForDef(ReferenceVariable rv, PointsToStatement stmt) {
+        if (stmt instanceof NewStatement) {
+            add(this.pointsTo.get(rv), ((NewStatement) stmt).getAllocSite());
+        }
+        else if (stmt instanceof FieldToLocalStatement) {
+            FieldToLocalStatement load = (FieldToLocalStatement) stmt;
+            String field = load.getField().getName().toString();
+            addConstraint(new LoadConstraint(load.getUses().get(0), field, rv));
+            if (this.loadedFields.add(field)) {
+                List<LocalToFieldStatement> stores = this.fieldStores.get(field);
+                if (stores != null) {
+                    for (LocalToFieldStatement store : stores) {
+                        addConstraint(new StoreConstraint(store.getUses().get(0), field, store.getUses().get(1)));
+                    }
+                }
+            }
+        }
+        else if (stmt instanceof ArrayToLocalStatement) {
+            addConstraint(new LoadConstraint(stmt.getUses().get(0), PointsToGraph.ARRAY_CONTENTS, rv));
+            if (this.loadedFields.add(PointsToGraph.ARRAY_CONTENTS)) {
+                for (LocalToArrayStatement store : this.arrayStores) {
+                    addConstraint(new StoreConstraint(store.getUses().get(0),
+                                                      PointsToGraph.ARRAY_CONTENTS,
+                                                      store.getUses().get(1)));
+                }
+            }
+        }
+        else if (stmt instanceof CallStatement) {
+            findOrCreateCallConstraint((CallStatement) stmt).demandOutputs();
+        }
+        else if (stmt instanceof ClassInitStatement) {
+            // no flow of objects
+        }
+        else if (stmt instanceof LocalToLocalStatement) {
+            LocalToLocalStatement assign = (LocalToLocalStatement) stmt;
+            addConstraint(new CopyConstraint(assign.getUses().get(0), rv, assign.getFilter()));
+        }
+        else if (stmt instanceof ExceptionAssignmentStatement) {
+            ExceptionAssignmentStatement assign = (ExceptionAssignmentStatement) stmt;
+            addConstraint(new CopyConstraint(assign.getUses().get(0), rv, assign.getFilter()));
+        }
+        else {
+            // Everything the uses point to flows to the definition
+            for (ReferenceVariable use : stmt.getUses()) {
+                if (use != null) {
+                    addConstraint(new CopyConstraint(use, rv));
+                }
+            }
+        }
+    }
+
+    /**
+     * Add constraints for the arguments of every call that may reach m
+     */
+    private void demandCallsTo(IMethod m) {
+        List<CallStatement> direct = this.directCallsTo.get(m);
+        if (direct != null) {
+            for (CallStatement call : direct) {
+                findOrCreateCallConstraint(call).targetChanged();
+            }
+        }
+        if (!m.isStatic()) {
+            List<VirtualCallStatement> virtual = this.virtualCalls.get(m.getSelector());
+            if (virtual != null) {
+                for (VirtualCallStatement call : virtual) {
+                    findOrCreateCallConstraint(call).targetChanged();
+                }
+            }
+        }
+    }
+
+    private CallConstraint findOrCreateCallConstraint(CallStatement call) {
+        if (!AnalysisUtil.disableObjectClone
+                && call.getCallee().getSelector().equals(CallStatement.CLONE.getSelector())) {
+            throw new DemandFailedException("call to clone");
+        }
+        CallConstraint c = this.callConstraints.get(call);
+        if (c == null) {
+            c = new CallConstraint(call);
+            this.callConstraints.put(call, c);
+            addConstraint(c);
+        }
+        return c;
+    }
+
+    private void addConstraint(Constraint c) {
+        enqueue(c);
+    }
+
+    private Set<AllocSiteNode> demandField(AllocSiteNode o, String field) {
+        OrderedPair<AllocSiteNode, String> key = new OrderedPair<>(o, field);
+        Set<AllocSiteNode> s = this.fieldPointsTo.get(key);
+        if (s == null) {
+            s = new LinkedHashSet<>();
+            this.fieldPointsTo.put(key, s);
+        }
+        return s;
+    }
+
+    /**
+     * Number of constraint evaluations for all queries so far
+     */
+    public long getTotalWork() {
+        return this.totalWork;
+    }
+
+    /**
+     * Number of queries answered by the exhaustive analysis so far
+     */
+    public int getNumExhaustiveQueries() {
+        return this.numExhaustiveQueries;
+    }
+
+    /**
+     * Print the number of queries and how many of them were answered by the exhaustive analysis
+     */
+    public void printStatistics() {
+        System.err.println("Demand points-to queries: " + this.numQueries + " (" + this.numExhaustiveQueries
+                + " answered by the exhaustive analysis), " + this.totalWork + " constraints evaluated");
+    }
+
+    /**
+     * Thrown if a query cannot be answered by the demand analysis
+     */
+    private static class DemandFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        DemandFailedException(String reason) {
+            super(reason);
+        }
+    }
+
+    private abstract static class Constraint {
+        /**
+         * Set while the constraint is on the worklist
+         */
+        boolean queued = false;
+
+        /**
+         * Update the points-to sets according to this constraint
+         */
+        abstract void evaluate();
+    }
+
+    /**
+     * to = from, for the objects that satisfy the filter
+     */
+    private class CopyConstraint extends Constraint {
+        private final Set<AllocSiteNode> from;
+        private final Set<AllocSiteNode> to;
+        /**
+         * Type filter, null if every object is copied
+         */
+        private final TypeFilter filter;
+
+        CopyConstraint(ReferenceVariable from, ReferenceVariable to) {
+            this(from, to, null);
+        }
+
+        CopyConstraint(ReferenceVariable from, ReferenceVariable to, TypeFilter filter) {
+            this.to = demand(to);
+            this.from = demand(from);
+            this.filter = filter;
+            addReader(this.from, this);
+        }
+
+        @Override
+        void evaluate() {
+            addAll(this.to, this.from, this.filter);
+        }
+    }
+
+    /**
+     * to = base.field
+     */
+    private class LoadConstraint extends Constraint {
+        private final Set<AllocSiteNode> base;
+        private final String field;
+        private final Set<AllocSiteNode> to;
+        /**
+         * Allocation sites in base whose field this constraint already reads
+         */
+        private final Set<AllocSiteNode> bases = new HashSet<>();
+
+        LoadConstraint(ReferenceVariable base, String field, ReferenceVariable to) {
+            this.to = demand(to);
+            this.base = demand(base);
+            this.field = field;
+            addReader(this.base, this);
+        }
+
+        @Override
+        void evaluate() {
+            for (AllocSiteNode o : new ArrayList<>(this.base)) {
+                Set<AllocSiteNode> fieldSet = demandField(o, this.field);
+                if (this.bases.add(o)) {
+                    addReader(fieldSet, this);
+                }
+                addAll(this.to, fieldSet);
+            }
+        }
+    }
+
+    /**
+     * base.field = value
+     */
+    private class StoreConstraint extends Constraint {
+        private final Set<AllocSiteNode> base;
+        private final String field;
+        private final Set<AllocSiteNode> value;
+
+        StoreConstraint(ReferenceVariable base, String field, ReferenceVariable value) {
+            this.base = demand(base);
+            this.value = demand(value);
+            this.field = field;
+            addReader(this.base, this);
+            addReader(this.value, this);
+        }
+
+        @Override
+        void evaluate() {
+            for (AllocSiteNode o : new ArrayList<>(this.base)) {
+                addAll(demandField(o, this.field), this.value, filter(o));
+            }
+        }
+
+        /**
+         * Filter on the objects stored into the field of o, see {@link LocalToArrayStatement}
+         */
+        private TypeFilter filter(AllocSiteNode o) {
+            IClass type = o.getAllocatedClass();
+            if (!this.field.equals(PointsToGraph.ARRAY_CONTENTS) || !type.isArrayClass()) {
+                return null;
+            }
+            IClass elementType = AnalysisUtil.getClassHierarchy()
+                                             .lookupClass(type.getReference().getArrayElementType());
+            return LocalToArrayStatement.contentsFilter(elementType);
+        }
+    }
+
+    /**
+     * Flow of objects into and out of the callees of a call. The callees of a virtual call are found from the
+     * allocation sites of the receiver. Results and exceptions flow out of a callee once the outputs of the call have
+     * been demanded, and arguments flow into a callee once its formals have been demanded.
+     */
+    private class CallConstraint extends Constraint {
+        private final CallStatement call;
+        /**
+         * Receiver of the call, null for a static call
+         */
+        private final ReferenceVariable receiver;
+        private boolean outputsDemanded = false;
+        /**
+         * Callees found so far
+         */
+        private final Set<IMethod> callees = new LinkedHashSet<>();
+        /**
+         * Callees for which the flow out of the callee has been added
+         */
+        private final Set<IMethod> outputsAdded = new HashSet<>();
+        /**
+         * Callees for which the flow into the callee has been added
+         */
+        private final Set<IMethod> inputsAdded = new HashSet<>();
+        /**
+         * Set if the callees or demanded formals changed since the last evaluation
+         */
+        private boolean dirty = true;
+
+        CallConstraint(CallStatement call) {
+            this.call = call;
+            if (call instanceof StaticCallStatement) {
+                this.receiver = null;
+                this.callees.add(((StaticCallStatement) call).getResolvedCallee());
+            }
+            else if (call instanceof SpecialCallStatement) {
+                this.receiver = call.getUses().get(0);
+                this.callees.add(((SpecialCallStatement) call).getResolvedCallee());
+                // The call only happens once there is a receiver
+                addReader(demand(this.receiver), this);
+            }
+            else {
+                this.receiver = call.getUses().get(0);
+                // Needed to find the callees
+                addReader(demand(this.receiver), this);
+            }
+        }
+
+        void demandOutputs() {
+            this.outputsDemanded = true;
+            this.dirty = true;
+            enqueue(this);
+        }
+
+        void targetChanged() {
+            this.dirty = true;
+            enqueue(this);
+        }
+
+        @Override
+        void evaluate() {
+            if (this.call instanceof VirtualCallStatement) {
+                VirtualCallStatement vcall = (VirtualCallStatement) this.call;
+                for (AllocSiteNode o : new ArrayList<>(demand(this.receiver))) {
+                    IMethod callee = vcall.resolveMethod(o.getAllocatedClass(), this.receiver.getExpectedType());
+                    if (callee != null && !callee.isAbstract() && this.callees.add(callee)) {
+                        this.dirty = true;
+                    }
+                }
+            }
+            if (!this.dirty || this.receiver != null && demand(this.receiver).isEmpty()) {
+                return;
+            }
+            this.dirty = false;
+
+            for (IMethod callee : new ArrayList<>(this.callees)) {
+                MethodSummaryNodes summary = DemandPointsToAnalysis.this.registrar.findOrCreateMethodSummary(callee);
+                if (this.outputsDemanded && this.outputsAdded.add(callee)) {
+                    if (this.call.getResult() != null) {
+                        addConstraint(new CopyConstraint(summary.getReturn(), this.call.getResult()));
+                    }
+                    addConstraint(new CopyConstraint(summary.getException(), this.call.getException()));
+                }
+                if (DemandPointsToAnalysis.this.demandedFormals.contains(callee) && this.inputsAdded.add(callee)) {
+                    addInputs(callee, summary);
+                }
+            }
+        }
+
+        private void addInputs(final IMethod callee, MethodSummaryNodes summary) {
+            int firstFormal = callee.isStatic() ? 0 : 1;
+            List<ReferenceVariable> actuals = this.call.getActuals();
+            for (int i = firstFormal; i < actuals.size(); i++) {
+                if (actuals.get(i) != null && summary.getFormal(i) != null) {
+                    addConstraint(new CopyConstraint(actuals.get(i), summary.getFormal(i)));
+                }
+            }
+            if (callee.isStatic()) {
+                return;
+            }
+            if (this.call instanceof SpecialCallStatement) {
+                addConstraint(new CopyConstraint(this.receiver, summary.getFormal(0)));
+                return;
+            }
+            // Only the receivers that dispatch to this callee flow to its "this"
+            final VirtualCallStatement vcall = (VirtualCallStatement) this.call;
+            final Set<AllocSiteNode> receivers = demand(this.receiver);
+            final Set<AllocSiteNode> thisFormal = demand(summary.getFormal(0));
+            Constraint dispatch = new Constraint() {
+                @Override
+                void evaluate() {
+                    for (AllocSiteNode o : new ArrayList<>(receivers)) {
+                        if (!thisFormal.contains(o)
+                                && callee.equals(vcall.resolveMethod(o.getAllocatedClass(),
+                                                                     CallConstraint.this.receiver.getExpectedType()))) {
+                            add(thisFormal, o);
+                        }
+                    }
+                }
+            };
+            addReader(receivers, dispatch);
+            addConstraint(dispatch);
+        }
+    }
+}
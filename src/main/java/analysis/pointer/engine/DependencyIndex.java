@@ -0,0 +1,353 @@
+package analysis.pointer.engine;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import util.intmap.ConcurrentIntMap;
+import analysis.AnalysisUtil;
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+
+import com.ibm.wala.util.collections.EmptyIntIterator;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+
+/**
+ * Thread-safe index of the "interesting dependencies" of the multi-threaded points-to analysis, i.e., of the
+ * (statement, context) pairs that must be reprocessed when the points-to set of a node changes.
+ * <p>
+ * Each (statement, context) pair is interned to an int, and the dependents of a node are stored as an append-only array
+ * of those ints. Reading the dependents does not take a lock: a reader sees a snapshot of the dependents added so far.
+ * Adding a dependent takes one of a fixed number of locks (chosen by the node), which makes checking for a duplicate
+ * and appending a single atomic step. Without that, a thread could see a dependency as already present before it is
+ * visible to the threads that iterate over the dependents, and a change to the node could be missed.
+ */
+class DependencyIndex {
+    /**
+     * Number of dependents above which duplicates are found using a hash table rather than a linear scan
+     */
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    /**
+     * Map from (statement, context) pair to its id
+     */
+    private final ConcurrentMap<StmtAndContext, Integer> ids = AnalysisUtil.createConcurrentHashMap();
+
+    /**
+     * Map from id to (statement, context) pair
+     */
+    private final ConcurrentIntMap<StmtAndContext> sacs = PointsToAnalysisMultiThreaded.makeConcurrentIntMap();
+
+    /**
+     * Next id to give to a (statement, context) pair
+     */
+    private final AtomicInteger nextId = new AtomicInteger(0);
+
+    /**
+     * Map from points-to graph node to the ids of the (statement, context) pairs that depend on it
+     */
+    private final ConcurrentIntMap<Dependents> dependents = PointsToAnalysisMultiThreaded.makeConcurrentIntMap();
+
+    /**
+     * Locks guarding additions to the dependents of a node, indexed by the node modulo the number of locks
+     */
+    private final Object[] stripes;
+
+    DependencyIndex(int numThreads) {
+        // a power of two comfortably larger than the number of threads, so threads rarely contend for a lock
+        int numStripes = Integer.highestOneBit(Math.max(numThreads, 1) * 16 - 1) << 1;
+        this.stripes = new Object[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            this.stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Get the unique id for the (statement, context) pair
+     *
+     * @param sac (statement, context) pair
+     * @return id of sac
+     */
+    int intern(StmtAndContext sac) {
+        Integer id = this.ids.get(sac);
+        if (id != null) {
+            return id;
+        }
+        int newId = this.nextId.getAndIncrement();
+        // Make the pair available by id before the id is published. Losing a race wastes an id, which is harmless.
+        this.sacs.put(newId, sac);
+        id = this.ids.putIfAbsent(sac, newId);
+        return id == null ? newId : id;
+    }
+
+    /**
+     * Get the (statement, context) pair with the given id
+     *
+     * @param id id returned by {@link #intern(StmtAndContext)}
+     * @return (statement, context) pair
+     */
+    StmtAndContext lookup(int id) {
+        return this.sacs.get(id);
+    }
+
+    /**
+     * Record that sac must be reprocessed when the points-to set of n changes
+     *
+     * @param n points-to graph node
+     * @param sac (statement, context) pair that depends on n
+     * @return true if the dependency did not already exist
+     */
+    boolean add(/*PointsToGraphNode*/int n, StmtAndContext sac) {
+        return this.add(n, this.intern(sac));
+    }
+
+    /**
+     * Record that the (statement, context) pair with the given id must be reprocessed when the points-to set of n
+     * changes
+     *
+     * @param n points-to graph node
+     * @param id id of the (statement, context) pair that depends on n
+     * @return true if the dependency did not already exist
+     */
+    boolean add(/*PointsToGraphNode*/int n, int id) {
+        Dependents d = this.dependents.get(n);
+        if (d == null) {
+            d = new Dependents();
+            Dependents existing = this.dependents.putIfAbsent(n, d);
+            if (existing != null) {
+                d = existing;
+            }
+        }
+        else if (d.containsPublished(id)) {
+            // Most reads are repeated, so check without the lock first, for any number of dependents. Anything found
+            // here is already visible to readers.
+            return false;
+        }
+        synchronized (this.stripes[n & (this.stripes.length - 1)]) {
+            return d.add(id);
+        }
+    }
+
+    /**
+     * Record that the dependents of n also depend on rep, used when n is collapsed into rep
+     *
+     * @param n node being collapsed
+     * @param rep representative node
+     */
+    void copyDependents(/*PointsToGraphNode*/int n, /*PointsToGraphNode*/int rep) {
+        IntIterator iter = this.dependentIdIterator(n);
+        while (iter.hasNext()) {
+            this.add(rep, iter.next());
+        }
+    }
+
+    /**
+     * Get the ids of the (statement, context) pairs that currently depend on the node, use {@link #lookup(int)} to get
+     * the pairs. Dependencies added after this method returns may or may not be seen by the iterator, and the iterator
+     * returns each id at most once.
+     *
+     * @param n points-to graph node
+     * @return snapshot of the ids of the dependents of n
+     */
+    IntIterator dependentIdIterator(/*PointsToGraphNode*/int n) {
+        Dependents d = this.dependents.get(n);
+        if (d == null) {
+            return EmptyIntIterator.instance();
+        }
+        // Read the size first: the array read afterwards contains at least that many elements
+        final int size = d.size;
+        final int[] elements = d.elements;
+        return new IntIterator() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.i < size;
+            }
+
+            @Override
+            public int next() {
+                if (this.i >= size) {
+                    throw new NoSuchElementException();
+                }
+                return elements[this.i++];
+            }
+        };
+    }
+
+    /**
+     * View of the (statement, context) pairs with the given ids as a set. The view does not copy the ids.
+     *
+     * @param ids ids returned by {@link #intern(StmtAndContext)}
+     * @return unmodifiable set of the pairs with the given ids
+     */
+    Set<StmtAndContext> lookupAll(final IntSet ids) {
+        return new AbstractSet<StmtAndContext>() {
+            @Override
+            public Iterator<StmtAndContext> iterator() {
+                final IntIterator iter = ids.intIterator();
+                return new Iterator<StmtAndContext>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @SuppressWarnings("synthetic-access")
+                    @Override
+                    public StmtAndContext next() {
+                        return DependencyIndex.this.lookup(iter.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ids.size();
+            }
+        };
+    }
+
+    /**
+     * Print the number of nodes with dependents, dependencies and (statement, context) pairs to standard error
+     */
+    void printStatistics() {
+        long numDependencies = 0;
+        int numNodes = 0;
+        IntIterator iter = this.dependents.keyIterator();
+        while (iter.hasNext()) {
+            numDependencies += this.dependents.get(iter.next()).size;
+            numNodes++;
+        }
+        System.err.println("   Interesting deps       : " + numDependencies + " from " + numNodes + " nodes to "
+                + this.ids.size() + " (statement, context) pairs");
+    }
+
+    /**
+     * Ids of the (statement, context) pairs that depend on one node. The elements in the prefix of length size are
+     * never changed, so readers can iterate over a prefix without locking. Elements are only added while holding the
+     * lock for the node.
+     */
+    private static final class Dependents {
+        /**
+         * Ids of the dependents. Replaced by a larger copy when full.
+         */
+        volatile int[] elements = new int[2];
+        /**
+         * Number of dependents, written after the element is in place
+         */
+        volatile int size = 0;
+        /**
+         * Open addressing hash table of the elements plus one (so that zero is empty), or null while there are few
+         * enough elements to scan. A table is filled before it is published, and an element is only put in the
+         * published table after it has been published in the elements, so an element found in the table without the
+         * lock is already visible to readers. A reader holding an old table may miss elements added since, and then
+         * checks again under the lock.
+         */
+        private volatile AtomicIntegerArray table = null;
+
+        /**
+         * Check whether an element is in the published prefix, without the lock
+         */
+        boolean containsPublished(int id) {
+            AtomicIntegerArray t = this.table;
+            if (t != null) {
+                return contains(t, id);
+            }
+            int s = this.size;
+            int[] a = this.elements;
+            for (int i = 0; i < s; i++) {
+                if (a[i] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Add an element if it is not already present. Must be called holding the lock for the node.
+         */
+        boolean add(int id) {
+            int s = this.size;
+            int[] a = this.elements;
+            AtomicIntegerArray t = this.table;
+            if (t == null) {
+                for (int i = 0; i < s; i++) {
+                    if (a[i] == id) {
+                        return false;
+                    }
+                }
+            }
+            else if (contains(t, id)) {
+                return false;
+            }
+
+            if (s == a.length) {
+                a = Arrays.copyOf(a, 2 * s);
+                this.elements = a;
+            }
+            a[s] = id;
+            // publish the new element
+            this.size = s + 1;
+
+            if (t == null && s + 1 > LINEAR_SCAN_LIMIT || t != null && 2 * (s + 1) > t.length()) {
+                this.rehash(a, s + 1);
+            }
+            else if (t != null) {
+                insert(t, id);
+            }
+            return true;
+        }
+
+        private void rehash(int[] a, int s) {
+            AtomicIntegerArray t = new AtomicIntegerArray(Integer.highestOneBit(s) << 2);
+            for (int i = 0; i < s; i++) {
+                insert(t, a[i]);
+            }
+            // publish the filled table
+            this.table = t;
+        }
+
+        private static int slot(AtomicIntegerArray table, int id) {
+            int h = id * 0x9E3779B9;
+            return (h ^ h >>> 16) & table.length() - 1;
+        }
+
+        /**
+         * Check whether an element is in a hash table
+         */
+        private static boolean contains(AtomicIntegerArray table, int id) {
+            int mask = table.length() - 1;
+            for (int i = slot(table, id);; i = i + 1 & mask) {
+                int e = table.get(i);
+                if (e == 0) {
+                    return false;
+                }
+                if (e == id + 1) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Insert an element that is not already in a hash table. Must be called holding the lock for the node.
+         */
+        private static void insert(AtomicIntegerArray table, int id) {
+            int mask = table.length() - 1;
+            int i = slot(table, id);
+            while (table.get(i) != 0) {
+                i = i + 1 & mask;
+            }
+            table.set(i, id + 1);
+        }
+    }
+}
@@ -37,5 +37,14 @@ public interface DependencyRecorder {
      */
     void recordNewContext(IMethod callee, Context calleeContext);
 
+    /**
+     * Record that the points-to set of source is now a subset of the points-to set of target, i.e., that an edge was
+     * added to the subset graph.
+     *
+     * @param source
+     * @param target
+     */
+    void recordSubsetEdge(/*PointsToGraphNode*/int source, /*PointsToGraphNode*/int target);
+
 
 }
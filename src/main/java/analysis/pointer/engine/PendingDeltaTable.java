@@ -0,0 +1,115 @@
+package analysis.pointer.engine;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import analysis.AnalysisUtil;
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+import analysis.pointer.graph.GraphDelta;
+import analysis.pointer.graph.PointsToGraph;
+
+/**
+ * Table of the (statement, context) pairs that have been scheduled but not yet started, together with the union of the
+ * deltas they have been scheduled with. If a (statement, context) pair is submitted again before its pending run
+ * starts, the new delta is merged into the pending entry rather than scheduling another run.
+ */
+class PendingDeltaTable {
+    private final ConcurrentMap<StmtAndContext, Entry> pending = AnalysisUtil.createConcurrentHashMap();
+
+    /**
+     * Number of submissions that were merged into a pending entry
+     */
+    private final AtomicLong coalesced = new AtomicLong(0);
+
+    /**
+     * Record that sac should be processed with delta.
+     *
+     * @param sac statement and context to process
+     * @param delta delta to process, null if sac should read entire points-to sets
+     * @param g points-to graph the delta is for
+     * @return the new entry if the caller needs to schedule a run of sac (which should call {@link #take}), or null if
+     *         the delta was merged into an entry whose run has not yet started
+     */
+    Entry submit(StmtAndContext sac, GraphDelta delta, PointsToGraph g) {
+        while (true) {
+            Entry e = this.pending.get(sac);
+            if (e != null && e.merge(delta, g)) {
+                this.coalesced.incrementAndGet();
+                return null;
+            }
+            // Either there is no entry, or its run has started. Put in a new entry.
+            Entry newEntry = new Entry(delta);
+            if (e == null ? this.pending.putIfAbsent(sac, newEntry) == null : this.pending.replace(sac, e, newEntry)) {
+                return newEntry;
+            }
+            // someone else changed the entry, try again
+        }
+    }
+
+    /**
+     * The run of sac for entry e is starting. No more deltas will be merged into e.
+     *
+     * @return the delta to process, null if entire points-to sets should be read
+     */
+    GraphDelta take(StmtAndContext sac, Entry e) {
+        GraphDelta delta = e.take();
+        this.pending.remove(sac, e);
+        return delta;
+    }
+
+    /**
+     * Number of submissions that were merged into a pending entry rather than scheduling another run
+     */
+    long coalescedCount() {
+        return this.coalesced.get();
+    }
+
+    static final class Entry {
+        /**
+         * Union of the deltas submitted, or null if any of them was null
+         */
+        private GraphDelta delta;
+        /**
+         * Is delta a fresh GraphDelta created for this entry? Submitted deltas are shared, and must not be modified.
+         */
+        private boolean ownsDelta = false;
+        /**
+         * Has the run for this entry started?
+         */
+        private boolean taken = false;
+
+        Entry(GraphDelta delta) {
+            this.delta = delta;
+        }
+
+        /**
+         * Merge the delta into this entry.
+         *
+         * @return false if the run for this entry has already started, in which case the delta was not merged
+         */
+        synchronized boolean merge(GraphDelta d, PointsToGraph g) {
+            if (this.taken) {
+                return false;
+            }
+            if (this.delta == null || d == this.delta) {
+                // the run will read the entire points-to sets anyway, or already has this delta
+                return true;
+            }
+            if (d == null) {
+                this.delta = null;
+                return true;
+            }
+            if (!this.ownsDelta) {
+                this.delta = new GraphDelta(g).combine(this.delta);
+                this.ownsDelta = true;
+            }
+            this.delta.combine(d);
+            return true;
+        }
+
+        synchronized GraphDelta take() {
+            this.taken = true;
+            return this.delta;
+        }
+    }
+}
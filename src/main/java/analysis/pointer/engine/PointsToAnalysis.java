@@ -76,6 +76,14 @@ public abstract class PointsToAnalysis {
             this.context = context;
         }
 
+        public PointsToStatement getStmt() {
+            return this.stmt;
+        }
+
+        public Context getContext() {
+            return this.context;
+        }
+
         @Override
         public int hashCode() {
             final int prime = 31;
@@ -2,8 +2,6 @@ package analysis.pointer.engine;
 
 import java.lang.management.ManagementFactory;
 import java.text.NumberFormat;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.ForkJoinPool;
@@ -15,11 +13,18 @@ import main.AccrueAnalysisMain;
 import util.intmap.ConcurrentIntMap;
 import util.intmap.ConcurrentMonotonicIntHashMap;
 import util.intmap.IntMap;
+import util.intset.ConcurrentMonotonicIntBitSet;
 import util.intset.ConcurrentMonotonicIntHashSet;
+import util.intset.OffHeapArena;
+import util.intset.OffHeapIntSet;
 import analysis.AnalysisUtil;
+import analysis.DispatchCache;
 import analysis.pointer.analyses.HeapAbstractionFactory;
+import analysis.pointer.graph.Derivations;
 import analysis.pointer.graph.GraphDelta;
+import analysis.pointer.graph.IncrementalResume;
 import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToGraphSnapshot;
 import analysis.pointer.registrar.StatementRegistrar;
 import analysis.pointer.statements.PointsToStatement;
 
@@ -28,6 +33,7 @@ import com.ibm.wala.ipa.callgraph.Context;
 import com.ibm.wala.util.intset.IntIterator;
 import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
 
 public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
     /**
@@ -40,12 +46,48 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
      * (i.e., if n changes to point to more things) requires reevaluation of sac. Many dependencies are just copy
      * dependencies (which are not interesting dependencies).
      */
-    private ConcurrentIntMap<Set<StmtAndContext>> interestingDepedencies = PointsToAnalysisMultiThreaded.makeConcurrentIntMap();
+    private final DependencyIndex interestingDepedencies = new DependencyIndex(PointsToAnalysisMultiThreaded.numThreads());
     /**
      * If true then the analysis will reprocess all points-to statements after reaching a fixed point to make sure there
      * are no changes.
      */
     private static boolean paranoidMode = false;
+    /**
+     * If true then points-to sets are represented as concurrent bit sets, otherwise as concurrent hash sets
+     */
+    private static boolean useBitSetPointsToSets = false;
+    /**
+     * If true then points-to sets and the sets in the subset relations are stored outside the Java heap while the
+     * graph is being solved
+     */
+    private static boolean useOffHeapSets = false;
+    /**
+     * Arena of the solve in progress, which the off-heap sets are allocated from, null if sets are stored in the Java
+     * heap. Each solve gets its own arena, and drops it when the solve is done. The direct memory is released when the
+     * arena is garbage collected, i.e., once the sets allocated from it are no longer used (see
+     * {@link PointsToGraph#constructionFinished()}).
+     */
+    private static OffHeapArena offHeapArena = null;
+    /**
+     * If true then statements are scheduled using a {@link BatchedWorklistScheduler} rather than one ForkJoinTask per
+     * (statement, context) pair
+     */
+    private static boolean useBatchedScheduler = false;
+    /**
+     * If true then a (statement, context) pair submitted while it already has a pending run is merged into that run,
+     * see {@link PendingDeltaTable}
+     */
+    private static boolean coalesceDeltas = false;
+    /**
+     * If true then the graph records the {@link Derivations} of each (statement, context) pair, so that a snapshot of
+     * the graph can be used to resume the analysis after the program changes
+     */
+    private static boolean recordDerivations = false;
+    /**
+     * If non-null then the analysis resumes from this snapshot of the graph computed for an earlier version of the
+     * program, see {@link IncrementalResume}
+     */
+    private static PointsToGraphSnapshot resumeFrom = null;
 
     static int numThreads() {
         return AnalysisUtil.numThreads;
@@ -66,12 +108,16 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
                 + PointsToAnalysisMultiThreaded.numThreads() + " threads " + " intmap is "
                 + this.makeConcurrentIntMap().getClass().getName());
         long startTime = System.currentTimeMillis();
-
+        final OffHeapArena arena = useOffHeapSets ? new OffHeapArena() : null;
+        offHeapArena = arena;
 
         // Based on one case study, using a ForkJoinPool in non-asynchronous mode seems to be
         // better.
         //final ExecutorServiceCounter execService = new ExecutorServiceCounter(Executors.newFixedThreadPool(this.numThreads()));
-        final ExecutorServiceCounter execService = new ExecutorServiceCounter(new ForkJoinPool(PointsToAnalysisMultiThreaded.numThreads()));
+        final StmtAndContextScheduler execService = useBatchedScheduler
+                ? new BatchedWorklistScheduler(this, PointsToAnalysisMultiThreaded.numThreads(), coalesceDeltas)
+                : new ExecutorServiceCounter(new ForkJoinPool(PointsToAnalysisMultiThreaded.numThreads()),
+                                             coalesceDeltas);
         //        final ExecutorServiceCounter execService = new ExecutorServiceCounter(new ForkJoinPool(this.numThreads(),
         //                                                                                               ForkJoinPool.defaultForkJoinWorkerThreadFactory,
         //                                                                                               null,
@@ -87,18 +133,14 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
             @Override
             public void startCollapseNode(int n, int rep) {
                 // add the new dependencies.
-                Set<StmtAndContext> deps = interestingDepedencies.get(n);
-                if (deps != null) {
-                    for (StmtAndContext depSac : deps) {
-                        addInterestingDependency(rep, depSac);
-                    }
-                }
+                interestingDepedencies.copyDependents(n, rep);
             }
 
             @Override
             public void finishCollapseNode(int n) {
-                // remove the old dependencies.
-                interestingDepedencies.remove(n);
+                // Do not remove the old dependencies. Another thread may have added to the points-to set of n just
+                // before it was collapsed, and the GraphDelta it produced will name n rather than the
+                // representative. The dependencies of n are needed to trigger the statements that read n.
             }
 
             @Override
@@ -108,29 +150,65 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
                     execService.submitTask(newSaC);
                 }
             }
+
+            @Override
+            public void recordSubsetEdge(int source, int target) {
+                // The batched scheduler recomputes the order of the subset graph itself
+            }
         };
 
-        PointsToGraph g = new PointsToGraph(registrar, this.haf, depRecorder);
+        PointsToGraph g = new PointsToGraph(registrar,
+                                            this.haf,
+                                            depRecorder,
+                                            recordDerivations ? new Derivations() : null);
         execService.setGraphAndRegistrar(g, registrar);
+        IncrementalResume resume = resumeFrom == null ? null : new IncrementalResume(resumeFrom, registrar, this.haf);
+
+        SolverMetrics metrics = SolverMetrics.getInstance();
+        if (metrics != null) {
+            metrics.start("multiThreaded", new SolverMetrics.QueueDepth() {
+                @Override
+                public long queueDepth() {
+                    return execService.numPendingTasks();
+                }
+            }, g);
+        }
 
-        // Add initial contexts
-        for (IMethod m : registrar.getInitialContextMethods()) {
-            for (PointsToStatement s : registrar.getStatementsForMethod(m)) {
-                for (Context c : g.getContexts(s.getMethod())) {
-                    StmtAndContext sac = new StmtAndContext(s, c);
+        try {
+            if (resume != null) {
+                // Restore what can be kept from the snapshot, and process what is left
+                for (StmtAndContext sac : resume.restore(g)) {
                     execService.submitTask(sac);
                 }
             }
-        }
+            else {
+                // Add initial contexts
+                for (IMethod m : registrar.getInitialContextMethods()) {
+                    for (PointsToStatement s : registrar.getStatementsForMethod(m)) {
+                        for (Context c : g.getContexts(s.getMethod())) {
+                            StmtAndContext sac = new StmtAndContext(s, c);
+                            execService.submitTask(sac);
+                        }
+                    }
+                }
+            }
 
-        // start up...
+            // start up...
 
-        while (execService.containsPending()) {
-            execService.waitUntilAllFinished();
+            while (execService.containsPending()) {
+                execService.waitUntilAllFinished();
+            }
+            // all the tasks are done.
+            // Shut down the executer service
+            execService.shutdownAndAwaitTermination();
+        }
+        finally {
+            if (metrics != null) {
+                metrics.finish();
+            }
+            // Sets created from now on (e.g., in paranoid mode) are stored in the Java heap
+            offHeapArena = null;
         }
-        // all the tasks are done.
-        // Shut down the executer service
-        execService.shutdownAndAwaitTermination();
 
         long endTime = System.currentTimeMillis();
         long totalTime = endTime - startTime;
@@ -159,8 +237,19 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
         System.err.println("   Number of threads used : " + PointsToAnalysisMultiThreaded.numThreads());
         System.err.println("   Num graph source nodes : " + ptgNodes);
         System.err.println("   Num nodes collapsed    : " + g.cycleRemovalCount());
+        System.err.println("   Num set propagations   : " + g.propagationCount());
         System.err.println("   Num graph edges        : " + totalEdges);
         System.err.println("   Num CG nodes           : " + numCGNodes);
+        execService.printStatistics();
+        this.interestingDepedencies.printStatistics();
+        if (resume != null) {
+            resume.printStatistics();
+        }
+        if (arena != null) {
+            System.err.println("   Off-heap set memory    : " + arena.allocatedBytes() / 1000000 + "MB used of "
+                    + arena.reservedBytes() / 1000000 + "MB");
+        }
+        DispatchCache.printStatistics();
 
         System.err.println("\n\nENTRY: " + AnalysisUtil.entryPoint);
         System.err.println(numCGNodes);
@@ -184,6 +273,8 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
         }
         if (paranoidMode) {
             // check that nothing went wrong, and that we have indeed reached a fixed point.
+            // (With difference propagation, statements must read their whole points-to sets again.)
+            g.forgetConsumedPrefixes();
             this.processAllStatements(g, registrar);
             GraphDelta delta = g.findCycles();
             assert delta == null || delta.isEmpty() : delta.toString();
@@ -216,29 +307,61 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
     }
 
 
-    void processSaC(StmtAndContext sac, GraphDelta delta, ExecutorServiceCounter execService) {
+    void processSaC(StmtAndContext sac, GraphDelta delta, StmtAndContextScheduler execService) {
         PointsToStatement s = sac.stmt;
         Context c = sac.context;
 
-        GraphDelta changes = s.process(c, this.haf, execService.g, delta, execService.registrar, sac);
+        SolverMetrics metrics = SolverMetrics.getInstance();
+        long start = metrics == null ? 0 : System.nanoTime();
+        Derivations derivations = execService.g.getDerivations();
+        if (derivations != null) {
+            derivations.startProcessing(sac);
+        }
+        GraphDelta changes;
+        try {
+            changes = s.process(c, this.haf, execService.g, delta, execService.registrar, sac);
+        }
+        finally {
+            if (derivations != null) {
+                derivations.finishProcessing();
+            }
+        }
+        if (metrics != null) {
+            metrics.recordStatement(s, System.nanoTime() - start, changes);
+        }
 
         if (changes.isEmpty()) {
             return;
         }
         IntIterator iter = changes.domainIterator();
         if (ONE_TASK_PER_DELTA) {
-            Set<StmtAndContext> depSaCs = new HashSet<>();
+            // remove duplicates by id rather than hashing the (statement, context) pairs
+            MutableIntSet depIds = MutableSparseIntSet.makeEmpty();
             while (iter.hasNext()) {
                 int n = iter.next();
-                depSaCs.addAll(this.getInterestingDependencies(n));
+                int fanOut = 0;
+                IntIterator deps = this.interestingDepedencies.dependentIdIterator(n);
+                while (deps.hasNext()) {
+                    depIds.add(deps.next());
+                    fanOut++;
+                }
+                if (metrics != null) {
+                    metrics.recordFanOut(fanOut);
+                }
             }
-            execService.submitTask(depSaCs, changes);
+            execService.submitTask(this.interestingDepedencies.lookupAll(depIds), changes);
         }
         else {
             while (iter.hasNext()) {
                 int n = iter.next();
-                for (StmtAndContext depSaC : this.getInterestingDependencies(n)) {
-                    execService.submitTask(depSaC, changes);
+                int fanOut = 0;
+                IntIterator deps = this.interestingDepedencies.dependentIdIterator(n);
+                while (deps.hasNext()) {
+                    execService.submitTask(this.interestingDepedencies.lookup(deps.next()), changes, n);
+                    fanOut++;
+                }
+                if (metrics != null) {
+                    metrics.recordFanOut(fanOut);
                 }
             }
         }
@@ -246,9 +369,7 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
     }
 
 
-    class ExecutorServiceCounter {
-        public PointsToGraph g;
-        public StatementRegistrar registrar;
+    class ExecutorServiceCounter extends StmtAndContextScheduler {
         private ForkJoinPool exec;
 
         /**
@@ -262,19 +383,15 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
         private AtomicLong totalTasksNoDelta;
         private AtomicLong totalTasksWithDelta;
 
-        public ExecutorServiceCounter(ForkJoinPool exec) {
+        public ExecutorServiceCounter(ForkJoinPool exec, boolean coalesceDeltas) {
+            super(coalesceDeltas);
             this.exec = exec;
             this.numTasks = new AtomicLong(0);
             this.totalTasksNoDelta = new AtomicLong(0);
             this.totalTasksWithDelta = new AtomicLong(0);
         }
 
-        public void setGraphAndRegistrar(PointsToGraph g, StatementRegistrar registrar) {
-            this.g = g;
-            this.registrar = registrar;
-
-        }
-
+        @Override
         public void shutdownAndAwaitTermination() {
             exec.shutdown();
             boolean finished = false;
@@ -290,19 +407,24 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
 
         }
 
-        public void submitTask(StmtAndContext sac) {
-            submitTask(sac, null);
-        }
-
+        @Override
         public void submitTask(StmtAndContext sac, GraphDelta delta) {
-            this.numTasks.incrementAndGet();
             if (delta == null) {
                 this.totalTasksNoDelta.incrementAndGet();
             }
             else {
                 this.totalTasksWithDelta.incrementAndGet();
             }
-            RunnableStmtAndContext sactask = new RunnableStmtAndContext(sac, delta);
+            PendingDeltaTable.Entry entry = null;
+            if (this.pendingDeltas != null) {
+                entry = this.pendingDeltas.submit(sac, delta, this.g);
+                if (entry == null) {
+                    // merged into a run that hasn't started yet
+                    return;
+                }
+            }
+            this.numTasks.incrementAndGet();
+            RunnableStmtAndContext sactask = new RunnableStmtAndContext(sac, delta, entry);
             if (ForkJoinTask.inForkJoinPool()) {
                 sactask.fork();
             }
@@ -311,6 +433,7 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
             }
         }
 
+        @Override
         public void submitTask(Set<StmtAndContext> sacs, GraphDelta delta) {
             this.numTasks.incrementAndGet();
             assert delta != null;
@@ -335,14 +458,24 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
             }
         }
 
+        @Override
         public boolean containsPending() {
             return numTasks.get() > 0;
         }
 
-        public long numRemainingTasks() {
+        @Override
+        public long numPendingTasks() {
             return numTasks.get();
         }
 
+        @Override
+        public void printStatistics() {
+            System.err.println("   Num tasks with delta   : " + this.totalTasksWithDelta.get());
+            System.err.println("   Num tasks no delta     : " + this.totalTasksNoDelta.get());
+            this.printCoalescingStatistics();
+        }
+
+        @Override
         public void waitUntilAllFinished() {
             if (this.containsPending()) {
                 synchronized (this) {
@@ -360,10 +493,15 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
         public class RunnableStmtAndContext extends ForkJoinTask<Void> {
             private final StmtAndContext sac;
             private final GraphDelta delta;
+            /**
+             * Entry in the pending delta table holding the delta to process, null if deltas are not coalesced
+             */
+            private final PendingDeltaTable.Entry entry;
 
-            public RunnableStmtAndContext(StmtAndContext stmtAndContext, GraphDelta delta) {
+            public RunnableStmtAndContext(StmtAndContext stmtAndContext, GraphDelta delta, PendingDeltaTable.Entry entry) {
                 this.sac = stmtAndContext;
                 this.delta = delta;
+                this.entry = entry;
             }
 
             @Override
@@ -378,7 +516,8 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
             @Override
             public boolean exec() {
                 try {
-                    processSaC(sac, delta, ExecutorServiceCounter.this);
+                    GraphDelta d = this.entry == null ? this.delta : pendingDeltas.take(this.sac, this.entry);
+                    processSaC(sac, d, ExecutorServiceCounter.this);
                     ExecutorServiceCounter.this.finishedTask();
                     return true;
                 }
@@ -470,20 +609,6 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
         return changed;
     }
 
-    /**
-     * Get any (statement,context) pairs that depend on the given points-to graph node
-     *
-     * @param n node to get the dependencies for
-     * @return set of dependencies
-     */
-    private Set<StmtAndContext> getInterestingDependencies(/*PointsToGraphNode*/int n) {
-        Set<StmtAndContext> sacs = this.interestingDepedencies.get(n);
-        if (sacs == null) {
-            return Collections.emptySet();
-        }
-        return sacs;
-    }
-
     /**
      * Add the (statement, context) pair as a dependency of the points-to graph node. This is an
      * "interesting dependency", meaning that if the points to set of n is modified, then sac will need to be processed
@@ -494,24 +619,35 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
      * @return true if the dependency did not already exist
      */
     boolean addInterestingDependency(/*PointsToGraphNode*/int n, StmtAndContext sac) {
-        // use double checked approach...
-
-        Set<StmtAndContext> s = this.interestingDepedencies.get(n);
-        if (s == null) {
-            s = AnalysisUtil.createConcurrentSet();
-            Set<StmtAndContext> existing = this.interestingDepedencies.putIfAbsent(n, s);
-            if (existing != null) {
-                s = existing;
-            }
-        }
-        return s.add(sac);
+        return this.interestingDepedencies.add(n, sac);
     }
 
     public static MutableIntSet makeConcurrentIntSet() {
+        OffHeapArena arena = offHeapArena;
+        if (arena != null) {
+            return new OffHeapIntSet(arena);
+        }
         return new ConcurrentMonotonicIntHashSet(AnalysisUtil.numThreads);
         //return new MutableIntSetFromMap(PointsToAnalysisMultiThreaded.<Boolean> makeConcurrentIntMap());
     }
 
+    /**
+     * Create a new, empty, thread-safe set to hold the instance keys in a points-to set. The representation is chosen
+     * by {@link #setUseOffHeapSets(boolean)} and {@link #setUseBitSetPointsToSets(boolean)}, in that order.
+     *
+     * @return new empty set of ints
+     */
+    public static MutableIntSet makeConcurrentPointsToSet() {
+        OffHeapArena arena = offHeapArena;
+        if (arena != null) {
+            return new OffHeapIntSet(arena);
+        }
+        if (useBitSetPointsToSets) {
+            return new ConcurrentMonotonicIntBitSet();
+        }
+        return makeConcurrentIntSet();
+    }
+
     public static <T> ConcurrentIntMap<T> makeConcurrentIntMap() {
         return new ConcurrentMonotonicIntHashMap<>(AnalysisUtil.numThreads);
     }
@@ -525,4 +661,72 @@ public class PointsToAnalysisMultiThreaded extends PointsToAnalysis {
         paranoidMode = reprocessAllStatements;
     }
 
+    /**
+     * Set the representation of points-to sets. Bit sets use less memory when the instance keys are densely numbered,
+     * and allow subset propagation to be done a word at a time.
+     *
+     * @param useBitSets if true then points-to sets are bit sets, otherwise they are hash sets
+     */
+    public static void setUseBitSetPointsToSets(boolean useBitSets) {
+        useBitSetPointsToSets = useBitSets;
+    }
+
+    /**
+     * Set whether the int sets created by {@link #makeConcurrentIntSet()} and {@link #makeConcurrentPointsToSet()}
+     * (i.e., points-to sets, the subset relations and call graph targets) store their elements outside the Java heap
+     * while the multi-threaded analysis solves a graph, so that the garbage collector does not need to trace them. The
+     * sets are replaced by compact on-heap sets or dropped when the points-to graph is finished, and the direct memory
+     * of the solve is released. The amount of memory is limited by the -XX:MaxDirectMemorySize JVM option.
+     *
+     * @param offHeap if true then sets are stored in direct memory
+     */
+    public static void setUseOffHeapSets(boolean offHeap) {
+        useOffHeapSets = offHeap;
+    }
+
+    /**
+     * Set the way (statement, context) pairs are scheduled. The batched scheduler uses a fixed set of worker threads,
+     * each with its own deque of pending statements, and merges the deltas of pending runs of the same statement.
+     *
+     * @param batched if true then use a {@link BatchedWorklistScheduler}, otherwise use one ForkJoinTask per
+     *            (statement, context) pair
+     */
+    public static void setUseBatchedScheduler(boolean batched) {
+        useBatchedScheduler = batched;
+    }
+
+    /**
+     * Set whether the deltas of repeated submissions of a (statement, context) pair are merged. If set, a submission
+     * for a pair that already has a run that hasn't started is combined into the delta of that run, rather than
+     * scheduling another run.
+     *
+     * @param coalesce if true then merge the deltas of pending runs of the same (statement, context) pair
+     */
+    public static void setCoalesceDeltas(boolean coalesce) {
+        coalesceDeltas = coalesce;
+    }
+
+    /**
+     * Set whether points-to graphs record what each (statement, context) pair did to them, so that a snapshot of the
+     * graph (see {@link PointsToGraphSnapshot}) can be used to resume the analysis after the program changes. This
+     * keeps the subset edges and read dependencies a second time.
+     *
+     * @param record if true then record the {@link Derivations} of the graph
+     */
+    public static void setRecordDerivations(boolean record) {
+        recordDerivations = record;
+    }
+
+    /**
+     * Set a snapshot to resume the analysis from. The facts in the snapshot that may depend on statements that have
+     * been removed or changed since it was written are retracted, the rest are restored, and only the (statement,
+     * context) pairs affected by the change are processed, see {@link IncrementalResume}.
+     *
+     * @param snapshot snapshot written with derivations for a graph computed with a recording heap abstraction
+     *            factory, or null to solve from scratch
+     */
+    public static void setResumeFrom(PointsToGraphSnapshot snapshot) {
+        resumeFrom = snapshot;
+    }
+
 }
@@ -57,6 +57,17 @@ public class PointsToAnalysisSingleThreaded extends PointsToAnalysis {
      */
     private IntMap<Set<StmtAndContext>> interestingDepedencies = new SparseIntMap<>();
 
+    /**
+     * If true then statements triggered by a change to a points-to set are processed in an approximate topological
+     * order of the subset graph, see {@link TopologicalWorklist}
+     */
+    private static boolean useTopologicalWorklist = false;
+
+    /**
+     * Worklist ordered by the subset graph, null unless {@link #useTopologicalWorklist} is set
+     */
+    private TopologicalWorklist topologicalWorklist;
+
     /**
      * New pointer analysis engine
      *
@@ -121,6 +132,7 @@ public class PointsToAnalysisSingleThreaded extends PointsToAnalysis {
         Queue<OrderedPair<StmtAndContext, GraphDelta>> nextQueue = Collections.asLifoQueue(new ArrayDeque<OrderedPair<StmtAndContext, GraphDelta>>());
         //Queue<StmtAndContext> noDeltaQueue = new SCCSortQueue();
         final Queue<StmtAndContext> noDeltaQueue = new PartitionedQueue();
+        this.topologicalWorklist = useTopologicalWorklist ? new TopologicalWorklist() : null;
         //        Queue<StmtAndContext> noDeltaQueue = Collections.asLifoQueue(new ArrayDeque<StmtAndContext>());
 
         DependencyRecorder depRecorder = new DependencyRecorder() {
@@ -157,6 +169,13 @@ public class PointsToAnalysisSingleThreaded extends PointsToAnalysis {
                 }
             }
 
+            @Override
+            public void recordSubsetEdge(int source, int target) {
+                if (PointsToAnalysisSingleThreaded.this.topologicalWorklist != null) {
+                    PointsToAnalysisSingleThreaded.this.topologicalWorklist.recordSubsetEdge(source, target);
+                }
+            }
+
             private void updateLineCounter(IMethod m) {
                 if (printed.add(m)) {
                     if (!m.isNative() && m instanceof IBytecodeMethod && !AnalysisUtil.hasSignature(m)) {
@@ -199,38 +218,61 @@ public class PointsToAnalysisSingleThreaded extends PointsToAnalysis {
         };
 
         PointsToGraph g = new PointsToGraph(registrar, this.haf, depRecorder);
-        // Add initial contexts
-        for (IMethod m : registrar.getInitialContextMethods()) {
-            for (PointsToStatement s : registrar.getStatementsForMethod(m)) {
-                for (Context c : g.getContexts(s.getMethod())) {
-                    StmtAndContext sac = new StmtAndContext(s, c);
-                    noDeltaQueue.add(sac);
+        SolverMetrics metrics = SolverMetrics.getInstance();
+        if (metrics != null) {
+            metrics.start("singleThreaded", new SolverMetrics.QueueDepth() {
+                @Override
+                public long queueDepth() {
+                    return PointsToAnalysisSingleThreaded.this.queueDepth;
                 }
-            }
+            }, g);
         }
-
         this.lastTime = this.startTime;
         Set<StmtAndContext> visited = new HashSet<>();
-        while (!currentQueue.isEmpty() || !nextQueue.isEmpty() || !noDeltaQueue.isEmpty()) {
-            if (currentQueue.isEmpty()) {
-                Queue<OrderedPair<StmtAndContext, GraphDelta>> t = nextQueue;
-                nextQueue = currentQueue;
-                currentQueue = t;
+        try {
+            // Add initial contexts
+            for (IMethod m : registrar.getInitialContextMethods()) {
+                for (PointsToStatement s : registrar.getStatementsForMethod(m)) {
+                    for (Context c : g.getContexts(s.getMethod())) {
+                        StmtAndContext sac = new StmtAndContext(s, c);
+                        noDeltaQueue.add(sac);
+                    }
+                }
             }
-            StmtAndContext sac;
-            GraphDelta delta;
-            if (currentQueue.isEmpty()) {
-                sac = noDeltaQueue.poll();
-                delta = null;
+
+            while (!currentQueue.isEmpty() || !nextQueue.isEmpty() || !noDeltaQueue.isEmpty()
+                    || this.topologicalWorklist != null && !this.topologicalWorklist.isEmpty()) {
+                if (this.topologicalWorklist != null && !this.topologicalWorklist.isEmpty()) {
+                    // Statements with deltas are never added to the LIFO queues in this mode
+                    this.topologicalWorklist.maybeRefresh(g);
+                    OrderedPair<StmtAndContext, GraphDelta> sacd = this.topologicalWorklist.poll();
+                    this.processSaC(sacd.fst(), sacd.snd(), g, registrar, currentQueue, nextQueue, noDeltaQueue);
+                    continue;
+                }
+                if (currentQueue.isEmpty()) {
+                    Queue<OrderedPair<StmtAndContext, GraphDelta>> t = nextQueue;
+                    nextQueue = currentQueue;
+                    currentQueue = t;
+                }
+                StmtAndContext sac;
+                GraphDelta delta;
+                if (currentQueue.isEmpty()) {
+                    sac = noDeltaQueue.poll();
+                    delta = null;
+                }
+                else {
+                    OrderedPair<StmtAndContext, GraphDelta> sacd = currentQueue.poll();
+                    sac = sacd.fst();
+                    delta = sacd.snd();
+                }
+                this.processSaC(sac, delta, g, registrar, currentQueue, nextQueue, noDeltaQueue);
             }
-            else {
-                OrderedPair<StmtAndContext, GraphDelta> sacd = currentQueue.poll();
-                sac = sacd.fst();
-                delta = sacd.snd();
+        }
+        finally {
+            if (metrics != null) {
+                metrics.finish();
             }
-            this.processSaC(sac, delta, g, registrar, currentQueue, nextQueue, noDeltaQueue);
         }
-
         long endTime = System.currentTimeMillis();
         System.err.println("Processed " + this.numProcessed
                            + " (statement, context) pairs"
@@ -252,6 +294,10 @@ public class PointsToAnalysisSingleThreaded extends PointsToAnalysis {
                 + (this.numProcessed - this.numNoDeltaProcessed));
         System.err.println("   Cycles removed " + g.cycleRemovalCount()
                            + " nodes");
+        System.err.println("   Set propagations " + g.propagationCount());
+        if (this.topologicalWorklist != null) {
+            this.topologicalWorklist.printStatistics();
+        }
 
         System.err.println("  counts: ");
         for (String key : this.counts.keySet()) {
@@ -303,6 +349,23 @@ public class PointsToAnalysisSingleThreaded extends PointsToAnalysis {
         return g;
     }
 
+    /**
+     * Set the order in which statements triggered by a change to a points-to set are processed. The default is LIFO.
+     *
+     * @param topological if true then use a {@link TopologicalWorklist}, which processes statements in an approximate
+     *            topological order of the subset graph
+     */
+    public static void setUseTopologicalWorklist(boolean topological) {
+        useTopologicalWorklist = topological;
+    }
+
+    /**
+     * Number of (statement, context) pairs processed by this analysis so far
+     */
+    public int getNumProcessed() {
+        return this.numProcessed;
+    }
+
     int numProcessed = 0;
     int lastNumProcessed = 0;
     int numNoDeltaProcessed = 0;
@@ -314,6 +377,10 @@ public class PointsToAnalysisSingleThreaded extends PointsToAnalysis {
     long lastTime;
     long startTime;
     Map<String, Map<StmtAndContext, Integer>> counts = new HashMap<>();
+    /**
+     * Number of (statement, context) pairs waiting to be processed, only kept up to date if solver metrics are on
+     */
+    volatile long queueDepth = 0;
 
     private void processSaC(StmtAndContext sac, GraphDelta delta, PointsToGraph g, StatementRegistrar registrar,
                             Queue<OrderedPair<StmtAndContext, GraphDelta>> currentQueue,
@@ -344,12 +411,21 @@ public class PointsToAnalysisSingleThreaded extends PointsToAnalysis {
         if (outputLevel >= 3) {
             System.err.println("\tPROCESSING: " + sac);
         }
+        SolverMetrics metrics = SolverMetrics.getInstance();
+        long start = metrics == null ? 0 : System.nanoTime();
         GraphDelta changed = s.process(c, this.haf, g, delta, registrar, sac);
+        if (metrics != null) {
+            metrics.recordStatement(s, System.nanoTime() - start, changed);
+        }
 
         if (changed.isEmpty()) {
             this.processedWithNoChange++;
         }
-        this.handleChanges(nextQueue, changed);
+        this.handleChanges(nextQueue, changed, metrics);
+        if (metrics != null) {
+            this.queueDepth = currentQueue.size() + nextQueue.size() + noDeltaQueue.size()
+                    + (this.topologicalWorklist == null ? 0 : this.topologicalWorklist.size());
+        }
 
         long currTime = System.currentTimeMillis();
         if (currTime > this.nextMilestone) {
@@ -363,6 +439,7 @@ public class PointsToAnalysisSingleThreaded extends PointsToAnalysis {
  + g.cycleRemovalCount()
                     + " nodes ; queue=" + currentQueue.size() + "nextQueue=" + nextQueue.size() + "noDeltaQueue="
                     + noDeltaQueue.size()
+                    + (this.topologicalWorklist != null ? " topologicalWorklist=" + this.topologicalWorklist.size() : "")
                     + " ("
                     + (this.numProcessed - this.lastNumProcessed) + " in "
                     + (currTime - this.lastTime) / 1000 + "s)");
@@ -373,15 +450,25 @@ public class PointsToAnalysisSingleThreaded extends PointsToAnalysis {
         }
     }
 
-    private void handleChanges(Queue<OrderedPair<StmtAndContext, GraphDelta>> queue, GraphDelta changes) {
+    private void handleChanges(Queue<OrderedPair<StmtAndContext, GraphDelta>> queue, GraphDelta changes,
+                               SolverMetrics metrics) {
         if (changes.isEmpty()) {
             return;
         }
         IntIterator iter = changes.domainIterator();
         while (iter.hasNext()) {
             int n = iter.next();
-            for (StmtAndContext sac : this.getInterestingDependencies(n)) {
-                queue.add(new OrderedPair<>(sac, changes));
+            Set<StmtAndContext> deps = this.getInterestingDependencies(n);
+            if (metrics != null) {
+                metrics.recordFanOut(deps.size());
+            }
+            for (StmtAndContext sac : deps) {
+                if (this.topologicalWorklist != null) {
+                    this.topologicalWorklist.add(sac, changes, n);
+                }
+                else {
+                    queue.add(new OrderedPair<>(sac, changes));
+                }
             }
         }
 
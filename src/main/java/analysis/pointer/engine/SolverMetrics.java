@@ -0,0 +1,489 @@
+package analysis.pointer.engine;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import util.Histogram;
+import util.intmap.IntMap;
+import analysis.AnalysisUtil;
+import analysis.pointer.graph.GraphDelta;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.statements.PointsToStatement;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.MutableIntSet;
+
+/**
+ * Counters describing the progress of a points-to analysis while it runs: statements processed per kind of statement,
+ * sizes of the changes they produce, the number of statements waiting to be processed, how many statements each change
+ * triggers, and the time spent computing contexts for calls.
+ * <p>
+ * The counters are registered as a JMX MXBean (see {@link SolverMetricsMXBean}) while an analysis runs, and can also be
+ * written to a file every few seconds, one JSON object per line. Metrics are off unless {@link #enable(File)} has been
+ * called; while they are off {@link #getInstance()} returns null and the engines skip all the counting.
+ */
+public class SolverMetrics implements SolverMetricsMXBean {
+
+    /**
+     * Name the metrics are registered under in the platform MBean server
+     */
+    private static final String OBJECT_NAME = "analysis.pointer.engine:type=SolverMetrics";
+
+    /**
+     * Seconds between lines of the JSON lines file
+     */
+    private static final int SAMPLE_INTERVAL_SECONDS = 10;
+
+    /**
+     * Metrics for the analysis, null if metrics are off
+     */
+    private static SolverMetrics instance = null;
+
+    /**
+     * Number of statements waiting to be processed by an engine
+     */
+    interface QueueDepth {
+        long queueDepth();
+    }
+
+    /**
+     * Counters for one kind of statement
+     */
+    private static final class StatementCounters {
+        final AtomicLong processed = new AtomicLong(0);
+        final AtomicLong nanos = new AtomicLong(0);
+        /**
+         * Number processed when the last line of the JSON file was written, only used by the sampling thread
+         */
+        long lastSampled = 0;
+    }
+
+    /**
+     * File to write JSON lines to, or null
+     */
+    private final File jsonLinesFile;
+
+    private final ConcurrentMap<String, StatementCounters> byKind = AnalysisUtil.createConcurrentHashMap();
+    private final AtomicLong processed = new AtomicLong(0);
+    private final AtomicLong deltaPairs = new AtomicLong(0);
+    private final AtomicLong deltas = new AtomicLong(0);
+    private final AtomicLong merges = new AtomicLong(0);
+    private final AtomicLong mergeNanos = new AtomicLong(0);
+    // Replaced when an analysis starts
+    private volatile PerThreadHistogram deltaSizes = new PerThreadHistogram();
+    private volatile PerThreadHistogram fanOut = new PerThreadHistogram();
+
+    // Set when an analysis starts
+    private volatile String engine = "none";
+    private volatile long startTime = System.currentTimeMillis();
+    private volatile QueueDepth queue;
+    private volatile PointsToGraph g;
+
+    private Timer sampler;
+    private PrintWriter jsonOut;
+    /**
+     * Number processed when the last line of the JSON file was written
+     */
+    private long lastSampledProcessed = 0;
+    private long lastSampleTime = 0;
+
+    private SolverMetrics(File jsonLinesFile) {
+        this.jsonLinesFile = jsonLinesFile;
+    }
+
+    /**
+     * Turn on metrics for points-to analyses started after this call
+     *
+     * @param jsonLinesFile if non-null then the metrics are written to this file every few seconds, as one JSON object
+     *            per line
+     */
+    public static void enable(File jsonLinesFile) {
+        instance = new SolverMetrics(jsonLinesFile);
+    }
+
+    /**
+     * Get the metrics to update, or null if metrics are off
+     */
+    public static SolverMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Reset the counters, register the MXBean and start writing the JSON lines file (if any)
+     *
+     * @param engineName name of the engine
+     * @param queueDepth number of statements waiting to be processed
+     * @param graph points-to graph being computed
+     */
+    synchronized void start(String engineName, QueueDepth queueDepth, PointsToGraph graph) {
+        this.engine = engineName;
+        this.queue = queueDepth;
+        this.g = graph;
+        this.startTime = System.currentTimeMillis();
+        this.lastSampleTime = this.startTime;
+        this.lastSampledProcessed = 0;
+        this.byKind.clear();
+        this.processed.set(0);
+        this.deltaPairs.set(0);
+        this.deltas.set(0);
+        this.merges.set(0);
+        this.mergeNanos.set(0);
+        this.deltaSizes = new PerThreadHistogram();
+        this.fanOut = new PerThreadHistogram();
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        }
+        catch (JMException e) {
+            System.err.println("Could not register solver metrics with JMX: " + e);
+        }
+
+        if (this.jsonLinesFile != null) {
+            try {
+                // append, so that the lines of several analyses in one run are kept
+                this.jsonOut = new PrintWriter(new BufferedWriter(new FileWriter(this.jsonLinesFile, true)));
+            }
+            catch (IOException e) {
+                System.err.println("Could not open " + this.jsonLinesFile + " for solver metrics: " + e);
+                return;
+            }
+            this.sampler = new Timer("solver-metrics", true);
+            this.sampler.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    writeLine(false);
+                }
+            }, SAMPLE_INTERVAL_SECONDS * 1000L, SAMPLE_INTERVAL_SECONDS * 1000L);
+        }
+    }
+
+    /**
+     * Write a final line (including the sizes of the points-to sets), stop sampling and unregister the MXBean. Must be
+     * called before the points-to graph is finished.
+     */
+    synchronized void finish() {
+        if (this.sampler != null) {
+            this.sampler.cancel();
+            this.sampler = null;
+        }
+        if (this.jsonOut != null) {
+            writeLine(true);
+            this.jsonOut.close();
+            this.jsonOut = null;
+        }
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+        catch (JMException e) {
+            System.err.println("Could not unregister solver metrics from JMX: " + e);
+        }
+        this.queue = null;
+        this.g = null;
+    }
+
+    /**
+     * Record that a statement was processed
+     *
+     * @param stmt statement that was processed
+     * @param nanos time taken to process it
+     * @param changes changes to the points-to graph made by processing it
+     */
+    void recordStatement(PointsToStatement stmt, long nanos, GraphDelta changes) {
+        this.processed.incrementAndGet();
+        String kind = stmt.getClass().getSimpleName();
+        StatementCounters c = this.byKind.get(kind);
+        if (c == null) {
+            c = new StatementCounters();
+            StatementCounters existing = this.byKind.putIfAbsent(kind, c);
+            if (existing != null) {
+                c = existing;
+            }
+        }
+        c.processed.incrementAndGet();
+        c.nanos.addAndGet(nanos);
+
+        if (!changes.isEmpty()) {
+            int size = changes.size();
+            this.deltas.incrementAndGet();
+            this.deltaPairs.addAndGet(size);
+            this.deltaSizes.record(size);
+        }
+    }
+
+    /**
+     * Record the number of statements triggered by a change to one node
+     */
+    void recordFanOut(int numDependents) {
+        this.fanOut.record(numDependents);
+    }
+
+    /**
+     * Record the time taken to compute the context for a call
+     *
+     * @param nanos time taken by the heap abstraction factory
+     */
+    public void recordMerge(long nanos) {
+        this.merges.incrementAndGet();
+        this.mergeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Write one line of JSON to the file
+     *
+     * @param last whether this is the last line for the analysis, which also includes the sizes of the points-to sets
+     */
+    synchronized void writeLine(boolean last) {
+        if (this.jsonOut == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        double intervalSeconds = Math.max(now - this.lastSampleTime, 1) / 1000.0;
+        long processedNow = this.processed.get();
+
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"engine\": \"" + this.engine + "\"");
+        sb.append(", \"time\": " + now);
+        sb.append(", \"elapsedSeconds\": " + (now - this.startTime) / 1000);
+        sb.append(", \"final\": " + last);
+        sb.append(", \"processed\": " + processedNow);
+        sb.append(", \"processedPerSecond\": " + Math.round((processedNow - this.lastSampledProcessed)
+                / intervalSeconds));
+        sb.append(", \"queueDepth\": " + getQueueDepth());
+        sb.append(", \"byKind\": {");
+        boolean first = true;
+        for (Map.Entry<String, StatementCounters> e : new TreeMap<>(this.byKind).entrySet()) {
+            StatementCounters c = e.getValue();
+            long p = c.processed.get();
+            sb.append(first ? "" : ", ");
+            sb.append("\"" + e.getKey() + "\": {\"processed\": " + p + ", \"perSecond\": "
+                    + Math.round((p - c.lastSampled) / intervalSeconds) + ", \"millis\": " + c.nanos.get() / 1000000
+                    + "}");
+            c.lastSampled = p;
+            first = false;
+        }
+        sb.append("}");
+        sb.append(", \"meanDeltaSize\": " + getMeanDeltaSize());
+        sb.append(", \"deltaSizes\": " + this.deltaSizes.sum().toJSON());
+        sb.append(", \"fanOut\": " + this.fanOut.sum().toJSON());
+        sb.append(", \"contextMerges\": " + this.merges.get());
+        sb.append(", \"contextMergeMillis\": " + this.mergeNanos.get() / 1000000);
+        if (last) {
+            appendPointsToSetShape(sb);
+        }
+        sb.append("}");
+
+        this.jsonOut.println(sb);
+        this.jsonOut.flush();
+        this.lastSampleTime = now;
+        this.lastSampledProcessed = processedNow;
+    }
+
+    /**
+     * Histogram that several threads record into without locking. Each thread records into a histogram of its own,
+     * and the histograms of all the threads are added up when the histogram is read. A read may miss the most recent
+     * records of threads that are still running.
+     */
+    private static final class PerThreadHistogram {
+        final Queue<Histogram> histograms = new ConcurrentLinkedQueue<>();
+        final ThreadLocal<Histogram> local = new ThreadLocal<Histogram>() {
+            @Override
+            protected Histogram initialValue() {
+                Histogram h = new Histogram();
+                PerThreadHistogram.this.histograms.add(h);
+                return h;
+            }
+        };
+
+        void record(int x) {
+            this.local.get().record(x);
+        }
+
+        /**
+         * Sum of the histograms of all the threads
+         */
+        Histogram sum() {
+            Histogram total = new Histogram();
+            for (Histogram h : this.histograms) {
+                total.addAll(h);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Append the sizes of the points-to sets, the gaps between consecutive instance key ids in each set, and the
+     * largest instance key id. These are the distributions the benchmarks in src/jmh use to build realistic sets.
+     */
+    private void appendPointsToSetShape(StringBuilder sb) {
+        PointsToGraph graph = this.g;
+        if (graph == null) {
+            sb.append(", \"pointsToSetSizes\": null, \"pointsToSetIdGaps\": null, \"maxInstanceKey\": -1");
+            return;
+        }
+        Histogram sizes = new Histogram();
+        Histogram gaps = new Histogram();
+        int maxInstanceKey = -1;
+        IntMap<MutableIntSet> pointsTo = graph.getPointsToGraph();
+        IntIterator iter = pointsTo.keyIterator();
+        while (iter.hasNext()) {
+            int n = iter.next();
+            if (graph.isCollapsedNode(n)) {
+                continue;
+            }
+            MutableIntSet s = pointsTo.get(n);
+            if (s == null) {
+                // collapsed since the check
+                continue;
+            }
+            int[] elements = new int[s.size()];
+            int size = 0;
+            IntIterator elemIter = s.intIterator();
+            while (elemIter.hasNext() && size < elements.length) {
+                elements[size++] = elemIter.next();
+            }
+            sizes.record(size);
+            Arrays.sort(elements, 0, size);
+            for (int i = 1; i < size; i++) {
+                gaps.record(elements[i] - elements[i - 1]);
+            }
+            if (size > 0) {
+                maxInstanceKey = Math.max(maxInstanceKey, elements[size - 1]);
+            }
+        }
+        sb.append(", \"pointsToSetSizes\": " + sizes.toJSON());
+        sb.append(", \"pointsToSetIdGaps\": " + gaps.toJSON());
+        sb.append(", \"maxInstanceKey\": " + maxInstanceKey);
+    }
+
+    /**
+     * Histogram of the sizes of the points-to sets of the graph being computed, or null if no analysis is running
+     */
+    private Histogram pointsToSetSizes() {
+        PointsToGraph graph = this.g;
+        if (graph == null) {
+            return null;
+        }
+        Histogram h = new Histogram();
+        IntMap<MutableIntSet> pointsTo = graph.getPointsToGraph();
+        IntIterator iter = pointsTo.keyIterator();
+        while (iter.hasNext()) {
+            int n = iter.next();
+            if (graph.isCollapsedNode(n)) {
+                continue;
+            }
+            MutableIntSet s = pointsTo.get(n);
+            if (s != null) {
+                // null if n was collapsed since the check
+                h.record(s.size());
+            }
+        }
+        return h;
+    }
+
+    /*
+     * MXBean methods
+     */
+
+    @Override
+    public String getEngine() {
+        return this.engine;
+    }
+
+    @Override
+    public long getElapsedSeconds() {
+        return (System.currentTimeMillis() - this.startTime) / 1000;
+    }
+
+    @Override
+    public long getStatementsProcessed() {
+        return this.processed.get();
+    }
+
+    @Override
+    public double getStatementsPerSecond() {
+        return this.processed.get() * 1000.0 / Math.max(System.currentTimeMillis() - this.startTime, 1);
+    }
+
+    @Override
+    public Map<String, Long> getStatementsProcessedByKind() {
+        Map<String, Long> m = new HashMap<>();
+        for (Map.Entry<String, StatementCounters> e : this.byKind.entrySet()) {
+            m.put(e.getKey(), e.getValue().processed.get());
+        }
+        return m;
+    }
+
+    @Override
+    public Map<String, Long> getProcessingMillisByKind() {
+        Map<String, Long> m = new HashMap<>();
+        for (Map.Entry<String, StatementCounters> e : this.byKind.entrySet()) {
+            m.put(e.getKey(), e.getValue().nanos.get() / 1000000);
+        }
+        return m;
+    }
+
+    @Override
+    public long getQueueDepth() {
+        QueueDepth q = this.queue;
+        return q == null ? 0 : q.queueDepth();
+    }
+
+    @Override
+    public double getMeanDeltaSize() {
+        long n = this.deltas.get();
+        return n == 0 ? 0 : (double) this.deltaPairs.get() / n;
+    }
+
+    @Override
+    public String getDeltaSizeHistogram() {
+        return this.deltaSizes.sum().toString();
+    }
+
+    @Override
+    public String getDependencyFanOutHistogram() {
+        return this.fanOut.sum().toString();
+    }
+
+    @Override
+    public String getPointsToSetSizeHistogram() {
+        Histogram h = pointsToSetSizes();
+        return h == null ? "" : h.toString();
+    }
+
+    @Override
+    public long getContextMerges() {
+        return this.merges.get();
+    }
+
+    @Override
+    public long getContextMergeMillis() {
+        return this.mergeNanos.get() / 1000000;
+    }
+}
@@ -0,0 +1,75 @@
+package analysis.pointer.engine;
+
+import java.util.Map;
+
+/**
+ * Progress and throughput of a running points-to analysis, exposed through JMX, see {@link SolverMetrics}
+ */
+public interface SolverMetricsMXBean {
+
+    /**
+     * Name of the engine that is running
+     */
+    String getEngine();
+
+    /**
+     * Seconds since the analysis started
+     */
+    long getElapsedSeconds();
+
+    /**
+     * Number of (statement, context) pairs processed so far
+     */
+    long getStatementsProcessed();
+
+    /**
+     * Average number of (statement, context) pairs processed per second since the analysis started
+     */
+    double getStatementsPerSecond();
+
+    /**
+     * Number of (statement, context) pairs processed so far, for each kind of statement
+     */
+    Map<String, Long> getStatementsProcessedByKind();
+
+    /**
+     * Time (in milliseconds, summed over all threads) spent processing each kind of statement
+     */
+    Map<String, Long> getProcessingMillisByKind();
+
+    /**
+     * Number of (statement, context) pairs waiting to be processed
+     */
+    long getQueueDepth();
+
+    /**
+     * Average number of (node, instance key) pairs in the changes produced by a statement
+     */
+    double getMeanDeltaSize();
+
+    /**
+     * Histogram of the number of (node, instance key) pairs in the changes produced by a statement
+     */
+    String getDeltaSizeHistogram();
+
+    /**
+     * Histogram of the number of statements triggered by a change to one points-to graph node
+     */
+    String getDependencyFanOutHistogram();
+
+    /**
+     * Histogram of the sizes of the points-to sets, computed when called (which takes time proportional to the size of
+     * the points-to graph)
+     */
+    String getPointsToSetSizeHistogram();
+
+    /**
+     * Number of contexts computed by the heap abstraction factory for calls
+     */
+    long getContextMerges();
+
+    /**
+     * Time (in milliseconds, summed over all threads) spent computing contexts for calls
+     */
+    long getContextMergeMillis();
+}
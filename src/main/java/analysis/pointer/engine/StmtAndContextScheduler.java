@@ -0,0 +1,109 @@
+package analysis.pointer.engine;
+
+import java.util.Set;
+
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+import analysis.pointer.graph.GraphDelta;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.registrar.StatementRegistrar;
+
+/**
+ * Schedules (statement, context) pairs to be processed by the multi-threaded points-to analysis, and detects when
+ * there is nothing left to process.
+ */
+abstract class StmtAndContextScheduler {
+    public PointsToGraph g;
+    public StatementRegistrar registrar;
+
+    /**
+     * Table used to merge the deltas of repeated submissions of a (statement, context) pair whose run has not started,
+     * null if deltas are not merged.
+     */
+    protected final PendingDeltaTable pendingDeltas;
+
+    /**
+     * @param coalesceDeltas if true then a submission of a (statement, context) pair that already has a pending run
+     *            is merged into that run
+     */
+    StmtAndContextScheduler(boolean coalesceDeltas) {
+        this.pendingDeltas = coalesceDeltas ? new PendingDeltaTable() : null;
+    }
+
+    public void setGraphAndRegistrar(PointsToGraph g, StatementRegistrar registrar) {
+        this.g = g;
+        this.registrar = registrar;
+    }
+
+    /**
+     * Schedule sac to be processed without a delta, i.e., it will read the entire points-to sets it depends on.
+     *
+     * @param sac statement and context to process
+     */
+    public void submitTask(StmtAndContext sac) {
+        submitTask(sac, null);
+    }
+
+    /**
+     * Schedule sac to be processed with the given delta
+     *
+     * @param sac statement and context to process
+     * @param delta changes to the points-to graph that sac should process, null if sac should read entire points-to
+     *            sets
+     */
+    public abstract void submitTask(StmtAndContext sac, GraphDelta delta);
+
+    /**
+     * Schedule sac to be processed with the given delta, which includes a change to the points-to set of changedNode.
+     * Schedulers may use the node to decide the order in which to process statements.
+     *
+     * @param sac statement and context to process
+     * @param delta changes to the points-to graph that sac should process
+     * @param changedNode points-to graph node whose change caused sac to be scheduled
+     */
+    public void submitTask(StmtAndContext sac, GraphDelta delta, /*PointsToGraphNode*/int changedNode) {
+        submitTask(sac, delta);
+    }
+
+    /**
+     * Schedule all of the sacs to be processed with the given delta
+     *
+     * @param sacs statements and contexts to process
+     * @param delta changes to the points-to graph that the sacs should process
+     */
+    public abstract void submitTask(Set<StmtAndContext> sacs, GraphDelta delta);
+
+    /**
+     * Are there statements that have been scheduled but not finished processing?
+     */
+    public abstract boolean containsPending();
+
+    /**
+     * Approximate number of statements that have been scheduled but not finished processing
+     */
+    public abstract long numPendingTasks();
+
+    /**
+     * Block until there are (probably) no pending statements. Callers should check {@link #containsPending()}
+     * afterwards.
+     */
+    public abstract void waitUntilAllFinished();
+
+    /**
+     * Stop all threads used by this scheduler. Should only be called once there are no pending statements.
+     */
+    public abstract void shutdownAndAwaitTermination();
+
+    /**
+     * Print statistics about the tasks run by this scheduler to standard error.
+     */
+    public abstract void printStatistics();
+
+    /**
+     * Print the number of submissions that were merged into pending runs, if deltas are coalesced
+     */
+    protected void printCoalescingStatistics() {
+        if (this.pendingDeltas != null) {
+            System.err.println("   Num tasks coalesced    : " + this.pendingDeltas.coalescedCount());
+        }
+    }
+}
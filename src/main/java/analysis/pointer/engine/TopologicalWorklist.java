@@ -0,0 +1,174 @@
+package analysis.pointer.engine;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import util.OrderedPair;
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+import analysis.pointer.graph.GraphDelta;
+import analysis.pointer.graph.PointsToGraph;
+
+/**
+ * Worklist for the single-threaded points-to analysis that processes (statement, context) pairs in an approximate
+ * topological order of the subset graph (see {@link PointsToGraph#subsetGraphTopologicalOrder()}). A pair that was
+ * triggered by a change to node n is processed before one triggered by a change to a node later in the order, so
+ * changes are pushed through the subset graph in one sweep rather than propagating each set many times.
+ * <p>
+ * The order is kept up to date incrementally: when a subset edge from s to t is added and t is not after s, t is moved
+ * to just after s. Moving t can break the order for the successors of t, so once enough edges have been out of order
+ * the whole order is recomputed from the points-to graph.
+ * <p>
+ * Not thread-safe.
+ */
+class TopologicalWorklist {
+    /**
+     * Minimum number of out of order edges before the order is recomputed
+     */
+    private static final int MIN_REPAIRS_BEFORE_REFRESH = 1024;
+
+    /**
+     * Position of each points-to graph node in the order, lower numbers are processed first. Nodes not in the array
+     * are at position 0.
+     */
+    private int[] order = new int[1024];
+
+    /**
+     * Pending (statement, context) pairs with their deltas
+     */
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+
+    /**
+     * Used to process entries with the same priority in LIFO order
+     */
+    private long nextSequence = 0;
+
+    /**
+     * Number of edges that were out of order since the order was last recomputed
+     */
+    private int repairsSinceRefresh = 0;
+
+    // statistics
+    private long totalRepairs = 0;
+    private int numRefreshes = 0;
+    private long refreshTime = 0;
+
+    /**
+     * Add a (statement, context) pair that must be processed because the points-to set of a node changed
+     *
+     * @param sac (statement, context) pair to process
+     * @param delta changes to the points-to graph
+     * @param changedNode node whose points-to set changed
+     */
+    void add(StmtAndContext sac, GraphDelta delta, /*PointsToGraphNode*/int changedNode) {
+        this.queue.add(new Entry(sac, delta, this.position(changedNode), this.nextSequence++));
+    }
+
+    /**
+     * Remove the pair triggered by the earliest node in the order
+     *
+     * @return (statement, context) pair and the delta to process it with, or null if the worklist is empty
+     */
+    OrderedPair<StmtAndContext, GraphDelta> poll() {
+        Entry e = this.queue.poll();
+        if (e == null) {
+            return null;
+        }
+        return new OrderedPair<>(e.sac, e.delta);
+    }
+
+    boolean isEmpty() {
+        return this.queue.isEmpty();
+    }
+
+    int size() {
+        return this.queue.size();
+    }
+
+    /**
+     * Record that the points-to set of source is now a subset of the points-to set of target, and repair the order if
+     * needed
+     *
+     * @param source subset node
+     * @param target superset node
+     */
+    void recordSubsetEdge(/*PointsToGraphNode*/int source, /*PointsToGraphNode*/int target) {
+        int s = this.position(source);
+        if (this.position(target) > s) {
+            return;
+        }
+        if (target >= this.order.length) {
+            this.order = Arrays.copyOf(this.order, Math.max(2 * this.order.length, target + 1));
+        }
+        this.order[target] = s + 1;
+        this.repairsSinceRefresh++;
+        this.totalRepairs++;
+    }
+
+    /**
+     * Recompute the order from the subset graph if the incremental repairs have made it too approximate
+     *
+     * @param g points-to graph
+     */
+    void maybeRefresh(PointsToGraph g) {
+        if (!this.needsRefresh()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        this.refresh(g.subsetGraphTopologicalOrder());
+        this.refreshTime += System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Whether enough edges have been out of order since the last recomputation that the order should be recomputed
+     */
+    boolean needsRefresh() {
+        return this.repairsSinceRefresh >= Math.max(MIN_REPAIRS_BEFORE_REFRESH, this.order.length / 4);
+    }
+
+    /**
+     * Replace the order with a newly computed one
+     *
+     * @param newOrder position of each node, as computed by {@link PointsToGraph#subsetGraphTopologicalOrder()}
+     */
+    void refresh(int[] newOrder) {
+        // keep room for nodes created since the array was last grown
+        this.order = newOrder.length >= this.order.length ? newOrder : Arrays.copyOf(newOrder, this.order.length);
+        this.repairsSinceRefresh = 0;
+        this.numRefreshes++;
+    }
+
+    private int position(/*PointsToGraphNode*/int n) {
+        return n < this.order.length ? this.order[n] : 0;
+    }
+
+    /**
+     * Print the number of repairs and recomputations of the order to standard error
+     */
+    void printStatistics() {
+        System.err.println("   Topological order repairs " + this.totalRepairs + ", recomputed " + this.numRefreshes
+                + " times in " + this.refreshTime / 1000.0 + "s");
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final StmtAndContext sac;
+        final GraphDelta delta;
+        final int priority;
+        final long sequence;
+
+        Entry(StmtAndContext sac, GraphDelta delta, int priority, long sequence) {
+            this.sac = sac;
+            this.delta = delta;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            if (this.priority != o.priority) {
+                return this.priority < o.priority ? -1 : 1;
+            }
+            // most recent first
+            return this.sequence > o.sequence ? -1 : this.sequence == o.sequence ? 0 : 1;
+        }
+    }
+}
@@ -64,6 +64,13 @@ public class AnnotatedIntRelation<T> {
         return getOrCreateMap(n, true);
     }
 
+    /**
+     * Like {@link #forward(int)}, but returns null rather than creating a map if there are no pairs (n, b).
+     */
+    ConcurrentIntMap<Set<T>> forwardIfPresent(int n) {
+        return forwardReln.get(n);
+    }
+
     /**
      * Given n, return the set { a | (a,n) \in R } where R is this relation
      *
@@ -0,0 +1,211 @@
+package analysis.pointer.graph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import util.OrderedPair;
+import analysis.AnalysisUtil;
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * What each (statement, context) pair did to a points-to graph while the graph was computed: the graph nodes whose
+ * points-to sets it read, the nodes it added instance keys to, the subset edges it added, the callees it called and
+ * the class initializers it made reachable. Nodes are recorded as they were named by the statement, before they are
+ * replaced by the representatives of their cycles.
+ * <p>
+ * The derivations are saved with a snapshot of the graph (see {@link PointsToGraphSnapshot}), so that a later run can
+ * retract the facts that depend on statements that have been removed or changed, and resume the analysis from the
+ * rest of the graph (see {@link IncrementalResume}). Recording keeps every subset edge and read dependency a second
+ * time, so only record derivations when the graph is going to be saved.
+ */
+public final class Derivations {
+
+    /**
+     * Derivation of each (statement, context) pair that has been processed
+     */
+    private final ConcurrentMap<StmtAndContext, Derivation> derivations = AnalysisUtil.createConcurrentHashMap();
+    /**
+     * Derivation of the (statement, context) pair being processed by the current thread, null if the thread is not
+     * processing one (e.g., while a graph is being restored)
+     */
+    private final ThreadLocal<Derivation> current = new ThreadLocal<>();
+
+    /**
+     * Record that the current thread starts processing the given (statement, context) pair, changes the thread makes
+     * to the graph are recorded for the pair until {@link #finishProcessing()} is called
+     */
+    public void startProcessing(StmtAndContext sac) {
+        this.current.set(get(sac));
+    }
+
+    /**
+     * Record that the current thread has finished processing its (statement, context) pair
+     */
+    public void finishProcessing() {
+        this.current.remove();
+    }
+
+    /**
+     * Get the derivation of the given pair, creating an empty one if the pair has none yet
+     */
+    Derivation get(StmtAndContext sac) {
+        Derivation d = this.derivations.get(sac);
+        if (d == null) {
+            d = new Derivation();
+            Derivation existing = this.derivations.putIfAbsent(sac, d);
+            if (existing != null) {
+                d = existing;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Derivation of each (statement, context) pair that has been processed
+     */
+    Map<StmtAndContext, Derivation> getDerivations() {
+        return this.derivations;
+    }
+
+    void recordRead(/*PointsToGraphNode*/int node, StmtAndContext sac) {
+        get(sac).addRead(node);
+    }
+
+    void recordWrite(/*PointsToGraphNode*/int node) {
+        Derivation d = this.current.get();
+        if (d != null) {
+            d.addWrite(node);
+        }
+    }
+
+    void recordSubsetEdge(/*PointsToGraphNode*/int source, TypeFilter filter, /*PointsToGraphNode*/int target) {
+        Derivation d = this.current.get();
+        if (d != null) {
+            d.addEdge(new SubsetEdge(source, filter, target));
+        }
+    }
+
+    void recordCall(IMethod callee, Context calleeContext) {
+        Derivation d = this.current.get();
+        if (d != null) {
+            d.addCallee(new OrderedPair<>(callee, calleeContext));
+        }
+    }
+
+    void recordClassInitializers(List<IMethod> classInits) {
+        Derivation d = this.current.get();
+        if (d != null) {
+            d.addClassInitializers(classInits);
+        }
+    }
+
+    /**
+     * What one (statement, context) pair did to the graph. Several threads may process the same pair at once, so the
+     * sets are guarded by the derivation.
+     */
+    static final class Derivation {
+        private final MutableIntSet reads = MutableSparseIntSet.makeEmpty();
+        private final MutableIntSet writes = MutableSparseIntSet.makeEmpty();
+        private final Set<SubsetEdge> edges = new HashSet<>();
+        private final Set<OrderedPair<IMethod, Context>> callees = new HashSet<>();
+        private final Set<IMethod> classInitializers = new HashSet<>();
+
+        synchronized void addRead(/*PointsToGraphNode*/int node) {
+            this.reads.add(node);
+        }
+
+        synchronized void addWrite(/*PointsToGraphNode*/int node) {
+            this.writes.add(node);
+        }
+
+        synchronized void addEdge(SubsetEdge e) {
+            this.edges.add(e);
+        }
+
+        synchronized void addCallee(OrderedPair<IMethod, Context> callee) {
+            this.callees.add(callee);
+        }
+
+        synchronized void addClassInitializers(List<IMethod> classInits) {
+            this.classInitializers.addAll(classInits);
+        }
+
+        /**
+         * Add everything the other derivation did to this one
+         */
+        void addAll(Derivation other) {
+            IntSet otherReads = other.getReads();
+            IntSet otherWrites = other.getWrites();
+            List<SubsetEdge> otherEdges = other.getEdges();
+            List<OrderedPair<IMethod, Context>> otherCallees = other.getCallees();
+            List<IMethod> otherClassInits = other.getClassInitializers();
+            synchronized (this) {
+                this.reads.addAll(otherReads);
+                this.writes.addAll(otherWrites);
+                this.edges.addAll(otherEdges);
+                this.callees.addAll(otherCallees);
+                this.classInitializers.addAll(otherClassInits);
+            }
+        }
+
+        synchronized IntSet getReads() {
+            return MutableSparseIntSet.make(this.reads);
+        }
+
+        synchronized IntSet getWrites() {
+            return MutableSparseIntSet.make(this.writes);
+        }
+
+        synchronized List<SubsetEdge> getEdges() {
+            return new ArrayList<>(this.edges);
+        }
+
+        synchronized List<OrderedPair<IMethod, Context>> getCallees() {
+            return new ArrayList<>(this.callees);
+        }
+
+        synchronized List<IMethod> getClassInitializers() {
+            return new ArrayList<>(this.classInitializers);
+        }
+    }
+
+    /**
+     * Subset edge added to the graph, the filter is null for an unfiltered edge
+     */
+    static final class SubsetEdge {
+        final /*PointsToGraphNode*/int source;
+        final TypeFilter filter;
+        final /*PointsToGraphNode*/int target;
+
+        SubsetEdge(/*PointsToGraphNode*/int source, TypeFilter filter, /*PointsToGraphNode*/int target) {
+            this.source = source;
+            this.filter = filter;
+            this.target = target;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * this.source + this.target) + (this.filter == null ? 0 : this.filter.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SubsetEdge)) {
+                return false;
+            }
+            SubsetEdge other = (SubsetEdge) obj;
+            // Filters are memoized
+            return this.source == other.source && this.target == other.target && this.filter == other.filter;
+        }
+    }
+}
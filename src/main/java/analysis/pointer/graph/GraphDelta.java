@@ -58,7 +58,7 @@ public final class GraphDelta {
     }
 
     protected void collapseNodes(/*PointsToGraphNode*/int n, /*PointsToGraphNode*/int rep) {
-        if (!PointsToGraph.USE_CYCLE_COLLAPSING) {
+        if (!g.usesCycleCollapsing()) {
             throw new UnsupportedOperationException("We do not currently support cycle collapsing");
         }
         MutableIntSet old = delta.remove(n);
@@ -110,7 +110,10 @@ public final class GraphDelta {
     }
 
     public Iterator<InstanceKey> pointsToIterator(PointsToGraphNode node) {
-        int n = g.lookupDictionary(node);
+        return pointsToIterator(g.lookupDictionary(node));
+    }
+
+    public Iterator<InstanceKey> pointsToIterator(/*PointsToGraphNode*/int n) {
         assert n >= 0;
         return g.new IntToInstanceKeyIterator(pointsToIntIterator(n));
     }
@@ -159,5 +162,17 @@ public final class GraphDelta {
         return delta.keyIterator();
     }
 
+    /**
+     * Number of (node, instance key) pairs in this delta
+     */
+    public int size() {
+        int size = 0;
+        IntIterator iter = delta.keyIterator();
+        while (iter.hasNext()) {
+            size += delta.get(iter.next()).size();
+        }
+        return size;
+    }
+
 
 }
@@ -0,0 +1,578 @@
+package analysis.pointer.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import util.OrderedPair;
+import analysis.pointer.analyses.HeapAbstractionFactory;
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+import analysis.pointer.graph.Derivations.Derivation;
+import analysis.pointer.graph.Derivations.SubsetEdge;
+import analysis.pointer.registrar.StatementFingerprints;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.statements.CallStatement;
+import analysis.pointer.statements.PointsToStatement;
+
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * Resumes the points-to analysis from a snapshot of the graph computed for an earlier version of the program, written
+ * with the {@link Derivations} of that run (see {@link PointsToGraphSnapshot}). The statements of each method are
+ * compared with the statements the derivations were recorded for, by fingerprint (see {@link StatementFingerprints}),
+ * and the facts that may depend on statements that were removed or changed are retracted by over-deletion, as in the
+ * DRed (delete and rederive) algorithm:
+ * <ol>
+ * <li>A derivation is dropped if its statements changed (the method has a different number of statements with the
+ * fingerprint), or if its method, context, callees or type filters can no longer be found.</li>
+ * <li>The points-to set of a node is suspect if it contains an instance key that cannot be created again, or whose
+ * concrete type has a different {@link SnapshotKeys#hierarchyKey(IClass) hierarchy key} (dispatch and type filters
+ * may give different results for it).</li>
+ * <li>The nodes written by a dropped derivation, and the targets of its subset edges, are suspect. The derivations
+ * that read a suspect node are dropped, and the targets of the subset edges leaving a suspect node are suspect.</li>
+ * <li>A derivation is dropped if its method and context are no longer reachable from the initial contexts through the
+ * calls and class initializers of the derivations that are kept. Steps 3 and 4 are repeated until nothing changes.
+ * </li>
+ * </ol>
+ * {@link #restore(PointsToGraph)} then restores the points-to sets that are not suspect, and the calls, subset edges
+ * and read dependencies of the derivations that are kept, and returns the (statement, context) pairs the engine must
+ * process: the pairs that were not restored (new statements, and statements whose derivations were dropped) and the
+ * pairs that write a suspect node. Suspect sets are re-derived from the restored graph by processing these pairs, so
+ * the work done by the engine grows with the size of the change rather than the size of the program. Restoring the
+ * rest of the graph is a single pass over the snapshot.
+ * <p>
+ * Like {@link StatementFingerprints}, this assumes that two statements with the same fingerprint in the same method do
+ * the same thing, and that statements only read points-to sets through the methods of the graph that record reads.
+ */
+public final class IncrementalResume {
+
+    private final PointsToGraphSnapshot snapshot;
+    private final StatementRegistrar registrar;
+    private final HeapAbstractionFactory haf;
+    private final SnapshotDecoder decoder;
+
+    /**
+     * Derivations in the snapshot
+     */
+    private final List<OldDerivation> derivations = new ArrayList<>();
+    /**
+     * Graph node of the current run for each node in the snapshot that has been looked up, null if it cannot be
+     * created
+     */
+    private final Map<Integer, PointsToGraphNode> nodes = new HashMap<>();
+    /**
+     * Nodes of the snapshot whose points-to sets are not restored
+     */
+    private final MutableIntSet suspect = MutableSparseIntSet.makeEmpty();
+    private final Deque<Integer> suspectWorklist = new ArrayDeque<>();
+    /**
+     * Derivations that read each node of the snapshot
+     */
+    private final Map<Integer, List<OldDerivation>> readers = new HashMap<>();
+    /**
+     * Targets of the subset edges leaving each node of the snapshot
+     */
+    private final Map<Integer, MutableIntSet> edgeTargets = new HashMap<>();
+
+    private int numStale = 0;
+    private int numDropped = 0;
+    private int numUnreachable = 0;
+    private int numResubmitted = 0;
+
+    /**
+     * Compute which facts in the snapshot can be kept for the statements registered for the current run
+     *
+     * @param snapshot snapshot written with derivations, for a graph computed with a recording heap abstraction
+     *            factory
+     * @param registrar statements registered for the current run
+     * @param haf heap abstraction factory of the same kind as the one used to compute the graph
+     */
+    public IncrementalResume(PointsToGraphSnapshot snapshot, StatementRegistrar registrar,
+                             HeapAbstractionFactory haf) {
+        if (!snapshot.hasDerivations()) {
+            throw new IllegalArgumentException("The snapshot was written without derivations");
+        }
+        this.snapshot = snapshot;
+        this.registrar = registrar;
+        this.haf = haf;
+        this.decoder = new SnapshotDecoder(snapshot, registrar, haf);
+
+        readDerivations();
+        findSuspectInstanceKeys();
+        for (OldDerivation d : this.derivations) {
+            if (d.stale) {
+                drop(d);
+            }
+        }
+        do {
+            propagateSuspectNodes();
+        } while (dropUnreachable());
+    }
+
+    /**
+     * Read the derivations in the snapshot, dropping the ones that cannot be used in the current run
+     */
+    private void readDerivations() {
+        IMethod[] methods = new IMethod[this.snapshot.numDerivationMethods()];
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = SnapshotKeys.lookupMethod(this.snapshot.derivationMethodKey(i));
+        }
+        TypeFilter[] filters = new TypeFilter[this.snapshot.numDerivationFilters()];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = SnapshotKeys.lookupFilter(this.snapshot.derivationFilterKey(i));
+        }
+        Map<IMethod, Map<String, List<PointsToStatement>>> statements = new HashMap<>();
+
+        int pos = 0;
+        int length = this.snapshot.derivationsLength();
+        while (pos < length) {
+            OldDerivation d = new OldDerivation();
+            d.method = methods[this.snapshot.derivationInt(pos)];
+            String fingerprint = this.snapshot.derivationString(this.snapshot.derivationInt(pos + 1),
+                                                                this.snapshot.derivationInt(pos + 2));
+            int count = this.snapshot.derivationInt(pos + 3);
+            d.context = this.decoder.context(this.snapshot.derivationInt(pos + 4));
+            pos += 5;
+            d.reads = ints(pos, 1);
+            pos += 1 + d.reads.length;
+            d.writes = ints(pos, 1);
+            pos += 1 + d.writes.length;
+            d.edges = ints(pos, 3);
+            pos += 1 + d.edges.length;
+            int[] callees = ints(pos, 2);
+            pos += 1 + callees.length;
+            int[] classInits = ints(pos, 1);
+            pos += 1 + classInits.length;
+            this.derivations.add(d);
+
+            d.statements = d.method == null ? Collections.<PointsToStatement> emptyList()
+                    : statements(statements, d.method, fingerprint);
+            boolean stale = d.context == null || d.statements.size() != count;
+            for (int i = 0; i < callees.length; i += 2) {
+                IMethod callee = methods[callees[i]];
+                Context calleeContext = this.decoder.context(callees[i + 1]);
+                stale |= callee == null || calleeContext == null;
+                d.callees.add(new OrderedPair<>(callee, calleeContext));
+            }
+            for (int clinit : classInits) {
+                stale |= methods[clinit] == null;
+                d.classInits.add(methods[clinit]);
+            }
+            for (int i = 0; i < d.edges.length; i += 3) {
+                stale |= d.edges[i + 1] >= 0 && filters[d.edges[i + 1]] == null;
+                d.filters.add(d.edges[i + 1] < 0 ? null : filters[d.edges[i + 1]]);
+            }
+            for (PointsToStatement s : d.statements) {
+                stale |= !d.callees.isEmpty() && !(s instanceof CallStatement);
+            }
+            for (int n : d.reads) {
+                stale |= node(n) == null;
+                index(this.readers, n, d);
+            }
+            for (int n : d.writes) {
+                stale |= node(n) == null;
+            }
+            for (int i = 0; i < d.edges.length; i += 3) {
+                stale |= node(d.edges[i]) == null || node(d.edges[i + 2]) == null;
+                MutableIntSet targets = this.edgeTargets.get(d.edges[i]);
+                if (targets == null) {
+                    targets = MutableSparseIntSet.makeEmpty();
+                    this.edgeTargets.put(d.edges[i], targets);
+                }
+                targets.add(d.edges[i + 2]);
+            }
+            if (stale) {
+                // Dropped once the indexes are complete
+                d.stale = true;
+                this.numStale++;
+            }
+        }
+    }
+
+    /**
+     * Entries following the count at the given position of the derivations section
+     */
+    private int[] ints(int pos, int entryInts) {
+        int[] a = new int[entryInts * this.snapshot.derivationInt(pos)];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = this.snapshot.derivationInt(pos + 1 + i);
+        }
+        return a;
+    }
+
+    /**
+     * Statements of the current run in the given method with the given fingerprint
+     */
+    private List<PointsToStatement> statements(Map<IMethod, Map<String, List<PointsToStatement>>> statements,
+                                               IMethod m, String fingerprint) {
+        Map<String, List<PointsToStatement>> byFingerprint = statements.get(m);
+        if (byFingerprint == null) {
+            byFingerprint = new HashMap<>();
+            for (PointsToStatement s : this.registrar.getStatementsForMethod(m)) {
+                String fp = StatementFingerprints.fingerprint(s);
+                List<PointsToStatement> l = byFingerprint.get(fp);
+                if (l == null) {
+                    l = new ArrayList<>();
+                    byFingerprint.put(fp, l);
+                }
+                l.add(s);
+            }
+            statements.put(m, byFingerprint);
+        }
+        List<PointsToStatement> l = byFingerprint.get(fingerprint);
+        return l == null ? Collections.<PointsToStatement> emptyList() : l;
+    }
+
+    private static void index(Map<Integer, List<OldDerivation>> index, int n, OldDerivation d) {
+        List<OldDerivation> l = index.get(n);
+        if (l == null) {
+            l = new ArrayList<>();
+            index.put(n, l);
+        }
+        l.add(d);
+    }
+
+    /**
+     * Get the graph node of the current run for the node with the given number in the snapshot
+     *
+     * @return graph node, or null if it cannot be created
+     */
+    private PointsToGraphNode node(/*PointsToGraphNode*/int n) {
+        if (this.nodes.containsKey(n)) {
+            return this.nodes.get(n);
+        }
+        PointsToGraphNode node = this.decoder.node(n);
+        this.nodes.put(n, node);
+        return node;
+    }
+
+    /**
+     * Mark the nodes that cannot be created again, and the nodes that point to instance keys that cannot be created
+     * again or whose concrete types changed, as suspect
+     */
+    private void findSuspectInstanceKeys() {
+        Map<String, String> hierarchyKeys = this.snapshot.derivationHierarchyKeys();
+        Map<IClass, Boolean> unchangedTypes = new HashMap<>();
+        MutableIntSet changed = MutableSparseIntSet.makeEmpty();
+        MutableIntSet unchanged = MutableSparseIntSet.makeEmpty();
+        IntIterator iter = this.snapshot.pointsToGraphNodeIterator();
+        while (iter.hasNext()) {
+            int n = iter.next();
+            if (node(n) == null) {
+                markSuspect(n);
+                continue;
+            }
+            IntIterator iks = this.snapshot.pointsToIntIterator(n);
+            while (iks.hasNext()) {
+                int ik = iks.next();
+                if (unchanged.contains(ik)) {
+                    continue;
+                }
+                if (!changed.contains(ik)) {
+                    InstanceKey k = this.decoder.instanceKey(ik);
+                    Boolean same = k == null ? Boolean.FALSE : unchangedTypes.get(k.getConcreteType());
+                    if (same == null) {
+                        IClass type = k.getConcreteType();
+                        same = SnapshotKeys.hierarchyKey(type).equals(hierarchyKeys.get(SnapshotKeys.classKey(type)));
+                        unchangedTypes.put(type, same);
+                    }
+                    if (same) {
+                        unchanged.add(ik);
+                        continue;
+                    }
+                    changed.add(ik);
+                }
+                markSuspect(n);
+                break;
+            }
+        }
+    }
+
+    private void markSuspect(/*PointsToGraphNode*/int n) {
+        if (this.suspect.add(n)) {
+            this.suspectWorklist.add(n);
+        }
+    }
+
+    /**
+     * Drop a derivation, the nodes it wrote and the targets of its subset edges are suspect
+     */
+    private void drop(OldDerivation d) {
+        if (d.dropped) {
+            return;
+        }
+        d.dropped = true;
+        this.numDropped++;
+        for (int n : d.writes) {
+            markSuspect(n);
+        }
+        for (int i = 0; i < d.edges.length; i += 3) {
+            markSuspect(d.edges[i + 2]);
+        }
+    }
+
+    /**
+     * Drop the readers of the suspect nodes, and mark the targets of the subset edges leaving them as suspect
+     */
+    private void propagateSuspectNodes() {
+        while (!this.suspectWorklist.isEmpty()) {
+            int n = this.suspectWorklist.poll();
+            List<OldDerivation> l = this.readers.get(n);
+            if (l != null) {
+                for (OldDerivation d : l) {
+                    drop(d);
+                }
+            }
+            MutableIntSet targets = this.edgeTargets.get(n);
+            if (targets != null) {
+                IntIterator iter = targets.intIterator();
+                while (iter.hasNext()) {
+                    markSuspect(iter.next());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop the derivations whose method and context are not reachable from the initial contexts through the calls and
+     * class initializers of the derivations that are kept
+     *
+     * @return true if a derivation was dropped
+     */
+    private boolean dropUnreachable() {
+        Map<OrderedPair<IMethod, Context>, List<OldDerivation>> byCallGraphNode = new HashMap<>();
+        for (OldDerivation d : this.derivations) {
+            if (!d.dropped) {
+                OrderedPair<IMethod, Context> cgNode = new OrderedPair<>(d.method, d.context);
+                List<OldDerivation> l = byCallGraphNode.get(cgNode);
+                if (l == null) {
+                    l = new ArrayList<>();
+                    byCallGraphNode.put(cgNode, l);
+                }
+                l.add(d);
+            }
+        }
+
+        Context initialContext = this.haf.initialContext();
+        Set<OrderedPair<IMethod, Context>> reachable = new HashSet<>();
+        Deque<OrderedPair<IMethod, Context>> q = new ArrayDeque<>();
+        for (IMethod m : this.registrar.getInitialContextMethods()) {
+            OrderedPair<IMethod, Context> root = new OrderedPair<>(m, initialContext);
+            if (reachable.add(root)) {
+                q.add(root);
+            }
+        }
+        while (!q.isEmpty()) {
+            List<OldDerivation> l = byCallGraphNode.get(q.poll());
+            if (l == null) {
+                continue;
+            }
+            for (OldDerivation d : l) {
+                List<OrderedPair<IMethod, Context>> succs = new ArrayList<>(d.callees);
+                for (IMethod clinit : d.classInits) {
+                    succs.add(new OrderedPair<>(clinit, initialContext));
+                }
+                for (OrderedPair<IMethod, Context> succ : succs) {
+                    if (reachable.add(succ)) {
+                        q.add(succ);
+                    }
+                }
+            }
+        }
+
+        boolean changed = false;
+        for (Map.Entry<OrderedPair<IMethod, Context>, List<OldDerivation>> e : byCallGraphNode.entrySet()) {
+            if (!reachable.contains(e.getKey())) {
+                for (OldDerivation d : e.getValue()) {
+                    drop(d);
+                    this.numUnreachable++;
+                }
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Restore the facts that are kept into a new graph, before any statement has been processed for it
+     *
+     * @param g graph for the statements registered for the current run, created with the same registrar and heap
+     *            abstraction factory as this object
+     * @return (statement, context) pairs that must be processed to finish the graph
+     */
+    public List<StmtAndContext> restore(PointsToGraph g) {
+        long start = System.currentTimeMillis();
+        // Points-to sets, there are no subset edges yet so nothing is propagated
+        int restoredSets = 0;
+        IntIterator iter = this.snapshot.pointsToGraphNodeIterator();
+        while (iter.hasNext()) {
+            int n = iter.next();
+            if (this.suspect.contains(n)) {
+                continue;
+            }
+            int node = g.lookupNode(node(n));
+            IntIterator iks = this.snapshot.pointsToIntIterator(n);
+            while (iks.hasNext()) {
+                g.addEdge(node, this.decoder.instanceKey(iks.next()));
+            }
+            restoredSets++;
+        }
+
+        // Calls and class initializers, so that the contexts of the kept derivations are reachable
+        Derivations recorder = g.getDerivations();
+        Set<StmtAndContext> restored = new HashSet<>();
+        List<StmtAndContext> toProcess = new ArrayList<>();
+        for (OldDerivation d : this.derivations) {
+            if (d.dropped) {
+                continue;
+            }
+            for (PointsToStatement s : d.statements) {
+                for (OrderedPair<IMethod, Context> callee : d.callees) {
+                    CallSiteReference site = ((CallStatement) s).getCallSite().getReference();
+                    g.restoreCall(site, d.method, d.context, callee.fst(), callee.snd());
+                }
+            }
+            g.restoreClassInitializers(d.classInits);
+        }
+
+        // Read dependencies of the kept derivations
+        for (OldDerivation d : this.derivations) {
+            if (d.dropped) {
+                continue;
+            }
+            boolean writesSuspect = false;
+            for (int n : d.writes) {
+                writesSuspect |= this.suspect.contains(n);
+            }
+            for (PointsToStatement s : d.statements) {
+                StmtAndContext sac = new StmtAndContext(s, d.context);
+                for (int n : d.reads) {
+                    g.restoreRead(g.lookupNode(node(n)), sac);
+                }
+                if (recorder != null) {
+                    // Keep the derivation for the next snapshot
+                    Derivation r = recorder.get(sac);
+                    for (int n : d.writes) {
+                        r.addWrite(g.lookupNode(node(n)));
+                    }
+                    for (int i = 0; i < d.edges.length; i += 3) {
+                        r.addEdge(new SubsetEdge(g.lookupNode(node(d.edges[i])),
+                                                 d.filters.get(i / 3),
+                                                 g.lookupNode(node(d.edges[i + 2]))));
+                    }
+                    for (OrderedPair<IMethod, Context> callee : d.callees) {
+                        r.addCallee(callee);
+                    }
+                    r.addClassInitializers(new ArrayList<>(d.classInits));
+                }
+                if (restored.add(sac) && writesSuspect) {
+                    // The kept derivation wrote a set that is re-derived
+                    toProcess.add(sac);
+                    this.numResubmitted++;
+                }
+            }
+        }
+
+        // Subset edges of the kept derivations, which propagate into the suspect sets
+        for (OldDerivation d : this.derivations) {
+            if (d.dropped) {
+                continue;
+            }
+            for (int i = 0; i < d.edges.length; i += 3) {
+                int source = g.lookupNode(node(d.edges[i]));
+                int target = g.lookupNode(node(d.edges[i + 2]));
+                TypeFilter filter = d.filters.get(i / 3);
+                if (filter == null) {
+                    g.copyEdges(source, target);
+                }
+                else {
+                    g.copyFilteredEdges(source, filter, target);
+                }
+            }
+        }
+
+        // Everything that was not restored is processed from scratch
+        int numNew = 0;
+        for (IMethod m : this.registrar.getRegisteredMethods()) {
+            for (Context c : g.getContexts(m)) {
+                for (PointsToStatement s : this.registrar.getStatementsForMethod(m)) {
+                    StmtAndContext sac = new StmtAndContext(s, c);
+                    if (!restored.contains(sac)) {
+                        toProcess.add(sac);
+                        numNew++;
+                    }
+                }
+            }
+        }
+
+        System.err.println("Restored " + restoredSets + " points-to sets and " + restored.size()
+                + " (statement, context) pairs from the snapshot in " + (System.currentTimeMillis() - start)
+                + "ms, " + numNew + " pairs are processed from scratch and " + this.numResubmitted + " again");
+        return toProcess;
+    }
+
+    public void printStatistics() {
+        int kept = 0;
+        for (OldDerivation d : this.derivations) {
+            if (!d.dropped) {
+                kept++;
+            }
+        }
+        System.err.println("   Derivations in snapshot : " + this.derivations.size());
+        System.err.println("   Derivations kept        : " + kept);
+        System.err.println("   Derivations stale       : " + this.numStale);
+        System.err.println("   Derivations dropped     : " + this.numDropped + " (" + this.numUnreachable
+                + " unreachable)");
+        System.err.println("   Suspect graph nodes     : " + this.suspect.size() + " of "
+                + this.snapshot.numPointsToGraphNodes());
+    }
+
+    /**
+     * Derivation read from the snapshot, for the statements of a method with the same fingerprint in a context
+     */
+    private static final class OldDerivation {
+        /**
+         * Method of the current run, null if it cannot be found
+         */
+        IMethod method;
+        /**
+         * Context of the current run, null if it cannot be created
+         */
+        Context context;
+        /**
+         * Statements of the current run in the method with the fingerprint of the derivation
+         */
+        List<PointsToStatement> statements;
+        /*PointsToGraphNode*/int[] reads;
+        /*PointsToGraphNode*/int[] writes;
+        /**
+         * Subset edges: source, index of the filter or -1, target
+         */
+        int[] edges;
+        /**
+         * Filter of each subset edge of the current run, null for an unfiltered edge
+         */
+        final List<TypeFilter> filters = new ArrayList<>();
+        final List<OrderedPair<IMethod, Context>> callees = new ArrayList<>();
+        final Set<IMethod> classInits = new LinkedHashSet<>();
+        /**
+         * True if the derivation cannot be used in the current run
+         */
+        boolean stale;
+        boolean dropped;
+    }
+}
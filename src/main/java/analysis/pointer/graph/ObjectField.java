@@ -143,4 +143,12 @@ public final class ObjectField implements PointsToGraphNode {
     public String fieldName() {
         return fieldName;
     }
+
+    IClass declaringClass() {
+        return declaringClass;
+    }
+
+    IClass expectedClass() {
+        return expectedType;
+    }
 }
@@ -5,6 +5,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -15,23 +17,33 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import main.AccrueAnalysisMain;
+import util.ConcurrentAppendOnlyIntList;
 import util.OrderedPair;
 import util.intmap.ConcurrentIntMap;
 import util.intmap.DenseIntMap;
 import util.intmap.IntMap;
 import util.intmap.ReadOnlyConcurrentIntMap;
 import util.intmap.SparseIntMap;
+import util.intset.ConcurrentMonotonicIntBitSet;
 import util.intset.EmptyIntSet;
+import util.intset.IntSetInterner;
 import analysis.AnalysisUtil;
 import analysis.pointer.analyses.HeapAbstractionFactory;
 import analysis.pointer.engine.DependencyRecorder;
 import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.engine.PointsToAnalysisMultiThreaded;
+import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
 
 import com.ibm.wala.classLoader.CallSiteReference;
@@ -43,6 +55,7 @@ import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
 import com.ibm.wala.util.CancelException;
 import com.ibm.wala.util.collections.EmptyIntIterator;
 import com.ibm.wala.util.collections.IntStack;
+import com.ibm.wala.util.intset.CompoundIntIterator;
 import com.ibm.wala.util.intset.IntIterator;
 import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.intset.IntSetAction;
@@ -54,7 +67,7 @@ import com.ibm.wala.util.intset.SparseIntSet;
  * Graph mapping local variables (in a particular context) and fields to
  * abstract heap locations (representing zero or more actual heap locations)
  */
-public final class PointsToGraph {
+public final class PointsToGraph implements PointsToResults {
 
     public static final String ARRAY_CONTENTS = "[contents]";
 
@@ -82,6 +95,49 @@ public final class PointsToGraph {
      */
     private ConcurrentIntMap<IClass> concreteTypeDictionary = PointsToAnalysisMultiThreaded.makeConcurrentIntMap();
 
+    /**
+     * Whether graphs created from now on should group instance key numbers by concrete type. See
+     * {@link PointsToGraph#setGroupInstanceKeysByType}.
+     */
+    private static boolean groupInstanceKeysByTypeDefault = false;
+
+    /**
+     * If set, instance keys are numbered in aligned blocks of TYPE_BLOCK_SIZE ints, and all the instance keys in a
+     * block have the same concrete type. A type filter can then be checked once for each block rather than once for
+     * each instance key, and the bit sets for points-to sets have fewer, denser words.
+     */
+    private final boolean groupInstanceKeysByType = groupInstanceKeysByTypeDefault;
+
+    /**
+     * If set, the edges of the call graph are read from callGraphMap by several threads before the HafCallGraph is
+     * built, see {@link #getCallGraph()}
+     */
+    private static boolean parallelCallGraph = false;
+
+    /**
+     * log_2 of the number of instance key numbers in a block reserved for a concrete type
+     */
+    private static final int LOG_TYPE_BLOCK_SIZE = 4;
+
+    /**
+     * Number of instance key numbers in a block reserved for a concrete type
+     */
+    private static final int TYPE_BLOCK_SIZE = 1 << LOG_TYPE_BLOCK_SIZE;
+
+    /**
+     * The block of instance key numbers currently being used for each concrete type. Only used if instance keys are
+     * grouped by type.
+     */
+    private ConcurrentMap<IClass, TypeBlock> currentTypeBlock = this.groupInstanceKeysByType
+            ? AnalysisUtil.<IClass, TypeBlock> createConcurrentHashMap() : null;
+
+    /**
+     * Map from block index (instance key number divided by TYPE_BLOCK_SIZE) to the concrete type of all the instance
+     * keys in the block. Only used if instance keys are grouped by type.
+     */
+    private ConcurrentIntMap<IClass> blockTypeDictionary = this.groupInstanceKeysByType
+            ? PointsToAnalysisMultiThreaded.<IClass> makeConcurrentIntMap() : null;
+
     /**
      * GraphNode counter, for unique integers for GraphNodes
      */
@@ -92,6 +148,19 @@ public final class PointsToGraph {
      */
     private ConcurrentMap<PointsToGraphNode, Integer> reverseGraphNodeDictionary = new ConcurrentHashMap<>();
 
+    /**
+     * Dictionary for mapping a reference variable and a context to the int for the corresponding
+     * ReferenceVariableReplica. This lets statements find the node for a local or static field without creating a
+     * ReferenceVariableReplica, see {@link #lookupNode(ReferenceVariable, Context)}.
+     */
+    private ConcurrentMap<ReferenceVariable, ConcurrentMap<Context, Integer>> replicaNodeDictionary =
+            AnalysisUtil.createConcurrentHashMap();
+
+    /**
+     * Bitmaps used to filter bit sets of instance keys a word at a time, see {@link FilterBitmap}
+     */
+    private ConcurrentMap<TypeFilter, FilterBitmap> filterBitmaps = AnalysisUtil.createConcurrentHashMap();
+
 
 
     /* ***************************************************************************
@@ -128,26 +197,83 @@ public final class PointsToGraph {
      */
     private AnnotatedIntRelation<TypeFilter> isFilteredSubsetOf = new AnnotatedIntRelation<>();
 
+    /**
+     * Whether graphs created from now on should use cycle collapsing. See {@link PointsToGraph#setUseCycleCollapsing}.
+     */
+    private static boolean useCycleCollapsingDefault = false;
+
+    /**
+     * This flag controls whether we try to use cycle collapsing. Nodes in a cycle of the isUnfilteredSubsetOf relation
+     * are collapsed onto a single representative (the lowest numbered node of the cycle). The representative of a node
+     * is published (in immediateRepresentative and representative) before any dependencies or subset relations are
+     * moved to the representative, so that a concurrent reader of a collapsed node can always detect the collapse
+     * after it has recorded its read, and re-record the read on the representative.
+     */
+    private final boolean useCycleCollapsing = useCycleCollapsingDefault;
+
     /**
      * Map from PointsToGraphNodes to PointsToGraphNodes, indicating which nodes have been collapsed (due to being in
      * cycles) and which node now represents them.
      */
-    private final ConcurrentIntMap<Integer> immediateRepresentative = USE_CYCLE_COLLAPSING
+    private final ConcurrentIntMap<Integer> immediateRepresentative = this.useCycleCollapsing
             ? PointsToAnalysisMultiThreaded.<Integer> makeConcurrentIntMap() : null;
 
     /**
      * Map from PointsToGraphNodes to PointsToGraphNodes, indicating which nodes have been collapsed (due to being in
      * cycles) and which node now represents them.
      */
-    private final ConcurrentIntMap<Integer> representative = USE_CYCLE_COLLAPSING
+    private final ConcurrentIntMap<Integer> representative = this.useCycleCollapsing
             ? PointsToAnalysisMultiThreaded.<Integer> makeConcurrentIntMap() : null;
 
     /**
-     * This flag controls whether we try to use cycle collapsing. NOTE: Cycle collapsing is an experimental feature that
-     * is not yet correct. There are a number of concurrency issues. It will work in a single threaded setting, but not
-     * concurrently.
+     * Number of instance keys added to some points-to set (counting each node the key is propagated to). Used to
+     * compare the amount of propagation work with and without cycle collapsing.
+     */
+    private final AtomicLong propagationCount = new AtomicLong(0);
+
+    /**
+     * Whether graphs created from now on should use difference propagation. See
+     * {@link PointsToGraph#setUseDifferencePropagation}.
+     */
+    private static boolean useDifferencePropagationDefault = false;
+
+    /**
+     * This flag controls whether statements only read the part of a points-to set that they have not already
+     * processed. If set, we record the order in which instance keys are added to each points-to set (in pointsToLogs),
+     * for each statement and context and each node it reads how much of that order it has already consumed (in
+     * consumedPrefixes), and (without cycle collapsing) for each subset edge how much of the order of its source has
+     * been propagated along it (in edgePrefixes).
+     */
+    private final boolean useDifferencePropagation = useDifferencePropagationDefault;
+
+    /**
+     * Map from PointsToGraphNodes to the instance keys in their points-to set, in the order they were added. Only used
+     * with difference propagation.
      */
-    static final boolean USE_CYCLE_COLLAPSING = false;
+    private ConcurrentIntMap<ConcurrentAppendOnlyIntList> pointsToLogs = this.useDifferencePropagation
+            ? PointsToAnalysisMultiThreaded.<ConcurrentAppendOnlyIntList> makeConcurrentIntMap() : null;
+
+    /**
+     * Map from the statement and context reading points-to sets to the prefix of each set's log it has already
+     * processed. Only used with difference propagation.
+     */
+    private ConcurrentMap<StmtAndContext, ConsumedPrefixes> consumedPrefixes = this.useDifferencePropagation
+            ? new ConcurrentHashMap<StmtAndContext, ConsumedPrefixes>() : null;
+
+    /**
+     * Map from the source of an unfiltered subset edge to the target of the edge to the number of entries of the log of
+     * the source that have been propagated along the edge. Only used with difference propagation and without cycle
+     * collapsing, which moves edges onto representatives with different logs.
+     */
+    private ConcurrentIntMap<ConcurrentIntMap<AtomicInteger>> edgePrefixes = this.useDifferencePropagation
+            && !this.useCycleCollapsing
+            ? PointsToAnalysisMultiThreaded.<ConcurrentIntMap<AtomicInteger>> makeConcurrentIntMap() : null;
+
+    /**
+     * Like edgePrefixes, for the filtered subset edges (all the filters between a source and a target share a prefix)
+     */
+    private ConcurrentIntMap<ConcurrentIntMap<AtomicInteger>> filteredEdgePrefixes = this.edgePrefixes == null ? null
+            : PointsToAnalysisMultiThreaded.<ConcurrentIntMap<AtomicInteger>> makeConcurrentIntMap();
 
     /* ***************************************************************************
     *
@@ -203,6 +329,11 @@ public final class PointsToGraph {
 
     private final DependencyRecorder depRecorder;
 
+    /**
+     * What each (statement, context) pair did to the graph, null if derivations are not recorded
+     */
+    private final Derivations derivations;
+
     private final StatementRegistrar registrar;
 
 
@@ -213,7 +344,21 @@ public final class PointsToGraph {
     private boolean graphFinished = false;
 
     public PointsToGraph(StatementRegistrar registrar, HeapAbstractionFactory haf, DependencyRecorder depRecorder) {
+        this(registrar, haf, depRecorder, null);
+    }
+
+    /**
+     * Create an empty graph
+     *
+     * @param registrar statements the graph is computed for
+     * @param haf heap abstraction factory
+     * @param depRecorder recorder for the dependencies of statements on points-to sets, and for new contexts
+     * @param derivations recorder for what each (statement, context) pair does to the graph, or null
+     */
+    public PointsToGraph(StatementRegistrar registrar, HeapAbstractionFactory haf, DependencyRecorder depRecorder,
+                         Derivations derivations) {
         this.depRecorder = depRecorder;
+        this.derivations = derivations;
 
         this.haf = haf;
         this.registrar = registrar;
@@ -237,6 +382,62 @@ public final class PointsToGraph {
     }
 
 
+    /**
+     * Set whether points-to graphs created after this call should collapse cycles in the subset relation. This is safe
+     * to use with both the single-threaded and the multi-threaded engines.
+     *
+     * @param useCycleCollapsing if true then cycles of unfiltered subset relations will be collapsed
+     */
+    public static void setUseCycleCollapsing(boolean useCycleCollapsing) {
+        useCycleCollapsingDefault = useCycleCollapsing;
+    }
+
+    /**
+     * Set whether points-to graphs created after this call should number instance keys so that instance keys with the
+     * same concrete type have nearby numbers.
+     *
+     * @param group if true then instance key numbers are allocated in blocks, one concrete type per block
+     */
+    public static void setGroupInstanceKeysByType(boolean group) {
+        groupInstanceKeysByTypeDefault = group;
+    }
+
+    /**
+     * Set whether the call graph is constructed using several threads. The threads partition the callers and collect
+     * the edges of their callers into arrays, which are then added to the call graph by a single thread (WALA call
+     * graphs are not thread-safe). The resulting call graph is the same.
+     *
+     * @param parallel if true then collect call graph edges in parallel
+     */
+    public static void setParallelCallGraph(boolean parallel) {
+        parallelCallGraph = parallel;
+    }
+
+    /**
+     * Set whether points-to graphs created after this call should use difference propagation, i.e., each time a
+     * statement is processed it only reads the instance keys that it has not read before, whether or not it is given a
+     * GraphDelta.
+     *
+     * @param useDifferencePropagation if true then statements only read the new part of points-to sets
+     */
+    public static void setUseDifferencePropagation(boolean useDifferencePropagation) {
+        useDifferencePropagationDefault = useDifferencePropagation;
+    }
+
+    /**
+     * Does this graph collapse cycles in the subset relation?
+     */
+    boolean usesCycleCollapsing() {
+        return this.useCycleCollapsing;
+    }
+
+    /**
+     * Number of instance keys that have been added to points-to sets, counting each node the key is added to.
+     */
+    public long propagationCount() {
+        return this.propagationCount.get();
+    }
+
     /**
      * What is the immediate representative of n? If n is its own representative (i.e., either n is not in a cycle, or n
      * has not been collapsed to another node in a cycle), then this method returns null.
@@ -245,7 +446,7 @@ public final class PointsToGraph {
      * @return
      */
     /*PointsToGraphNode*/Integer getImmediateRepresentative(/*PointsToGraphNode*/int n) {
-        if (!USE_CYCLE_COLLAPSING) {
+        if (!this.useCycleCollapsing) {
             return null;
         }
         return this.immediateRepresentative.get(n);
@@ -258,8 +459,8 @@ public final class PointsToGraph {
      * @param n
      * @return
      */
-    private/*PointsToGraphNode*/int getRepresentative(/*PointsToGraphNode*/int n) {
-        if (!USE_CYCLE_COLLAPSING) {
+    /*PointsToGraphNode*/int getRepresentative(/*PointsToGraphNode*/int n) {
+        if (!this.useCycleCollapsing) {
             return n;
         }
 
@@ -289,12 +490,23 @@ public final class PointsToGraph {
      * @return
      */
     public boolean isCollapsedNode(/*PointsToGraphNode*/int n) {
-        if (!USE_CYCLE_COLLAPSING) {
+        if (!this.useCycleCollapsing) {
             return false;
         }
         return this.immediateRepresentative.containsKey(n);
     }
 
+    /**
+     * Iterate over the nodes that have been collapsed, see {@link #isCollapsedNode(int)}. Collapsed nodes have no
+     * points-to set of their own, they share the set of their representative.
+     */
+    IntIterator collapsedNodeIterator() {
+        if (!this.useCycleCollapsing) {
+            return EmptyIntIterator.instance();
+        }
+        return this.immediateRepresentative.keyIterator();
+    }
+
     /**
      * Add an edge from node to heapContext in the graph.
      *
@@ -303,12 +515,27 @@ public final class PointsToGraph {
      * @return
      */
     public GraphDelta addEdge(PointsToGraphNode node, InstanceKey heapContext) {
-        assert node != null && heapContext != null;
+        assert node != null;
+        return addEdge(lookupDictionary(node), heapContext);
+    }
+
+    /**
+     * Add an edge from node to heapContext in the graph.
+     *
+     * @param n int for the points-to graph node, see {@link #lookupNode(ReferenceVariable, Context)}
+     * @param heapContext
+     * @return
+     */
+    public GraphDelta addEdge(/*PointsToGraphNode*/int n, InstanceKey heapContext) {
+        assert heapContext != null;
         assert !this.graphFinished;
+        if (this.derivations != null) {
+            this.derivations.recordWrite(n);
+        }
         Integer h = this.reverseInstanceKeyDictionary.get(heapContext);
         if (h == null) {
             // not in the dictionary yet
-            h = this.instanceKeyCounter.getAndIncrement();
+            h = this.newInstanceKeyNumber(heapContext.getConcreteType());
 
             // Put the mapping into instanceKeyDictionary and concreteTypeDictionary
             // Note that it is important to do this before putting it into reverseInstanceKeyDictionary
@@ -332,7 +559,6 @@ public final class PointsToGraph {
         }
 
         GraphDelta delta = new GraphDelta(this);
-        int n = lookupDictionary(node);
 
         // Get the pointsTo set for (the representative of) n.
         // Requires a loop due to concurrent threads changing the representative of n.
@@ -346,8 +572,7 @@ public final class PointsToGraph {
             IntMap<MutableIntSet> toCollapse = new SparseIntMap<>();
             addToSetAndSupersets(delta,
                                  n,
-                                 SparseIntSet.singleton(h).intIterator(),
-                                 1,
+                                 SparseIntSet.singleton(h),
                                  true,
                                  MutableSparseIntSet.makeEmpty(),
                                  new IntStack(),
@@ -358,6 +583,48 @@ public final class PointsToGraph {
         return delta;
     }
 
+    /**
+     * The block of instance key numbers being used for a concrete type
+     */
+    private static final class TypeBlock {
+        /**
+         * Next number to hand out
+         */
+        int next = 0;
+        /**
+         * End (exclusive) of the block
+         */
+        int end = 0;
+    }
+
+    /**
+     * Get a new number for an instance key with the given concrete type. If instance keys are grouped by type, the
+     * number is taken from the current block for the type, and a new block is reserved when that block is full.
+     */
+    private int newInstanceKeyNumber(IClass concreteType) {
+        if (!this.groupInstanceKeysByType) {
+            return this.instanceKeyCounter.getAndIncrement();
+        }
+        TypeBlock b = this.currentTypeBlock.get(concreteType);
+        if (b == null) {
+            b = new TypeBlock();
+            TypeBlock existing = this.currentTypeBlock.putIfAbsent(concreteType, b);
+            if (existing != null) {
+                b = existing;
+            }
+        }
+        synchronized (b) {
+            if (b.next == b.end) {
+                // The counter only ever moves by TYPE_BLOCK_SIZE, so the new block is aligned
+                int start = this.instanceKeyCounter.getAndAdd(TYPE_BLOCK_SIZE);
+                this.blockTypeDictionary.put(start >>> LOG_TYPE_BLOCK_SIZE, concreteType);
+                b.next = start;
+                b.end = start + TYPE_BLOCK_SIZE;
+            }
+            return b.next++;
+        }
+    }
+
     /**
      * Collapse a cycle, i.e., choose a representative, and collapse all the nodes to point to that representative.
      *
@@ -365,7 +632,7 @@ public final class PointsToGraph {
      * @param delta
      */
     private void collapseCycles(IntMap<MutableIntSet> toCollapse, GraphDelta delta) {
-        if (!USE_CYCLE_COLLAPSING) {
+        if (!this.useCycleCollapsing) {
             return;
         }
         IntIterator iter = toCollapse.keyIterator();
@@ -410,6 +677,64 @@ public final class PointsToGraph {
         return n;
     }
 
+    /**
+     * Get the int for a points-to graph node, e.g., an ObjectField. Use
+     * {@link #lookupNode(ReferenceVariable, Context)} for local variables and static fields.
+     *
+     * @param node points-to graph node
+     * @return int for the node, or -1 if the graph is finished and there is no such node
+     */
+    public/*PointsToGraphNode*/int lookupNode(PointsToGraphNode node) {
+        return lookupDictionary(node);
+    }
+
+    /**
+     * Get the number of every points-to graph node, which (unlike {@link #graphNodeDictionary}) is also kept in test
+     * mode. Read-only once the graph is finished.
+     */
+    Map<PointsToGraphNode, Integer> getGraphNodeNumbers() {
+        return Collections.unmodifiableMap(this.reverseGraphNodeDictionary);
+    }
+
+    /**
+     * Get the int for the ReferenceVariableReplica for rv in the context. Once the node has been looked up this does
+     * not allocate, so statements should use this rather than creating a ReferenceVariableReplica each time they are
+     * processed.
+     *
+     * @param rv reference variable for a local variable or static field
+     * @param context context the reference variable occurs in (ignored if rv is a singleton)
+     * @return int for the points-to graph node, or -1 if the graph is finished and there is no such node
+     */
+    public/*PointsToGraphNode*/int lookupNode(ReferenceVariable rv, Context context) {
+        if (rv.isSingleton()) {
+            context = this.haf.initialContext();
+        }
+        ConcurrentMap<ReferenceVariable, ConcurrentMap<Context, Integer>> dict = this.replicaNodeDictionary;
+        if (dict == null) {
+            // the graph is finished
+            return lookupDictionary(new ReferenceVariableReplica(context, rv, this.haf));
+        }
+        ConcurrentMap<Context, Integer> byContext = dict.get(rv);
+        if (byContext == null) {
+            byContext = AnalysisUtil.createConcurrentHashMap();
+            ConcurrentMap<Context, Integer> existing = dict.putIfAbsent(rv, byContext);
+            if (existing != null) {
+                byContext = existing;
+            }
+        }
+        Integer n = byContext.get(context);
+        if (n == null) {
+            // Use the dictionary for PointsToGraphNodes, so that both dictionaries agree
+            int m = lookupDictionary(new ReferenceVariableReplica(context, rv, this.haf));
+            if (m < 0) {
+                return m;
+            }
+            n = m;
+            byContext.putIfAbsent(context, n);
+        }
+        return n;
+    }
+
     private int lookupCallGraphDictionary(OrderedPair<IMethod, Context> node) {
         Integer n = this.reverseCallGraphNodeDictionary.get(node);
         if (n == null) {
@@ -438,10 +763,23 @@ public final class PointsToGraph {
      * @return
      */
     public GraphDelta copyEdges(PointsToGraphNode source, PointsToGraphNode target) {
+        return copyEdges(lookupDictionary(source), lookupDictionary(target));
+    }
+
+    /**
+     * Copy the pointsto set of the source to the pointsto set of the target. This should be used when the pointsto set
+     * of the target is a supserset of the pointsto set of the source.
+     *
+     * @param source int for the source node, see {@link #lookupNode(ReferenceVariable, Context)}
+     * @param target int for the target node
+     * @return
+     */
+    public GraphDelta copyEdges(/*PointsToGraphNode*/int source, /*PointsToGraphNode*/int target) {
+        if (this.derivations != null) {
+            this.derivations.recordSubsetEdge(source, null, target);
+        }
         GraphDelta changed = new GraphDelta(this);
-        copyEdges(this.getRepresentative(lookupDictionary(source)),
-                  this.getRepresentative(lookupDictionary(target)),
-                  changed);
+        copyEdges(this.getRepresentative(source), this.getRepresentative(target), changed);
         return changed;
     }
 
@@ -463,9 +801,10 @@ public final class PointsToGraph {
 
         // source is a subset of target, target is a superset of source.
         if (isUnfilteredSubsetOf.add(source, target)) {
+            this.depRecorder.recordSubsetEdge(source, target);
             computeDeltaForAddedSubsetRelation(changed, source, null, target);
 
-            if (USE_CYCLE_COLLAPSING) {
+            if (this.useCycleCollapsing) {
                 int newS = this.getRepresentative(source);
                 int newT = this.getRepresentative(target);
                 if (newS != source || newT != target) {
@@ -489,11 +828,24 @@ public final class PointsToGraph {
     public GraphDelta copyFilteredEdges(PointsToGraphNode source,
                                         TypeFilter filter,
                                         PointsToGraphNode target) {
+        return copyFilteredEdges(lookupDictionary(source), filter, lookupDictionary(target));
+    }
+
+    /**
+     * Copy the pointsto set of the source that satisfies the filter to the pointsto set of the target.
+     *
+     * @param source int for the source node, see {@link #lookupNode(ReferenceVariable, Context)}
+     * @param filter filter on the instance keys copied
+     * @param target int for the target node
+     * @return
+     */
+    public GraphDelta copyFilteredEdges(/*PointsToGraphNode*/int source, TypeFilter filter,
+                                        /*PointsToGraphNode*/int target) {
+        if (this.derivations != null && !TypeFilter.IMPOSSIBLE.equals(filter)) {
+            this.derivations.recordSubsetEdge(source, filter, target);
+        }
         GraphDelta changed = new GraphDelta(this);
-        copyFilteredEdges(this.getRepresentative(lookupDictionary(source)),
-                          filter,
-                          this.getRepresentative(lookupDictionary(target)),
-                          changed);
+        copyFilteredEdges(this.getRepresentative(source), filter, this.getRepresentative(target), changed);
         return changed;
     }
 
@@ -521,8 +873,9 @@ public final class PointsToGraph {
         }
 
         if (isFilteredSubsetOf.add(source, target, filter)) {
+            this.depRecorder.recordSubsetEdge(source, target);
             computeDeltaForAddedSubsetRelation(changed, source, filter, target);
-            if (USE_CYCLE_COLLAPSING) {
+            if (this.useCycleCollapsing) {
                 int newS = this.getRepresentative(source);
                 int newT = this.getRepresentative(target);
                 if (newS != source || newT != target) {
@@ -541,6 +894,14 @@ public final class PointsToGraph {
     private void computeDeltaForAddedSubsetRelation(GraphDelta changed, /*PointsToGraphNode*/int source, TypeFilter filter, /*PointsToGraphNode*/
                                           int target) {
 
+        if (this.edgePrefixes != null) {
+            // Everything logged from here on will be propagated along the new edge by whoever logs it, and everything
+            // logged before is already in the set copied below.
+            edgePrefix(filter == null ? this.edgePrefixes : this.filteredEdgePrefixes,
+                       source,
+                       target,
+                       pointsToLog(source).writtenPrefixEnd(0));
+        }
         IntSet s = this.pointsToSet(source);
         while (s == null) {
             source = this.getRepresentative(source);
@@ -551,8 +912,7 @@ public final class PointsToGraph {
         IntMap<MutableIntSet> toCollapse = new SparseIntMap<>();
         addToSetAndSupersets(changed,
                              target,
-                             filter == null ? s.intIterator() : new FilteredIterator(s.intIterator(), filter),
-                             s.size(),
+                             filter == null ? s : new FilteredIntSet(s, Collections.singleton(filter)),
                              true,
                              MutableSparseIntSet.makeEmpty(),
                              new IntStack(),
@@ -571,20 +931,18 @@ public final class PointsToGraph {
      * @param changed
      * @param target
      * @param toAdd
-     * @param toAddSizeGuess
      * @param addToSuperSets
      * @param currentlyAdding
      * @param currentlyAddingStack
      * @param filterStack
      * @param toCollapse
      */
-    private void addToSetAndSupersets(GraphDelta changed, /*PointsToGraphNode*/int target, /*Iterator<InstanceKey>*/
-                                      IntIterator toAdd,
-                                      int toAddSizeGuess, boolean addToSuperSets,
+    private void addToSetAndSupersets(GraphDelta changed, /*PointsToGraphNode*/int target, /*Set<InstanceKey>*/
+                                      IntSet toAdd, boolean addToSuperSets,
                                   MutableIntSet currentlyAdding, IntStack currentlyAddingStack,
                                   Stack<Set<TypeFilter>> filterStack, IntMap<MutableIntSet> toCollapse) {
         // Handle detection of cycles.
-        if (USE_CYCLE_COLLAPSING) {
+        if (this.useCycleCollapsing) {
             if (toCollapse != null) {
                 if (currentlyAdding.contains(target)) {
                     // we detected a cycle!
@@ -625,10 +983,9 @@ public final class PointsToGraph {
         }
 
         // Now we actually add the set to the target, both in the cache, and in the GraphDelta
-        MutableIntSet deltaSet = null;
         MutableIntSet graphSet = this.pointsToSet(target);
 
-        if (USE_CYCLE_COLLAPSING) {
+        if (this.useCycleCollapsing) {
             if (graphSet == null) {
                 // whoops! target has been collapsed.
                 // Don't bother adding to target and supersets, just go straight for
@@ -636,7 +993,6 @@ public final class PointsToGraph {
                 addToSetAndSupersets(changed,
                                      this.getRepresentative(target),
                                      toAdd,
-                                     toAddSizeGuess,
                                      addToSuperSets,
                                      currentlyAdding,
                                      currentlyAddingStack,
@@ -646,25 +1002,42 @@ public final class PointsToGraph {
             }
         }
 
-        MutableIntSet added = MutableSparseIntSet.makeEmpty();
-
-        while (toAdd.hasNext()) {
-            int next = toAdd.next();
-            if (graphSet.add(next)) {
-                if (deltaSet == null) {
-                    deltaSet = changed.getOrCreateSet(target, toAddSizeGuess);
+        MutableIntSet added;
+        if (graphSet instanceof ConcurrentMonotonicIntBitSet) {
+            if (toAdd instanceof FilteredIntSet) {
+                // If the filtered set is a bit set then filter it a word at a time
+                IntSet filtered = ((FilteredIntSet) toAdd).filterBitSet();
+                if (filtered != null) {
+                    toAdd = filtered;
+                }
+            }
+            // Compute the difference and do the union a word at a time (when toAdd is also a bit set)
+            added = ((ConcurrentMonotonicIntBitSet) graphSet).addAllAndReturnAdded(toAdd);
+        }
+        else {
+            added = MutableSparseIntSet.makeEmpty();
+            IntIterator toAddIter = toAdd.intIterator();
+            while (toAddIter.hasNext()) {
+                int next = toAddIter.next();
+                if (graphSet.add(next)) {
+                    added.add(next);
                 }
-                deltaSet.add(next);
-                added.add(next);
             }
         }
         if (added.isEmpty()) {
             // we didn't add anything.
             return;
         }
+        int addedSize = added.size();
+        if (this.useDifferencePropagation) {
+            // Log the new elements before the GraphDelta is seen, so that statements triggered by the delta find them
+            pointsToLog(target).addAll(added);
+        }
+        changed.getOrCreateSet(target, addedSize).addAll(added);
+        this.propagationCount.addAndGet(addedSize);
 
         int newRep;
-        if (USE_CYCLE_COLLAPSING) {
+        if (this.useCycleCollapsing) {
             if ((newRep = this.getRepresentative(target)) != target) {
 
                 // whoops! The target got merged with something else while we were in the middle
@@ -674,8 +1047,7 @@ public final class PointsToGraph {
                 // target will be supersets of newRep...
                 addToSetAndSupersets(changed,
                                      newRep,
-                                     added.intIterator(),
-                                     added.size(),
+                                     added,
                                      addToSuperSets,
                                      currentlyAdding,
                                      currentlyAddingStack,
@@ -703,10 +1075,17 @@ public final class PointsToGraph {
             if (m == target) {
                 continue;
             }
+            IntSet toPropagate = added;
+            if (this.edgePrefixes != null) {
+                toPropagate = unpropagated(this.edgePrefixes, target, m);
+                if (toPropagate.isEmpty()) {
+                    // another thread has already propagated everything along this edge
+                    continue;
+                }
+            }
             addToSetAndSupersets(changed,
                                  m,
-                                 added.intIterator(),
-                                 added.size(),
+                                 toPropagate,
                                  addToSuperSets,
                                  currentlyAdding,
                                  currentlyAddingStack,
@@ -718,22 +1097,31 @@ public final class PointsToGraph {
         IntMap<Set<TypeFilter>> filteredSupersets = this.isFilteredSubsetOf.forward(target);
         iter = filteredSupersets == null ? EmptyIntIterator.instance() : filteredSupersets.keyIterator();
         while (iter.hasNext()) {
-            int m = this.getRepresentative(iter.next());
+            int superset = iter.next();
+            int m = this.getRepresentative(superset);
             if (m == target) {
                 continue;
             }
 
+            // Note that the filters are recorded against the original superset, not its representative.
             @SuppressWarnings("null")
-            Set<TypeFilter> filterSet = filteredSupersets.get(m);
+            Set<TypeFilter> filterSet = filteredSupersets.get(superset);
             // it is possible that the filter set is empty, due to race conditions.
             // No trouble, we will just ignore it, and pretend we got in there before
             // the relation between target and m was created.
             if (filterSet != null && !filterSet.isEmpty()) {
+                IntSet toPropagate = added;
+                if (this.edgePrefixes != null) {
+                    toPropagate = unpropagated(this.filteredEdgePrefixes, target, m);
+                    if (toPropagate.isEmpty()) {
+                        // another thread has already propagated everything along this edge
+                        continue;
+                    }
+                }
                 filterStack.push(filterSet);
                 addToSetAndSupersets(changed,
                                      m,
-                                     new FilteredIterator(added.intIterator(), filterSet),
-                                     added.size(),
+                                     new FilteredIntSet(toPropagate, filterSet),
                                      addToSuperSets,
                                      currentlyAdding,
                                      currentlyAddingStack,
@@ -754,11 +1142,13 @@ public final class PointsToGraph {
      * @param n
      * @return
      */
+    @Override
     public Iterator<InstanceKey> pointsToIterator(PointsToGraphNode n) {
         assert this.graphFinished : "Can only get a points to set without an originator if the graph is finished";
         return pointsToIterator(n, null);
     }
 
+    @Override
     public Iterator<InstanceKey> pointsToIterator(PointsToGraphNode node, StmtAndContext originator) {
         assert this.graphFinished || originator != null;
         int n = lookupDictionary(node);
@@ -768,11 +1158,239 @@ public final class PointsToGraph {
         return new IntToInstanceKeyIterator(this.pointsToIntIterator(n, originator));
     }
 
+    /**
+     * Get the instance keys of node that the originator should process. Without difference propagation these are the
+     * instance keys that delta adds to node, or the whole points-to set of node if delta is null. With difference
+     * propagation the delta is ignored, and these are exactly the instance keys that have not been returned to the
+     * originator (for the current representative of node) before, even if the originator is being processed by several
+     * threads at once.
+     *
+     * @param node node to get the points-to set of
+     * @param delta changes that triggered processing of originator, may be null
+     * @param originator statement and context that reads the points-to set
+     * @return iterator over some of the instance keys in the points-to set of node
+     */
+    public Iterator<InstanceKey> pointsToIterator(PointsToGraphNode node, GraphDelta delta, StmtAndContext originator) {
+        return pointsToIterator(lookupDictionary(node), delta, originator);
+    }
+
+    /**
+     * Get the instance keys of node that the originator should process, see
+     * {@link #pointsToIterator(PointsToGraphNode, GraphDelta, StmtAndContext)}.
+     *
+     * @param node int for the node to get the points-to set of, see {@link #lookupNode(ReferenceVariable, Context)}
+     * @param delta changes that triggered processing of originator, may be null
+     * @param originator statement and context that reads the points-to set
+     * @return iterator over some of the instance keys in the points-to set of node
+     */
+    public Iterator<InstanceKey> pointsToIterator(/*PointsToGraphNode*/int node, GraphDelta delta,
+                                                  StmtAndContext originator) {
+        if (!this.useDifferencePropagation) {
+            return delta == null ? new IntToInstanceKeyIterator(this.pointsToIntIterator(node, originator))
+                    : delta.pointsToIterator(node);
+        }
+        assert !this.graphFinished && originator != null;
+        if (this.derivations != null) {
+            this.derivations.recordRead(node, originator);
+        }
+        int n = this.getRepresentative(node);
+        this.recordRead(n, originator);
+        if (this.useCycleCollapsing) {
+            // See pointsToIntIterator
+            int rep;
+            while ((rep = this.getRepresentative(n)) != n) {
+                n = rep;
+                this.recordRead(n, originator);
+            }
+        }
+        return new IntToInstanceKeyIterator(unconsumedIntIterator(n, originator));
+    }
+
+    /**
+     * Claim the part of the log of n that the originator has not yet consumed. The read of n must have been recorded
+     * already, so that anything written to the log after the claim triggers the originator again.
+     */
+    private IntIterator unconsumedIntIterator(/*PointsToGraphNode*/int n, StmtAndContext originator) {
+        ConsumedPrefixes ps = this.consumedPrefixes.get(originator);
+        if (ps == null) {
+            ps = new ConsumedPrefixes();
+            ConsumedPrefixes existing = this.consumedPrefixes.putIfAbsent(originator, ps);
+            if (existing != null) {
+                ps = existing;
+            }
+        }
+        return claim(pointsToLog(n), ps.consumed(n));
+    }
+
+    /**
+     * Claim the written entries of the log after the given prefix, and extend the prefix over them. Each entry is
+     * claimed by exactly one caller, even if several threads claim from the same prefix at once.
+     *
+     * @param log log to claim entries of
+     * @param prefix number of entries already claimed
+     * @return iterator over the claimed entries
+     */
+    private static IntIterator claim(ConcurrentAppendOnlyIntList log, AtomicInteger prefix) {
+        int start;
+        int end;
+        do {
+            start = prefix.get();
+            end = log.writtenPrefixEnd(start);
+            if (start == end) {
+                return EmptyIntIterator.instance();
+            }
+        } while (!prefix.compareAndSet(start, end));
+        return log.iterator(start, end);
+    }
+
+    /**
+     * Get the number of entries of the log of source that have been propagated along the subset edge from source to
+     * target, creating it if it does not exist yet
+     *
+     * @param prefixes edgePrefixes or filteredEdgePrefixes
+     * @param source source of the subset edge
+     * @param target target of the subset edge
+     * @param initial number of propagated entries if the edge has no prefix yet
+     * @return the number of propagated entries
+     */
+    private static AtomicInteger edgePrefix(ConcurrentIntMap<ConcurrentIntMap<AtomicInteger>> prefixes,
+                                            /*PointsToGraphNode*/int source, /*PointsToGraphNode*/int target,
+                                            int initial) {
+        ConcurrentIntMap<AtomicInteger> m = prefixes.get(source);
+        if (m == null) {
+            m = PointsToAnalysisMultiThreaded.makeConcurrentIntMap();
+            ConcurrentIntMap<AtomicInteger> existing = prefixes.putIfAbsent(source, m);
+            if (existing != null) {
+                m = existing;
+            }
+        }
+        AtomicInteger p = m.get(target);
+        if (p == null) {
+            p = new AtomicInteger(initial);
+            AtomicInteger existing = m.putIfAbsent(target, p);
+            if (existing != null) {
+                p = existing;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Claim the instance keys in the log of source that have not been propagated along the subset edge from source to
+     * target. Everything source logs after the edge is added is propagated along it exactly once, by whichever thread
+     * claims it. (Before the edge is added, see computeDeltaForAddedSubsetRelation, the whole set is copied.)
+     *
+     * @param prefixes edgePrefixes or filteredEdgePrefixes
+     * @param source source of the subset edge, whose new elements have already been logged
+     * @param target target of the subset edge
+     * @return set of the claimed instance keys
+     */
+    private IntSet unpropagated(ConcurrentIntMap<ConcurrentIntMap<AtomicInteger>> prefixes,
+                                /*PointsToGraphNode*/int source, /*PointsToGraphNode*/int target) {
+        // If the edge has no prefix yet, then it is being added by another thread, and it is safe (if wasteful) to
+        // propagate the whole log along it.
+        IntIterator iter = claim(pointsToLog(source), edgePrefix(prefixes, source, target, 0));
+        if (!iter.hasNext()) {
+            return EmptyIntSet.INSTANCE;
+        }
+        MutableSparseIntSet s = MutableSparseIntSet.makeEmpty();
+        while (iter.hasNext()) {
+            s.add(iter.next());
+        }
+        return s;
+    }
+
+    private ConcurrentAppendOnlyIntList pointsToLog(/*PointsToGraphNode*/int n) {
+        ConcurrentAppendOnlyIntList log = this.pointsToLogs.get(n);
+        if (log == null) {
+            log = new ConcurrentAppendOnlyIntList();
+            ConcurrentAppendOnlyIntList existing = this.pointsToLogs.putIfAbsent(n, log);
+            if (existing != null) {
+                log = existing;
+            }
+        }
+        return log;
+    }
+
+    /**
+     * The prefix of the log of a node that a statement and context has consumed
+     */
+    private static final class ConsumedPrefix {
+        /**
+         * node whose log is consumed
+         */
+        final int node;
+        /**
+         * number of entries of the log that have been consumed
+         */
+        final AtomicInteger consumed = new AtomicInteger(0);
+
+        ConsumedPrefix(int node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * The prefixes of the logs of the nodes that a statement and context reads. A statement reads very few nodes (one,
+     * plus the representatives it is moved to by cycle collapsing), so they are found by a linear search.
+     */
+    private static final class ConsumedPrefixes {
+        /**
+         * Prefix for each node read so far. Replaced by a longer copy (while holding the lock on this object) when a
+         * new node is read.
+         */
+        private volatile ConsumedPrefix[] prefixes = new ConsumedPrefix[0];
+
+        /**
+         * Get the number of entries of the log of node that have been consumed, creating it if needed
+         */
+        AtomicInteger consumed(/*PointsToGraphNode*/int node) {
+            AtomicInteger c = find(this.prefixes, node);
+            if (c != null) {
+                return c;
+            }
+            synchronized (this) {
+                ConsumedPrefix[] ps = this.prefixes;
+                c = find(ps, node);
+                if (c == null) {
+                    ConsumedPrefix p = new ConsumedPrefix(node);
+                    ConsumedPrefix[] newPs = Arrays.copyOf(ps, ps.length + 1);
+                    newPs[ps.length] = p;
+                    this.prefixes = newPs;
+                    c = p.consumed;
+                }
+                return c;
+            }
+        }
+
+        private static AtomicInteger find(ConsumedPrefix[] ps, int node) {
+            for (ConsumedPrefix p : ps) {
+                if (p.node == node) {
+                    return p.consumed;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * With difference propagation, forget which parts of the points-to sets have been read, so that the next time each
+     * statement is processed it reads its whole points-to set. This is used to double check the fixed point.
+     */
+    public void forgetConsumedPrefixes() {
+        if (this.useDifferencePropagation) {
+            this.consumedPrefixes.clear();
+        }
+    }
+
     public IntIterator pointsToIntIterator(PointsToGraphNode n, StmtAndContext origninator) {
         assert !this.graphFinished;
         return pointsToIntIterator(lookupDictionary(n), origninator);
     }
     public IntIterator pointsToIntIterator(/*PointsToGraphNode*/int n, StmtAndContext originator) {
+        if (this.derivations != null && originator != null) {
+            this.derivations.recordRead(n, originator);
+        }
         MutableIntSet s;
         do {
             n = this.getRepresentative(n);
@@ -782,21 +1400,44 @@ public final class PointsToGraph {
         if (originator != null) {
             // If the originating statement is null then the graph is finished and there is no need to record this read
             this.recordRead(n, originator);
+
+            if (this.useCycleCollapsing) {
+                // n may have been collapsed after we found it to be its own representative, and the dependencies of n
+                // may already have been copied to the new representative. Record the read on the new
+                // representative(s) too, so that we do not miss any future changes.
+                int rep;
+                while ((rep = this.getRepresentative(n)) != n) {
+                    n = rep;
+                    this.recordRead(n, originator);
+                }
+            }
         }
 
         return s.intIterator();
     }
 
 
-    private static boolean satisfiesAny(Set<TypeFilter> filters, IClass type) {
+    private boolean satisfiesAny(Set<TypeFilter> filters, /*InstanceKey*/int i) {
         for (TypeFilter f : filters) {
-            if (f.satisfies(type)) {
+            if (satisfies(f, i)) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Does the instance key satisfy the filter? If instance keys are grouped by type, the filter is checked once for
+     * the block of the instance key (see {@link FilterBitmap#blockSatisfies(int)}), not once per instance key.
+     */
+    private boolean satisfies(TypeFilter filter, /*InstanceKey*/int i) {
+        if (!this.groupInstanceKeysByType || this.graphFinished) {
+            // the block types are discarded once the graph is finished
+            return filter.satisfies(this.concreteType(i));
+        }
+        return filterBitmap(filter).blockSatisfies(i >>> LOG_TYPE_BLOCK_SIZE);
+    }
+
     /**
      * Add a call at a particular call site from a caller (in a context) to a callee (in a context)
      *
@@ -809,6 +1450,20 @@ public final class PointsToGraph {
     public boolean addCall(CallSiteReference callSite, IMethod caller,
                            Context callerContext, IMethod callee,
                            Context calleeContext) {
+        return addCall(callSite, caller, callerContext, callee, calleeContext, false);
+    }
+
+    /**
+     * Add a call restored from a snapshot of an earlier run (see {@link IncrementalResume}). The callee context is
+     * made reachable, but its statements are not submitted, the caller restores what they did in the earlier run.
+     */
+    void restoreCall(CallSiteReference callSite, IMethod caller, Context callerContext, IMethod callee,
+                     Context calleeContext) {
+        addCall(callSite, caller, callerContext, callee, calleeContext, true);
+    }
+
+    private boolean addCall(CallSiteReference callSite, IMethod caller, Context callerContext, IMethod callee,
+                            Context calleeContext, boolean restoring) {
         int callerPair = lookupCallGraphDictionary(new OrderedPair<>(caller, callerContext));
         int calleePair = lookupCallGraphDictionary(new OrderedPair<>(callee, calleeContext));
 
@@ -832,6 +1487,13 @@ public final class PointsToGraph {
             }
         }
         s.add(calleePair);
+        if (restoring) {
+            this.getOrCreateContextSet(callee).add(calleeContext);
+            return true;
+        }
+        if (this.derivations != null) {
+            this.derivations.recordCall(callee, calleeContext);
+        }
 
         this.recordReachableContext(callee, calleeContext);
         return true;
@@ -921,6 +1583,7 @@ public final class PointsToGraph {
      *
      * @return heap abstraction factory for this pointer analysis
      */
+    @Override
     public HeapAbstractionFactory getHaf() {
         return haf;
     }
@@ -962,6 +1625,7 @@ public final class PointsToGraph {
      * @return call graph
      */
     @SuppressWarnings("deprecation")
+    @Override
     public HafCallGraph getCallGraph() {
         assert graphFinished;
         if (this.callGraph != null) {
@@ -972,27 +1636,24 @@ public final class PointsToGraph {
         HafCallGraph callGraph = new HafCallGraph(this.haf);
         this.callGraph = callGraph;
         try {
-            IntIterator callerIter = this.callGraphMap.keyIterator();
-            while (callerIter.hasNext()) {
-                int callerInt = callerIter.next();
-                OrderedPair<IMethod, Context> callerPair = callGraphNodeDictionary.get(callerInt);
-                IMethod caller = callerPair.fst();
-                Context callerContext = callerPair.snd();
-                CGNode src = callGraph.findOrCreateNode(caller, callerContext);
-
-                ConcurrentMap<CallSiteReference, MutableIntSet> m = this.callGraphMap.get(callerInt);
-                for (CallSiteReference callSite : m.keySet()) {
-                    MutableIntSet calleePairs = m.get(callSite);
-                    IntIterator calleeIter = calleePairs.intIterator();
-                    while (calleeIter.hasNext()) {
-                        OrderedPair<IMethod, Context> calleePair = callGraphNodeDictionary.get(calleeIter.next());
-                        IMethod callee = calleePair.fst();
-                        Context calleeContext = calleePair.snd();
-
-                        CGNode dst = callGraph.findOrCreateNode(callee, calleeContext);
-
-                        // We are building a call graph so it is safe to call this "deprecated" method
-                        src.addTarget(callSite, dst);
+            // CG node for each call graph node number, created on first use
+            CGNode[] cgNodes = new CGNode[this.callGraphNodeCounter.get()];
+            if (parallelCallGraph) {
+                this.addCallGraphEdgesInParallel(callGraph, cgNodes);
+            }
+            else {
+                IntIterator callerIter = this.callGraphMap.keyIterator();
+                while (callerIter.hasNext()) {
+                    int caller = callerIter.next();
+                    CGNode src = this.findOrCreateCGNode(callGraph, cgNodes, caller);
+                    ConcurrentMap<CallSiteReference, MutableIntSet> m = this.callGraphMap.get(caller);
+                    for (CallSiteReference callSite : m.keySet()) {
+                        IntIterator calleeIter = m.get(callSite).intIterator();
+                        while (calleeIter.hasNext()) {
+                            CGNode dst = this.findOrCreateCGNode(callGraph, cgNodes, calleeIter.next());
+                            // We are building a call graph so it is safe to call this "deprecated" method
+                            src.addTarget(callSite, dst);
+                        }
                     }
                 }
             }
@@ -1016,6 +1677,141 @@ public final class PointsToGraph {
 
     }
 
+    private CGNode findOrCreateCGNode(HafCallGraph callGraph, CGNode[] cgNodes, /*CallGraphNode*/int n)
+            throws CancelException {
+        CGNode node = cgNodes[n];
+        if (node == null) {
+            OrderedPair<IMethod, Context> pair = this.callGraphNodeDictionary.get(n);
+            node = callGraph.findOrCreateNode(pair.fst(), pair.snd());
+            cgNodes[n] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Add the edges in callGraphMap to the call graph, reading them on several threads. The callers are split into
+     * contiguous ranges, and the edges of each range are read into arrays by one thread. The edges of each range are
+     * added to the call graph (which is not thread-safe) by this thread as soon as that range and the ranges before it
+     * have been read, in the same order as callGraphMap.keyIterator() returns the callers, so the call graph is the
+     * same as if it was built by one thread. The arrays of a range are dropped once its edges have been added.
+     *
+     * @param callGraph call graph to add the edges to
+     * @param cgNodes CG node for each call graph node number, or null if it has not been created yet
+     */
+    @SuppressWarnings("deprecation")
+    private void addCallGraphEdgesInParallel(HafCallGraph callGraph, CGNode[] cgNodes) throws CancelException {
+        int[] callers = new int[this.callGraphMap.size()];
+        int numCallers = 0;
+        IntIterator callerIter = this.callGraphMap.keyIterator();
+        while (callerIter.hasNext()) {
+            if (numCallers == callers.length) {
+                callers = Arrays.copyOf(callers, 2 * numCallers + 1);
+            }
+            callers[numCallers++] = callerIter.next();
+        }
+        final int[] allCallers = callers;
+
+        int numPartitions = Math.max(1, Math.min(AnalysisUtil.numThreads, numCallers / 1024));
+        ExecutorService exec = Executors.newFixedThreadPool(numPartitions);
+        try {
+            List<Future<CallGraphEdges>> partitions = new ArrayList<>(numPartitions);
+            for (int p = 0; p < numPartitions; p++) {
+                final int start = (int) ((long) numCallers * p / numPartitions);
+                final int end = (int) ((long) numCallers * (p + 1) / numPartitions);
+                partitions.add(exec.submit(new Callable<CallGraphEdges>() {
+                    @Override
+                    public CallGraphEdges call() {
+                        return PointsToGraph.this.collectCallGraphEdges(allCallers, start, end);
+                    }
+                }));
+            }
+            for (int p = 0; p < numPartitions; p++) {
+                CallGraphEdges edges = partitions.get(p).get();
+                partitions.set(p, null);
+                int edge = 0;
+                for (int i = 0; i < edges.numCallers; i++) {
+                    CGNode src = this.findOrCreateCGNode(callGraph, cgNodes, edges.callers[i]);
+                    for (; edge < edges.callerEnd[i]; edge++) {
+                        CGNode dst = this.findOrCreateCGNode(callGraph, cgNodes, edges.callees[edge]);
+                        // We are building a call graph so it is safe to call this "deprecated" method
+                        src.addTarget(edges.callSites[edge], dst);
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            exec.shutdownNow();
+        }
+    }
+
+    /**
+     * Read the call graph edges of callers[start] to callers[end - 1] from callGraphMap
+     */
+    private CallGraphEdges collectCallGraphEdges(int[] callers, int start, int end) {
+        CallGraphEdges edges = new CallGraphEdges(end - start);
+        for (int i = start; i < end; i++) {
+            int caller = callers[i];
+            ConcurrentMap<CallSiteReference, MutableIntSet> m = this.callGraphMap.get(caller);
+            for (CallSiteReference callSite : m.keySet()) {
+                IntIterator calleeIter = m.get(callSite).intIterator();
+                while (calleeIter.hasNext()) {
+                    edges.addEdge(callSite, calleeIter.next());
+                }
+            }
+            edges.finishCaller(caller);
+        }
+        return edges;
+    }
+
+    /**
+     * Call graph edges of a range of callers, grouped by caller
+     */
+    private static final class CallGraphEdges {
+        /**
+         * Callers in the range
+         */
+        final int[] callers;
+        int numCallers = 0;
+        /**
+         * The edges of callers[i] are at the indices from callerEnd[i - 1] (or 0) up to callerEnd[i]
+         */
+        final int[] callerEnd;
+        CallSiteReference[] callSites = new CallSiteReference[16];
+        int[] callees = new int[16];
+        int numEdges = 0;
+
+        CallGraphEdges(int numCallers) {
+            this.callers = new int[numCallers];
+            this.callerEnd = new int[numCallers];
+        }
+
+        void addEdge(CallSiteReference callSite, /*CallGraphNode*/int callee) {
+            if (this.numEdges == this.callees.length) {
+                this.callSites = Arrays.copyOf(this.callSites, 2 * this.numEdges);
+                this.callees = Arrays.copyOf(this.callees, 2 * this.numEdges);
+            }
+            this.callSites[this.numEdges] = callSite;
+            this.callees[this.numEdges] = callee;
+            this.numEdges++;
+        }
+
+        /**
+         * All the edges added since the last call are from the given caller
+         */
+        void finishCaller(/*CallGraphNode*/int caller) {
+            this.callers[this.numCallers] = caller;
+            this.callerEnd[this.numCallers] = this.numEdges;
+            this.numCallers++;
+        }
+    }
+
     private void recordRead(/*PointsToGraphNode*/int node, StmtAndContext sac) {
         this.depRecorder.recordRead(node, sac);
     }
@@ -1028,7 +1824,7 @@ public final class PointsToGraph {
      * @param rep
      */
     void collapseNodes(/*PointsToGraphNode*/int n, /*PointsToGraphNode*/int rep, GraphDelta delta) {
-        if (!USE_CYCLE_COLLAPSING) {
+        if (!this.useCycleCollapsing) {
             throw new UnsupportedOperationException("We do not currently support cycle collapsing");
         }
         assert n != rep : "Can't collapse a node with itself";
@@ -1052,14 +1848,16 @@ public final class PointsToGraph {
 
             assert rep < n : "Should always collapse to the lowest number node";
 
-            // Notify the dependency recorder
-            depRecorder.startCollapseNode(n, rep);
-
             Integer existingRep = this.immediateRepresentative.putIfAbsent(n, rep);
             if (existingRep == null) {
                 // we were the first to put it in, so update the representative map
                 Integer old = this.representative.putIfAbsent(n, rep);
                 assert old == null;
+
+                // Notify the dependency recorder. This must happen after the representative has been published: any
+                // read of n recorded after the dependencies have been copied will see the new representative and
+                // record the read on rep as well (see pointsToIntIterator).
+                depRecorder.startCollapseNode(n, rep);
                 break;
             }
             if (existingRep.intValue() == rep) {
@@ -1088,13 +1886,13 @@ public final class PointsToGraph {
             while (iter.hasNext()) {
                 int ss = this.getRepresentative(iter.next());
                 if (rep != ss && this.isUnfilteredSubsetOf.add(rep, ss)) {
+                    this.depRecorder.recordSubsetEdge(rep, ss);
                     // we added a new relation from rep to ss, because there was a relation from
                     // n to ss. So we are responsible for propagating
                     // all any new additions to the pointsTo sets.
                     addToSetAndSupersets(delta,
                                          ss,
-                                         repSet.intIterator(),
-                                         repSet.size(),
+                                         repSet,
                                          true,
                                          MutableSparseIntSet.makeEmpty(),
                                          new IntStack(),
@@ -1108,16 +1906,17 @@ public final class PointsToGraph {
         if (filteredSupersets != null) {
             IntIterator iter = filteredSupersets.keyIterator();
             while (iter.hasNext()) {
-                int ss = this.getRepresentative(iter.next());
+                int superset = iter.next();
+                int ss = this.getRepresentative(superset);
                 if (rep == ss) {
                     continue;
                 }
-                for (TypeFilter filter : filteredSupersets.get(ss)) {
+                for (TypeFilter filter : filteredSupersets.get(superset)) {
                     if (this.isFilteredSubsetOf.add(rep, ss, filter)) {
+                        this.depRecorder.recordSubsetEdge(rep, ss);
                         addToSetAndSupersets(delta,
                                              ss,
-                                             new FilteredIterator(repSet.intIterator(), filter),
-                                             repSet.size(),
+                                             new FilteredIntSet(repSet, Collections.singleton(filter)),
                                              true,
                                              MutableSparseIntSet.makeEmpty(),
                                              new IntStack(),
@@ -1132,7 +1931,7 @@ public final class PointsToGraph {
         // n, to make sure that we trigger all appropriate
         // statements that depended on n.
         // (This is needed for correctness.)
-        addToSetAndSupersets(delta, n, repSet.intIterator(), repSet.size(), false, // no need to add them to the supersets of n...
+        addToSetAndSupersets(delta, n, repSet, false, // no need to add them to the supersets of n...
                              MutableSparseIntSet.makeEmpty(),
                              new IntStack(),
                              new Stack<Set<TypeFilter>>(),
@@ -1167,6 +1966,10 @@ public final class PointsToGraph {
      */
     public boolean addClassInitializers(List<IMethod> classInits) {
         Context initialContext = this.haf.initialContext();
+        if (this.derivations != null) {
+            // Record all of them, the statement that added the first ones may be removed in a later run
+            this.derivations.recordClassInitializers(classInits);
+        }
 
         boolean cgChanged = false;
         for (int j = classInits.size() - 1; j >= 0; j--) {
@@ -1190,6 +1993,41 @@ public final class PointsToGraph {
         return cgChanged;
     }
 
+    /**
+     * Add class initializers restored from a snapshot of an earlier run (see {@link IncrementalResume}). The
+     * initializers are made reachable in the initial context, but their statements are not submitted.
+     *
+     * @param classInits class initializers, with the initializers of their super classes
+     */
+    void restoreClassInitializers(Collection<IMethod> classInits) {
+        Context initialContext = this.haf.initialContext();
+        for (IMethod clinit : classInits) {
+            if (this.classInitializers.add(clinit)) {
+                this.getOrCreateContextSet(clinit).add(initialContext);
+                this.clinitCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Record that a (statement, context) pair restored from a snapshot of an earlier run (see
+     * {@link IncrementalResume}) read the given node in that run, so that it is processed again when the points-to
+     * set of the node grows
+     */
+    void restoreRead(/*PointsToGraphNode*/int node, StmtAndContext sac) {
+        if (this.derivations != null) {
+            this.derivations.recordRead(node, sac);
+        }
+        this.recordRead(this.getRepresentative(node), sac);
+    }
+
+    /**
+     * What each (statement, context) pair did to the graph, null if derivations are not recorded
+     */
+    public Derivations getDerivations() {
+        return this.derivations;
+    }
+
     /**
      * Add new entry point methods (i.e. methods called in the empty context)
      *
@@ -1234,7 +2072,7 @@ public final class PointsToGraph {
         @SuppressWarnings("synthetic-access")
         @Override
         public boolean contains(int o) {
-            return this.s.contains(o) && satisfiesAny(filters, PointsToGraph.this.concreteType(o));
+            return this.s.contains(o) && satisfiesAny(filters, o);
         }
 
         @Override
@@ -1303,6 +2141,142 @@ public final class PointsToGraph {
             return this.s.size();
         }
 
+        /**
+         * If the underlying set is a bit set then compute this set a word at a time, by ANDing the underlying set with
+         * the bitmaps of the instance keys that satisfy the filters.
+         *
+         * @return a new bit set with the elements of this set, or null if the underlying set is not a bit set
+         */
+        @SuppressWarnings("synthetic-access")
+        ConcurrentMonotonicIntBitSet filterBitSet() {
+            IntSet base = this.s instanceof FilteredIntSet ? ((FilteredIntSet) this.s).filterBitSet() : this.s;
+            if (!(base instanceof ConcurrentMonotonicIntBitSet)) {
+                return null;
+            }
+            ConcurrentMonotonicIntBitSet result = null;
+            for (TypeFilter filter : this.filters) {
+                ConcurrentMonotonicIntBitSet satisfying =
+                        filterBitmap(filter).filter((ConcurrentMonotonicIntBitSet) base);
+                if (result == null) {
+                    result = satisfying;
+                }
+                else {
+                    result.addAll(satisfying);
+                }
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Bitmaps of the instance keys that satisfy a type filter, so that a bit set of instance keys can be filtered a
+     * word at a time. The bitmaps grow as the filter is used: each instance key is checked against the filter (by
+     * looking at its concrete type) the first time a set containing it is filtered.
+     */
+    private final class FilterBitmap {
+        private final TypeFilter filter;
+        /**
+         * Instance keys that have been checked against the filter
+         */
+        private final ConcurrentMonotonicIntBitSet decided = new ConcurrentMonotonicIntBitSet();
+        /**
+         * Instance keys that have been checked and satisfy the filter
+         */
+        private final ConcurrentMonotonicIntBitSet satisfied = new ConcurrentMonotonicIntBitSet();
+        /**
+         * Indices of the blocks of instance keys that have been checked against the filter. Only used if instance keys
+         * are grouped by type.
+         */
+        private final ConcurrentMonotonicIntBitSet decidedBlocks;
+        /**
+         * Indices of the blocks of instance keys that have been checked and satisfy the filter. Only used if instance
+         * keys are grouped by type.
+         */
+        private final ConcurrentMonotonicIntBitSet satisfiedBlocks;
+
+        @SuppressWarnings("synthetic-access")
+        FilterBitmap(TypeFilter filter) {
+            this.filter = filter;
+            this.decidedBlocks = PointsToGraph.this.groupInstanceKeysByType ? new ConcurrentMonotonicIntBitSet() : null;
+            this.satisfiedBlocks = PointsToGraph.this.groupInstanceKeysByType ? new ConcurrentMonotonicIntBitSet()
+                    : null;
+        }
+
+        /**
+         * Do the instance keys in the block with the given index satisfy the filter? They all have the same concrete
+         * type, so the type is looked up and checked against the filter once per block. Only used if instance keys
+         * are grouped by type.
+         *
+         * @param block instance key number divided by TYPE_BLOCK_SIZE
+         */
+        @SuppressWarnings("synthetic-access")
+        boolean blockSatisfies(int block) {
+            if (this.decidedBlocks.contains(block)) {
+                return this.satisfiedBlocks.contains(block);
+            }
+            boolean sat = this.filter.satisfies(PointsToGraph.this.blockTypeDictionary.get(block));
+            if (sat) {
+                this.satisfiedBlocks.add(block);
+            }
+            // Add to decided after satisfied, so that any thread that sees the block as decided also sees whether it
+            // satisfies the filter.
+            this.decidedBlocks.add(block);
+            return sat;
+        }
+
+        /**
+         * Get the elements of s that satisfy the filter
+         *
+         * @param s set of instance keys
+         * @return new set containing the elements of s that satisfy the filter
+         */
+        @SuppressWarnings("synthetic-access")
+        ConcurrentMonotonicIntBitSet filter(ConcurrentMonotonicIntBitSet s) {
+            IntIterator undecided = s.andNot(this.decided).intIterator();
+            while (undecided.hasNext()) {
+                int i = undecided.next();
+                if (PointsToGraph.this.groupInstanceKeysByType) {
+                    // Every instance key in the block of i has the same type, so decide the whole block at once
+                    if (this.decided.contains(i)) {
+                        // decided with an earlier element of the block
+                        continue;
+                    }
+                    int start = i & ~(TYPE_BLOCK_SIZE - 1);
+                    if (blockSatisfies(start >>> LOG_TYPE_BLOCK_SIZE)) {
+                        for (int j = start; j < start + TYPE_BLOCK_SIZE; j++) {
+                            this.satisfied.add(j);
+                        }
+                    }
+                    for (int j = start; j < start + TYPE_BLOCK_SIZE; j++) {
+                        this.decided.add(j);
+                    }
+                    continue;
+                }
+                if (this.filter.satisfies(PointsToGraph.this.concreteType(i))) {
+                    this.satisfied.add(i);
+                }
+                // Add to decided after satisfied, so that any thread that sees i as decided also sees whether it
+                // satisfies the filter.
+                this.decided.add(i);
+            }
+            return s.and(this.satisfied);
+        }
+    }
+
+    /**
+     * Get the bitmaps for the filter, creating them if needed
+     */
+    private FilterBitmap filterBitmap(TypeFilter filter) {
+        FilterBitmap b = this.filterBitmaps.get(filter);
+        if (b == null) {
+            b = new FilterBitmap(filter);
+            FilterBitmap existing = this.filterBitmaps.putIfAbsent(filter, b);
+            if (existing != null) {
+                b = existing;
+            }
+        }
+        return b;
     }
 
     class FilteredIterator implements IntIterator {
@@ -1310,6 +2284,16 @@ public final class PointsToGraph {
         private final TypeFilter filter;
         private final Set<TypeFilter> filters;
         private int next = -1;
+        /**
+         * If instance keys are grouped by type, the index of the block of the last instance key checked, so that the
+         * other instance keys of the block (which are usually next, since sets are iterated in ascending order) use the
+         * same answer
+         */
+        private int lastBlock = -1;
+        /**
+         * Whether the instance keys in lastBlock satisfy the filters
+         */
+        private boolean lastBlockSatisfies = false;
 
         FilteredIterator(IntIterator iter, TypeFilter filter) {
             this.filter = filter;
@@ -1348,9 +2332,7 @@ public final class PointsToGraph {
         public boolean hasNext() {
             while (this.next < 0 && this.iter.hasNext()) {
                 int i = this.iter.next();
-                IClass type = PointsToGraph.this.concreteType(i);
-                if (this.filter != null && this.filter.satisfies(type) || this.filters != null
-                        && satisfiesAny(filters, type)) {
+                if (satisfiesFilters(i)) {
                     this.next = i;
                 }
             }
@@ -1358,6 +2340,20 @@ public final class PointsToGraph {
             return this.next >= 0;
         }
 
+        @SuppressWarnings("synthetic-access")
+        private boolean satisfiesFilters(/*InstanceKey*/int i) {
+            if (!PointsToGraph.this.groupInstanceKeysByType) {
+                return this.filter != null ? satisfies(this.filter, i) : satisfiesAny(this.filters, i);
+            }
+            int block = i >>> LOG_TYPE_BLOCK_SIZE;
+            if (block != this.lastBlock) {
+                this.lastBlock = block;
+                this.lastBlockSatisfies = this.filter != null ? satisfies(this.filter, i)
+                        : satisfiesAny(this.filters, i);
+            }
+            return this.lastBlockSatisfies;
+        }
+
         @Override
         public int next() {
             if (this.hasNext()) {
@@ -1411,17 +2407,34 @@ public final class PointsToGraph {
         return this.pointsTo;
     }
 
+    /**
+     * Iterate over the numbers of all instance keys in the graph
+     */
+    public IntIterator instanceKeyIterator() {
+        return this.instanceKeyDictionary.keyIterator();
+    }
+
+    /**
+     * Get the instance key with the given number
+     *
+     * @param ik number of the instance key
+     * @return instance key, or null if there is no instance key with that number
+     */
+    public InstanceKey lookupInstanceKey(/*InstanceKey*/int ik) {
+        return this.instanceKeyDictionary.get(ik);
+    }
+
     private MutableIntSet pointsToSet(/*PointsToGraphNode*/int n) {
         MutableIntSet s = this.pointsTo.get(n);
         if (s == null && !graphFinished) {
-            if (USE_CYCLE_COLLAPSING) {
+            if (this.useCycleCollapsing) {
                 if (this.isCollapsedNode(n)) {
                     // we've collapsed this node. Don't recreate a points to set for it.
                     // Clients just have to deal with this maybe returning null.
                     return null;
                 }
             }
-            s = PointsToAnalysisMultiThreaded.makeConcurrentIntSet();
+            s = PointsToAnalysisMultiThreaded.makeConcurrentPointsToSet();
             MutableIntSet ex = this.pointsTo.putIfAbsent(n, s);
             if (ex != null) {
                 // someone beat us to it!
@@ -1435,18 +2448,115 @@ public final class PointsToGraph {
     }
 
     public int cycleRemovalCount() {
-        if (!USE_CYCLE_COLLAPSING) {
+        if (!this.useCycleCollapsing) {
             return 0;
         }
         return this.immediateRepresentative.size();
     }
 
+    /**
+     * Compute a topological numbering of the subset graph, i.e., of the unfiltered and filtered subset relations. Nodes
+     * in the same strongly connected component get the same number, and if the points-to set of a is a subset of the
+     * points-to set of b (and they are not in the same component) then the number of a is less than the number of b.
+     * Changes flow from lower numbers to higher numbers.
+     *
+     * The relations may be modified while this runs, in which case the numbering is only approximately topological.
+     * Nodes created after this method starts are not numbered.
+     *
+     * @return array mapping each PointsToGraphNode (that existed when the method was called) to its number
+     */
+    public int[] subsetGraphTopologicalOrder() {
+        int numNodes = this.graphNodeCounter.get();
+        // Iterative version of Tarjan's algorithm. index[n] is 0 for nodes not yet visited
+        int[] index = new int[numNodes];
+        int[] lowlink = new int[numNodes];
+        boolean[] onStack = new boolean[numNodes];
+        // Tarjan's algorithm finds components in reverse topological order
+        int[] reverseOrder = new int[numNodes];
+        IntStack sccStack = new IntStack();
+        IntStack callStack = new IntStack();
+        List<IntIterator> successorStack = new ArrayList<>();
+        int nextIndex = 1;
+        int numComponents = 0;
+
+        for (int root = 0; root < numNodes; root++) {
+            if (index[root] != 0) {
+                continue;
+            }
+            index[root] = lowlink[root] = nextIndex++;
+            sccStack.push(root);
+            onStack[root] = true;
+            callStack.push(root);
+            successorStack.add(subsetSuccessors(root));
+
+            while (!callStack.isEmpty()) {
+                int v = callStack.peek();
+                IntIterator succs = successorStack.get(successorStack.size() - 1);
+                if (succs.hasNext()) {
+                    int w = succs.next();
+                    if (w >= numNodes) {
+                        // created after we started
+                        continue;
+                    }
+                    if (index[w] == 0) {
+                        index[w] = lowlink[w] = nextIndex++;
+                        sccStack.push(w);
+                        onStack[w] = true;
+                        callStack.push(w);
+                        successorStack.add(subsetSuccessors(w));
+                    }
+                    else if (onStack[w] && index[w] < lowlink[v]) {
+                        lowlink[v] = index[w];
+                    }
+                    continue;
+                }
+
+                // finished with the successors of v
+                callStack.pop();
+                successorStack.remove(successorStack.size() - 1);
+                if (lowlink[v] == index[v]) {
+                    // v is the root of a component
+                    int w;
+                    do {
+                        w = sccStack.pop();
+                        onStack[w] = false;
+                        reverseOrder[w] = numComponents;
+                    } while (w != v);
+                    numComponents++;
+                }
+                if (!callStack.isEmpty()) {
+                    int u = callStack.peek();
+                    if (lowlink[v] < lowlink[u]) {
+                        lowlink[u] = lowlink[v];
+                    }
+                }
+            }
+        }
+
+        for (int n = 0; n < numNodes; n++) {
+            reverseOrder[n] = numComponents - 1 - reverseOrder[n];
+        }
+        return reverseOrder;
+    }
+
+    /**
+     * Nodes that n is an (unfiltered or filtered) subset of
+     */
+    private IntIterator subsetSuccessors(/*PointsToGraphNode*/int n) {
+        IntIterator unfiltered = this.isUnfilteredSubsetOf.forward(n).intIterator();
+        IntMap<Set<TypeFilter>> filtered = this.isFilteredSubsetOf.forwardIfPresent(n);
+        if (filtered == null) {
+            return unfiltered;
+        }
+        return new CompoundIntIterator(unfiltered, filtered.keyIterator());
+    }
+
     /**
      * Find cycles in the superset relation of the pointstograph nodes, and collapse them. Note that this method is not
      * thread safe.
      */
     public GraphDelta findCycles() {
-        if (!USE_CYCLE_COLLAPSING) {
+        if (!this.useCycleCollapsing) {
             return null;
         }
         GraphDelta delta = new GraphDelta(this);
@@ -1481,7 +2591,7 @@ public final class PointsToGraph {
 
     private void findCycles(/*PointsToGraphNode*/int n, MutableIntSet visited, MutableIntSet currentlyVisiting,
                             IntStack currentlyVisitingStack, IntMap<MutableIntSet> toCollapse) {
-        if (!USE_CYCLE_COLLAPSING) {
+        if (!this.useCycleCollapsing) {
             throw new UnsupportedOperationException("We do not currently support collapsing cycles.");
         }
         if (isCollapsedNode(n)) {
@@ -1551,8 +2661,16 @@ public final class PointsToGraph {
         // set various fields to null to allow them to be garbage collected.
         this.reverseInstanceKeyDictionary = null;
         this.concreteTypeDictionary = null;
+        this.currentTypeBlock = null;
+        this.blockTypeDictionary = null;
         this.isUnfilteredSubsetOf = null;
         this.isFilteredSubsetOf = null;
+        this.pointsToLogs = null;
+        this.consumedPrefixes = null;
+        this.edgePrefixes = null;
+        this.filteredEdgePrefixes = null;
+        this.replicaNodeDictionary = null;
+        this.filterBitmaps = null;
 
         // construct the call graph before we clear out a lot of stuff.
         this.getCallGraph();
@@ -1560,21 +2678,17 @@ public final class PointsToGraph {
         this.entryPoints = null;
         this.callGraphMap = null;
 
-        // make more compact, read-only versions of the sets.
+        // make more compact, read-only versions of the sets. Nodes with the same points-to set (e.g., replicas of a
+        // local in different contexts) share a single copy. Empty sets are replaced too, so that no set allocated
+        // while solving (e.g., in direct memory) is still used.
+        IntSetInterner interner = new IntSetInterner();
         IntIterator keyIterator = pointsTo.keyIterator();
         while (keyIterator.hasNext()) {
             int key = keyIterator.next();
             MutableIntSet ms = pointsTo.get(key);
-            int size = ms.size();
-            if (size > 0) {
-                MutableIntSet newMS = MutableSparseIntSet.createMutableSparseIntSet(size);
-                IntIterator iter = ms.intIterator();
-                while (iter.hasNext()) {
-                    newMS.add(iter.next());
-                }
-                pointsTo.put(key, newMS);
-            }
+            pointsTo.put(key, ms.isEmpty() ? EmptyIntSet.INSTANCE : interner.intern(ms));
         }
+        interner.printStatistics("pointsTo");
 
         // this.reachableContexts = compact(this.reachableContexts);
         this.pointsTo = compact(this.pointsTo, "pointsTo");
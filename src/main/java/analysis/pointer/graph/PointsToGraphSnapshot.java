@@ -0,0 +1,1372 @@
+package analysis.pointer.graph;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+import util.OrderedPair;
+import analysis.pointer.analyses.HeapAbstractionFactory;
+import analysis.pointer.analyses.RecordingHeapAbstractionFactory;
+import analysis.pointer.analyses.RecordingHeapAbstractionFactory.Merge;
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+import analysis.pointer.graph.Derivations.Derivation;
+import analysis.pointer.graph.Derivations.SubsetEdge;
+import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
+import analysis.pointer.registrar.StatementFingerprints;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.statements.AllocSiteNodeFactory.AllocSiteNode;
+import analysis.pointer.statements.CallStatement;
+import analysis.pointer.statements.PointsToStatement;
+
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+
+/**
+ * Read-only view of a finished points-to graph and its call graph, saved to a compact binary file. The file is memory
+ * mapped when it is loaded, and points-to sets are decoded only when they are asked for, so loading a snapshot of a
+ * large graph is fast and uses little heap.
+ * <p>
+ * Graph nodes, instance keys and call graph nodes are identified by the ints the points-to graph assigned to them.
+ * The objects themselves (which refer to the class hierarchy and the IR of the run that created them) are not saved.
+ * Instead the snapshot records a description (the <code>toString</code>) of each of them, and, if the graph was
+ * computed with a {@link RecordingHeapAbstractionFactory}, a key from which the object can be created again in a later
+ * run (see {@link SnapshotKeys}). Contexts are numbered by the snapshot, so that a context is numbered after the
+ * contexts and instance keys it was created from. {@link #rebuild(StatementRegistrar, HeapAbstractionFactory)} uses
+ * the keys to answer points-to queries about the objects of a later run without running the points-to analysis.
+ * <p>
+ * The file consists of the following sections, each starting with the number of entries. All ints are big-endian,
+ * and the tables are sorted by their first column. A key length of -1 means the entry has no key.
+ *
+ * <pre>
+ * MAGIC VERSION
+ * points-to sets      : (node, first element, size)*
+ * set elements        : int*             (sorted within each set, identical sets are stored once)
+ * contexts            : (context, first byte, length, first key byte, key length)*
+ * instance keys       : (ik, first byte, length, first key byte, key length)*
+ * graph nodes         : (node, first byte, length, first key byte, key length)*
+ * graph node keys     : (hash of key, node)*
+ * call graph nodes    : (cg node, first byte, length, first key byte, key length, first successor,
+ *                        number of successors, first call, number of calls, is entry point)*
+ * call graph edges    : int*             (successors, sorted for each node)
+ * calls               : (program counter, callee)*
+ * derivation methods  : (first key byte, key length)*
+ * derivation filters  : (first key byte, key length)*
+ * derivation types    : (first key byte, key length, first key byte, key length)*
+ * derivations         : int*             (see below)
+ * descriptions        : byte*            (UTF-8 descriptions and keys)
+ * </pre>
+ *
+ * If the graph recorded its {@link Derivations}, the derivation sections describe what each (statement, context) pair
+ * did, so that a later run can resume the analysis from the snapshot (see {@link IncrementalResume}). Statements are
+ * identified by their method and fingerprint (see {@link StatementFingerprints}), and the pairs of statements with
+ * the same fingerprint in the same method and context are merged. Each derivation is: the index of the method in the
+ * methods table, the first byte and length of the fingerprint, the number of statements of the method with that
+ * fingerprint, the context, then a count followed by the entries for each of the nodes read, the nodes written, the
+ * subset edges (source, index of the filter or -1, target), the callees (method index, context) and the class
+ * initializers (method index). The types table holds the key of the concrete type of each instance key, with its
+ * {@link SnapshotKeys#hierarchyKey(IClass) hierarchy key}.
+ * <p>
+ * The file must be smaller than 2GB. A snapshot of a finished graph is written by {@link #write(PointsToGraph, File)},
+ * other snapshots can be put together with a {@link Builder}.
+ */
+public class PointsToGraphSnapshot {
+    private static final int MAGIC = 0x41505447; // "APTG"
+    private static final int VERSION = 3;
+
+    private static final int SET_ENTRY_INTS = 3;
+    private static final int NAME_ENTRY_INTS = 5;
+    private static final int NODE_KEY_ENTRY_INTS = 2;
+    private static final int CG_ENTRY_INTS = 10;
+    private static final int CALL_ENTRY_INTS = 2;
+    private static final int STRING_ENTRY_INTS = 2;
+    private static final int TYPE_ENTRY_INTS = 4;
+
+    /**
+     * Contents of the file
+     */
+    private final MappedByteBuffer buf;
+
+    // Byte positions and number of entries of each section
+    private final int setTable;
+    private final int numSets;
+    private final int setElements;
+    private final int contextTable;
+    private final int numContexts;
+    private final int instanceKeyTable;
+    private final int numInstanceKeys;
+    private final int graphNodeTable;
+    private final int numGraphNodes;
+    private final int nodeKeyTable;
+    private final int numNodeKeys;
+    private final int cgNodeTable;
+    private final int numCGNodes;
+    private final int cgEdges;
+    private final int calls;
+    private final int derivationMethods;
+    private final int numDerivationMethods;
+    private final int derivationFilters;
+    private final int numDerivationFilters;
+    private final int derivationTypes;
+    private final int numDerivationTypes;
+    private final int derivations;
+    private final int derivationsLength;
+    private final int descriptions;
+
+    private PointsToGraphSnapshot(MappedByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a points-to graph snapshot");
+        }
+        if (buf.getInt(4) != VERSION) {
+            throw new IOException("Unsupported points-to graph snapshot version " + buf.getInt(4));
+        }
+        int pos = 8;
+        this.numSets = buf.getInt(pos);
+        this.setTable = pos + 4;
+        pos = this.setTable + 4 * SET_ENTRY_INTS * this.numSets;
+
+        this.setElements = pos + 4;
+        pos = this.setElements + 4 * buf.getInt(pos);
+
+        this.numContexts = buf.getInt(pos);
+        this.contextTable = pos + 4;
+        pos = this.contextTable + 4 * NAME_ENTRY_INTS * this.numContexts;
+
+        this.numInstanceKeys = buf.getInt(pos);
+        this.instanceKeyTable = pos + 4;
+        pos = this.instanceKeyTable + 4 * NAME_ENTRY_INTS * this.numInstanceKeys;
+
+        this.numGraphNodes = buf.getInt(pos);
+        this.graphNodeTable = pos + 4;
+        pos = this.graphNodeTable + 4 * NAME_ENTRY_INTS * this.numGraphNodes;
+
+        this.numNodeKeys = buf.getInt(pos);
+        this.nodeKeyTable = pos + 4;
+        pos = this.nodeKeyTable + 4 * NODE_KEY_ENTRY_INTS * this.numNodeKeys;
+
+        this.numCGNodes = buf.getInt(pos);
+        this.cgNodeTable = pos + 4;
+        pos = this.cgNodeTable + 4 * CG_ENTRY_INTS * this.numCGNodes;
+
+        this.cgEdges = pos + 4;
+        pos = this.cgEdges + 4 * buf.getInt(pos);
+
+        this.calls = pos + 4;
+        pos = this.calls + 4 * CALL_ENTRY_INTS * buf.getInt(pos);
+
+        this.numDerivationMethods = buf.getInt(pos);
+        this.derivationMethods = pos + 4;
+        pos = this.derivationMethods + 4 * STRING_ENTRY_INTS * this.numDerivationMethods;
+
+        this.numDerivationFilters = buf.getInt(pos);
+        this.derivationFilters = pos + 4;
+        pos = this.derivationFilters + 4 * STRING_ENTRY_INTS * this.numDerivationFilters;
+
+        this.numDerivationTypes = buf.getInt(pos);
+        this.derivationTypes = pos + 4;
+        pos = this.derivationTypes + 4 * TYPE_ENTRY_INTS * this.numDerivationTypes;
+
+        this.derivationsLength = buf.getInt(pos);
+        this.derivations = pos + 4;
+        pos = this.derivations + 4 * this.derivationsLength;
+
+        this.descriptions = pos + 4;
+        if (this.descriptions + buf.getInt(pos) != buf.capacity()) {
+            throw new IOException("Corrupt points-to graph snapshot");
+        }
+    }
+
+    /**
+     * Map a snapshot written by {@link #write(PointsToGraph, File)} or a {@link Builder} into memory
+     *
+     * @param file snapshot file
+     * @return read-only view of the points-to graph in the file
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static PointsToGraphSnapshot load(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            // The mapping remains valid after the channel is closed
+            return new PointsToGraphSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Find the entry for key in a table sorted by its first column
+     *
+     * @return index of the entry, or -1 if there is none
+     */
+    private int find(int table, int numEntries, int entryInts, int key) {
+        int lo = 0;
+        int hi = numEntries - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int k = this.buf.getInt(table + 4 * entryInts * mid);
+            if (k < key) {
+                lo = mid + 1;
+            }
+            else if (k > key) {
+                hi = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int column(int table, int entryInts, int entry, int column) {
+        return this.buf.getInt(table + 4 * (entryInts * entry + column));
+    }
+
+    /**
+     * Description (if column is 1) or key (if column is 3) of the given entry of a table with names
+     */
+    private String string(int table, int numEntries, int entryInts, int entryNumber, int column) {
+        int e = find(table, numEntries, entryInts, entryNumber);
+        if (e < 0 || column(table, entryInts, e, column + 1) < 0) {
+            return null;
+        }
+        return string(column(table, entryInts, e, column), column(table, entryInts, e, column + 1));
+    }
+
+    /**
+     * String with the given position and length in the descriptions section
+     */
+    private String string(int first, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = this.buf.get(this.descriptions + first + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String description(int table, int numEntries, int entryInts, int entryNumber) {
+        return string(table, numEntries, entryInts, entryNumber, 1);
+    }
+
+    private String key(int table, int numEntries, int entryInts, int entryNumber) {
+        return string(table, numEntries, entryInts, entryNumber, 3);
+    }
+
+    /**
+     * Iterate over count ints starting at the given byte position
+     */
+    private IntIterator intIterator(final int start, final int count) {
+        return new IntIterator() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.i < count;
+            }
+
+            @Override
+            public int next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return PointsToGraphSnapshot.this.buf.getInt(start + 4 * this.i++);
+            }
+        };
+    }
+
+    /**
+     * Number of points-to graph nodes with a non-empty points-to set
+     */
+    public int numPointsToGraphNodes() {
+        return this.numSets;
+    }
+
+    /**
+     * Iterate over the graph nodes with non-empty points-to sets, in increasing order
+     */
+    public IntIterator pointsToGraphNodeIterator() {
+        return new IntIterator() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.i < PointsToGraphSnapshot.this.numSets;
+            }
+
+            @Override
+            public int next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return column(PointsToGraphSnapshot.this.setTable, SET_ENTRY_INTS, this.i++, 0);
+            }
+        };
+    }
+
+    /**
+     * Number of instance keys the given graph node points to
+     */
+    public int pointsToSetSize(/*PointsToGraphNode*/int node) {
+        int e = find(this.setTable, this.numSets, SET_ENTRY_INTS, node);
+        return e < 0 ? 0 : column(this.setTable, SET_ENTRY_INTS, e, 2);
+    }
+
+    /**
+     * Iterate over the instance keys the given graph node points to, in increasing order
+     */
+    public IntIterator pointsToIntIterator(/*PointsToGraphNode*/int node) {
+        int e = find(this.setTable, this.numSets, SET_ENTRY_INTS, node);
+        if (e < 0) {
+            return intIterator(0, 0);
+        }
+        return intIterator(this.setElements + 4 * column(this.setTable, SET_ENTRY_INTS, e, 1),
+                           column(this.setTable, SET_ENTRY_INTS, e, 2));
+    }
+
+    /**
+     * Does the given graph node point to the given instance key?
+     */
+    public boolean pointsTo(/*PointsToGraphNode*/int node, /*InstanceKey*/int ik) {
+        int e = find(this.setTable, this.numSets, SET_ENTRY_INTS, node);
+        if (e < 0) {
+            return false;
+        }
+        int first = this.setElements + 4 * column(this.setTable, SET_ENTRY_INTS, e, 1);
+        int lo = 0;
+        int hi = column(this.setTable, SET_ENTRY_INTS, e, 2) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int x = this.buf.getInt(first + 4 * mid);
+            if (x < ik) {
+                lo = mid + 1;
+            }
+            else if (x > ik) {
+                hi = mid - 1;
+            }
+            else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Description of the given instance key, or null if there is no such instance key
+     */
+    public String instanceKeyDescription(/*InstanceKey*/int ik) {
+        return description(this.instanceKeyTable, this.numInstanceKeys, NAME_ENTRY_INTS, ik);
+    }
+
+    /**
+     * Description of the given graph node, or null if there is no such node (or the graph did not record node
+     * descriptions, as in test mode)
+     */
+    public String graphNodeDescription(/*PointsToGraphNode*/int node) {
+        return description(this.graphNodeTable, this.numGraphNodes, NAME_ENTRY_INTS, node);
+    }
+
+    /**
+     * Number of call graph nodes
+     */
+    public int numCallGraphNodes() {
+        return this.numCGNodes;
+    }
+
+    /**
+     * Description of the given call graph node (method and context), or null if there is no such node
+     */
+    public String callGraphNodeDescription(int cgNode) {
+        return description(this.cgNodeTable, this.numCGNodes, CG_ENTRY_INTS, cgNode);
+    }
+
+    /**
+     * Iterate over the numbers of the callees of the given call graph node
+     */
+    public IntIterator callGraphSuccessors(int cgNode) {
+        int e = find(this.cgNodeTable, this.numCGNodes, CG_ENTRY_INTS, cgNode);
+        if (e < 0) {
+            return intIterator(0, 0);
+        }
+        return intIterator(this.cgEdges + 4 * column(this.cgNodeTable, CG_ENTRY_INTS, e, 5),
+                           column(this.cgNodeTable, CG_ENTRY_INTS, e, 6));
+    }
+
+    /**
+     * Number of contexts, they are numbered from 0
+     */
+    public int numContexts() {
+        return this.numContexts;
+    }
+
+    /**
+     * Description of the given context, or null if there is no such context
+     */
+    public String contextDescription(int context) {
+        return description(this.contextTable, this.numContexts, NAME_ENTRY_INTS, context);
+    }
+
+    String contextKey(int context) {
+        return key(this.contextTable, this.numContexts, NAME_ENTRY_INTS, context);
+    }
+
+    String instanceKeyKey(/*InstanceKey*/int ik) {
+        return key(this.instanceKeyTable, this.numInstanceKeys, NAME_ENTRY_INTS, ik);
+    }
+
+    String graphNodeKey(/*PointsToGraphNode*/int node) {
+        return key(this.graphNodeTable, this.numGraphNodes, NAME_ENTRY_INTS, node);
+    }
+
+    /**
+     * Find the graph node with the given key
+     *
+     * @return number of the node, or -1 if there is no node with that key
+     */
+    /*PointsToGraphNode*/int findGraphNode(String key) {
+        int hash = key.hashCode();
+        // Find the first entry with the hash
+        int lo = 0;
+        int hi = this.numNodeKeys;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (column(this.nodeKeyTable, NODE_KEY_ENTRY_INTS, mid, 0) < hash) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        for (int e = lo; e < this.numNodeKeys && column(this.nodeKeyTable, NODE_KEY_ENTRY_INTS, e, 0) == hash; e++) {
+            int node = column(this.nodeKeyTable, NODE_KEY_ENTRY_INTS, e, 1);
+            if (key.equals(graphNodeKey(node))) {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Iterate over the numbers of the call graph nodes, in increasing order
+     */
+    IntIterator callGraphNodeIterator() {
+        return new IntIterator() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.i < PointsToGraphSnapshot.this.numCGNodes;
+            }
+
+            @Override
+            public int next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return column(PointsToGraphSnapshot.this.cgNodeTable, CG_ENTRY_INTS, this.i++, 0);
+            }
+        };
+    }
+
+    String callGraphNodeKey(int cgNode) {
+        return key(this.cgNodeTable, this.numCGNodes, CG_ENTRY_INTS, cgNode);
+    }
+
+    /**
+     * Is the given call graph node an entry point (or class initializer) called by the root node?
+     */
+    boolean isEntrypoint(int cgNode) {
+        int e = find(this.cgNodeTable, this.numCGNodes, CG_ENTRY_INTS, cgNode);
+        return e >= 0 && column(this.cgNodeTable, CG_ENTRY_INTS, e, 9) != 0;
+    }
+
+    /**
+     * Iterate over the calls made by the given call graph node, as the program counter of the call site followed by
+     * the number of the callee
+     */
+    IntIterator callIterator(int cgNode) {
+        int e = find(this.cgNodeTable, this.numCGNodes, CG_ENTRY_INTS, cgNode);
+        if (e < 0) {
+            return intIterator(0, 0);
+        }
+        return intIterator(this.calls + 4 * CALL_ENTRY_INTS * column(this.cgNodeTable, CG_ENTRY_INTS, e, 7),
+                           CALL_ENTRY_INTS * column(this.cgNodeTable, CG_ENTRY_INTS, e, 8));
+    }
+
+    /**
+     * Was the snapshot written with the derivations of the graph, so that an analysis can resume from it (see
+     * {@link IncrementalResume})?
+     */
+    public boolean hasDerivations() {
+        return this.derivationsLength > 0;
+    }
+
+    /**
+     * Number of ints in the derivations section, 0 if the graph did not record its derivations
+     */
+    int derivationsLength() {
+        return this.derivationsLength;
+    }
+
+    /**
+     * Int at the given index of the derivations section
+     */
+    int derivationInt(int i) {
+        return this.buf.getInt(this.derivations + 4 * i);
+    }
+
+    /**
+     * String at the given position of the descriptions, for a string named by the derivations section
+     */
+    String derivationString(int first, int length) {
+        return string(first, length);
+    }
+
+    /**
+     * Key of the method with the given index in the derivation methods table
+     */
+    String derivationMethodKey(int i) {
+        return string(column(this.derivationMethods, STRING_ENTRY_INTS, i, 0),
+                      column(this.derivationMethods, STRING_ENTRY_INTS, i, 1));
+    }
+
+    int numDerivationMethods() {
+        return this.numDerivationMethods;
+    }
+
+    /**
+     * Key of the type filter with the given index in the derivation filters table
+     */
+    String derivationFilterKey(int i) {
+        return string(column(this.derivationFilters, STRING_ENTRY_INTS, i, 0),
+                      column(this.derivationFilters, STRING_ENTRY_INTS, i, 1));
+    }
+
+    int numDerivationFilters() {
+        return this.numDerivationFilters;
+    }
+
+    /**
+     * Hierarchy key of each concrete type of an instance key, indexed by the key of the type
+     */
+    Map<String, String> derivationHierarchyKeys() {
+        Map<String, String> keys = new HashMap<>();
+        for (int i = 0; i < this.numDerivationTypes; i++) {
+            keys.put(string(column(this.derivationTypes, TYPE_ENTRY_INTS, i, 0),
+                            column(this.derivationTypes, TYPE_ENTRY_INTS, i, 1)),
+                     string(column(this.derivationTypes, TYPE_ENTRY_INTS, i, 2),
+                            column(this.derivationTypes, TYPE_ENTRY_INTS, i, 3)));
+        }
+        return keys;
+    }
+
+    /**
+     * Create the objects in this snapshot again from their keys, and answer points-to queries about them. The
+     * snapshot must have been written by {@link #write(PointsToGraph, File)} for a graph computed with a
+     * {@link RecordingHeapAbstractionFactory}, for the same program and options as the current run.
+     *
+     * @param registrar statements registered for the current run
+     * @param haf heap abstraction factory of the same kind as the one used to compute the graph
+     * @return points-to graph and call graph of the current run
+     * @throws IOException if the snapshot does not match the registered statements or the class hierarchy
+     */
+    public SnapshotPointsToGraph rebuild(StatementRegistrar registrar, HeapAbstractionFactory haf) throws IOException {
+        return new SnapshotPointsToGraph(this, registrar, haf);
+    }
+
+    /**
+     * Write the snapshot as text: each graph node followed by the instance keys it points to, then each call graph
+     * node followed by its callees. Numbers are printed for nodes without a description.
+     *
+     * @param out writer to print to
+     * @throws IOException if the writer fails
+     */
+    public void writeText(Writer out) throws IOException {
+        out.write("/******************** POINTS-TO GRAPH ********************/\n");
+        IntIterator nodes = pointsToGraphNodeIterator();
+        while (nodes.hasNext()) {
+            int n = nodes.next();
+            String nodeDescription = graphNodeDescription(n);
+            out.write((nodeDescription == null ? "node " + n : nodeDescription) + "\n");
+            IntIterator iks = pointsToIntIterator(n);
+            while (iks.hasNext()) {
+                out.write("\t" + instanceKeyDescription(iks.next()) + "\n");
+            }
+        }
+        out.write("/******************** CALL GRAPH ********************/\n");
+        for (int i = 0; i < this.numCGNodes; i++) {
+            int cgNode = column(this.cgNodeTable, CG_ENTRY_INTS, i, 0);
+            out.write(callGraphNodeDescription(cgNode) + "\n");
+            IntIterator succs = callGraphSuccessors(cgNode);
+            while (succs.hasNext()) {
+                out.write("\t-> " + callGraphNodeDescription(succs.next()) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Write a snapshot of a finished points-to graph (see {@link PointsToGraph#constructionFinished()}) and its call
+     * graph to a file. A node that was collapsed into another node in its cycle is recorded with the points-to set of
+     * its representative. Keys are only recorded if the graph was computed with a
+     * {@link RecordingHeapAbstractionFactory}, otherwise the snapshot cannot be rebuilt.
+     *
+     * @param g finished points-to graph
+     * @param file file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(PointsToGraph g, File file) throws IOException {
+        long start = System.currentTimeMillis();
+        Builder b = new Builder();
+
+        // Points-to sets, collapsed nodes have no set of their own
+        IntArrayBuilder keys = new IntArrayBuilder();
+        keys.addAll(g.getPointsToGraph().keyIterator());
+        keys.addAll(g.collapsedNodeIterator());
+        boolean writeDerivations = g.getDerivations() != null && g.getHaf() instanceof RecordingHeapAbstractionFactory;
+        if (writeDerivations) {
+            // Nodes named by the derivations need keys even if their points-to sets are empty
+            for (Derivation d : g.getDerivations().getDerivations().values()) {
+                keys.addAll(d.getReads().intIterator());
+                keys.addAll(d.getWrites().intIterator());
+                for (SubsetEdge e : d.getEdges()) {
+                    keys.add(e.source);
+                    keys.add(e.target);
+                }
+            }
+        }
+        int[] nodes = keys.sortedDistinct();
+        for (int n : nodes) {
+            IntSet s = g.getPointsToGraph().get(g.getRepresentative(n));
+            if (s != null) {
+                b.addPointsToSet(n, s);
+            }
+        }
+
+        // Instance keys, numbered by the graph
+        Map<InstanceKey, Integer> ikNumbers = new HashMap<>();
+        keys = new IntArrayBuilder();
+        keys.addAll(g.instanceKeyIterator());
+        int[] iks = keys.sortedDistinct();
+        for (int ik : iks) {
+            ikNumbers.put(g.lookupInstanceKey(ik), ik);
+        }
+
+        KeyWriter kw = null;
+        if (g.getHaf() instanceof RecordingHeapAbstractionFactory) {
+            Map<ReferenceVariable, String> rvKeys = g.getRegistrar().getRvCache().getSnapshotKeys();
+            kw = new KeyWriter((RecordingHeapAbstractionFactory) g.getHaf(),
+                               rvKeys,
+                               SnapshotKeys.allocationSiteKeys(g.getRegistrar(), rvKeys),
+                               ikNumbers,
+                               iks.length == 0 ? 0 : iks[iks.length - 1] + 1);
+            for (int ik : iks) {
+                kw.instanceKeyNumber(g.lookupInstanceKey(ik));
+            }
+        }
+
+        // Graph nodes
+        Map<Integer, PointsToGraphNode> nodeObjects = new HashMap<>();
+        for (Map.Entry<PointsToGraphNode, Integer> e : g.getGraphNodeNumbers().entrySet()) {
+            nodeObjects.put(e.getValue(), e.getKey());
+        }
+        String[] nodeKeys = new String[nodes.length];
+        if (kw != null) {
+            for (int i = 0; i < nodes.length; i++) {
+                nodeKeys[i] = kw.nodeKey(nodeObjects.get(nodes[i]));
+            }
+        }
+
+        // Call graph
+        HafCallGraph cg = g.getCallGraph();
+        keys = new IntArrayBuilder();
+        for (CGNode n : cg) {
+            keys.add(cg.getNumber(n));
+        }
+        int[] cgNodes = keys.sortedDistinct();
+        String[] cgKeys = new String[cgNodes.length];
+        if (kw != null) {
+            for (int i = 0; i < cgNodes.length; i++) {
+                CGNode n = cg.getNode(cgNodes[i]);
+                int context = kw.contextNumber(n.getContext());
+                if (kw.contextKeys.get(context) != null) {
+                    cgKeys[i] = SnapshotKeys.join(context, SnapshotKeys.methodKey(n.getMethod()));
+                }
+            }
+        }
+
+        // Everything has been numbered, add the entries in order
+        if (kw != null) {
+            for (int i = 0; i < kw.contexts.size(); i++) {
+                b.addContext(i, String.valueOf(kw.contexts.get(i)), kw.contextKeys.get(i));
+            }
+            for (Map.Entry<Integer, String> e : kw.instanceKeyKeys.entrySet()) {
+                b.addInstanceKey(e.getKey(), String.valueOf(kw.instanceKeys.get(e.getKey())), e.getValue());
+            }
+        }
+        else {
+            for (int ik : iks) {
+                b.addInstanceKey(ik, String.valueOf(g.lookupInstanceKey(ik)));
+            }
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            b.addGraphNode(nodes[i], String.valueOf(nodeObjects.get(nodes[i])), nodeKeys[i]);
+        }
+        for (int i = 0; i < cgNodes.length; i++) {
+            CGNode n = cg.getNode(cgNodes[i]);
+            IntArrayBuilder calls = new IntArrayBuilder();
+            Iterator<CallSiteReference> sites = n.iterateCallSites();
+            while (sites.hasNext()) {
+                CallSiteReference site = sites.next();
+                for (CGNode callee : cg.getPossibleTargets(n, site)) {
+                    calls.add(site.getProgramCounter());
+                    calls.add(cg.getNumber(callee));
+                }
+            }
+            b.addCallGraphNode(cgNodes[i], n.getMethod().getSignature() + " in " + n.getContext(), cgKeys[i],
+                               cg.getSuccNodeNumbers(n), Arrays.copyOf(calls.array(), calls.size()),
+                               cg.getEntrypointNodes().contains(n));
+        }
+        if (writeDerivations) {
+            addDerivations(g, b, kw, iks);
+        }
+
+        b.write(file);
+        System.err.println("Points-to graph snapshot written to " + file + " in "
+                + (System.currentTimeMillis() - start) + "ms (" + file.length() / 1000000 + "MB, "
+                + b.setStarts.size() + " distinct sets for " + b.numPointsToSets() + " nodes"
+                + (kw == null ? ", without keys" : "") + (writeDerivations ? ", with derivations" : "") + ")");
+    }
+
+    /**
+     * Add the derivations recorded by the graph to the snapshot, merging the derivations of the statements with the
+     * same fingerprint in the same method and context, and the hierarchy keys of the concrete types of the instance
+     * keys
+     */
+    private static void addDerivations(PointsToGraph g, Builder b, KeyWriter kw, int[] iks) {
+        Map<IMethod, Integer> methods = new HashMap<>();
+        Map<TypeFilter, Integer> filters = new HashMap<>();
+        Map<IMethod, Map<String, Integer>> counts = new HashMap<>();
+        Map<List<Object>, Derivation> merged = new HashMap<>();
+        for (Map.Entry<StmtAndContext, Derivation> e : g.getDerivations().getDerivations().entrySet()) {
+            PointsToStatement stmt = e.getKey().getStmt();
+            List<Object> group = Arrays.<Object> asList(stmt.getMethod(),
+                                                        StatementFingerprints.fingerprint(stmt),
+                                                        e.getKey().getContext());
+            Derivation d = merged.get(group);
+            if (d == null) {
+                d = new Derivation();
+                merged.put(group, d);
+            }
+            d.addAll(e.getValue());
+        }
+
+        for (Map.Entry<List<Object>, Derivation> e : merged.entrySet()) {
+            IMethod m = (IMethod) e.getKey().get(0);
+            String fingerprint = (String) e.getKey().get(1);
+            Map<String, Integer> methodCounts = counts.get(m);
+            if (methodCounts == null) {
+                methodCounts = new HashMap<>();
+                for (PointsToStatement stmt : g.getRegistrar().getStatementsForMethod(m)) {
+                    String fp = StatementFingerprints.fingerprint(stmt);
+                    Integer count = methodCounts.get(fp);
+                    methodCounts.put(fp, count == null ? 1 : count + 1);
+                }
+                counts.put(m, methodCounts);
+            }
+            Derivation d = e.getValue();
+
+            IntArrayBuilder edges = new IntArrayBuilder();
+            for (SubsetEdge edge : d.getEdges()) {
+                edges.add(edge.source);
+                if (edge.filter == null) {
+                    edges.add(-1);
+                }
+                else {
+                    Integer filter = filters.get(edge.filter);
+                    if (filter == null) {
+                        filter = b.addDerivationFilter(SnapshotKeys.filterKey(edge.filter));
+                        filters.put(edge.filter, filter);
+                    }
+                    edges.add(filter);
+                }
+                edges.add(edge.target);
+            }
+            IntArrayBuilder callees = new IntArrayBuilder();
+            for (OrderedPair<IMethod, Context> callee : d.getCallees()) {
+                callees.add(derivationMethod(b, methods, callee.fst()));
+                callees.add(kw.contextNumber(callee.snd()));
+            }
+            IntArrayBuilder classInits = new IntArrayBuilder();
+            for (IMethod clinit : d.getClassInitializers()) {
+                classInits.add(derivationMethod(b, methods, clinit));
+            }
+            Integer count = methodCounts.get(fingerprint);
+            b.addDerivation(derivationMethod(b, methods, m),
+                            fingerprint,
+                            count == null ? 0 : count,
+                            kw.contextNumber((Context) e.getKey().get(2)),
+                            d.getReads(),
+                            d.getWrites(),
+                            edges,
+                            callees,
+                            classInits);
+        }
+
+        Set<IClass> types = new HashSet<>();
+        for (int ik : iks) {
+            IClass type = g.lookupInstanceKey(ik).getConcreteType();
+            if (types.add(type)) {
+                b.addDerivationType(SnapshotKeys.classKey(type), SnapshotKeys.hierarchyKey(type));
+            }
+        }
+    }
+
+    private static int derivationMethod(Builder b, Map<IMethod, Integer> methods, IMethod m) {
+        Integer i = methods.get(m);
+        if (i == null) {
+            i = b.addDerivationMethod(SnapshotKeys.methodKey(m));
+            methods.put(m, i);
+        }
+        return i;
+    }
+
+    /**
+     * Numbers the contexts (and the instance keys that are not in the graph) needed to rebuild a graph, and computes
+     * their keys from the calls to the heap abstraction factory that created them. An object gets no key (and neither
+     * does anything created from it) if it was not created by the recording factory, or if it was created from an
+     * allocation site without a key.
+     */
+    private static final class KeyWriter {
+        private final RecordingHeapAbstractionFactory haf;
+        private final Map<ReferenceVariable, String> rvKeys;
+        private final Map<AllocSiteNode, String> allocationSiteKeys;
+
+        final List<Context> contexts = new ArrayList<>();
+        final List<String> contextKeys = new ArrayList<>();
+        private final Map<Context, Integer> contextNumbers = new HashMap<>();
+
+        private final Map<InstanceKey, Integer> ikNumbers;
+        private int nextInstanceKey;
+        final Map<Integer, InstanceKey> instanceKeys = new HashMap<>();
+        /**
+         * Key of each instance key whose key has been computed, null if it has no key, sorted by number
+         */
+        final TreeMap<Integer, String> instanceKeyKeys = new TreeMap<>();
+
+        KeyWriter(RecordingHeapAbstractionFactory haf, Map<ReferenceVariable, String> rvKeys,
+                  Map<AllocSiteNode, String> allocationSiteKeys, Map<InstanceKey, Integer> ikNumbers,
+                  int nextInstanceKey) {
+            this.haf = haf;
+            this.rvKeys = rvKeys;
+            this.allocationSiteKeys = allocationSiteKeys;
+            this.ikNumbers = ikNumbers;
+            this.nextInstanceKey = nextInstanceKey;
+        }
+
+        int contextNumber(Context c) {
+            number(c);
+            return this.contextNumbers.get(c);
+        }
+
+        int instanceKeyNumber(InstanceKey ik) {
+            number(ik);
+            return this.ikNumbers.get(ik);
+        }
+
+        private boolean isNumbered(Object o) {
+            if (o instanceof Context) {
+                return this.contextNumbers.containsKey(o);
+            }
+            Integer ik = this.ikNumbers.get(o);
+            return ik != null && this.instanceKeyKeys.containsKey(ik);
+        }
+
+        /**
+         * Number the given context or instance key and everything it was created from, numbering the objects it was
+         * created from first. Since the factory records an object before returning it, an object is always recorded
+         * after the objects it was created from, so there are no cycles.
+         */
+        private void number(Object root) {
+            Deque<Object> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Object o = stack.peek();
+                if (isNumbered(o)) {
+                    stack.pop();
+                    continue;
+                }
+                List<Object> from = createdFrom(o);
+                boolean ready = true;
+                for (Object x : from) {
+                    if (!isNumbered(x)) {
+                        assert !stack.contains(x) : "Cycle in the recorded creation of " + x;
+                        stack.push(x);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    stack.pop();
+                    if (o instanceof Context) {
+                        addContext((Context) o);
+                    }
+                    else {
+                        addInstanceKey((InstanceKey) o);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Contexts and instance keys the given object was created from
+         */
+        private List<Object> createdFrom(Object o) {
+            List<Object> from = new ArrayList<>(2);
+            if (o instanceof Context) {
+                Merge m = this.haf.getMerge((Context) o);
+                if (m != null) {
+                    if (m.getReceiver() != null) {
+                        from.add(m.getReceiver());
+                    }
+                    from.add(m.getCallerContext());
+                }
+            }
+            else {
+                OrderedPair<AllocSiteNode, Context> r = this.haf.getRecord((InstanceKey) o);
+                if (r != null) {
+                    from.add(r.snd());
+                }
+            }
+            return from;
+        }
+
+        private void addContext(Context c) {
+            String key = null;
+            if (c == this.haf.initialContext()) {
+                key = "initial";
+            }
+            else {
+                Merge m = this.haf.getMerge(c);
+                if (m != null) {
+                    int receiver = m.getReceiver() == null ? -1 : this.ikNumbers.get(m.getReceiver());
+                    int caller = this.contextNumbers.get(m.getCallerContext());
+                    if ((receiver < 0 || this.instanceKeyKeys.get(receiver) != null)
+                            && this.contextKeys.get(caller) != null) {
+                        key = SnapshotKeys.join("merge", SnapshotKeys.callSiteKey(m.getCallSite()), receiver, caller);
+                    }
+                }
+            }
+            this.contextNumbers.put(c, this.contexts.size());
+            this.contexts.add(c);
+            this.contextKeys.add(key);
+        }
+
+        private void addInstanceKey(InstanceKey ik) {
+            Integer n = this.ikNumbers.get(ik);
+            if (n == null) {
+                // Not in the graph, e.g., the receiver of a call that was only used to create a context
+                n = this.nextInstanceKey++;
+                this.ikNumbers.put(ik, n);
+            }
+            String key = null;
+            OrderedPair<AllocSiteNode, Context> r = this.haf.getRecord(ik);
+            if (r != null) {
+                String site = this.allocationSiteKeys.get(r.fst());
+                if (site == null && CallStatement.cloneAllocations.get(r.fst().getAllocatedClass()) == r.fst()) {
+                    site = SnapshotKeys.cloneAllocationKey(r.fst());
+                }
+                int context = this.contextNumbers.get(r.snd());
+                if (site != null && this.contextKeys.get(context) != null) {
+                    key = SnapshotKeys.join(context, site);
+                }
+            }
+            this.instanceKeys.put(n, ik);
+            this.instanceKeyKeys.put(n, key);
+        }
+
+        /**
+         * Key of a graph node, or null if it has none
+         */
+        String nodeKey(PointsToGraphNode node) {
+            if (node instanceof ReferenceVariableReplica) {
+                ReferenceVariableReplica r = (ReferenceVariableReplica) node;
+                String rv = this.rvKeys.get(r.getReferenceVariable());
+                int context = contextNumber(r.getContext());
+                if (rv == null || this.contextKeys.get(context) == null) {
+                    return null;
+                }
+                return SnapshotKeys.join("replica", context, rv);
+            }
+            if (node instanceof ObjectField) {
+                ObjectField f = (ObjectField) node;
+                int receiver = instanceKeyNumber(f.receiver());
+                if (this.instanceKeyKeys.get(receiver) == null) {
+                    return null;
+                }
+                return SnapshotKeys.fieldKey(receiver, f);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Collects the contents of a snapshot and writes it to a file. The entries of each kind must be added in increasing
+     * order of their numbers.
+     */
+    public static class Builder {
+        private final ByteArrayOutputStream names = new ByteArrayOutputStream();
+        private final IntArrayBuilder setTable = new IntArrayBuilder();
+        /**
+         * Position of the elements of each set written so far, so that a set shared by several nodes is written once
+         */
+        private final Map<IntSet, Integer> setStarts = new IdentityHashMap<>();
+        private final IntArrayBuilder elements = new IntArrayBuilder();
+        private final IntArrayBuilder contextTable = new IntArrayBuilder();
+        private final IntArrayBuilder ikTable = new IntArrayBuilder();
+        private final IntArrayBuilder nodeTable = new IntArrayBuilder();
+        /**
+         * Hash of the key and number of each graph node with a key
+         */
+        private final IntArrayBuilder nodeKeys = new IntArrayBuilder();
+        private final IntArrayBuilder cgTable = new IntArrayBuilder();
+        private final IntArrayBuilder edges = new IntArrayBuilder();
+        private final IntArrayBuilder calls = new IntArrayBuilder();
+        private final IntArrayBuilder derivationMethods = new IntArrayBuilder();
+        private final IntArrayBuilder derivationFilters = new IntArrayBuilder();
+        private final IntArrayBuilder derivationTypes = new IntArrayBuilder();
+        private final IntArrayBuilder derivations = new IntArrayBuilder();
+
+        /**
+         * Record the points-to set of a graph node, empty sets are not recorded
+         *
+         * @param node number of the graph node
+         * @param s instance keys the node points to
+         */
+        public void addPointsToSet(/*PointsToGraphNode*/int node, IntSet s) {
+            checkIncreasing(this.setTable, SET_ENTRY_INTS, node);
+            if (s.isEmpty()) {
+                return;
+            }
+            Integer first = this.setStarts.get(s);
+            if (first == null) {
+                first = this.elements.size();
+                this.setStarts.put(s, first);
+                this.elements.addSorted(s);
+            }
+            this.setTable.add(node);
+            this.setTable.add(first);
+            this.setTable.add(s.size());
+        }
+
+        /**
+         * Record a context, contexts are numbered from 0
+         *
+         * @param context number of the context
+         * @param description description of the context
+         * @param key key from which the context can be created again, or null if there is none
+         */
+        public void addContext(int context, String description, String key) {
+            if (context != this.contextTable.size() / NAME_ENTRY_INTS) {
+                throw new IllegalArgumentException("Context " + context + " added out of order");
+            }
+            addName(this.contextTable, NAME_ENTRY_INTS, context, description, key);
+        }
+
+        /**
+         * Record the description of an instance key
+         */
+        public void addInstanceKey(/*InstanceKey*/int ik, String description) {
+            addInstanceKey(ik, description, null);
+        }
+
+        /**
+         * Record the description of an instance key, and the key from which it can be created again (or null if there
+         * is none)
+         */
+        public void addInstanceKey(/*InstanceKey*/int ik, String description, String key) {
+            addName(this.ikTable, NAME_ENTRY_INTS, ik, description, key);
+        }
+
+        /**
+         * Record the description of a graph node
+         */
+        public void addGraphNode(/*PointsToGraphNode*/int node, String description) {
+            addGraphNode(node, description, null);
+        }
+
+        /**
+         * Record the description of a graph node, and the key from which it can be created again (or null if there is
+         * none)
+         */
+        public void addGraphNode(/*PointsToGraphNode*/int node, String description, String key) {
+            addName(this.nodeTable, NAME_ENTRY_INTS, node, description, key);
+            if (key != null) {
+                this.nodeKeys.add(key.hashCode());
+                this.nodeKeys.add(node);
+            }
+        }
+
+        /**
+         * Record a call graph node and its callees
+         *
+         * @param cgNode number of the call graph node
+         * @param description description of the node (method and context)
+         * @param succs numbers of the callees
+         */
+        public void addCallGraphNode(int cgNode, String description, IntSet succs) {
+            addCallGraphNode(cgNode, description, null, succs, new int[0], false);
+        }
+
+        /**
+         * Record a call graph node, its callees and its calls
+         *
+         * @param cgNode number of the call graph node
+         * @param description description of the node (method and context)
+         * @param key key from which the node can be created again, or null if there is none
+         * @param succs numbers of the callees
+         * @param calls program counter of a call site followed by the number of a callee for each call
+         * @param isEntrypoint whether the node is called by the root node as an entry point or class initializer
+         */
+        public void addCallGraphNode(int cgNode, String description, String key, IntSet succs, int[] calls,
+                                     boolean isEntrypoint) {
+            addName(this.cgTable, CG_ENTRY_INTS, cgNode, description, key);
+            this.cgTable.add(this.edges.size());
+            this.cgTable.add(succs.size());
+            this.edges.addSorted(succs);
+            this.cgTable.add(this.calls.size() / CALL_ENTRY_INTS);
+            this.cgTable.add(calls.length / CALL_ENTRY_INTS);
+            for (int x : calls) {
+                this.calls.add(x);
+            }
+            this.cgTable.add(isEntrypoint ? 1 : 0);
+        }
+
+        /**
+         * Record the key of a method named by the derivations
+         *
+         * @return index of the method in the derivation methods table
+         */
+        int addDerivationMethod(String key) {
+            addString(this.derivationMethods, key);
+            return this.derivationMethods.size() / STRING_ENTRY_INTS - 1;
+        }
+
+        /**
+         * Record the key of a type filter on a subset edge added by a derivation
+         *
+         * @return index of the filter in the derivation filters table
+         */
+        int addDerivationFilter(String key) {
+            addString(this.derivationFilters, key);
+            return this.derivationFilters.size() / STRING_ENTRY_INTS - 1;
+        }
+
+        /**
+         * Record the hierarchy key of the concrete type of an instance key
+         */
+        void addDerivationType(String typeKey, String hierarchyKey) {
+            addString(this.derivationTypes, typeKey);
+            addString(this.derivationTypes, hierarchyKey);
+        }
+
+        /**
+         * Record what the statements with the given fingerprint did in a context, see the class comment for the
+         * layout
+         */
+        void addDerivation(int method, String fingerprint, int count, int context, IntSet reads, IntSet writes,
+                           IntArrayBuilder edges, IntArrayBuilder callees, IntArrayBuilder classInits) {
+            this.derivations.add(method);
+            addString(this.derivations, fingerprint);
+            this.derivations.add(count);
+            this.derivations.add(context);
+            this.derivations.add(reads.size());
+            this.derivations.addSorted(reads);
+            this.derivations.add(writes.size());
+            this.derivations.addSorted(writes);
+            this.derivations.add(edges.size() / 3);
+            this.derivations.addAll(edges);
+            this.derivations.add(callees.size() / 2);
+            this.derivations.addAll(callees);
+            this.derivations.add(classInits.size());
+            this.derivations.addAll(classInits);
+        }
+
+        /**
+         * Number of non-empty points-to sets recorded
+         */
+        int numPointsToSets() {
+            return this.setTable.size() / SET_ENTRY_INTS;
+        }
+
+        private void addName(IntArrayBuilder table, int entryInts, int entryNumber, String name, String key) {
+            checkIncreasing(table, entryInts, entryNumber);
+            table.add(entryNumber);
+            addString(table, name);
+            if (key == null) {
+                table.add(0);
+                table.add(-1);
+            }
+            else {
+                addString(table, key);
+            }
+        }
+
+        private void addString(IntArrayBuilder table, String string) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            table.add(this.names.size());
+            table.add(bytes.length);
+            this.names.write(bytes, 0, bytes.length);
+        }
+
+        private static void checkIncreasing(IntArrayBuilder table, int entryInts, int key) {
+            if (table.size() > 0 && table.array()[table.size() - entryInts] >= key) {
+                throw new IllegalArgumentException("Snapshot entry " + key + " added out of order");
+            }
+        }
+
+        /**
+         * Write the snapshot to a file. The snapshot is written to a temporary file that then replaces the file, so that
+         * a snapshot loaded from the file (e.g., to resume the analysis from) stays valid.
+         *
+         * @param file file to write
+         * @throws IOException if the file cannot be written
+         */
+        public void write(File file) throws IOException {
+            File tmp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeTable(out, this.setTable, SET_ENTRY_INTS);
+                writeTable(out, this.elements, 1);
+                writeTable(out, this.contextTable, NAME_ENTRY_INTS);
+                writeTable(out, this.ikTable, NAME_ENTRY_INTS);
+                writeTable(out, this.nodeTable, NAME_ENTRY_INTS);
+                writeTable(out, sortedNodeKeys(), NODE_KEY_ENTRY_INTS);
+                writeTable(out, this.cgTable, CG_ENTRY_INTS);
+                writeTable(out, this.edges, 1);
+                writeTable(out, this.calls, CALL_ENTRY_INTS);
+                writeTable(out, this.derivationMethods, STRING_ENTRY_INTS);
+                writeTable(out, this.derivationFilters, STRING_ENTRY_INTS);
+                writeTable(out, this.derivationTypes, TYPE_ENTRY_INTS);
+                writeTable(out, this.derivations, 1);
+                out.writeInt(this.names.size());
+                this.names.writeTo(out);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (file.length() > Integer.MAX_VALUE) {
+                throw new IOException("Points-to graph snapshot is too large to be loaded");
+            }
+        }
+
+        /**
+         * Hashes of the keys of the graph nodes with their node numbers, sorted by hash and then by node
+         */
+        private IntArrayBuilder sortedNodeKeys() {
+            long[] sorted = new long[this.nodeKeys.size() / NODE_KEY_ENTRY_INTS];
+            for (int i = 0; i < sorted.length; i++) {
+                // node numbers are not negative
+                sorted[i] = ((long) this.nodeKeys.array()[2 * i] << 32) | this.nodeKeys.array()[2 * i + 1];
+            }
+            Arrays.sort(sorted);
+            IntArrayBuilder table = new IntArrayBuilder();
+            for (long e : sorted) {
+                table.add((int) (e >> 32));
+                table.add((int) e);
+            }
+            return table;
+        }
+
+        private static void writeTable(DataOutputStream out, IntArrayBuilder table, int entryInts)
+                                                                                                    throws IOException {
+            out.writeInt(table.size() / entryInts);
+            for (int i = 0; i < table.size(); i++) {
+                out.writeInt(table.array()[i]);
+            }
+        }
+    }
+
+    /**
+     * Growable array of ints
+     */
+    private static final class IntArrayBuilder {
+        private int[] a = new int[16];
+        private int size = 0;
+
+        void add(int x) {
+            if (this.size == this.a.length) {
+                this.a = Arrays.copyOf(this.a, 2 * this.a.length);
+            }
+            this.a[this.size++] = x;
+        }
+
+        /**
+         * Add the elements of the set in increasing order
+         */
+        void addSorted(IntSet s) {
+            int first = this.size;
+            IntIterator iter = s.intIterator();
+            while (iter.hasNext()) {
+                add(iter.next());
+            }
+            Arrays.sort(this.a, first, this.size);
+        }
+
+        void addAll(IntIterator iter) {
+            while (iter.hasNext()) {
+                add(iter.next());
+            }
+        }
+
+        void addAll(IntArrayBuilder other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.a[i]);
+            }
+        }
+
+        /**
+         * Copy of the ints added so far, sorted and without duplicates
+         */
+        int[] sortedDistinct() {
+            int[] sorted = Arrays.copyOf(this.a, this.size);
+            Arrays.sort(sorted);
+            int n = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[n++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, n);
+        }
+
+        int size() {
+            return this.size;
+        }
+
+        int[] array() {
+            return this.a;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package analysis.pointer.graph;
+
+import java.util.Iterator;
+
+import analysis.pointer.analyses.HeapAbstractionFactory;
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+
+/**
+ * Finished points-to graph and call graph, as used by the analyses that run after the points-to analysis. Either the
+ * graph computed by the points-to analysis ({@link PointsToGraph}) or one rebuilt from a snapshot saved by an earlier
+ * run ({@link SnapshotPointsToGraph}).
+ */
+public interface PointsToResults {
+
+    /**
+     * Iterate over the heap contexts the given node may point to
+     *
+     * @param node points-to graph node
+     * @return iterator over the instance keys in the points-to set of the node
+     */
+    Iterator<InstanceKey> pointsToIterator(PointsToGraphNode node);
+
+    /**
+     * Iterate over the heap contexts the given node may point to
+     *
+     * @param node points-to graph node
+     * @param originator statement and context reading the points-to set, null once the graph is finished
+     * @return iterator over the instance keys in the points-to set of the node
+     */
+    Iterator<InstanceKey> pointsToIterator(PointsToGraphNode node, StmtAndContext originator);
+
+    /**
+     * Heap abstraction factory that created the contexts and heap contexts in the graph
+     */
+    HeapAbstractionFactory getHaf();
+
+    /**
+     * Get the procedure call graph
+     *
+     * @return call graph
+     */
+    HafCallGraph getCallGraph();
+}
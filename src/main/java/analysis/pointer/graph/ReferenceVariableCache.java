@@ -1,5 +1,6 @@
 package analysis.pointer.graph;
 
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import util.OrderedPair;
@@ -131,4 +132,73 @@ public class ReferenceVariableCache {
         MethodSummaryNodes msn = this.methods.get(method);
         return msn;
     }
+
+    /**
+     * Compute a key for each reference variable that can be looked up in this cache, identifying it by the local,
+     * field, or method summary it is for (see {@link SnapshotKeys}). The same statements registered in another run
+     * give the same keys. A local that was replaced by another one while removing duplicate statements is given the key
+     * of the replaced local with the smallest value number, and a variable with several keys gets the smallest one.
+     *
+     * @return key of each reference variable in the cache
+     */
+    Map<ReferenceVariable, String> getSnapshotKeys() {
+        Map<ReferenceVariable, String> keys = new IdentityHashMap<>();
+        Map<ReferenceVariable, Integer> smallestLocal = new IdentityHashMap<>();
+        Map<ReferenceVariable, IMethod> localMethod = new IdentityHashMap<>();
+        for (Map.Entry<OrderedPair<Integer, IMethod>, ReferenceVariable> e : locals.entrySet()) {
+            IMethod m = e.getKey().snd();
+            VariableIndex index = replacementMap.get(m);
+            ReferenceVariable rv = index == null ? e.getValue() : index.lookup(e.getValue());
+            if (rv == null) {
+                continue;
+            }
+            Integer previous = smallestLocal.get(rv);
+            if (previous == null || e.getKey().fst() < previous) {
+                smallestLocal.put(rv, e.getKey().fst());
+                localMethod.put(rv, m);
+            }
+        }
+        for (Map.Entry<ReferenceVariable, Integer> e : smallestLocal.entrySet()) {
+            addKey(keys, e.getKey(),
+                   SnapshotKeys.join("local", SnapshotKeys.methodKey(localMethod.get(e.getKey())), e.getValue()));
+        }
+        for (Map.Entry<ArrayContentsKey, ReferenceVariable> e : arrayContentsTemps.entrySet()) {
+            ArrayContentsKey k = e.getKey();
+            addKey(keys, e.getValue(), SnapshotKeys.join("array",
+                                                         SnapshotKeys.methodKey(k.getMethod()),
+                                                         k.getDim(),
+                                                         k.getProgramCounter()));
+        }
+        for (Map.Entry<ImplicitThrowKey, ReferenceVariable> e : implicitThrows.entrySet()) {
+            ImplicitThrowKey k = e.getKey();
+            addKey(keys, e.getValue(), SnapshotKeys.join("throw",
+                                                         SnapshotKeys.methodKey(k.getMethod()),
+                                                         k.getBasicBlockID(),
+                                                         SnapshotKeys.typeKey(k.getType())));
+        }
+        for (Map.Entry<IField, ReferenceVariable> e : staticFields.entrySet()) {
+            addKey(keys, e.getValue(), SnapshotKeys.join("static", SnapshotKeys.staticFieldKey(e.getKey())));
+        }
+        for (Map.Entry<IMethod, MethodSummaryNodes> e : methods.entrySet()) {
+            String m = SnapshotKeys.methodKey(e.getKey());
+            MethodSummaryNodes summary = e.getValue();
+            for (int i = 0; i < e.getKey().getNumberOfParameters(); i++) {
+                if (summary.getFormal(i) != null) {
+                    addKey(keys, summary.getFormal(i), SnapshotKeys.join("formal", m, i));
+                }
+            }
+            if (summary.getReturn() != null) {
+                addKey(keys, summary.getReturn(), SnapshotKeys.join("return", m));
+            }
+            addKey(keys, summary.getException(), SnapshotKeys.join("exception", m));
+        }
+        return keys;
+    }
+
+    private static void addKey(Map<ReferenceVariable, String> keys, ReferenceVariable rv, String key) {
+        String previous = keys.get(rv);
+        if (previous == null || key.compareTo(previous) < 0) {
+            keys.put(rv, key);
+        }
+    }
 }
@@ -81,4 +81,12 @@ public final class ReferenceVariableReplica implements PointsToGraphNode {
     public String toString() {
         return l + " in " + context;
     }
+
+    public Context getContext() {
+        return context;
+    }
+
+    public ReferenceVariable getReferenceVariable() {
+        return l;
+    }
 }
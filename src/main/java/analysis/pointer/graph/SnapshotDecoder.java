@@ -0,0 +1,204 @@
+package analysis.pointer.graph;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import analysis.AnalysisUtil;
+import analysis.pointer.analyses.HeapAbstractionFactory;
+import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.statements.AllocSiteNodeFactory.AllocSiteNode;
+import analysis.pointer.statements.CallSiteLabel;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+
+/**
+ * Creates the contexts, instance keys and graph nodes of a {@link PointsToGraphSnapshot} again from their keys (see
+ * {@link SnapshotKeys}), against the class hierarchy and the registered statements of the current run. An object
+ * cannot be created if it has no key, or if something its key names (e.g., an allocation site) no longer exists; the
+ * methods return null for such objects.
+ */
+final class SnapshotDecoder {
+
+    private final PointsToGraphSnapshot snapshot;
+    private final HeapAbstractionFactory haf;
+    /**
+     * Key of each reference variable of the current run
+     */
+    private final Map<ReferenceVariable, String> rvKeys;
+    /**
+     * Reference variable of the current run for each key
+     */
+    private final Map<String, ReferenceVariable> referenceVariables = new HashMap<>();
+    /**
+     * Allocation site of the current run for each allocation site key
+     */
+    private final Map<String, AllocSiteNode> allocationSites = new HashMap<>();
+    /**
+     * Call site of the current run for each call site key
+     */
+    private final Map<String, CallSiteLabel> callSites;
+    /**
+     * Context for each context number in the snapshot, null if the context cannot be created
+     */
+    private final Context[] contexts;
+    private final Map<Context, Integer> contextNumbers = new HashMap<>();
+    /**
+     * Instance keys that have been created, by their number in the snapshot
+     */
+    private final ConcurrentHashMap<Integer, InstanceKey> instanceKeys = AnalysisUtil.createConcurrentHashMap();
+    private final ConcurrentHashMap<InstanceKey, Integer> instanceKeyNumbers = AnalysisUtil
+                                    .createConcurrentHashMap();
+
+    /**
+     * Decode the objects in the given snapshot, the contexts are created right away
+     *
+     * @param snapshot snapshot written for a graph computed with a recording heap abstraction factory
+     * @param registrar statements registered for the current run
+     * @param haf heap abstraction factory of the same kind as the one used to compute the graph
+     */
+    SnapshotDecoder(PointsToGraphSnapshot snapshot, StatementRegistrar registrar, HeapAbstractionFactory haf) {
+        this.snapshot = snapshot;
+        this.haf = haf;
+        this.rvKeys = registrar.getRvCache().getSnapshotKeys();
+        for (Map.Entry<ReferenceVariable, String> e : this.rvKeys.entrySet()) {
+            this.referenceVariables.put(e.getValue(), e.getKey());
+        }
+        for (Map.Entry<AllocSiteNode, String> e : SnapshotKeys.allocationSiteKeys(registrar, this.rvKeys).entrySet()) {
+            this.allocationSites.put(e.getValue(), e.getKey());
+        }
+        this.callSites = SnapshotKeys.callSites(registrar);
+
+        // A context is numbered after the contexts and instance keys it was created from
+        this.contexts = new Context[snapshot.numContexts()];
+        for (int i = 0; i < this.contexts.length; i++) {
+            this.contexts[i] = decodeContext(i, snapshot.contextKey(i));
+            if (this.contexts[i] != null) {
+                this.contextNumbers.put(this.contexts[i], i);
+            }
+        }
+    }
+
+    private Context decodeContext(int context, String key) {
+        if (key == null) {
+            return null;
+        }
+        if (key.equals("initial")) {
+            return this.haf.initialContext();
+        }
+        String[] fields = SnapshotKeys.split(key, 5);
+        if (fields.length == 5 && fields[0].equals("merge")) {
+            CallSiteLabel callSite = this.callSites.get(SnapshotKeys.join(fields[1], fields[2]));
+            int receiver = Integer.parseInt(fields[3]);
+            int caller = Integer.parseInt(fields[4]);
+            if (callSite != null && caller < context && this.contexts[caller] != null) {
+                InstanceKey r = receiver < 0 ? null : instanceKey(receiver);
+                if (receiver < 0 || r != null) {
+                    return this.haf.merge(callSite, r, this.contexts[caller]);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the context with the given number in the snapshot
+     *
+     * @return context, or null if it cannot be created
+     */
+    Context context(int context) {
+        return context >= 0 && context < this.contexts.length ? this.contexts[context] : null;
+    }
+
+    /**
+     * Number of the given context in the snapshot, or null if it is not in the snapshot
+     */
+    Integer contextNumber(Context c) {
+        return this.contextNumbers.get(c);
+    }
+
+    /**
+     * Get the instance key with the given number in the snapshot, creating it if this is the first time it is used
+     *
+     * @return instance key, or null if it cannot be created
+     */
+    InstanceKey instanceKey(/*InstanceKey*/int ik) {
+        InstanceKey k = this.instanceKeys.get(ik);
+        if (k != null) {
+            return k;
+        }
+        String key = this.snapshot.instanceKeyKey(ik);
+        String[] fields = key == null ? null : SnapshotKeys.split(key, 2);
+        if (fields == null || fields.length != 2) {
+            return null;
+        }
+        Context context = context(Integer.parseInt(fields[0]));
+        AllocSiteNode site = fields[1].startsWith("clone") ? SnapshotKeys.lookupCloneAllocation(fields[1])
+                : this.allocationSites.get(fields[1]);
+        if (context == null || site == null) {
+            return null;
+        }
+        // The factory is memoized, so threads racing to create the same instance key get the same object
+        k = this.haf.record(site, context);
+        this.instanceKeyNumbers.putIfAbsent(k, ik);
+        this.instanceKeys.putIfAbsent(ik, k);
+        return k;
+    }
+
+    /**
+     * Number in the snapshot of an instance key created by this decoder, or null if this decoder did not create it
+     */
+    Integer instanceKeyNumber(InstanceKey ik) {
+        return this.instanceKeyNumbers.get(ik);
+    }
+
+    /**
+     * Create the graph node with the given number in the snapshot
+     *
+     * @return graph node, or null if it cannot be created
+     */
+    PointsToGraphNode node(/*PointsToGraphNode*/int node) {
+        String key = this.snapshot.graphNodeKey(node);
+        if (key == null) {
+            return null;
+        }
+        if (key.startsWith("replica")) {
+            String[] fields = SnapshotKeys.split(key, 3);
+            Context context = fields.length == 3 ? context(Integer.parseInt(fields[1])) : null;
+            ReferenceVariable rv = fields.length == 3 ? this.referenceVariables.get(fields[2]) : null;
+            return context == null || rv == null ? null : new ReferenceVariableReplica(context, rv, this.haf);
+        }
+        String[] fields = SnapshotKeys.split(key, 5);
+        if (fields.length != 5 || !fields[0].equals("field")) {
+            return null;
+        }
+        InstanceKey receiver = instanceKey(Integer.parseInt(fields[1]));
+        IClass declaringClass = fields[2].equals("-") ? null : SnapshotKeys.lookupClass(fields[2]);
+        IClass expectedClass = SnapshotKeys.lookupClass(fields[3]);
+        if (receiver == null || declaringClass == null && !fields[2].equals("-") || expectedClass == null) {
+            return null;
+        }
+        return new ObjectField(receiver, declaringClass, fields[4], expectedClass);
+    }
+
+    /**
+     * Key of the given node of the current run, or null if the node cannot be in the snapshot
+     */
+    String nodeKey(PointsToGraphNode node) {
+        if (node instanceof ReferenceVariableReplica) {
+            ReferenceVariableReplica r = (ReferenceVariableReplica) node;
+            Integer context = this.contextNumbers.get(r.getContext());
+            String rv = this.rvKeys.get(r.getReferenceVariable());
+            return context == null || rv == null ? null : SnapshotKeys.join("replica", context, rv);
+        }
+        if (node instanceof ObjectField) {
+            // Every instance key in the snapshot that a client can know about was created by this decoder
+            Integer receiver = this.instanceKeyNumbers.get(((ObjectField) node).receiver());
+            return receiver == null ? null : SnapshotKeys.fieldKey(receiver, (ObjectField) node);
+        }
+        return null;
+    }
+}
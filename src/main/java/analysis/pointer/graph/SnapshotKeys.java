@@ -0,0 +1,307 @@
+package analysis.pointer.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import analysis.AnalysisUtil;
+import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.statements.AllocSiteNodeFactory.AllocSiteNode;
+import analysis.pointer.statements.CallSiteLabel;
+import analysis.pointer.statements.CallStatement;
+import analysis.pointer.statements.NewStatement;
+import analysis.pointer.statements.PointsToStatement;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IClassLoader;
+import com.ibm.wala.classLoader.IField;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.types.Selector;
+import com.ibm.wala.types.TypeReference;
+
+/**
+ * Keys identifying the objects in a points-to graph snapshot (see {@link PointsToGraphSnapshot}) by things that can be
+ * found again in a later run: classes and methods by name, reference variables by the local, field or method summary
+ * they are for (see {@link ReferenceVariableCache#getSnapshotKeys()}), allocation sites and call sites by the
+ * statements they were registered for, and contexts and instance keys by the heap abstraction factory calls that
+ * created them. Keys are strings of fields separated by tabs, the last field of a key may contain more tabs.
+ */
+final class SnapshotKeys {
+
+    static final char SEP = '\t';
+
+    /**
+     * Key of the root method that calls the entry points
+     */
+    private static final String FAKE_ROOT = "ROOT";
+
+    /**
+     * Methods should be accessed statically
+     */
+    private SnapshotKeys() {
+        // Methods should be accessed statically
+    }
+
+    static String join(Object... fields) {
+        StringBuilder sb = new StringBuilder();
+        for (Object f : fields) {
+            if (sb.length() > 0) {
+                sb.append(SEP);
+            }
+            sb.append(f);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Split a key into at most limit fields, the last field gets the rest of the key
+     */
+    static String[] split(String key, int limit) {
+        return key.split(String.valueOf(SEP), limit);
+    }
+
+    static String classKey(IClass c) {
+        return c.getClassLoader().getReference().getName() + ":" + c.getName();
+    }
+
+    /**
+     * Find the class with the given key in the class hierarchy
+     *
+     * @return class, or null if there is no such class
+     */
+    static IClass lookupClass(String key) {
+        int colon = key.indexOf(':');
+        if (colon < 0) {
+            return null;
+        }
+        String loaderName = key.substring(0, colon);
+        for (IClassLoader loader : AnalysisUtil.getClassHierarchy().getLoaders()) {
+            if (loader.getReference().getName().toString().equals(loaderName)) {
+                TypeReference type = TypeReference.findOrCreate(loader.getReference(), key.substring(colon + 1));
+                return AnalysisUtil.getClassHierarchy().lookupClass(type);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Key of the part of the class hierarchy that decides how objects of the given concrete type are treated: the
+     * names of the type, its super classes and the interfaces it implements, and the methods declared by the type and
+     * its super classes. Virtual dispatch on an object and type filters on it give the same results in two runs if
+     * the key of its type is the same.
+     */
+    static String hierarchyKey(IClass concreteType) {
+        StringBuilder sb = new StringBuilder();
+        for (IClass c = concreteType; c != null; c = c.getSuperclass()) {
+            sb.append(classKey(c));
+            List<String> methods = new ArrayList<>();
+            for (IMethod m : c.getDeclaredMethods()) {
+                methods.add(m.getSelector() + (m.isAbstract() ? " abstract" : ""));
+            }
+            Collections.sort(methods);
+            for (String m : methods) {
+                sb.append(SEP).append(m);
+            }
+            sb.append('\n');
+        }
+        List<String> interfaces = new ArrayList<>();
+        for (IClass i : concreteType.getAllImplementedInterfaces()) {
+            interfaces.add(classKey(i));
+        }
+        Collections.sort(interfaces);
+        for (String i : interfaces) {
+            sb.append(i).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Key of a type filter
+     */
+    static String filterKey(TypeFilter filter) {
+        StringBuilder sb = new StringBuilder("is");
+        if (filter.isType != null) {
+            sb.append(SEP).append(classKey(filter.isType));
+        }
+        if (filter.isTypes != null) {
+            for (IClass c : filter.isTypes) {
+                sb.append(SEP).append(classKey(c));
+            }
+        }
+        sb.append(SEP).append("not");
+        if (filter.notTypes != null) {
+            for (IClass c : filter.notTypes) {
+                sb.append(SEP).append(classKey(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Create the type filter with the given key, see {@link #filterKey(TypeFilter)}
+     *
+     * @return type filter, or null if a class cannot be found
+     */
+    static TypeFilter lookupFilter(String key) {
+        String[] fields = split(key, Integer.MAX_VALUE);
+        Set<IClass> isTypes = new LinkedHashSet<>();
+        Set<IClass> notTypes = new LinkedHashSet<>();
+        Set<IClass> types = isTypes;
+        for (int i = 1; i < fields.length; i++) {
+            if (types == isTypes && fields[i].equals("not")) {
+                types = notTypes;
+                continue;
+            }
+            IClass c = lookupClass(fields[i]);
+            if (c == null) {
+                return null;
+            }
+            types.add(c);
+        }
+        return TypeFilter.create(isTypes, notTypes);
+    }
+
+    static String typeKey(TypeReference type) {
+        return type.getClassLoader().getName() + ":" + type.getName();
+    }
+
+    static String methodKey(IMethod m) {
+        if (m == AnalysisUtil.getFakeRoot()) {
+            return FAKE_ROOT;
+        }
+        return classKey(m.getDeclaringClass()) + "." + m.getSelector();
+    }
+
+    /**
+     * Find the method with the given key in the class hierarchy
+     *
+     * @return method, or null if there is no such method
+     */
+    static IMethod lookupMethod(String key) {
+        if (key.equals(FAKE_ROOT)) {
+            return AnalysisUtil.getFakeRoot();
+        }
+        // Class names and loader names cannot contain a '.', the selector follows the first one
+        int dot = key.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        IClass c = lookupClass(key.substring(0, dot));
+        if (c == null) {
+            return null;
+        }
+        IMethod m = c.getMethod(Selector.make(key.substring(dot + 1)));
+        return m != null && m.getDeclaringClass().equals(c) ? m : null;
+    }
+
+    static String staticFieldKey(IField f) {
+        return join(classKey(f.getDeclaringClass()), f.getName());
+    }
+
+    /**
+     * Key of an object field graph node
+     *
+     * @param receiver number of the receiver instance key in the snapshot
+     * @param f object field
+     */
+    static String fieldKey(int receiver, ObjectField f) {
+        return join("field",
+                    receiver,
+                    f.declaringClass() == null ? "-" : classKey(f.declaringClass()),
+                    classKey(f.expectedClass()),
+                    f.fieldName());
+    }
+
+    static String callSiteKey(CallSiteLabel callSite) {
+        return join(methodKey(callSite.getCaller()), callSite.getReference().getProgramCounter());
+    }
+
+    /**
+     * Key of an allocation site that is not registered as a statement (the allocation site for calls to clone, see
+     * {@link CallStatement#findOrCreateCloneAllocation(IClass, IMethod)})
+     */
+    static String cloneAllocationKey(AllocSiteNode site) {
+        return join("clone", classKey(site.getAllocatedClass()), methodKey(site.getAllocatingMethod()));
+    }
+
+    /**
+     * Find the allocation site for calls to clone with the given key, see {@link #cloneAllocationKey(AllocSiteNode)}
+     *
+     * @return allocation site, or null if the key is not for such a site or the class or method cannot be found
+     */
+    static AllocSiteNode lookupCloneAllocation(String key) {
+        String[] fields = split(key, 3);
+        if (fields.length != 3 || !fields[0].equals("clone")) {
+            return null;
+        }
+        IClass klass = lookupClass(fields[1]);
+        IMethod callee = lookupMethod(fields[2]);
+        if (klass == null || callee == null) {
+            return null;
+        }
+        return CallStatement.findOrCreateCloneAllocation(klass, callee);
+    }
+
+    /**
+     * Compute the keys of the allocation sites of the statements registered by the registrar. An allocation site is
+     * identified by the key of the variable the new object is assigned to (there is one allocation site for each such
+     * variable), or, if that variable has no key, by the method and the statement. Sites for which two statements
+     * give the same key are left out.
+     *
+     * @param registrar registrar containing the statements
+     * @param rvKeys keys of the reference variables, see {@link ReferenceVariableCache#getSnapshotKeys()}
+     * @return key of each allocation site that has a unique key
+     */
+    static Map<AllocSiteNode, String> allocationSiteKeys(StatementRegistrar registrar,
+                                                          Map<ReferenceVariable, String> rvKeys) {
+        Map<String, AllocSiteNode> sites = new HashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+        for (IMethod m : registrar.getRegisteredMethods()) {
+            for (PointsToStatement s : registrar.getStatementsForMethod(m)) {
+                if (!(s instanceof NewStatement)) {
+                    continue;
+                }
+                NewStatement ns = (NewStatement) s;
+                String rvKey = rvKeys.get(ns.getDef());
+                String key = rvKey == null ? join("new-statement", methodKey(m), s) : join("new", rvKey);
+                AllocSiteNode existing = sites.put(key, ns.getAllocSite());
+                if (existing != null && existing != ns.getAllocSite()) {
+                    ambiguous.add(key);
+                }
+            }
+        }
+        Map<AllocSiteNode, String> keys = new IdentityHashMap<>();
+        for (Map.Entry<String, AllocSiteNode> e : sites.entrySet()) {
+            if (!ambiguous.contains(e.getKey())) {
+                keys.put(e.getValue(), e.getKey());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Find the call sites of the call statements registered by the registrar
+     *
+     * @param registrar registrar containing the statements
+     * @return call site for each key, see {@link #callSiteKey(CallSiteLabel)}
+     */
+    static Map<String, CallSiteLabel> callSites(StatementRegistrar registrar) {
+        Map<String, CallSiteLabel> callSites = new HashMap<>();
+        for (IMethod m : registrar.getRegisteredMethods()) {
+            for (PointsToStatement s : registrar.getStatementsForMethod(m)) {
+                if (s instanceof CallStatement) {
+                    CallSiteLabel callSite = ((CallStatement) s).getCallSite();
+                    callSites.put(callSiteKey(callSite), callSite);
+                }
+            }
+        }
+        return callSites;
+    }
+}
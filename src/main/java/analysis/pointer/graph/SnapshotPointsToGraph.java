@@ -0,0 +1,171 @@
+package analysis.pointer.graph;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import analysis.pointer.analyses.HeapAbstractionFactory;
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+import analysis.pointer.registrar.StatementRegistrar;
+
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.intset.IntIterator;
+
+/**
+ * Points-to graph and call graph rebuilt from a {@link PointsToGraphSnapshot} against the class hierarchy and the
+ * registered statements of the current run, so that the analyses that use the results of the points-to analysis can
+ * run without solving it again. The contexts and the call graph are created when the graph is rebuilt, instance keys
+ * are created from their keys the first time they are found in a points-to set, and points-to sets are read from the
+ * mapped snapshot when they are asked for.
+ */
+public class SnapshotPointsToGraph implements PointsToResults {
+
+    private final PointsToGraphSnapshot snapshot;
+    private final HeapAbstractionFactory haf;
+    private final SnapshotDecoder decoder;
+    private final HafCallGraph callGraph;
+
+    /**
+     * Rebuild the graph in the given snapshot
+     *
+     * @param snapshot snapshot written for a graph computed with a recording heap abstraction factory
+     * @param registrar statements registered for the current run
+     * @param haf heap abstraction factory of the same kind as the one used to compute the graph
+     * @throws IOException if a context or call graph node in the snapshot cannot be found in the current run
+     */
+    SnapshotPointsToGraph(PointsToGraphSnapshot snapshot, StatementRegistrar registrar, HeapAbstractionFactory haf)
+                                    throws IOException {
+        this.snapshot = snapshot;
+        this.haf = haf;
+        this.decoder = new SnapshotDecoder(snapshot, registrar, haf);
+        for (int i = 0; i < snapshot.numContexts(); i++) {
+            String key = snapshot.contextKey(i);
+            if (key != null && this.decoder.context(i) == null) {
+                throw new IOException("Cannot rebuild context " + snapshot.contextDescription(i) + " from " + key);
+            }
+        }
+        this.callGraph = decodeCallGraph();
+    }
+
+    /**
+     * Get the instance key with the given number in the snapshot, creating it if this is the first time it is used
+     */
+    private InstanceKey instanceKey(/*InstanceKey*/int ik) {
+        InstanceKey k = this.decoder.instanceKey(ik);
+        if (k == null) {
+            throw new IllegalStateException("Cannot rebuild instance key " + this.snapshot.instanceKeyDescription(ik)
+                    + " from " + this.snapshot.instanceKeyKey(ik) + ", the snapshot cannot answer queries about it");
+        }
+        return k;
+    }
+
+    @SuppressWarnings("deprecation")
+    private HafCallGraph decodeCallGraph() throws IOException {
+        HafCallGraph cg = new HafCallGraph(this.haf);
+        try {
+            Map<Integer, CGNode> nodes = new HashMap<>();
+            IntIterator iter = this.snapshot.callGraphNodeIterator();
+            while (iter.hasNext()) {
+                int n = iter.next();
+                String key = this.snapshot.callGraphNodeKey(n);
+                String[] fields = key == null ? null : SnapshotKeys.split(key, 2);
+                Context context = fields == null ? null : this.decoder.context(Integer.parseInt(fields[0]));
+                IMethod m = fields == null ? null : SnapshotKeys.lookupMethod(fields[1]);
+                if (context == null || m == null) {
+                    throw new IOException("Cannot rebuild call graph node "
+                            + this.snapshot.callGraphNodeDescription(n));
+                }
+                nodes.put(n, cg.findOrCreateNode(m, context));
+            }
+
+            iter = this.snapshot.callGraphNodeIterator();
+            while (iter.hasNext()) {
+                int n = iter.next();
+                CGNode src = nodes.get(n);
+                Map<Integer, CallSiteReference> sites = new HashMap<>();
+                Iterator<CallSiteReference> siteIter = src.iterateCallSites();
+                while (siteIter.hasNext()) {
+                    CallSiteReference site = siteIter.next();
+                    sites.put(site.getProgramCounter(), site);
+                }
+                IntIterator calls = this.snapshot.callIterator(n);
+                while (calls.hasNext()) {
+                    int pc = calls.next();
+                    CGNode dst = nodes.get(calls.next());
+                    if (!sites.containsKey(pc) || dst == null) {
+                        throw new IOException("Cannot rebuild the call at " + pc + " in " + src);
+                    }
+                    // We are building a call graph so it is safe to call this "deprecated" method
+                    src.addTarget(sites.get(pc), dst);
+                }
+                if (this.snapshot.isEntrypoint(n)) {
+                    cg.registerEntrypoint(src);
+                }
+            }
+        }
+        catch (CancelException e) {
+            throw new RuntimeException(e);
+        }
+        return cg;
+    }
+
+    @Override
+    public Iterator<InstanceKey> pointsToIterator(PointsToGraphNode node) {
+        String key = this.decoder.nodeKey(node);
+        int n = key == null ? -1 : this.snapshot.findGraphNode(key);
+        if (n < 0) {
+            return Collections.<InstanceKey> emptyList().iterator();
+        }
+        final IntIterator iter = this.snapshot.pointsToIntIterator(n);
+        return new Iterator<InstanceKey>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public InstanceKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return instanceKey(iter.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<InstanceKey> pointsToIterator(PointsToGraphNode node, StmtAndContext originator) {
+        // The graph is finished, there are no dependencies to record
+        return pointsToIterator(node);
+    }
+
+    @Override
+    public HeapAbstractionFactory getHaf() {
+        return this.haf;
+    }
+
+    @Override
+    public HafCallGraph getCallGraph() {
+        return this.callGraph;
+    }
+
+    /**
+     * Snapshot this graph was rebuilt from
+     */
+    public PointsToGraphSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+}
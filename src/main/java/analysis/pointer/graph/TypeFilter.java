@@ -118,7 +118,39 @@ public class TypeFilter {
 
     }
 
+    /**
+     * Results of {@link #satisfies(IClass)}, created the first time the filter is used. The filters are memoized, and
+     * the same filter is checked against the same few concrete types many times, so this avoids walking the class
+     * hierarchy each time.
+     */
+    private volatile ConcurrentMap<IClass, Boolean> satisfiesCache = null;
+
+    /**
+     * Does the concrete type satisfy this filter?
+     *
+     * @param concreteType type of an abstract object
+     * @return true if objects of the type pass through this filter
+     */
     public boolean satisfies(IClass concreteType) {
+        ConcurrentMap<IClass, Boolean> cache = this.satisfiesCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = this.satisfiesCache;
+                if (cache == null) {
+                    cache = AnalysisUtil.createConcurrentHashMap();
+                    this.satisfiesCache = cache;
+                }
+            }
+        }
+        Boolean b = cache.get(concreteType);
+        if (b == null) {
+            b = computeSatisfies(concreteType);
+            cache.put(concreteType, b);
+        }
+        return b;
+    }
+
+    private boolean computeSatisfies(IClass concreteType) {
         if (isType == null && isTypes == null || isType != null
                 && isAssignableFrom(isType, concreteType) || isTypes != null
                 && allAssignableFrom(isTypes, concreteType)) {
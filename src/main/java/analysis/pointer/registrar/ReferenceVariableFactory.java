@@ -1,6 +1,5 @@
 package analysis.pointer.registrar;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 import util.OrderedPair;
@@ -29,34 +28,34 @@ public class ReferenceVariableFactory {
      * arrays
      */
     private final Map<ArrayContentsKey, ReferenceVariable> arrayContentsTemps =
-            new LinkedHashMap<>();
+            StatementRegistrar.createMap();
     /**
      * Points-to graph nodes for implicit exceptions and errors
      */
     private final Map<ImplicitThrowKey, ReferenceVariable> implicitThrows =
-            new LinkedHashMap<>();
+            StatementRegistrar.createMap();
     /**
      * Points-to graph nodes for static fields
      */
     private final Map<IField, ReferenceVariable> staticFields =
-            new LinkedHashMap<>();
+            StatementRegistrar.createMap();
     /**
      * Nodes for local variables
      */
     private final Map<OrderedPair<Integer, IMethod>, ReferenceVariable> locals =
-            new LinkedHashMap<>();
+            StatementRegistrar.createMap();
     /**
      * Nodes for singleton exceptions if they are created, there can be only one per type. The points-to analysis will
      * be less precise, but the points-to graph will be smaller and the points-to analysis faster. The creation is
      * governed by a flag in {@link StatementRegistrar}
      */
     private final Map<TypeReference, ReferenceVariable> singletons =
-            new LinkedHashMap<>();
+            StatementRegistrar.createMap();
 
     /**
      * One node per type for java.lang.Class
      */
-    private final Map<TypeReference, ReferenceVariable> classSingletons = new LinkedHashMap<>();
+    private final Map<TypeReference, ReferenceVariable> classSingletons = StatementRegistrar.createMap();
 
     /**
      * Get the reference variable for the given local in the given method. The local should not have a primitive type or
@@ -236,14 +235,15 @@ public class ReferenceVariableFactory {
     }
 
     /**
-     * Get the reference variable for the given static field
+     * Get the reference variable for the given static field. Synchronized since static fields are shared by all the
+     * methods, which may be registered by several threads.
      *
      * @param field
      *            field to get the node for
      * @return reference variable for the static field
      */
     @SuppressWarnings("synthetic-access")
-    protected ReferenceVariable getOrCreateStaticField(FieldReference field) {
+    protected synchronized ReferenceVariable getOrCreateStaticField(FieldReference field) {
         IField f = AnalysisUtil.getClassHierarchy().resolveField(field);
         ReferenceVariable node = staticFields.get(f);
         if (node == null) {
@@ -365,6 +365,18 @@ public class ReferenceVariableFactory {
             }
             return true;
         }
+
+        public IMethod getMethod() {
+            return method;
+        }
+
+        public int getBasicBlockID() {
+            return basicBlockID;
+        }
+
+        public TypeReference getType() {
+            return type;
+        }
     }
 
     /**
@@ -454,6 +466,18 @@ public class ReferenceVariableFactory {
             }
             return true;
         }
+
+        public int getDim() {
+            return dim;
+        }
+
+        public int getProgramCounter() {
+            return programCounter;
+        }
+
+        public IMethod getMethod() {
+            return method;
+        }
     }
 
     /**
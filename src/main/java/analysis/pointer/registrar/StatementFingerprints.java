@@ -0,0 +1,243 @@
+package analysis.pointer.registrar;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import analysis.pointer.statements.PointsToStatement;
+
+import com.ibm.wala.classLoader.IMethod;
+
+/**
+ * Fingerprints of the points-to statements registered for each method, which can be saved after one run and compared
+ * against the statements registered in a later run (e.g., after a class has changed) to report the methods whose
+ * statements changed.
+ * <p>
+ * The fingerprint of a statement is its full string representation (with line breaks escaped), so statements of
+ * methods that did not change get the same fingerprints in every run, and two different statements never share a
+ * fingerprint. A method may register the same statement more than once, so the number of copies of each fingerprint is
+ * recorded as well.
+ * <p>
+ * This only reports what changed. To resume the points-to analysis from the graph of the previous run, save a snapshot
+ * with derivations instead (see {@link analysis.pointer.graph.IncrementalResume}), which identifies statements by the
+ * same fingerprints.
+ */
+public class StatementFingerprints {
+
+    /**
+     * Number of statements with each fingerprint for each method, indexed by method signature. Both maps are sorted so
+     * that the file is the same for the same statements.
+     */
+    private final Map<String, Map<String, Integer>> fingerprints;
+
+    // Results of the last call to compareTo
+    private final Set<String> addedMethods = new LinkedHashSet<>();
+    private final Set<String> removedMethods = new LinkedHashSet<>();
+    private final Set<String> changedMethods = new LinkedHashSet<>();
+    private int numAddedStatements = 0;
+    private int numRemovedStatements = 0;
+
+    private StatementFingerprints(Map<String, Map<String, Integer>> fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Compute the fingerprints of the statements registered by the given registrar
+     *
+     * @param registrar registrar containing the statements for the current run
+     * @return fingerprints for the current run
+     */
+    public static StatementFingerprints compute(StatementRegistrar registrar) {
+        Map<String, Map<String, Integer>> fingerprints = new TreeMap<>();
+        for (IMethod m : registrar.getRegisteredMethods()) {
+            Map<String, Integer> counts = new TreeMap<>();
+            for (PointsToStatement s : registrar.getStatementsForMethod(m)) {
+                addFingerprint(counts, fingerprint(s));
+            }
+            fingerprints.put(m.getSignature(), counts);
+        }
+        return new StatementFingerprints(fingerprints);
+    }
+
+    /**
+     * Fingerprint of a statement: its string representation with line breaks escaped, so that it fits on one line of
+     * the file
+     */
+    public static String fingerprint(PointsToStatement s) {
+        return escape(s.toString());
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static void addFingerprint(Map<String, Integer> counts, String fp) {
+        Integer count = counts.get(fp);
+        counts.put(fp, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Read fingerprints saved by {@link #save(File)}
+     *
+     * @param file file to read
+     * @return fingerprints of a previous run
+     * @throws IOException if the file cannot be read
+     */
+    public static StatementFingerprints read(File file) throws IOException {
+        Map<String, Map<String, Integer>> fingerprints = new TreeMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            Map<String, Integer> counts = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.startsWith("\t")) {
+                    counts = new TreeMap<>();
+                    fingerprints.put(line, counts);
+                }
+                else if (counts == null) {
+                    throw new IOException("Statement before the first method in " + file + ": " + line);
+                }
+                else {
+                    addFingerprint(counts, line.substring(1));
+                }
+            }
+        }
+        return new StatementFingerprints(fingerprints);
+    }
+
+    /**
+     * Save the fingerprints to a file: a line with the signature of each method, followed by a line starting with a
+     * tab for each statement of the method
+     *
+     * @param file file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(file))) {
+            for (Map.Entry<String, Map<String, Integer>> method : this.fingerprints.entrySet()) {
+                out.write(method.getKey());
+                out.write('\n');
+                for (Map.Entry<String, Integer> s : method.getValue().entrySet()) {
+                    for (int i = 0; i < s.getValue(); i++) {
+                        out.write('\t');
+                        out.write(s.getKey());
+                        out.write('\n');
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compare the fingerprints of this (current) run against those of a previous run. The results are available from
+     * the getters.
+     *
+     * @param previous fingerprints of a previous run
+     */
+    public void compareTo(StatementFingerprints previous) {
+        this.addedMethods.clear();
+        this.removedMethods.clear();
+        this.changedMethods.clear();
+        this.numAddedStatements = 0;
+        this.numRemovedStatements = 0;
+
+        for (Map.Entry<String, Map<String, Integer>> method : this.fingerprints.entrySet()) {
+            String sig = method.getKey();
+            Map<String, Integer> now = method.getValue();
+            Map<String, Integer> before = previous.fingerprints.get(sig);
+            if (before == null) {
+                this.addedMethods.add(sig);
+                this.numAddedStatements += countStatements(now);
+                continue;
+            }
+            if (now.equals(before)) {
+                continue;
+            }
+            this.changedMethods.add(sig);
+            this.numAddedStatements += countMissing(now, before);
+            this.numRemovedStatements += countMissing(before, now);
+        }
+
+        for (Map.Entry<String, Map<String, Integer>> method : previous.fingerprints.entrySet()) {
+            if (!this.fingerprints.containsKey(method.getKey())) {
+                this.removedMethods.add(method.getKey());
+                this.numRemovedStatements += countStatements(method.getValue());
+            }
+        }
+    }
+
+    private static int countStatements(Map<String, Integer> counts) {
+        int n = 0;
+        for (int count : counts.values()) {
+            n += count;
+        }
+        return n;
+    }
+
+    /**
+     * Number of statements in from that are not in to, counting copies
+     */
+    private static int countMissing(Map<String, Integer> from, Map<String, Integer> to) {
+        int n = 0;
+        for (Map.Entry<String, Integer> s : from.entrySet()) {
+            Integer other = to.get(s.getKey());
+            n += Math.max(0, s.getValue() - (other == null ? 0 : other));
+        }
+        return n;
+    }
+
+    /**
+     * Signatures of methods registered in this run but not in the previous one
+     */
+    public Set<String> getAddedMethods() {
+        return this.addedMethods;
+    }
+
+    /**
+     * Signatures of methods registered in the previous run but not in this one
+     */
+    public Set<String> getRemovedMethods() {
+        return this.removedMethods;
+    }
+
+    /**
+     * Signatures of methods registered in both runs whose statements differ
+     */
+    public Set<String> getChangedMethods() {
+        return this.changedMethods;
+    }
+
+    /**
+     * Number of statements of this run that are not in the previous run
+     */
+    public int getNumAddedStatements() {
+        return this.numAddedStatements;
+    }
+
+    /**
+     * Number of statements of the previous run that are not in this run
+     */
+    public int getNumRemovedStatements() {
+        return this.numRemovedStatements;
+    }
+
+    /**
+     * Print a summary of the differences found by the last call to {@link #compareTo(StatementFingerprints)}
+     */
+    public void printDifferences() {
+        System.err.println("Statement changes since the previous run: " + this.addedMethods.size()
+                + " methods added, " + this.removedMethods.size() + " removed, " + this.changedMethods.size()
+                + " changed; " + this.numAddedStatements + " statements added, " + this.numRemovedStatements
+                + " removed");
+        for (String sig : this.changedMethods) {
+            System.err.println("\tchanged: " + sig);
+        }
+    }
+}
@@ -11,6 +11,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import signatures.Signatures;
 import types.TypeRepository;
@@ -62,9 +64,10 @@ import com.ibm.wala.types.TypeReference;
 public class StatementRegistrar {
 
     /**
-     * Map from method signature to nodes representing formals and returns
+     * Map from method signature to nodes representing formals and returns. Concurrent since summaries are created for
+     * callees by every thread registering methods, and by the points-to analysis.
      */
-    private final Map<IMethod, MethodSummaryNodes> methods;
+    private final ConcurrentMap<IMethod, MethodSummaryNodes> methods;
     /**
      * Entry point for the code being analyzed
      */
@@ -77,7 +80,7 @@ public class StatementRegistrar {
     /**
      * The total number of statements
      */
-    private int size;
+    private final AtomicInteger size = new AtomicInteger(0);
 
     /**
      * String literals that new allocation sites have already been created for
@@ -135,7 +138,7 @@ public class StatementRegistrar {
     /**
      * Methods we have already added statements for
      */
-    private final Set<IMethod> registeredMethods = new LinkedHashSet<>();
+    private final Set<IMethod> registeredMethods = createSet();
     /**
      * Factory for finding and creating reference variable (local variable and static fields)
      */
@@ -147,7 +150,7 @@ public class StatementRegistrar {
     /**
      * Map from method to index mapping replaced variables to their replacements
      */
-    private final Map<IMethod, VariableIndex> replacedVariableMap = new LinkedHashMap<>();
+    private final Map<IMethod, VariableIndex> replacedVariableMap = createMap();
 
     /**
      * Class that manages the registration of points-to statements. These describe how certain expressions modify the
@@ -180,11 +183,11 @@ public class StatementRegistrar {
                               boolean useSingleAllocForStrings, boolean useSingleAllocForImmutableWrappers,
                               boolean useSingleAllocForSwing,
                               boolean useDefaultNativeSignatures) {
-        this.methods = new LinkedHashMap<>();
-        this.statementsForMethod = new LinkedHashMap<>();
-        this.singletonReferenceVariables = new LinkedHashMap<>();
-        this.classReferenceVariables = new LinkedHashMap<>();
-        this.handledStringLit = new LinkedHashSet<>();
+        this.methods = AnalysisUtil.createConcurrentHashMap();
+        this.statementsForMethod = createMap();
+        this.singletonReferenceVariables = createMap();
+        this.classReferenceVariables = createMap();
+        this.handledStringLit = createSet();
         this.entryPoint = AnalysisUtil.getFakeRoot();
         this.stmtFactory = factory;
         this.useDefaultSignatures = useDefaultNativeSignatures;
@@ -206,11 +209,39 @@ public class StatementRegistrar {
     }
 
     /**
-     * Handle all the instructions for a given method
+     * Create a map for the state of the registrar. If methods are registered by several threads (see
+     * {@link StatementRegistrationPass#setParallelRegistration(boolean)}) the map is concurrent, otherwise it iterates
+     * in insertion order.
+     *
+     * @return new empty map
+     */
+    static <K, V> Map<K, V> createMap() {
+        if (StatementRegistrationPass.isParallelRegistration()) {
+            return AnalysisUtil.<K, V> createConcurrentHashMap();
+        }
+        return new LinkedHashMap<K, V>();
+    }
+
+    /**
+     * Create a set for the state of the registrar. If methods are registered by several threads the set is concurrent,
+     * otherwise it iterates in insertion order.
+     *
+     * @return new empty set
+     */
+    static <T> Set<T> createSet() {
+        if (StatementRegistrationPass.isParallelRegistration()) {
+            return AnalysisUtil.<T> createConcurrentSet();
+        }
+        return new LinkedHashSet<T>();
+    }
+
+    /**
+     * Handle all the instructions for a given method. May be called by several threads at once if the registrar was
+     * created for parallel registration, each method is registered by the first thread to call this for it.
      *
      * @param m method to register points-to statements for
      */
-    public synchronized boolean registerMethod(IMethod m) {
+    public boolean registerMethod(IMethod m) {
         if (m.isAbstract()) {
             // Don't need to register abstract methods
             return false;
@@ -252,9 +283,9 @@ public class StatementRegistrar {
             replacedVariableMap.put(m, duplicateResults.snd());
             int newSize = newStatements.size();
 
-            removed += (oldSize - newSize);
+            removed.addAndGet(oldSize - newSize);
             this.statementsForMethod.put(m, newStatements);
-            this.size += (newSize - oldSize);
+            this.size.addAndGet(newSize - oldSize);
 
             if (PointsToAnalysis.outputLevel >= 1) {
                 System.err.println("HANDLED: " + PrettyPrinter.methodString(m));
@@ -280,7 +311,7 @@ public class StatementRegistrar {
     /**
      * Total number of statements that are removed when duplicate statements are removed
      */
-    private static int removed = 0;
+    private static final AtomicInteger removed = new AtomicInteger(0);
 
     /**
      * Handle a particular instruction, this dispatches on the type of the instruction
@@ -830,7 +861,7 @@ public class StatementRegistrar {
         MethodSummaryNodes msn = this.methods.get(method);
         if (msn == null) {
             msn = new MethodSummaryNodes(method);
-            MethodSummaryNodes ex = this.methods.put(method, msn);
+            MethodSummaryNodes ex = this.methods.putIfAbsent(method, msn);
             if (ex != null) {
                 msn = ex;
             }
@@ -861,20 +892,20 @@ public class StatementRegistrar {
     static Set<IMethod> resolveMethodsForInvocation(SSAInvokeInstruction inv, IMethod caller) {
         Set<IMethod> targets = null;
         if (inv.isStatic()) {
-            IMethod resolvedMethod = AnalysisUtil.getClassHierarchy().resolveMethod(inv.getDeclaredTarget());
+            IMethod resolvedMethod = AnalysisUtil.resolveMethod(inv.getDeclaredTarget());
             if (resolvedMethod != null) {
                 targets = Collections.singleton(resolvedMethod);
             }
         }
         else if (inv.isSpecial()) {
-            IMethod resolvedMethod = AnalysisUtil.getClassHierarchy().resolveMethod(inv.getDeclaredTarget());
+            IMethod resolvedMethod = AnalysisUtil.resolveMethod(inv.getDeclaredTarget());
             if (resolvedMethod != null) {
                 targets = Collections.singleton(resolvedMethod);
             }
         }
         else if (inv.getInvocationCode() == IInvokeInstruction.Dispatch.INTERFACE
                 || inv.getInvocationCode() == IInvokeInstruction.Dispatch.VIRTUAL) {
-            targets = AnalysisUtil.getClassHierarchy().getPossibleTargets(inv.getDeclaredTarget());
+            targets = AnalysisUtil.getPossibleTargets(inv.getDeclaredTarget());
         }
         else {
             throw new UnsupportedOperationException("Unhandled invocation code: " + inv.getInvocationCode() + " for "
@@ -913,13 +944,11 @@ public class StatementRegistrar {
             }
         }
         assert !ss.contains(s) : "STATEMENT: " + s + " was already added";
-        if (ss.add(s)) {
-            this.size++;
-        }
+        int count = ss.add(s) ? this.size.incrementAndGet() : this.size.get();
 
-        if ((this.size + StatementRegistrar.removed) % 100000 == 0) {
-            System.err.println("REGISTERED: " + (this.size + StatementRegistrar.removed) + ", removed: "
-                    + StatementRegistrar.removed + " effective: " + this.size);
+        if ((count + StatementRegistrar.removed.get()) % 100000 == 0) {
+            System.err.println("REGISTERED: " + (count + StatementRegistrar.removed.get()) + ", removed: "
+                    + StatementRegistrar.removed.get() + " effective: " + count);
             // if (StatementRegistrationPass.PROFILE) {
             // System.err.println("PAUSED HIT ENTER TO CONTINUE: ");
             // try {
@@ -941,7 +970,7 @@ public class StatementRegistrar {
         for (IMethod m : this.statementsForMethod.keySet()) {
             total += this.statementsForMethod.get(m).size();
         }
-        this.size = total;
+        this.size.set(total);
         return total;
     }
 
@@ -985,11 +1014,10 @@ public class StatementRegistrar {
                                                                             TypeReference.JavaLangString,
                                                                             ir.getMethod(),
                                                                             pp);
-                if (this.handledStringLit.contains(newStringLit)) {
+                if (!this.handledStringLit.add(newStringLit)) {
                     // Already handled this allocation
                     return;
                 }
-                this.handledStringLit.add(newStringLit);
 
                 // The fake root method always allocates a String so the clinit has already been called, even if we are
                 // flow sensitive
@@ -1058,11 +1086,12 @@ public class StatementRegistrar {
     }
 
     /**
-     * Get or create a singleton reference variable based on the type.
+     * Get or create a singleton reference variable based on the type. Synchronized since any thread registering a
+     * method may need the singleton, and its allocation is added to the entry point.
      *
      * @param varType type we want a singleton for
      */
-    private ReferenceVariable getOrCreateSingleton(TypeReference varType) {
+    private synchronized ReferenceVariable getOrCreateSingleton(TypeReference varType) {
         ReferenceVariable rv = this.singletonReferenceVariables.get(varType);
         if (rv == null) {
             rv = rvFactory.createSingletonReferenceVariable(varType);
@@ -1090,7 +1119,7 @@ public class StatementRegistrar {
      *
      * @param varType type we want a singleton java.lang.Class for
      */
-    private ReferenceVariable getOrCreateSingletonClassType(TypeReference varType) {
+    private synchronized ReferenceVariable getOrCreateSingletonClassType(TypeReference varType) {
         ReferenceVariable rv = this.classReferenceVariables.get(varType);
         if (rv == null) {
             rv = rvFactory.createClassReferenceVariable(varType);
@@ -8,12 +8,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import main.AccrueAnalysisMain;
 import util.WorkQueue;
 import util.print.PrettyPrinter;
 import analysis.AnalysisUtil;
 import analysis.ClassInitFinder;
+import analysis.DispatchCache;
 import analysis.pointer.engine.PointsToAnalysis;
 import analysis.pointer.graph.ReferenceVariableCache;
 import analysis.pointer.statements.StatementFactory;
@@ -26,6 +32,7 @@ import com.ibm.wala.ssa.ISSABasicBlock;
 import com.ibm.wala.ssa.SSAInstruction;
 import com.ibm.wala.ssa.SSAInvokeInstruction;
 import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.Selector;
 import com.ibm.wala.types.TypeReference;
 
 /**
@@ -35,6 +42,36 @@ public class StatementRegistrationPass {
 
     private final StatementRegistrar registrar;
     private static boolean PROFILE = false;
+    /**
+     * If true then methods are registered by a pool of threads
+     */
+    private static boolean parallelRegistration = false;
+    /**
+     * Whether this pass registers methods on a pool of threads, the value of {@link #parallelRegistration} when the
+     * pass was created
+     */
+    private final boolean parallel;
+    /**
+     * the classes for which we have registered an instance methods. These are the classes that might have instances
+     * when we execute
+     */
+    private final Set<IClass> seenInstancesOf = new HashSet<>();
+    /**
+     * Targets of virtual calls that will be registered once an instance of their declaring class has been seen
+     */
+    private final Map<IClass, Collection<IMethod>> waitingForInstances = new HashMap<>();
+    /**
+     * Targets of virtual calls whose possible callees have already been found
+     */
+    private final Set<MethodReference> alreadyProcessedVirtual;
+    /**
+     * Selectors of virtually dispatched calls, indexed by the class declaring the target
+     */
+    private final Map<IClass, Set<Selector>> dispatchSelectors = new HashMap<>();
+    /**
+     * Targets of static and special calls that have already been resolved
+     */
+    private final Set<MethodReference> alreadyProcessedStaticAndSpecial;
 
     /**
      * Create a pass which will generate points-to statements
@@ -75,6 +112,40 @@ public class StatementRegistrationPass {
                                            useSingleAllocForImmutableWrappers,
                                            useSingleAllocForSwing,
                                            useDefaultNativeSignatures);
+        parallel = parallelRegistration;
+        // Add String to the list of seen instance methods.
+        // There will be a String somewhere and this covers the rare case that the only String objects seen are literals.
+        seenInstancesOf.add(AnalysisUtil.getStringClass());
+        if (parallel) {
+            alreadyProcessedVirtual = AnalysisUtil.createConcurrentSet();
+            alreadyProcessedStaticAndSpecial = AnalysisUtil.createConcurrentSet();
+        }
+        else {
+            alreadyProcessedVirtual = new HashSet<>();
+            alreadyProcessedStaticAndSpecial = new HashSet<>();
+        }
+    }
+
+    /**
+     * Set whether methods should be registered by a pool of threads. Each thread builds the IR for a method, registers
+     * its statements and searches it for more methods to register. The same methods and statements are registered
+     * either way, but in parallel the order in which they are registered is not deterministic. Affects passes created
+     * after the call.
+     *
+     * @param parallelRegistration if true then register methods in parallel
+     */
+    public static void setParallelRegistration(boolean parallelRegistration) {
+        StatementRegistrationPass.parallelRegistration = parallelRegistration;
+    }
+
+    /**
+     * Whether passes created now register methods on a pool of threads, in which case the state they share must be
+     * thread-safe
+     *
+     * @return true if methods are registered in parallel
+     */
+    static boolean isParallelRegistration() {
+        return parallelRegistration;
     }
 
     /**
@@ -112,135 +183,174 @@ public class StatementRegistrationPass {
      */
     public void run() {
         long start = System.currentTimeMillis();
-        final WorkQueue<IMethod> q = new WorkQueue<>();
 
-        // the classes for which we have registered an instance methods.
-        // These are the classes that might have instances when we execute
-        Set<IClass> seenInstancesOf = new HashSet<>();
-        // Add String to the list of seen instance methods.
-        // There will be a String somewhere and this covers the rare case that the only String objects seen are literals.
-        seenInstancesOf.add(AnalysisUtil.getStringClass());
-        Map<IClass, Collection<IMethod>> waitingForInstances = new HashMap<>();
-
-        Set<MethodReference> alreadyProcessedVirtual = new HashSet<>();
-        Set<MethodReference> alreadyProcessedStaticAndSpecial = new HashSet<>();
+        if (parallel) {
+            registerInParallel();
+        }
+        else {
+            WorkQueue<IMethod> q = new WorkQueue<>();
+            init(q);
 
-        init(q);
+            while (!q.isEmpty()) {
+                processMethod(q.poll(), q);
+            }
+        }
 
-        while (!q.isEmpty()) {
-            IMethod m = q.poll();
+        prewarmDispatchCache(seenInstancesOf, dispatchSelectors);
 
-            // Register all the instructions in the method.
-            if (!registrar.registerMethod(m)) {
-                continue;
+        System.err.println("Statement registration took " + (System.currentTimeMillis() - start) + "ms");
+        if (!AccrueAnalysisMain.testMode) {
+            System.gc();
+            System.err.println("USED " + (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1000000)
+                    + "MB");
+        }
+        if (PROFILE) {
+            System.err.println("PAUSED HIT ENTER TO CONTINUE: ");
+            try {
+                System.in.read();
             }
-
-            if (m.isInit()) {
-                // it is an instance initialization method!
-                processInstanceClass(seenInstancesOf, m.getDeclaringClass(), waitingForInstances, q);
+            catch (IOException e) {
+                e.printStackTrace();
             }
+        }
+    }
 
-            // now also go through each instruction, and see if we need to add anything else to the
-            // workqueue
-            IR ir = AnalysisUtil.getIR(m);
-            if (ir == null) {
-                // Native method with no signature.
+    /**
+     * Register methods on a pool of threads, returning once every reachable method has been registered
+     */
+    private void registerInParallel() {
+        AnalysisUtil.useConcurrentIRCache();
+        ExecutorService registrars = Executors.newFixedThreadPool(AnalysisUtil.numThreads);
+        try {
+            ParallelRegistrationQueue q = new ParallelRegistrationQueue(registrars);
+            init(q);
+            q.awaitRegistration();
+        }
+        finally {
+            // Everything has been registered (or registration failed), so the threads are no longer needed
+            registrars.shutdownNow();
+        }
+    }
 
-                // Assume that the return object was constructed by the method (and thus methods can be called on the return type)
-                if (!m.getReturnType().isPrimitiveType()) {
-                    IClass retType = AnalysisUtil.getClassHierarchy().lookupClass(m.getReturnType());
-                    processInstanceClass(seenInstancesOf, retType, waitingForInstances, q);
-                }
+    /**
+     * Register the statements for a method and add any methods it may call (or class initializers it may trigger) to
+     * the queue
+     *
+     * @param m method to register
+     * @param q work queue of methods to register statements for
+     */
+    private void processMethod(IMethod m, WorkQueue<IMethod> q) {
+        // Register all the instructions in the method.
+        if (!registrar.registerMethod(m)) {
+            return;
+        }
 
-                // Also assume that the exception object was constructed by the method
-                try {
-                    TypeReference[] exceptions = m.getDeclaredExceptions();
-                    if (exceptions != null) {
-                        for (TypeReference exType : exceptions) {
-                            // Record the "initialization" of the exception type
-                            IClass exClass = AnalysisUtil.getClassHierarchy().lookupClass(exType);
-                            processInstanceClass(seenInstancesOf, exClass, waitingForInstances, q);
-                        }
-                    }
-                }
-                catch (UnsupportedOperationException | InvalidClassFileException e) {
-                    throw new RuntimeException(e);
-                }
+        if (m.isInit()) {
+            // it is an instance initialization method!
+            processInstanceClass(seenInstancesOf, m.getDeclaringClass(), waitingForInstances, q);
+        }
 
-                // There are no instructions to process.
-                continue;
+        // now also go through each instruction, and see if we need to add anything else to the
+        // workqueue
+        IR ir = AnalysisUtil.getIR(m);
+        if (ir == null) {
+            // Native method with no signature.
+
+            // Assume that the return object was constructed by the method (and thus methods can be called on the return type)
+            if (!m.getReturnType().isPrimitiveType()) {
+                IClass retType = AnalysisUtil.getClassHierarchy().lookupClass(m.getReturnType());
+                processInstanceClass(seenInstancesOf, retType, waitingForInstances, q);
             }
 
-            // Process all instructions looking for methods that have not yet been handled
-            for (ISSABasicBlock bb : ir.getControlFlowGraph()) {
-                for (SSAInstruction i : bb) {
-                    List<IMethod> inits = ClassInitFinder.getClassInitializers(i);
-                    if (!inits.isEmpty()) {
-                        addClassInitializers(q, inits);
+            // Also assume that the exception object was constructed by the method
+            try {
+                TypeReference[] exceptions = m.getDeclaredExceptions();
+                if (exceptions != null) {
+                    for (TypeReference exType : exceptions) {
+                        // Record the "initialization" of the exception type
+                        IClass exClass = AnalysisUtil.getClassHierarchy().lookupClass(exType);
+                        processInstanceClass(seenInstancesOf, exClass, waitingForInstances, q);
                     }
+                }
+            }
+            catch (UnsupportedOperationException | InvalidClassFileException e) {
+                throw new RuntimeException(e);
+            }
 
-                    if (!(i instanceof SSAInvokeInstruction)) {
-                        // This loop only processes invocations to add statements for new methods.
-                        continue;
-                    }
+            // There are no instructions to process.
+            return;
+        }
 
-                    // This is an invocation, add statements for callee to work queue
-                    SSAInvokeInstruction inv = (SSAInvokeInstruction) i;
+        // Process all instructions looking for methods that have not yet been handled
+        for (ISSABasicBlock bb : ir.getControlFlowGraph()) {
+            for (SSAInstruction i : bb) {
+                List<IMethod> inits = ClassInitFinder.getClassInitializers(i);
+                if (!inits.isEmpty()) {
+                    addClassInitializers(q, inits);
+                }
 
-                    if ((inv.isSpecial() || inv.isStatic())
-                            && !alreadyProcessedStaticAndSpecial.add(inv.getDeclaredTarget())) {
-                        // Already processed this static or special method
-                        continue;
-                    }
+                if (!(i instanceof SSAInvokeInstruction)) {
+                    // This loop only processes invocations to add statements for new methods.
+                    continue;
+                }
 
-                    if (inv.isDispatch() && !alreadyProcessedVirtual.add(inv.getDeclaredTarget())) {
-                        // Already processed this virtually dispatched method
-                        continue;
-                    }
+                // This is an invocation, add statements for callee to work queue
+                SSAInvokeInstruction inv = (SSAInvokeInstruction) i;
 
-                    Set<IMethod> targets = StatementRegistrar.resolveMethodsForInvocation(inv, bb.getMethod());
-                    if (inv.isSpecial() || inv.isStatic()) {
-                        // it is a special or a static method, so add the target(s) to the queue
-                        q.addAll(targets);
-                    }
-                    else {
-                        // only add the targets for which we have seen an instance of the declaring class.
-                        for (IMethod target : targets) {
-                            assert !target.isStatic() && !target.isPrivate();
-                            IClass container = target.getDeclaringClass();
-                            if (seenInstancesOf.contains(container)) {
-                                q.add(target);
-                            }
-                            else {
-                                // haven't seen an instance yet...
-                                Collection<IMethod> c = waitingForInstances.get(container);
-                                if (c == null) {
-                                    c = new HashSet<>();
-                                    waitingForInstances.put(container, c);
-                                }
-                                c.add(target);
-                            }
+                if ((inv.isSpecial() || inv.isStatic())
+                        && !alreadyProcessedStaticAndSpecial.add(inv.getDeclaredTarget())) {
+                    // Already processed this static or special method
+                    continue;
+                }
+
+                if (inv.isDispatch() && !alreadyProcessedVirtual.add(inv.getDeclaredTarget())) {
+                    // Already processed this virtually dispatched method
+                    continue;
+                }
+
+                if (inv.isDispatch()) {
+                    recordDispatchSelector(inv.getDeclaredTarget(), dispatchSelectors);
+                }
+
+                Set<IMethod> targets = StatementRegistrar.resolveMethodsForInvocation(inv, bb.getMethod());
+                if (inv.isSpecial() || inv.isStatic()) {
+                    // it is a special or a static method, so add the target(s) to the queue
+                    q.addAll(targets);
+                }
+                else {
+                    // only add the targets for which we have seen an instance of the declaring class.
+                    for (IMethod target : targets) {
+                        assert !target.isStatic() && !target.isPrivate();
+                        if (!waitForInstance(target)) {
+                            q.add(target);
                         }
                     }
                 }
             }
-
         }
+    }
 
-        System.err.println("Statement registration took " + (System.currentTimeMillis() - start) + "ms");
-        if (!AccrueAnalysisMain.testMode) {
-            System.gc();
-            System.err.println("USED " + (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1000000)
-                    + "MB");
-        }
-        if (PROFILE) {
-            System.err.println("PAUSED HIT ENTER TO CONTINUE: ");
-            try {
-                System.in.read();
+    /**
+     * Record that the target of a virtual call should only be registered once an instance of the class declaring it
+     * has been seen, unless one already has been
+     *
+     * @param target method that may be called
+     * @return false if an instance of the declaring class has already been seen, so the target should be registered now
+     */
+    private boolean waitForInstance(IMethod target) {
+        IClass container = target.getDeclaringClass();
+        synchronized (waitingForInstances) {
+            if (seenInstancesOf.contains(container)) {
+                return false;
             }
-            catch (IOException e) {
-                e.printStackTrace();
+            // haven't seen an instance yet...
+            Collection<IMethod> c = waitingForInstances.get(container);
+            if (c == null) {
+                c = new HashSet<>();
+                waitingForInstances.put(container, c);
             }
+            c.add(target);
+            return true;
         }
     }
 
@@ -249,6 +359,10 @@ public class StatementRegistrationPass {
      * system allows. We approximate this by assuming that receiver of the method can be any type that is constructed in
      * the code. This could be made more precise if run together with the pointer analysis (supported by Accrue as the
      * online statement registration) when we have more precise type information for the receiver.
+     * <p>
+     * The seen classes and the waiting methods are only read and written while holding the lock on
+     * <code>waitingForInstances</code>, so that a method cannot start waiting for a class after the methods waiting for
+     * that class have been added to the queue.
      *
      * @param seenInstancesOf set of classes that have already been seen in the code
      * @param instanceClass current class to process
@@ -257,13 +371,160 @@ public class StatementRegistrationPass {
      */
     public static void processInstanceClass(Set<IClass> seenInstancesOf, IClass instanceClass,
                                             Map<IClass, Collection<IMethod>> waitingForInstances, WorkQueue<IMethod> q) {
-        if (seenInstancesOf.add(instanceClass)) {
+        Collection<IMethod> waiting;
+        synchronized (waitingForInstances) {
+            if (!seenInstancesOf.add(instanceClass)) {
+                return;
+            }
             // this is the first instance method we have seen for this class
             // Add any methods that were waiting on registration.
-            Collection<IMethod> waiting = waitingForInstances.remove(instanceClass);
-            if (waiting != null) {
-                q.addAll(waiting);
+            waiting = waitingForInstances.remove(instanceClass);
+        }
+        if (waiting != null) {
+            q.addAll(waiting);
+        }
+    }
+
+    /**
+     * Work queue that hands each method added to it (for the first time) to a pool of threads, one of which registers
+     * the method and adds the methods it may call back to the queue. Safe to use from several threads at once.
+     * {@link #poll()} is never used, the queue only ever looks empty.
+     */
+    private final class ParallelRegistrationQueue extends WorkQueue<IMethod> {
+        /**
+         * Threads registering methods
+         */
+        private final ExecutorService registrars;
+        /**
+         * Methods that have been added to the queue
+         */
+        private final Set<IMethod> added = AnalysisUtil.createConcurrentSet();
+        /**
+         * Number of methods added to the queue that have not been processed yet
+         */
+        private final AtomicInteger pending = new AtomicInteger(0);
+        /**
+         * Counted down once there are no pending methods, or once processing a method has failed
+         */
+        private final CountDownLatch done = new CountDownLatch(1);
+        /**
+         * First exception or error thrown while processing a method
+         */
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ParallelRegistrationQueue(ExecutorService registrars) {
+            this.registrars = registrars;
+        }
+
+        @Override
+        public boolean add(final IMethod m) {
+            if (!added.add(m)) {
+                return false;
             }
+            // Count the method before it is submitted, so that the count cannot drop to zero while the method that
+            // added it is still being processed
+            pending.incrementAndGet();
+            registrars.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        processMethod(m, ParallelRegistrationQueue.this);
+                    }
+                    catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                        done.countDown();
+                    }
+                    finally {
+                        if (pending.decrementAndGet() == 0) {
+                            done.countDown();
+                        }
+                    }
+                }
+            });
+            return true;
+        }
+
+        /**
+         * Wait until every method added to the queue has been processed, rethrowing the first exception or error
+         * thrown while processing a method
+         */
+        void awaitRegistration() {
+            try {
+                done.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while registering methods", e);
+            }
+            Throwable t = failure.get();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            if (t != null) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+
+    /**
+     * Record the selector of a virtually dispatched call, indexed by the class that declares the target
+     *
+     * @param target declared target of the call
+     * @param dispatchSelectors map to record the selector in
+     */
+    private static void recordDispatchSelector(MethodReference target, Map<IClass, Set<Selector>> dispatchSelectors) {
+        IClass declaringClass = AnalysisUtil.getClassHierarchy().lookupClass(target.getDeclaringClass());
+        if (declaringClass == null) {
+            return;
+        }
+        synchronized (dispatchSelectors) {
+            Set<Selector> selectors = dispatchSelectors.get(declaringClass);
+            if (selectors == null) {
+                selectors = new HashSet<>();
+                dispatchSelectors.put(declaringClass, selectors);
+            }
+            selectors.add(target.getSelector());
+        }
+    }
+
+    /**
+     * Resolve the virtual calls that may be made on each class with instances, so that the points-to analysis can find
+     * the callees in the {@link DispatchCache} without locking the class hierarchy. A call with a target declared in
+     * class A may be made on an instance of class C if A is C or one of its superclasses or interfaces.
+     *
+     * @param seenInstancesOf classes that may have instances
+     * @param dispatchSelectors selectors of virtual calls, indexed by the class declaring the target
+     */
+    private static void prewarmDispatchCache(Set<IClass> seenInstancesOf,
+                                             Map<IClass, Set<Selector>> dispatchSelectors) {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        for (IClass c : seenInstancesOf) {
+            if (c == null || c.isInterface() || c.isAbstract()) {
+                continue;
+            }
+            Set<IClass> ancestors = new HashSet<>();
+            for (IClass sup = c; sup != null; sup = sup.getSuperclass()) {
+                ancestors.add(sup);
+            }
+            ancestors.addAll(c.getAllImplementedInterfaces());
+            for (IClass a : ancestors) {
+                Set<Selector> selectors = dispatchSelectors.get(a);
+                if (selectors == null) {
+                    continue;
+                }
+                for (Selector s : selectors) {
+                    DispatchCache.prewarm(c, s);
+                    count++;
+                }
+            }
+        }
+        if (PointsToAnalysis.outputLevel >= 1) {
+            System.err.println("Prewarmed " + count + " virtual dispatch entries in "
+                    + (System.currentTimeMillis() - start) + "ms");
         }
     }
 
@@ -1,7 +1,7 @@
 package analysis.pointer.statements;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import util.print.PrettyPrinter;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
@@ -16,9 +16,9 @@ public class AllocSiteNodeFactory {
 
     /**
      * Only one allocation should be created for a given Reference variable. If assertions are on this map will be used
-     * to guarantee that
+     * to guarantee that. Concurrent since methods may be registered by several threads.
      */
-    private static final Map<ReferenceVariable, AllocSiteNode> nodeMap = new HashMap<>();
+    private static final Map<ReferenceVariable, AllocSiteNode> nodeMap = new ConcurrentHashMap<>();
 
     /**
      * Methods should be accessed statically
@@ -10,8 +10,6 @@ import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.ObjectField;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.PointsToGraphNode;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
 
@@ -46,21 +44,14 @@ public class ArrayToLocalStatement extends PointsToStatement {
     @Override
     public GraphDelta process(Context context, HeapAbstractionFactory haf, PointsToGraph g, GraphDelta delta,
                               StatementRegistrar registrar, StmtAndContext originator) {
-        PointsToGraphNode a = new ReferenceVariableReplica(context, array, haf);
-        PointsToGraphNode v = new ReferenceVariableReplica(context, value, haf);
+        int a = g.lookupNode(array, context);
+        int v = g.lookupNode(value, context);
 
         GraphDelta changed = new GraphDelta(g);
 
-        Iterator<InstanceKey> iter;
-        if (delta == null) {
-            iter = g.pointsToIterator(a, originator);
-        }
-        else {
-            // we have a delta. Let's be smart about how we use it.
-            // Statement is v = a[i]. First check if a points to anything new. If it does now point to some new abstract
-            // object k, add everything that k[i] points to to v's set.
-            iter = delta.pointsToIterator(a);
-        }
+        // If we have a delta, only look at what a points to that is new. If a now points to some new abstract object
+        // k, add everything that k[i] points to to v's set.
+        Iterator<InstanceKey> iter = g.pointsToIterator(a, delta, originator);
         while (iter.hasNext()) {
             InstanceKey arrHeapContext = iter.next();
             IClass base = AnalysisUtil.getClassHierarchy().lookupClass(arrHeapContext.getConcreteType()
@@ -70,7 +61,7 @@ public class ArrayToLocalStatement extends PointsToStatement {
                                                    arrHeapContext.getConcreteType(),
                                                    PointsToGraph.ARRAY_CONTENTS,
                                                    base);
-            GraphDelta d1 = g.copyEdges(contents, v);
+            GraphDelta d1 = g.copyEdges(g.lookupNode(contents), v);
             changed = changed.combine(d1);
         }
 
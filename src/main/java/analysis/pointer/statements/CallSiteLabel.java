@@ -43,6 +43,10 @@ public class CallSiteLabel {
      * 
      * @return method callee
      */
+    public IMethod getCaller() {
+        return caller;
+    }
+
     public MethodReference getCallee() {
         return callSite.getDeclaredTarget();
     }
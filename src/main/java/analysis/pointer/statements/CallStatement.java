@@ -6,10 +6,10 @@ import java.util.concurrent.ConcurrentHashMap;
 import util.print.PrettyPrinter;
 import analysis.AnalysisUtil;
 import analysis.pointer.analyses.HeapAbstractionFactory;
+import analysis.pointer.engine.SolverMetrics;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.ObjectField;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.MethodSummaryNodes;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.statements.AllocSiteNodeFactory.AllocSiteNode;
@@ -72,6 +72,15 @@ public abstract class CallStatement extends PointsToStatement {
         this.receiverRefVar = receiverRefVar;
     }
 
+    /**
+     * Call site this statement is for
+     *
+     * @return call site label
+     */
+    public CallSiteLabel getCallSite() {
+        return callSite;
+    }
+
     /**
      * Process a call for a particular receiver and resolved method
      *
@@ -88,7 +97,12 @@ public abstract class CallStatement extends PointsToStatement {
         assert calleeSummary != null;
         assert callee != null;
         assert calleeSummary != null;
+        SolverMetrics metrics = SolverMetrics.getInstance();
+        long start = metrics == null ? 0 : System.nanoTime();
         Context calleeContext = haf.merge(callSite, receiver, callerContext);
+        if (metrics != null) {
+            metrics.recordMerge(System.nanoTime() - start);
+        }
         GraphDelta changed = new GraphDelta(g);
 
         // Record the call in the call graph
@@ -100,13 +114,11 @@ public abstract class CallStatement extends PointsToStatement {
         // If the result Node is null then either this is void return, there is
         // no assignment after the call, or the return type is not a reference
         if (result != null) {
-            ReferenceVariableReplica resultRep = new ReferenceVariableReplica(callerContext, result, haf);
-            ReferenceVariableReplica calleeReturn = new ReferenceVariableReplica(calleeContext,
-                                                                                 calleeSummary.getReturn(),
-                                                                                 haf);
+            int resultRep = g.lookupNode(result, callerContext);
+            int calleeReturn = g.lookupNode(calleeSummary.getReturn(), calleeContext);
 
             // Check whether the types match up appropriately
-            assert checkTypes(resultRep, calleeReturn);
+            assert checkTypes(result, calleeSummary.getReturn());
 
             // The assignee can point to anything the return summary node in the callee can point to
             GraphDelta retChange = g.copyEdges(calleeReturn, resultRep);
@@ -118,9 +130,7 @@ public abstract class CallStatement extends PointsToStatement {
         // add edge from "this" in the callee to the receiver
         // if this is a static call then the receiver will be null
         if (!callee.isStatic()) {
-            ReferenceVariableReplica thisRep = new ReferenceVariableReplica(calleeContext,
-                                                                            calleeSummary.getFormal(0),
-                                                                            haf);
+            int thisRep = g.lookupNode(calleeSummary.getFormal(0), calleeContext);
             GraphDelta receiverChange = g.addEdge(thisRep, receiver);
             changed = changed.combine(receiverChange);
         }
@@ -137,14 +147,11 @@ public abstract class CallStatement extends PointsToStatement {
                 // Not a reference type or null actual
                 continue;
             }
-            ReferenceVariableReplica actualRep = new ReferenceVariableReplica(callerContext, actual, haf);
-
-            ReferenceVariableReplica formalRep = new ReferenceVariableReplica(calleeContext,
-                                                                              calleeSummary.getFormal(i),
-                                                                              haf);
+            int actualRep = g.lookupNode(actual, callerContext);
+            int formalRep = g.lookupNode(calleeSummary.getFormal(i), calleeContext);
 
             // Check whether the types match up appropriately
-            assert checkTypes(formalRep, actualRep);
+            assert checkTypes(calleeSummary.getFormal(i), actual);
 
             // Add edges from the points-to set for the actual argument to the formal argument
             GraphDelta d1 = g.copyEdges(actualRep, formalRep);
@@ -153,10 +160,8 @@ public abstract class CallStatement extends PointsToStatement {
 
         // ///////////////// Exceptions //////////////////
 
-        ReferenceVariableReplica callerEx = new ReferenceVariableReplica(callerContext, exception, haf);
-        ReferenceVariableReplica calleeEx = new ReferenceVariableReplica(calleeContext,
-                                                                         calleeSummary.getException(),
-                                                                         haf);
+        int callerEx = g.lookupNode(exception, callerContext);
+        int calleeEx = g.lookupNode(calleeSummary.getException(), calleeContext);
 
         // The exception in the caller can point to anything the summary node in the callee can point to
         GraphDelta exChange = g.copyEdges(calleeEx, callerEx);
@@ -182,6 +187,28 @@ public abstract class CallStatement extends PointsToStatement {
                                                                              cloneDesc);
     public static final ConcurrentHashMap<IClass, AllocSiteNode> cloneAllocations = new ConcurrentHashMap<>();
 
+    /**
+     * Get the allocation site for the objects of the given class created by calls to clone, there is one for each
+     * class
+     *
+     * @param klass class of the receiver of clone
+     * @param callee clone method, used as the allocating method if the allocation site has not been created yet
+     * @return allocation site for the results of calls to clone on objects of the given class
+     */
+    public static AllocSiteNode findOrCreateCloneAllocation(IClass klass, IMethod callee) {
+        AllocSiteNode n = cloneAllocations.get(klass);
+        if (n == null) {
+            String name = "clone-" + PrettyPrinter.typeString(klass);
+            // pass null in as the result, there may be multiple recievers for a single call site each of which gets an allocation
+            n = AllocSiteNodeFactory.createGenerated(name, klass, callee, null, false);
+            AllocSiteNode existing = cloneAllocations.putIfAbsent(klass, n);
+            if (existing != null) {
+                n = existing;
+            }
+        }
+        return n;
+    }
+
     /**
      * Process a call to Object.clone()
      * <p>
@@ -210,37 +237,26 @@ public abstract class CallStatement extends PointsToStatement {
 
         if (receiverRefVar.isSingleton()) {
             // This is a clone of a singleton location, just add an edge directly from the result to the receiver
-            return g.addEdge(new ReferenceVariableReplica(callerContext, result, haf), receiver);
+            return g.addEdge(g.lookupNode(result, callerContext), receiver);
         }
 
         IClass klass = receiver.getConcreteType();
         if (g.getRegistrar().useSingletonForClass(klass)) {
-            ReferenceVariableReplica singletonRep = new ReferenceVariableReplica(haf.initialContext(),
-                                                                                 g.getRegistrar()
-                                                                                  .getSingletonForClass(klass), haf);
-            return g.copyEdges(singletonRep, new ReferenceVariableReplica(callerContext, result, haf));
+            int singletonRep = g.lookupNode(g.getRegistrar().getSingletonForClass(klass), haf.initialContext());
+            return g.copyEdges(singletonRep, g.lookupNode(result, callerContext));
         }
 
         assert result != null;
 
 
         // Allocate a new object to hold the results of the clone
-        String name = "clone-" + PrettyPrinter.typeString(klass);
-        AllocSiteNode n = cloneAllocations.get(klass);
-        if (n == null) {
-            // pass null in as the result, there may be multiple recievers for a single call site each of which gets an allocation
-            n = AllocSiteNodeFactory.createGenerated(name, klass, callee, null, false);
-            AllocSiteNode existing = cloneAllocations.putIfAbsent(klass, n);
-            if (existing != null) {
-                n = existing;
-            }
-        }
+        AllocSiteNode n = findOrCreateCloneAllocation(klass, callee);
 
         InstanceKey newHeapContext = haf.record(n, calleeContext);
         assert newHeapContext != null;
 
         // Assign the new object to the return value of the callee
-        ReferenceVariableReplica r = new ReferenceVariableReplica(callerContext, result, haf);
+        int r = g.lookupNode(result, callerContext);
         GraphDelta resChanged = g.addEdge(r, newHeapContext);
         changed = changed.combine(resChanged);
 
@@ -287,7 +303,7 @@ public abstract class CallStatement extends PointsToStatement {
      *
      * @return return result node (in the caller)
      */
-    protected final ReferenceVariable getResult() {
+    public final ReferenceVariable getResult() {
         return result;
     }
 
@@ -296,7 +312,7 @@ public abstract class CallStatement extends PointsToStatement {
      *
      * @return list of actual parameters
      */
-    protected final List<ReferenceVariable> getActuals() {
+    public final List<ReferenceVariable> getActuals() {
         return actuals;
     }
 
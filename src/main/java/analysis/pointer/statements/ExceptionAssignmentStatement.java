@@ -9,8 +9,6 @@ import analysis.pointer.analyses.HeapAbstractionFactory;
 import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.PointsToGraphNode;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.graph.TypeFilter;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
@@ -63,15 +61,15 @@ public class ExceptionAssignmentStatement extends PointsToStatement {
     @Override
     public GraphDelta process(Context context, HeapAbstractionFactory haf,
                               PointsToGraph g, GraphDelta delta, StatementRegistrar registrar, StmtAndContext originator) {
-        PointsToGraphNode l = new ReferenceVariableReplica(context, this.caught, haf);
-        PointsToGraphNode r;
+        int l = g.lookupNode(this.caught, context);
+        int r;
         if (this.thrown.isSingleton()) {
             // This was a generated exception and the flag was set in StatementRegistrar so that only one reference
             // variable is created for each generated exception type
-            r = new ReferenceVariableReplica(haf.initialContext(), this.thrown, haf);
+            r = g.lookupNode(this.thrown, haf.initialContext());
         }
         else {
-            r = new ReferenceVariableReplica(context, this.thrown, haf);
+            r = g.lookupNode(this.thrown, context);
         }
 
         // don't need to use delta, as this just adds a subset edge
@@ -107,6 +105,15 @@ public class ExceptionAssignmentStatement extends PointsToStatement {
         return Collections.singletonList(this.thrown);
     }
 
+    /**
+     * Get the filter on the types of the exceptions that are caught
+     *
+     * @return type filter, null if every exception is caught
+     */
+    public TypeFilter getFilter() {
+        return this.filter;
+    }
+
     public Set<IClass> getNotTypes() {
         if (this.filter == null || this.filter.notTypes == null) {
             return Collections.emptySet();
@@ -10,8 +10,6 @@ import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.ObjectField;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.PointsToGraphNode;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
 
@@ -67,44 +65,27 @@ public class FieldToLocalStatement extends PointsToStatement {
     @Override
     public GraphDelta process(Context context, HeapAbstractionFactory haf,
                               PointsToGraph g, GraphDelta delta, StatementRegistrar registrar, StmtAndContext originator) {
-        PointsToGraphNode left = new ReferenceVariableReplica(context, this.assignee, haf);
-        PointsToGraphNode rec = new ReferenceVariableReplica(context, this.receiver, haf);
+        int left = g.lookupNode(this.assignee, context);
+        int rec = g.lookupNode(this.receiver, context);
 
         GraphDelta changed = new GraphDelta(g);
 
-        if (delta == null) {
-            // let's do the normal processing
-            for (Iterator<InstanceKey> iter = g.pointsToIterator(rec, originator); iter.hasNext();) {
-                InstanceKey recHeapContext = iter.next();
-                IField ifield = AnalysisUtil.getClassHierarchy().resolveField(recHeapContext.getConcreteType(),
-                                                                              this.declaredField);
-                assert ifield != null : "No field " + this.declaredField + " in " + recHeapContext.getConcreteType()
-                        + "; method: " + getMethod() + "; context: " + context;
-                ObjectField f = new ObjectField(recHeapContext, ifield);
-
-                //GraphDelta d1 = g.copyFilteredEdges(f, filter, left);
-                GraphDelta d1 = g.copyEdges(f, left);
-                changed = changed.combine(d1);
-            }
+        // If we have a delta, let's be smart about how we use it.
+        // Statement is v = o.f. Only check what o points to that is new. If it does now point to some new abstract
+        // object k, add everything that k.f points to to v's set.
+        for (Iterator<InstanceKey> iter = g.pointsToIterator(rec, delta, originator); iter.hasNext();) {
+            InstanceKey recHeapContext = iter.next();
+            IField ifield = AnalysisUtil.getClassHierarchy().resolveField(recHeapContext.getConcreteType(),
+                                                                          this.declaredField);
+            assert ifield != null : "No field " + this.declaredField + " in " + recHeapContext.getConcreteType()
+                    + "; method: " + getMethod() + "; context: " + context;
+            ObjectField f = new ObjectField(recHeapContext, ifield);
+            GraphDelta d1 = g.copyEdges(g.lookupNode(f), left);
+            changed = changed.combine(d1);
         }
-        else {
-            // we have a delta. Let's be smart about how we use it.
-            // Statement is v = o.f. First check if o points to anything new. If it does now point to some new abstract
-            // object k, add everything that k.f points to to v's set.
-            for (Iterator<InstanceKey> iter = delta.pointsToIterator(rec); iter.hasNext();) {
-                InstanceKey recHeapContext = iter.next();
-                IField ifield = AnalysisUtil.getClassHierarchy().resolveField(recHeapContext.getConcreteType(),
-                                                                              this.declaredField);
-                assert ifield != null : "No field " + this.declaredField + " in " + recHeapContext.getConcreteType()
-                        + "; method: " + getMethod() + "; context: " + context;
-                ObjectField f = new ObjectField(recHeapContext, ifield);
-                GraphDelta d1 = g.copyEdges(f, left);
-                changed = changed.combine(d1);
-            }
 
-            // Note: we do not need to check if there are any k.f's that have changed, since that will be
-            // taken care of automatically by subset relations.
-        }
+        // Note: we do not need to check if there are any k.f's that have changed, since that will be
+        // taken care of automatically by subset relations.
         return changed;
     }
 
@@ -10,8 +10,6 @@ import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.ObjectField;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.PointsToGraphNode;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.graph.TypeFilter;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
@@ -51,21 +49,14 @@ public class LocalToArrayStatement extends PointsToStatement {
     @Override
     public GraphDelta process(Context context, HeapAbstractionFactory haf, PointsToGraph g, GraphDelta delta,
                               StatementRegistrar registrar, StmtAndContext originator) {
-        PointsToGraphNode a = new ReferenceVariableReplica(context, array, haf);
-        PointsToGraphNode v = new ReferenceVariableReplica(context, value, haf);
+        int a = g.lookupNode(array, context);
+        int v = g.lookupNode(value, context);
 
         GraphDelta changed = new GraphDelta(g);
 
-        Iterator<InstanceKey> iter;
-        if (delta == null) {
-            iter = g.pointsToIterator(a, originator);
-        }
-        else {
-            // we have a delta. Let's be smart about how we use it.
-            // Statement is v = a[i]. First check if a points to anything new. If it does now point to some new abstract
-            // object k, add everything that k[i] points to to v's set.
-            iter = delta.pointsToIterator(a);
-        }
+        // If we have a delta, only look at what a points to that is new. If a now points to some new abstract object
+        // k, then k[i] must point to everything that v points to.
+        Iterator<InstanceKey> iter = g.pointsToIterator(a, delta, originator);
         while (iter.hasNext()) {
             InstanceKey arrHeapContext = iter.next();
             IClass base = AnalysisUtil.getClassHierarchy().lookupClass(arrHeapContext.getConcreteType()
@@ -76,12 +67,12 @@ public class LocalToArrayStatement extends PointsToStatement {
                                                    PointsToGraph.ARRAY_CONTENTS,
                                                    base);
             GraphDelta d1;
-            if (base != AnalysisUtil.getObjectClass()) {
-                TypeFilter filter = TypeFilter.create(base);
-                d1 = g.copyFilteredEdges(v, filter, contents);
+            TypeFilter filter = contentsFilter(base);
+            if (filter != null) {
+                d1 = g.copyFilteredEdges(v, filter, g.lookupNode(contents));
             }
             else {
-                d1 = g.copyEdges(v, contents);
+                d1 = g.copyEdges(v, g.lookupNode(contents));
             }
             changed = changed.combine(d1);
         }
@@ -89,6 +80,16 @@ public class LocalToArrayStatement extends PointsToStatement {
         return changed;
     }
 
+    /**
+     * Get the filter on the types of the objects stored into an array
+     *
+     * @param elementType element type of the array
+     * @return type filter, null if any object can be stored
+     */
+    public static TypeFilter contentsFilter(IClass elementType) {
+        return elementType == AnalysisUtil.getObjectClass() ? null : TypeFilter.create(elementType);
+    }
+
     @Override
     public String toString() {
         return array + "." + PointsToGraph.ARRAY_CONTENTS + " = " + value;
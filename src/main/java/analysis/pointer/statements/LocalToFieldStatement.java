@@ -10,8 +10,6 @@ import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.ObjectField;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.PointsToGraphNode;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
 
@@ -62,40 +60,23 @@ public class LocalToFieldStatement extends PointsToStatement {
     @Override
     public GraphDelta process(Context context, HeapAbstractionFactory haf,
                               PointsToGraph g, GraphDelta delta, StatementRegistrar registrar, StmtAndContext originator) {
-        PointsToGraphNode rec = new ReferenceVariableReplica(context, this.receiver, haf);
-        PointsToGraphNode local = new ReferenceVariableReplica(context, this.localVar, haf);
+        int rec = g.lookupNode(this.receiver, context);
+        int local = g.lookupNode(this.localVar, context);
 
         GraphDelta changed = new GraphDelta(g);
 
-        if (delta == null) {
-            // no delta, let's do some simple processing
-            for (Iterator<InstanceKey> iter = g.pointsToIterator(rec, originator); iter.hasNext();) {
-                InstanceKey recHeapContext = iter.next();
-
-                IField ifield = AnalysisUtil.getClassHierarchy().resolveField(recHeapContext.getConcreteType(),
-                                                                              this.field);
-                assert ifield != null : "No field " + this.field + " in " + recHeapContext.getConcreteType() + " "
-                        + getMethod();
-                ObjectField f = new ObjectField(recHeapContext, ifield);
-                // o.f can point to anything that local can.
-                GraphDelta d1 = g.copyEdges(local, f);
-
-                changed = changed.combine(d1);
-            }
-        }
-        else {
-            // We check if o has changed what it points to. If it has, we need to make the new object fields
-            // point to everything that the RHS can.
-            for (Iterator<InstanceKey> iter = delta.pointsToIterator(rec); iter.hasNext();) {
-                InstanceKey recHeapContext = iter.next();
-                IField ifield = AnalysisUtil.getClassHierarchy().resolveField(recHeapContext.getConcreteType(),
-                                                                              this.field);
-                assert ifield != null : "No field " + this.field + " in " + recHeapContext.getConcreteType() + " "
-                        + getMethod();
-                ObjectField f = new ObjectField(recHeapContext, ifield);
-                GraphDelta d1 = g.copyEdges(local, f);
-                changed = changed.combine(d1);
-            }
+        // If we have a delta, we check if o has changed what it points to. If it has, we need to make the new object
+        // fields point to everything that the RHS can.
+        for (Iterator<InstanceKey> iter = g.pointsToIterator(rec, delta, originator); iter.hasNext();) {
+            InstanceKey recHeapContext = iter.next();
+            IField ifield = AnalysisUtil.getClassHierarchy().resolveField(recHeapContext.getConcreteType(),
+                                                                          this.field);
+            assert ifield != null : "No field " + this.field + " in " + recHeapContext.getConcreteType() + " "
+                    + getMethod();
+            ObjectField f = new ObjectField(recHeapContext, ifield);
+            // o.f can point to anything that local can.
+            GraphDelta d1 = g.copyEdges(local, g.lookupNode(f));
+            changed = changed.combine(d1);
         }
 
         return changed;
@@ -138,7 +119,7 @@ public class LocalToFieldStatement extends PointsToStatement {
      *
      * @return field assigned to
      */
-    protected FieldReference getField() {
+    public FieldReference getField() {
         return field;
     }
 }
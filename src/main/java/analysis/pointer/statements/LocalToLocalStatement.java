@@ -8,8 +8,6 @@ import analysis.pointer.analyses.HeapAbstractionFactory;
 import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.PointsToGraphNode;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.graph.TypeFilter;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
@@ -55,16 +53,24 @@ public class LocalToLocalStatement extends PointsToStatement {
     @Override
     public GraphDelta process(Context context, HeapAbstractionFactory haf,
             PointsToGraph g, GraphDelta delta, StatementRegistrar registrar, StmtAndContext originator) {
-        PointsToGraphNode l = new ReferenceVariableReplica(context, left, haf);
-        PointsToGraphNode r = new ReferenceVariableReplica(context, right, haf);
+        int l = g.lookupNode(left, context);
+        int r = g.lookupNode(right, context);
         // don't need to use delta, as this just adds a subset edge
         if (filter) {
-            TypeFilter typeFilter = TypeFilter.create(left.getExpectedType());
-            return g.copyFilteredEdges(r, typeFilter, l);
+            return g.copyFilteredEdges(r, getFilter(), l);
         }
         return g.copyEdges(r, l);
     }
 
+    /**
+     * Get the filter on the types of the objects that are assigned
+     *
+     * @return filter for the type of the assignee, null if the assignment is not filtered
+     */
+    public TypeFilter getFilter() {
+        return filter ? TypeFilter.create(left.getExpectedType()) : null;
+    }
+
     @Override
     public String toString() {
         return left + " = (" + PrettyPrinter.typeString(left.getExpectedType())
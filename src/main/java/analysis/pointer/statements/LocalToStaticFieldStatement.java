@@ -7,8 +7,6 @@ import analysis.pointer.analyses.HeapAbstractionFactory;
 import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.PointsToGraphNode;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
 
@@ -51,8 +49,8 @@ public class LocalToStaticFieldStatement extends PointsToStatement {
     @Override
     public GraphDelta process(Context context, HeapAbstractionFactory haf,
             PointsToGraph g, GraphDelta delta, StatementRegistrar registrar, StmtAndContext originator) {
-        PointsToGraphNode l = new ReferenceVariableReplica(haf.initialContext(), staticField, haf);
-        PointsToGraphNode r = new ReferenceVariableReplica(context, local, haf);
+        int l = g.lookupNode(staticField, haf.initialContext());
+        int r = g.lookupNode(local, context);
         // don't need to use delta, as this just adds a subset edge
         return g.copyEdges(r, l);
     }
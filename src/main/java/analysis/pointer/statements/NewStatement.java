@@ -7,7 +7,6 @@ import analysis.pointer.analyses.HeapAbstractionFactory;
 import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
 import analysis.pointer.statements.AllocSiteNodeFactory.AllocSiteNode;
@@ -69,7 +68,7 @@ public class NewStatement extends PointsToStatement {
         InstanceKey newHeapContext = haf.record(alloc, context);
         assert newHeapContext != null;
 
-        ReferenceVariableReplica r = new ReferenceVariableReplica(context, result, haf);
+        int r = g.lookupNode(result, context);
         return g.addEdge(r, newHeapContext);
     }
 
@@ -92,4 +91,13 @@ public class NewStatement extends PointsToStatement {
     public ReferenceVariable getDef() {
         return result;
     }
+
+    /**
+     * Allocation site for the new object
+     *
+     * @return allocation site
+     */
+    public AllocSiteNode getAllocSite() {
+        return alloc;
+    }
 }
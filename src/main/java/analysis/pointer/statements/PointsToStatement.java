@@ -13,7 +13,6 @@ import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.PointsToGraph;
 import analysis.pointer.graph.PointsToGraphNode;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
 
@@ -94,8 +93,8 @@ public abstract class PointsToStatement {
      *            assigned
      * @return true if right can safely be assigned to the left
      */
-    protected final boolean checkTypes(ReferenceVariableReplica left,
-            ReferenceVariableReplica right) {
+    protected final boolean checkTypes(ReferenceVariable left,
+            ReferenceVariable right) {
         IClassHierarchy cha = AnalysisUtil.getClassHierarchy();
         IClass c1 = cha.lookupClass(left.getExpectedType());
         IClass c2 = cha.lookupClass(right.getExpectedType());
@@ -7,7 +7,6 @@ import analysis.pointer.analyses.HeapAbstractionFactory;
 import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
 
@@ -48,10 +47,8 @@ public class ReturnStatement extends PointsToStatement {
     @Override
     public GraphDelta process(Context context, HeapAbstractionFactory haf,
             PointsToGraph g, GraphDelta delta, StatementRegistrar registrar, StmtAndContext originator) {
-        ReferenceVariableReplica returnRes =
- new ReferenceVariableReplica(context, result, haf);
-        ReferenceVariableReplica summaryRes =
- new ReferenceVariableReplica(context, returnSummary, haf);
+        int returnRes = g.lookupNode(result, context);
+        int summaryRes = g.lookupNode(returnSummary, context);
 
         // don't need to use delta, as this just adds a subset edge
         return g.copyEdges(returnRes, summaryRes);
@@ -9,7 +9,6 @@ import analysis.pointer.analyses.HeapAbstractionFactory;
 import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.MethodSummaryNodes;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
@@ -62,11 +61,10 @@ public class SpecialCallStatement extends CallStatement {
     @Override
     public GraphDelta process(Context context, HeapAbstractionFactory haf, PointsToGraph g, GraphDelta delta,
                               StatementRegistrar registrar, StmtAndContext originator) {
-        ReferenceVariableReplica receiverRep = new ReferenceVariableReplica(context, this.receiver, haf);
+        int receiverRep = g.lookupNode(this.receiver, context);
         GraphDelta changed = new GraphDelta(g);
 
-        Iterator<InstanceKey> iter = delta == null ? g.pointsToIterator(receiverRep, originator)
-                : delta.pointsToIterator(receiverRep);
+        Iterator<InstanceKey> iter = g.pointsToIterator(receiverRep, delta, originator);
         while (iter.hasNext()) {
             InstanceKey recHeapCtxt = iter.next();
             changed = changed.combine(this.processCall(context, recHeapCtxt, this.callee, g, haf, this.calleeSummary));
@@ -134,7 +132,7 @@ public class SpecialCallStatement extends CallStatement {
      *
      * @return method being called
      */
-    protected IMethod getResolvedCallee() {
+    public IMethod getResolvedCallee() {
         return callee;
     }
 }
@@ -1,6 +1,5 @@
 package analysis.pointer.statements;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,9 +28,9 @@ public class StatementFactory {
     /**
      * Map from a key (arguments used to create the points to statement) to points to statement, can be used to check
      * whether two identical points-to statements are created that are not the same Object. This is only active when
-     * assertions are turned on.
+     * assertions are turned on. Concurrent since methods may be registered by several threads.
      */
-    private final Map<StatementKey, PointsToStatement> map = new HashMap<>();
+    private final Map<StatementKey, PointsToStatement> map = AnalysisUtil.createConcurrentHashMap();
 
     /**
      * Description used for a string literal value field
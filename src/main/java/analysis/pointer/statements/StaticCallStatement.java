@@ -110,7 +110,7 @@ public class StaticCallStatement extends CallStatement {
      *
      * @return resolved method being called
      */
-    protected IMethod getResolvedCallee() {
+    public IMethod getResolvedCallee() {
         return callee;
     }
 }
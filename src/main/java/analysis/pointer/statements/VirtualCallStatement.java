@@ -6,12 +6,12 @@ import java.util.List;
 
 import util.print.PrettyPrinter;
 import analysis.AnalysisUtil;
+import analysis.DispatchCache;
 import analysis.pointer.analyses.HeapAbstractionFactory;
 import analysis.pointer.engine.PointsToAnalysis;
 import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
 import analysis.pointer.graph.GraphDelta;
 import analysis.pointer.graph.PointsToGraph;
-import analysis.pointer.graph.ReferenceVariableReplica;
 import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
 import analysis.pointer.registrar.StatementRegistrar;
 
@@ -61,12 +61,11 @@ public class VirtualCallStatement extends CallStatement {
     @Override
     public GraphDelta process(Context context, HeapAbstractionFactory haf, PointsToGraph g, GraphDelta delta,
                               StatementRegistrar registrar, StmtAndContext originator) {
-        ReferenceVariableReplica receiverRep = new ReferenceVariableReplica(context, this.receiver, haf);
+        int receiverRep = g.lookupNode(this.receiver, context);
 
         GraphDelta changed = new GraphDelta(g);
 
-        Iterator<InstanceKey> iter = delta == null ? g.pointsToIterator(receiverRep, originator)
-                : delta.pointsToIterator(receiverRep);
+        Iterator<InstanceKey> iter = g.pointsToIterator(receiverRep, delta, originator);
 
         while (iter.hasNext()) {
             InstanceKey recHeapContext = iter.next();
@@ -75,7 +74,8 @@ public class VirtualCallStatement extends CallStatement {
             // The receiver is recHeapContext, and we want to find a method that matches selector
             // callee.getSelector() in class recHeapContext.getConcreteType() or
             // a superclass.
-            IMethod resolvedCallee = this.resolveMethod(recHeapContext.getConcreteType(), receiverRep.getExpectedType());
+            IMethod resolvedCallee = this.resolveMethod(recHeapContext.getConcreteType(),
+                                                        this.receiver.getExpectedType());
 
             if (resolvedCallee != null && resolvedCallee.isAbstract()) {
                 // Abstract method due to a native method that returns an abstract type or interface
@@ -97,22 +97,35 @@ public class VirtualCallStatement extends CallStatement {
         return changed;
     }
 
-    protected IMethod resolveMethod(IClass receiverConcreteType, TypeReference receiverExpectedType) {
-        IClassHierarchy cha = AnalysisUtil.getClassHierarchy();
-        // XXXX possible point of contention...!@!
-        synchronized (cha) {
-            IMethod resolvedCallee = cha.resolveMethod(receiverConcreteType, this.callee.getSelector());
-            if (resolvedCallee == null) {
-                // XXX Try the type of the reference variable instead
-                // This is probably a variable created for the return of a native method, then cast down
-                if (PointsToAnalysis.outputLevel >= 1) {
-                    System.err.println("Could not resolve " + receiverConcreteType + " " + this.callee.getSelector());
-                    System.err.println("\ttrying reference variable type " + cha.lookupClass(receiverExpectedType));
-                }
-                resolvedCallee = cha.resolveMethod(cha.lookupClass(receiverExpectedType), this.callee.getSelector());
+    /**
+     * Find the method called when the receiver has the given concrete type
+     *
+     * @param receiverConcreteType concrete type of the receiver
+     * @param receiverExpectedType static type of the receiver, used if the method cannot be found for the concrete type
+     * @return the method called, null if it cannot be resolved
+     */
+    public IMethod resolveMethod(IClass receiverConcreteType, TypeReference receiverExpectedType) {
+        // The dispatch cache only locks the class hierarchy if the method has not been resolved before
+        IMethod resolvedCallee = DispatchCache.resolveMethod(receiverConcreteType, this.callee.getSelector());
+        if (resolvedCallee == null) {
+            IClassHierarchy cha = AnalysisUtil.getClassHierarchy();
+            IClass expectedClass;
+            synchronized (cha) {
+                expectedClass = cha.lookupClass(receiverExpectedType);
+            }
+            // XXX Try the type of the reference variable instead
+            // This is probably a variable created for the return of a native method, then cast down
+            if (PointsToAnalysis.outputLevel >= 1) {
+                System.err.println("Could not resolve " + receiverConcreteType + " " + this.callee.getSelector());
+                System.err.println("\ttrying reference variable type " + expectedClass);
+            }
+            if (expectedClass == null) {
+                // The reference variable type is not in the class hierarchy either
+                return null;
             }
-            return resolvedCallee;
+            resolvedCallee = DispatchCache.resolveMethod(expectedClass, this.callee.getSelector());
         }
+        return resolvedCallee;
     }
 
     @Override
@@ -2,6 +2,7 @@ package main;
 
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -22,6 +23,9 @@ import util.OrderedPair;
 import util.print.CFGWriter;
 import util.print.PrettyPrinter;
 import analysis.AnalysisUtil;
+import analysis.dataflow.DataFlow;
+import analysis.dataflow.interprocedural.InterproceduralDataFlow;
+import analysis.dataflow.interprocedural.SummaryStore;
 import analysis.dataflow.interprocedural.accessible.AccessibleLocationResults;
 import analysis.dataflow.interprocedural.accessible.AccessibleLocationsInterproceduralDataFlow;
 import analysis.dataflow.interprocedural.bool.BooleanConstantDataFlow;
@@ -37,12 +41,19 @@ import analysis.dataflow.interprocedural.pdg.graph.ProgramDependenceGraph;
 import analysis.dataflow.interprocedural.reachability.ReachabilityInterProceduralDataFlow;
 import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
 import analysis.pointer.analyses.HeapAbstractionFactory;
+import analysis.pointer.analyses.RecordingHeapAbstractionFactory;
+import analysis.pointer.engine.DemandPointsToAnalysis;
 import analysis.pointer.engine.PointsToAnalysis;
 import analysis.pointer.engine.PointsToAnalysisMultiThreaded;
 import analysis.pointer.engine.PointsToAnalysisSingleThreaded;
+import analysis.pointer.engine.SolverMetrics;
 import analysis.pointer.graph.HafCallGraph;
 import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToGraphSnapshot;
+import analysis.pointer.graph.PointsToResults;
 import analysis.pointer.graph.ReferenceVariableCache;
+import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
+import analysis.pointer.registrar.StatementFingerprints;
 import analysis.pointer.registrar.StatementRegistrar;
 import analysis.pointer.registrar.StatementRegistrationPass;
 import analysis.pointer.statements.PointsToStatement;
@@ -61,6 +72,7 @@ import com.ibm.wala.ipa.callgraph.AnalysisOptions.ReflectionOptions;
 import com.ibm.wala.ipa.callgraph.AnalysisScope;
 import com.ibm.wala.ipa.callgraph.CGNode;
 import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Context;
 import com.ibm.wala.ipa.callgraph.Entrypoint;
 import com.ibm.wala.ipa.callgraph.impl.ExplicitCallGraph;
 import com.ibm.wala.ipa.callgraph.impl.Util;
@@ -111,6 +123,81 @@ public class AccrueAnalysisMain {
             PointsToAnalysisMultiThreaded.setParanoidMode(true);
         }
 
+        if (options.shouldCollapseCycles()) {
+            // Collapse cycles in the subset relation of the points-to graph
+            PointsToGraph.setUseCycleCollapsing(true);
+        }
+
+        if (options.shouldUseBitSetPointsToSets()) {
+            // Use bit sets rather than hash sets for points-to sets
+            PointsToAnalysisMultiThreaded.setUseBitSetPointsToSets(true);
+        }
+
+        if (options.shouldUseDifferencePropagation()) {
+            // Statements only read the part of points-to sets that they have not read before
+            PointsToGraph.setUseDifferencePropagation(true);
+        }
+
+        if (options.shouldUseBatchedScheduler()) {
+            // Schedule statements in batches on per-thread worklists
+            PointsToAnalysisMultiThreaded.setUseBatchedScheduler(true);
+        }
+
+        if (options.shouldCoalesceDeltas()) {
+            // Merge the deltas of statements that are submitted again before they run
+            PointsToAnalysisMultiThreaded.setCoalesceDeltas(true);
+        }
+
+        if (options.shouldUseTopologicalWorklist()) {
+            // Process statements in the order of the subset graph in the single-threaded analysis
+            PointsToAnalysisSingleThreaded.setUseTopologicalWorklist(true);
+        }
+
+        if (options.shouldGroupInstanceKeysByType()) {
+            // Number abstract objects in blocks of the same concrete type
+            PointsToGraph.setGroupInstanceKeysByType(true);
+        }
+
+        if (options.shouldRegisterInParallel()) {
+            // Register methods on several threads
+            StatementRegistrationPass.setParallelRegistration(true);
+        }
+
+        if (options.shouldBuildCallGraphInParallel()) {
+            // Collect the edges of the call graph on several threads
+            PointsToGraph.setParallelCallGraph(true);
+        }
+
+        if (options.shouldUseOffHeapSets()) {
+            // Keep the sets of the pointer analysis out of the Java heap
+            PointsToAnalysisMultiThreaded.setUseOffHeapSets(true);
+        }
+
+        if (options.shouldRecordSolverMetrics()) {
+            // Record the progress of the pointer analysis for JMX and, optionally, a JSON lines file
+            String metricsFile = options.getSolverMetricsFile();
+            SolverMetrics.enable(metricsFile == null ? null : new File(metricsFile));
+        }
+
+        if (options.shouldRunDataFlowInParallel()) {
+            // Analyze independent strongly connected components of the call graph on several threads
+            InterproceduralDataFlow.setParallel(true);
+        }
+
+        if (options.shouldUseDataFlowWorklist()) {
+            // Only re-analyze basic blocks whose input changed
+            DataFlow.setUseWorklist(true);
+        }
+
+        if (options.shouldUseSummaryStore()) {
+            // Share procedure summaries between the inter-procedural analyses, and between runs if there is a file
+            String summaryFile = options.getSummaryStoreFile();
+            SummaryStore.enable(summaryFile == null ? null : new File(summaryFile));
+        }
+
+        // Bound the stack used by chains of calls in the inter-procedural analyses
+        InterproceduralDataFlow.setMaxCallDepth(options.getDataFlowMaxCallDepth());
+
         String entryPoint = options.getEntryPoint();
         int outputLevel = options.getOutputLevel();
         String analysisName = options.getAnalysisName();
@@ -151,6 +238,8 @@ public class AccrueAnalysisMain {
         IR ir;
         OrderedPair<PointsToGraph, ReferenceVariableCache> results;
         PointsToGraph g;
+        OrderedPair<PointsToResults, ReferenceVariableCache> loaded;
+        PointsToResults pts;
         ReferenceVariableCache rvCache;
         AccessibleLocationResults alr;
         AnalysisUtil.init(classPath, entryPoint, outputDir, numThreads, disableSignatures, disableObjectClone);
@@ -169,6 +258,26 @@ public class AccrueAnalysisMain {
                                    useDefaultNativeSignatures);
             break;
         case "pointsto2":
+            if (options.getPointsToSnapshot() != null) {
+                // Record how contexts and heap contexts are created, so the snapshot can be rebuilt in a later run
+                haf = new RecordingHeapAbstractionFactory(haf);
+                if (options.shouldResumePointsTo()) {
+                    if (useSingleThreadedPointerAnalysis) {
+                        throw new RuntimeException("The -incrementalPointsTo option requires the multi-threaded "
+                                + "points-to analysis");
+                    }
+                    // Record what each statement does to the graph, and resume from the snapshot of the last run
+                    PointsToAnalysisMultiThreaded.setRecordDerivations(true);
+                    File snapshot = new File(options.getPointsToSnapshot());
+                    PointsToGraphSnapshot previous = snapshot.exists() ? PointsToGraphSnapshot.load(snapshot) : null;
+                    if (previous != null && previous.hasDerivations()) {
+                        PointsToAnalysisMultiThreaded.setResumeFrom(previous);
+                    }
+                    else {
+                        System.err.println("No snapshot with derivations in " + snapshot + ", solving from scratch");
+                    }
+                }
+            }
             results = generatePointsToGraph(outputLevel,
                                             haf,
                                             useSingleThreadedPointerAnalysis,
@@ -187,6 +296,32 @@ public class AccrueAnalysisMain {
             if (fileLevel > 1) {
                 g.dumpPointsToGraphToFile(outputDir + "/" + fileName + "_ptg", false);
             }
+            if (options.getPointsToSnapshot() != null) {
+                PointsToGraphSnapshot.write(g, new File(options.getPointsToSnapshot()));
+            }
+            if (options.getStatementFingerprints() != null) {
+                compareStatementFingerprints(g.getRegistrar(), new File(options.getStatementFingerprints()));
+            }
+            break;
+        case "demand-pointsto":
+            PointsToAnalysis.outputLevel = outputLevel;
+            runDemandPointsTo(registerStatements(singleGenEx,
+                                                 singleThrowable,
+                                                 singlePrimArray,
+                                                 singleString,
+                                                 singleWrappers,
+                                                 singleSwing,
+                                                 useDefaultNativeSignatures),
+                              useSingleThreadedPointerAnalysis ? new PointsToAnalysisSingleThreaded(haf)
+                                      : new PointsToAnalysisMultiThreaded(haf),
+                              options.getDemandBudget());
+            break;
+        case "snapshot":
+            if (options.getPointsToSnapshot() == null) {
+                throw new RuntimeException("Specify the snapshot to load with the -pointsToSnapshot option");
+            }
+            printSnapshot(PointsToGraphSnapshot.load(new File(options.getPointsToSnapshot())),
+                          outputDir + "/" + fileName + "_snapshot.txt");
             break;
         case "maincfg":
             entry = AnalysisUtil.getOptions().getEntrypoints().iterator().next();
@@ -208,20 +343,21 @@ public class AccrueAnalysisMain {
                                useDefaultNativeSignatures);
             break;
         case "nonnull":
-            results = generatePointsToGraph(outputLevel,
-                                            haf,
-                                            useSingleThreadedPointerAnalysis,
-                                            singleGenEx,
-                                            singleThrowable,
-                                            singlePrimArray,
-                                            singleString,
-                                            singleWrappers,
-                                            singleSwing,
-                                            useDefaultNativeSignatures);
-            g = results.fst();
-            rvCache = results.snd();
-            ReachabilityResults r = runReachability(otherOutputLevel, g, rvCache, null);
-            NonNullResults nonNull = runNonNull(outputLevel, g, r, rvCache);
+            loaded = loadOrGeneratePointsToGraph(options.getPointsToSnapshot(),
+                                                 outputLevel,
+                                                 haf,
+                                                 useSingleThreadedPointerAnalysis,
+                                                 singleGenEx,
+                                                 singleThrowable,
+                                                 singlePrimArray,
+                                                 singleString,
+                                                 singleWrappers,
+                                                 singleSwing,
+                                                 useDefaultNativeSignatures);
+            pts = loaded.fst();
+            rvCache = loaded.snd();
+            ReachabilityResults r = runReachability(otherOutputLevel, pts, rvCache, null);
+            NonNullResults nonNull = runNonNull(outputLevel, pts, r, rvCache);
             if (fileLevel > 0) {
                 nonNull.writeAllToFiles(r, outputDir);
             }
@@ -299,21 +435,22 @@ public class AccrueAnalysisMain {
             System.out.println(g.getCallGraph().getNumberOfNodes());
             break;
         case "precise-ex":
-            results = generatePointsToGraph(outputLevel,
-                                            haf,
-                                            useSingleThreadedPointerAnalysis,
-                                            singleGenEx,
-                                            singleThrowable,
-                                            singlePrimArray,
-                                            singleString,
-                                            singleWrappers,
-                                            singleSwing,
-                                            useDefaultNativeSignatures);
-            g = results.fst();
-            rvCache = results.snd();
-            r = runReachability(otherOutputLevel, g, rvCache, null);
-            nonNull = runNonNull(otherOutputLevel, g, r, rvCache);
-            PreciseExceptionResults preciseEx = runPreciseExceptions(outputLevel, g, r, nonNull, rvCache);
+            loaded = loadOrGeneratePointsToGraph(options.getPointsToSnapshot(),
+                                                 outputLevel,
+                                                 haf,
+                                                 useSingleThreadedPointerAnalysis,
+                                                 singleGenEx,
+                                                 singleThrowable,
+                                                 singlePrimArray,
+                                                 singleString,
+                                                 singleWrappers,
+                                                 singleSwing,
+                                                 useDefaultNativeSignatures);
+            pts = loaded.fst();
+            rvCache = loaded.snd();
+            r = runReachability(otherOutputLevel, pts, rvCache, null);
+            nonNull = runNonNull(otherOutputLevel, pts, r, rvCache);
+            PreciseExceptionResults preciseEx = runPreciseExceptions(outputLevel, pts, r, nonNull, rvCache);
             preciseEx.writeAllToFiles(r, outputDir);
             break;
         case "reachability":
@@ -365,23 +502,24 @@ public class AccrueAnalysisMain {
             }
             break;
         case "pdg":
-            results = generatePointsToGraph(outputLevel,
-                                            haf,
-                                            useSingleThreadedPointerAnalysis,
-                                            singleGenEx,
-                                            singleThrowable,
-                                            singlePrimArray,
-                                            singleString,
-                                            singleWrappers,
-                                            singleSwing,
-                                            useDefaultNativeSignatures);
-            g = results.fst();
-            rvCache = results.snd();
-            r = runReachability(otherOutputLevel, g, rvCache, null);
-            nonNull = runNonNull(otherOutputLevel, g, r, rvCache);
-            preciseEx = runPreciseExceptions(otherOutputLevel, g, r, nonNull, rvCache);
-            ReachabilityResults r2 = runReachability(otherOutputLevel, g, rvCache, preciseEx);
-            ProgramDependenceGraph pdg = runPDG(outputLevel, g, r2, preciseEx, nonNull, rvCache);
+            loaded = loadOrGeneratePointsToGraph(options.getPointsToSnapshot(),
+                                                 outputLevel,
+                                                 haf,
+                                                 useSingleThreadedPointerAnalysis,
+                                                 singleGenEx,
+                                                 singleThrowable,
+                                                 singlePrimArray,
+                                                 singleString,
+                                                 singleWrappers,
+                                                 singleSwing,
+                                                 useDefaultNativeSignatures);
+            pts = loaded.fst();
+            rvCache = loaded.snd();
+            r = runReachability(otherOutputLevel, pts, rvCache, null);
+            nonNull = runNonNull(otherOutputLevel, pts, r, rvCache);
+            preciseEx = runPreciseExceptions(otherOutputLevel, pts, r, nonNull, rvCache);
+            ReachabilityResults r2 = runReachability(otherOutputLevel, pts, rvCache, preciseEx);
+            ProgramDependenceGraph pdg = runPDG(outputLevel, pts, r2, preciseEx, nonNull, rvCache);
             pdg.printSimpleCounts();
 
             if (testMode) {
@@ -401,7 +539,7 @@ public class AccrueAnalysisMain {
             }
 
             if (fileLevel >= 2) {
-                printAllCFG(g, outputDir);
+                printAllCFG(pts, outputDir);
                 r2.writeAllToFiles(outputDir);
                 nonNull.writeAllToFiles(r, outputDir);
                 preciseEx.writeAllToFiles(r, outputDir);
@@ -458,7 +596,7 @@ public class AccrueAnalysisMain {
      *
      * @param g points to graph
      */
-    private static void printAllCFG(PointsToGraph g, String directory) {
+    private static void printAllCFG(PointsToResults g, String directory) {
         Set<IMethod> printed = new LinkedHashSet<>();
         for (CGNode n : g.getCallGraph()) {
             IMethod m = n.getMethod();
@@ -529,18 +667,13 @@ public class AccrueAnalysisMain {
         }
         PointsToAnalysis.outputLevel = outputLevel;
         PointsToGraph g;
-        StatementRegistrar registrar;
-        StatementFactory factory = new StatementFactory();
-        StatementRegistrationPass pass = new StatementRegistrationPass(factory,
-                                                                       useSingleAllocForGenEx,
-                                                                       useSingleAllocForThrowable,
-                                                                       useSingleAllocForPrimitiveArrays,
-                                                                       useSingleAllocForStrings,
-                                                                       useSingleAllocForImmutableWrappers,
-                                                                       useSingleAllocForSwing,
-                                                                       useDefaultNativeSignatures);
-        pass.run();
-        registrar = pass.getRegistrar();
+        StatementRegistrar registrar = registerStatements(useSingleAllocForGenEx,
+                                                          useSingleAllocForThrowable,
+                                                          useSingleAllocForPrimitiveArrays,
+                                                          useSingleAllocForStrings,
+                                                          useSingleAllocForImmutableWrappers,
+                                                          useSingleAllocForSwing,
+                                                          useDefaultNativeSignatures);
         PointsToAnalysis.outputLevel = outputLevel;
         g = analysis.solve(registrar);
 
@@ -561,6 +694,119 @@ public class AccrueAnalysisMain {
         return new OrderedPair<>(g, rvCache);
     }
 
+    /**
+     * Load the points-to graph from a snapshot saved by an earlier pointsto2 run (see
+     * {@link PointsToGraphSnapshot#rebuild(StatementRegistrar, HeapAbstractionFactory)}), or compute it if there is no
+     * snapshot. The statements are registered either way, so that the snapshot can be matched to the current run.
+     *
+     * @param snapshot file containing the snapshot, null to run the points-to analysis
+     * @return the points-to graph and the cache of reference variables
+     * @see #generatePointsToGraph(int, HeapAbstractionFactory, boolean, boolean, boolean, boolean, boolean, boolean,
+     *      boolean, boolean)
+     */
+    private static OrderedPair<PointsToResults, ReferenceVariableCache> loadOrGeneratePointsToGraph(String snapshot,
+                                                                                                    int outputLevel,
+                                                                                                    HeapAbstractionFactory haf,
+                                                                                                    boolean singleThreaded,
+                                                                                                    boolean useSingleAllocForGenEx,
+                                                                                                    boolean useSingleAllocForThrowable,
+                                                                                                    boolean useSingleAllocForPrimitiveArrays,
+                                                                                                    boolean useSingleAllocForStrings,
+                                                                                                    boolean useSingleAllocForImmutableWrappers,
+                                                                                                    boolean useSingleAllocForSwing,
+                                                                                                    boolean useDefaultNativeSignatures)
+                                                                                                            throws IOException {
+        if (snapshot == null) {
+            OrderedPair<PointsToGraph, ReferenceVariableCache> results = generatePointsToGraph(outputLevel,
+                                                                                               haf,
+                                                                                               singleThreaded,
+                                                                                               useSingleAllocForGenEx,
+                                                                                               useSingleAllocForThrowable,
+                                                                                               useSingleAllocForPrimitiveArrays,
+                                                                                               useSingleAllocForStrings,
+                                                                                               useSingleAllocForImmutableWrappers,
+                                                                                               useSingleAllocForSwing,
+                                                                                               useDefaultNativeSignatures);
+            return new OrderedPair<PointsToResults, ReferenceVariableCache>(results.fst(), results.snd());
+        }
+        StatementRegistrar registrar = registerStatements(useSingleAllocForGenEx,
+                                                          useSingleAllocForThrowable,
+                                                          useSingleAllocForPrimitiveArrays,
+                                                          useSingleAllocForStrings,
+                                                          useSingleAllocForImmutableWrappers,
+                                                          useSingleAllocForSwing,
+                                                          useDefaultNativeSignatures);
+        long start = System.currentTimeMillis();
+        PointsToResults g = PointsToGraphSnapshot.load(new File(snapshot)).rebuild(registrar, haf);
+        System.err.println("Points-to graph loaded from " + snapshot + " in " + (System.currentTimeMillis() - start)
+                + "ms, the points-to analysis was not run");
+        return new OrderedPair<PointsToResults, ReferenceVariableCache>(g, registrar.getRvCache());
+    }
+
+    /**
+     * Run the statement registration pass, which creates the points-to statements for the code reachable from the
+     * entry point
+     *
+     * @return registrar containing the statements
+     */
+    private static StatementRegistrar registerStatements(boolean useSingleAllocForGenEx,
+                                                         boolean useSingleAllocForThrowable,
+                                                         boolean useSingleAllocForPrimitiveArrays,
+                                                         boolean useSingleAllocForStrings,
+                                                         boolean useSingleAllocForImmutableWrappers,
+                                                         boolean useSingleAllocForSwing,
+                                                         boolean useDefaultNativeSignatures) {
+        StatementRegistrationPass pass = new StatementRegistrationPass(new StatementFactory(),
+                                                                       useSingleAllocForGenEx,
+                                                                       useSingleAllocForThrowable,
+                                                                       useSingleAllocForPrimitiveArrays,
+                                                                       useSingleAllocForStrings,
+                                                                       useSingleAllocForImmutableWrappers,
+                                                                       useSingleAllocForSwing,
+                                                                       useDefaultNativeSignatures);
+        pass.run();
+        return pass.getRegistrar();
+    }
+
+    /**
+     * Answer points-to queries for the variables defined in the entry method on demand, printing the allocation sites
+     * each of them points to. The exhaustive points-to analysis is only run if a query goes over the budget.
+     *
+     * @param registrar registrar containing the statements for the whole program
+     * @param exhaustiveAnalysis analysis to use if a query goes over budget
+     * @param budget maximum number of constraint evaluations for a query
+     */
+    private static void runDemandPointsTo(StatementRegistrar registrar, PointsToAnalysis exhaustiveAnalysis,
+                                          int budget) {
+        DemandPointsToAnalysis demand = new DemandPointsToAnalysis(registrar, exhaustiveAnalysis, budget);
+        IMethod main = AnalysisUtil.getOptions().getEntrypoints().iterator().next().getMethod();
+        Context initial = exhaustiveAnalysis.heapAbstractionFactory().initialContext();
+        for (PointsToStatement s : registrar.getStatementsForMethod(main)) {
+            ReferenceVariable rv = s.getDef();
+            if (rv != null) {
+                System.err.println(rv + " -> " + demand.pointsTo(rv, initial));
+            }
+        }
+        demand.printStatistics();
+    }
+
+    /**
+     * Report the differences between the statements registered in this run and those of the run that saved the
+     * fingerprint file (if any), then save the fingerprints of this run to the file
+     *
+     * @param registrar registrar for this run
+     * @param file fingerprint file
+     * @throws IOException if the file cannot be read or written
+     */
+    private static void compareStatementFingerprints(StatementRegistrar registrar, File file) throws IOException {
+        StatementFingerprints current = StatementFingerprints.compute(registrar);
+        if (file.exists()) {
+            current.compareTo(StatementFingerprints.read(file));
+            current.printDifferences();
+        }
+        current.save(file);
+    }
+
     private static void runWalaPointerAnalysis(final HeapAbstractionFactory haf, boolean useSingleAllocForGenEx,
                                                boolean useSingleAllocForThrowable,
                                                boolean useSingleAllocForPrimitiveArrays,
@@ -711,6 +957,23 @@ public class AccrueAnalysisMain {
         }
     }
 
+    /**
+     * Print the points-to graph and call graph in a snapshot as text
+     *
+     * @param snapshot snapshot loaded from a file
+     * @param fileName file to save the results
+     */
+    private static void printSnapshot(PointsToGraphSnapshot snapshot, String fileName) {
+        try (Writer out = new BufferedWriter(new FileWriter(fileName))) {
+            snapshot.writeText(out);
+            System.err.println("Snapshot (" + snapshot.numPointsToGraphNodes() + " points-to sets, "
+                    + snapshot.numCallGraphNodes() + " call graph nodes) written to: " + fileName);
+        }
+        catch (IOException e) {
+            System.err.println("Could not write snapshot to file, " + fileName + ", " + e.getMessage());
+        }
+    }
+
     /**
      * Run the non-null analysis and return the results
      *
@@ -719,7 +982,7 @@ public class AccrueAnalysisMain {
      * @param r results of a reachability analysis
      * @return the results of the non-null analysis
      */
-    private static NonNullResults runNonNull(int outputLevel, PointsToGraph g, ReachabilityResults r,
+    private static NonNullResults runNonNull(int outputLevel, PointsToResults g, ReachabilityResults r,
                                              ReferenceVariableCache rvCache) {
         NonNullInterProceduralDataFlow analysis = new NonNullInterProceduralDataFlow(g, r, rvCache);
         analysis.setOutputLevel(outputLevel);
@@ -736,7 +999,7 @@ public class AccrueAnalysisMain {
      * @param nonNull results of a non-null analysis
      * @return the results of the precise exceptions analysis
      */
-    private static PreciseExceptionResults runPreciseExceptions(int outputLevel, PointsToGraph g,
+    private static PreciseExceptionResults runPreciseExceptions(int outputLevel, PointsToResults g,
                                                                 ReachabilityResults r, NonNullResults nonNull,
                                                                 ReferenceVariableCache rvCache) {
         PreciseExceptionInterproceduralDataFlow analysis = new PreciseExceptionInterproceduralDataFlow(g,
@@ -756,7 +1019,7 @@ public class AccrueAnalysisMain {
      * @param rvCache cache of points-to analysis reference variables
      * @param preciseEx results of a precise exceptions analysis or null if none has been run yet
      */
-    private static ReachabilityResults runReachability(int outputLevel, PointsToGraph g,
+    private static ReachabilityResults runReachability(int outputLevel, PointsToResults g,
                                                        ReferenceVariableCache rvCache, PreciseExceptionResults preciseEx) {
         ReachabilityInterProceduralDataFlow analysis = new ReachabilityInterProceduralDataFlow(g, rvCache, preciseEx);
         analysis.setOutputLevel(outputLevel);
@@ -774,7 +1037,7 @@ public class AccrueAnalysisMain {
      * @param nonNull results of a non-null analysis
      * @return the program dependence graph
      */
-    private static ProgramDependenceGraph runPDG(int outputLevel, PointsToGraph g, ReachabilityResults r,
+    private static ProgramDependenceGraph runPDG(int outputLevel, PointsToResults g, ReachabilityResults r,
                                                  PreciseExceptionResults preciseEx, NonNullResults nonNull,
                                                  ReferenceVariableCache rvCache) {
         PDGInterproceduralDataFlow analysis = new PDGInterproceduralDataFlow(g, preciseEx, r, nonNull, rvCache);
@@ -855,7 +1118,7 @@ public class AccrueAnalysisMain {
      * @param r results of a reachability analysis
      * @return the results of the accessible locations analysis
      */
-    private static AccessibleLocationResults runAccesibleLocations(int outputLevel, PointsToGraph g,
+    private static AccessibleLocationResults runAccesibleLocations(int outputLevel, PointsToResults g,
                                                                    ReachabilityResults r, ReferenceVariableCache rvCache) {
         AccessibleLocationsInterproceduralDataFlow analysis = new AccessibleLocationsInterproceduralDataFlow(g,
                                                                                                              r,
@@ -873,7 +1136,7 @@ public class AccrueAnalysisMain {
      * @param r results of a reachability analysis
      * @return the results of the non-null analysis
      */
-    private static IntervalResults runInterval(int outputLevel, PointsToGraph g, ReachabilityResults r,
+    private static IntervalResults runInterval(int outputLevel, PointsToResults g, ReachabilityResults r,
                                                ReferenceVariableCache rvCache, AccessibleLocationResults alr) {
         // XXX change true to false to be flow insensitive
         IntervalInterProceduralDataFlow analysis = new IntervalInterProceduralDataFlow(g, r, rvCache, true, alr);
@@ -10,7 +10,9 @@ import com.beust.jcommander.IParameterValidator;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.validators.PositiveInteger;
 
+import analysis.dataflow.interprocedural.InterproceduralDataFlow;
 import analysis.pointer.analyses.CrossProduct;
 import analysis.pointer.analyses.HeapAbstractionFactory;
 import util.OrderedPair;
@@ -71,6 +73,39 @@ public final class AccrueAnalysisOptions {
     @Parameter(names = { "-out" }, description = "Output directory, default is the tests directory.")
     private String outputDir;
 
+    /**
+     * File to save the points-to graph to
+     */
+    @Parameter(
+        names = { "-pointsToSnapshot" },
+        description = "If set, the points-to graph and call graph computed by the pointsto2 analysis are saved to this file in a binary format that can be loaded without rerunning the analysis. The snapshot analysis loads the file and prints it, and the nonnull, precise-ex and pdg analyses load it instead of running the points-to analysis (the program, the heap abstraction and the registration options must be the same as for the pointsto2 run).")
+    private String pointsToSnapshot = null;
+
+    /**
+     * Should the pointsto2 analysis resume from the snapshot of an earlier run
+     */
+    @Parameter(
+        names = { "-incrementalPointsTo" },
+        description = "If set together with -pointsToSnapshot, the pointsto2 analysis records what each statement adds to the points-to graph in the snapshot, and if the snapshot file exists it resumes from it: the facts that depend on statements that changed since the snapshot was written are retracted, and only the affected statements are processed again. Requires the multi-threaded points-to analysis.")
+    private boolean incrementalPointsTo = false;
+
+    /**
+     * File to compare and save the fingerprints of the registered points-to statements
+     */
+    @Parameter(
+        names = { "-statementFingerprints" },
+        description = "If set, the points-to statements registered by the pointsto2 analysis are compared against the fingerprints in this file (if it exists) to report what changed since that run, and the file is then overwritten with the fingerprints of this run.")
+    private String statementFingerprints = null;
+
+    /**
+     * Number of constraint evaluations a demand points-to query may use before the exhaustive analysis is run instead
+     */
+    @Parameter(
+        names = { "-demandBudget" },
+        validateWith = PositiveInteger.class,
+        description = "Number of constraint evaluations each query of the demand-pointsto analysis may use before the exhaustive points-to analysis is run instead. 0 answers every query with the exhaustive analysis.")
+    private int demandBudget = 100000;
+
     /**
      * Flag for printing useage information
      */
@@ -93,6 +128,143 @@ public final class AccrueAnalysisOptions {
         description = "If set, Set the analysis to reprocess all statements (single-threaded) after running the multi-threaded analysis.")
     private boolean paranoidPointerAnalysis = false;
 
+    /**
+     * Flag for collapsing cycles in the subset relation of the points-to graph
+     */
+    @Parameter(
+        names = { "-cycleCollapsing" },
+        description = "If set, collapse cycles of subset relations in the points-to graph during the pointer analysis.")
+    private boolean cycleCollapsing = false;
+
+    /**
+     * Flag for representing points-to sets as bit sets
+     */
+    @Parameter(
+        names = { "-bitSetPointsToSets" },
+        description = "If set, represent points-to sets as bit sets rather than hash sets during the pointer analysis.")
+    private boolean bitSetPointsToSets = false;
+
+    /**
+     * Flag for difference propagation in the pointer analysis
+     */
+    @Parameter(
+        names = { "-differencePropagation" },
+        description = "If set, each time a points-to statement is processed it only reads the part of a points-to set it has not already read.")
+    private boolean differencePropagation = false;
+
+    /**
+     * Flag for using the batched worklist scheduler in the multi-threaded pointer analysis
+     */
+    @Parameter(
+        names = { "-batchedScheduler" },
+        description = "If set, the multi-threaded pointer analysis uses worker threads with their own batched worklists rather than one fork-join task per statement.")
+    private boolean batchedScheduler = false;
+
+    /**
+     * Should the deltas of repeated submissions of a statement be merged
+     */
+    @Parameter(
+        names = { "-coalesceDeltas" },
+        description = "If set, the multi-threaded pointer analysis merges the delta of a statement submitted while it is still pending into the pending run, rather than running the statement again.")
+    private boolean coalesceDeltas = false;
+
+    /**
+     * Flag for ordering the worklist of the single-threaded pointer analysis by the subset graph
+     */
+    @Parameter(
+        names = { "-topologicalWorklist" },
+        description = "If set, the single-threaded pointer analysis processes statements triggered by a changed points-to set in an approximate topological order of the subset graph rather than LIFO.")
+    private boolean topologicalWorklist = false;
+
+    /**
+     * Should instance keys with the same concrete type get nearby numbers
+     */
+    @Parameter(
+        names = { "-groupInstanceKeysByType" },
+        description = "If set, the pointer analysis numbers abstract objects in blocks, one concrete type per block, so type filters can be checked once per block.")
+    private boolean groupInstanceKeysByType = false;
+
+    /**
+     * Should methods be registered by several threads
+     */
+    @Parameter(
+        names = { "-parallelRegistration" },
+        description = "If set, methods are registered by several threads, each building the IR for a method and registering its points-to statements. The statements created are the same.")
+    private boolean parallelRegistration = false;
+
+    /**
+     * Should the call graph be constructed by several threads after the pointer analysis
+     */
+    @Parameter(
+        names = { "-parallelCallGraph" },
+        description = "If set, the edges of the call graph are collected by several threads after the pointer analysis, before they are added to the call graph. The call graph is the same.")
+    private boolean parallelCallGraph = false;
+
+    /**
+     * Should the sets of the pointer analysis be stored outside the Java heap
+     */
+    @Parameter(
+        names = { "-offHeapSets" },
+        description = "If set, points-to sets and subset relations are stored in direct memory outside the Java heap while the pointer analysis runs. Use -XX:MaxDirectMemorySize to allow enough direct memory.")
+    private boolean offHeapSets = false;
+
+    /**
+     * Should the pointer analysis record metrics about its progress
+     */
+    @Parameter(
+        names = { "-solverMetrics" },
+        description = "If set, the pointer analysis records its progress and throughput and exposes them through JMX while it runs.")
+    private boolean solverMetrics = false;
+
+    /**
+     * File to write the metrics of the pointer analysis to
+     */
+    @Parameter(
+        names = { "-solverMetricsFile" },
+        description = "If set, the pointer analysis records its progress and throughput (as for -solverMetrics) and appends them to this file every few seconds, one JSON object per line.")
+    private String solverMetricsFile = null;
+
+    /**
+     * Should the inter-procedural data-flow analyses analyze independent parts of the call graph on several threads
+     */
+    @Parameter(
+        names = { "-parallelDataFlow" },
+        description = "If set, the inter-procedural data-flow analyses (other than the PDG construction) analyze methods in different strongly connected components of the call graph on several threads. The results are the same.")
+    private boolean parallelDataFlow = false;
+
+    /**
+     * Should the intra-procedural data-flow analyses use a work-list of basic blocks
+     */
+    @Parameter(
+        names = { "-dataFlowWorklist" },
+        description = "If set, the intra-procedural data-flow analyses only re-analyze the basic blocks whose input changed, in reverse post-order, rather than iterating over each loop of the control flow graph until nothing changes. The results are the same.")
+    private boolean dataFlowWorklist = false;
+
+    /**
+     * Should the inter-procedural data-flow analyses share procedure summaries
+     */
+    @Parameter(
+        names = { "-summaryStore" },
+        description = "If set, the reachability analyses store the output computed for each method, and use a stored output as the initial guess for recursive calls when a method is first requested with the same input, if it is at or below the default guess. Every method is still analyzed, so this only saves passes over recursive methods. The results are sound, and the same as without the store if the summaries were computed for the same program.")
+    private boolean summaryStore = false;
+
+    /**
+     * File to keep the procedure summaries in between runs
+     */
+    @Parameter(
+        names = { "-summaryStoreFile" },
+        description = "If set, procedure summaries are stored (as for -summaryStore), read from this file at the start of the run if it exists, and written to it after each inter-procedural analysis.")
+    private String summaryStoreFile = null;
+
+    /**
+     * Number of analyses of call graph nodes the inter-procedural data-flow analyses can nest on one thread
+     */
+    @Parameter(
+        names = { "-dataFlowMaxCallDepth" },
+        validateWith = PositiveInteger.class,
+        description = "Number of methods the inter-procedural data-flow analyses analyze one inside the other (for a chain of calls) before analyzing callees later from the work-queue. Lower numbers need less stack (-Xss), the results are the same.")
+    private int dataFlowMaxCallDepth = InterproceduralDataFlow.DEFAULT_MAX_CALL_DEPTH;
+
     /**
      * Flag for redundant variable names
      */
@@ -243,6 +415,12 @@ public final class AccrueAnalysisOptions {
             if (value.equals("collect")) {
                 return;
             }
+            if (value.equals("demand-pointsto")) {
+                return;
+            }
+            if (value.equals("snapshot")) {
+                return;
+            }
             System.err.println("Invalid analysis name: " + value);
             System.err.println(analysisNameUsage());
             throw new ParameterException("Invalid analysis name: " + value);
@@ -316,6 +494,168 @@ public final class AccrueAnalysisOptions {
         return paranoidPointerAnalysis;
     }
 
+    /**
+     * If set, collapse cycles of subset relations in the points-to graph during the pointer analysis.
+     *
+     * @return true if cycles in the points-to graph should be collapsed
+     */
+    public boolean shouldCollapseCycles() {
+        return cycleCollapsing;
+    }
+
+    /**
+     * If set, represent points-to sets as bit sets rather than hash sets during the pointer analysis.
+     *
+     * @return true if points-to sets should be bit sets
+     */
+    public boolean shouldUseBitSetPointsToSets() {
+        return bitSetPointsToSets;
+    }
+
+    /**
+     * If set, each time a points-to statement is processed it only reads the part of a points-to set it has not
+     * already read.
+     *
+     * @return true if the pointer analysis should use difference propagation
+     */
+    public boolean shouldUseDifferencePropagation() {
+        return differencePropagation;
+    }
+
+    /**
+     * If set, the multi-threaded pointer analysis uses worker threads with their own batched worklists rather than one
+     * fork-join task per statement.
+     *
+     * @return true if the batched worklist scheduler should be used
+     */
+    public boolean shouldUseBatchedScheduler() {
+        return batchedScheduler;
+    }
+
+    /**
+     * If set, the multi-threaded pointer analysis merges the delta of a statement submitted while it is still pending
+     * into the pending run.
+     *
+     * @return true if deltas of pending statements should be merged
+     */
+    public boolean shouldCoalesceDeltas() {
+        return coalesceDeltas;
+    }
+
+    /**
+     * If set, the single-threaded pointer analysis processes statements triggered by a changed points-to set in an
+     * approximate topological order of the subset graph.
+     *
+     * @return true if the topological worklist should be used
+     */
+    public boolean shouldUseTopologicalWorklist() {
+        return topologicalWorklist;
+    }
+
+    /**
+     * If set, the pointer analysis numbers abstract objects in blocks, one concrete type per block.
+     *
+     * @return true if instance key numbers should be grouped by concrete type
+     */
+    public boolean shouldGroupInstanceKeysByType() {
+        return groupInstanceKeysByType;
+    }
+
+    /**
+     * If true then methods are registered by several threads, each building the IR for a method and registering its
+     * points-to statements
+     *
+     * @return true if methods should be registered in parallel
+     */
+    public boolean shouldRegisterInParallel() {
+        return parallelRegistration;
+    }
+
+    /**
+     * If true then the edges of the call graph are collected by several threads after the pointer analysis
+     *
+     * @return true if the call graph should be constructed in parallel
+     */
+    public boolean shouldBuildCallGraphInParallel() {
+        return parallelCallGraph;
+    }
+
+    /**
+     * If true then points-to sets and subset relations are stored outside the Java heap while the pointer analysis runs
+     *
+     * @return true if the sets of the pointer analysis should be stored off-heap
+     */
+    public boolean shouldUseOffHeapSets() {
+        return offHeapSets;
+    }
+
+    /**
+     * If true then the pointer analysis records metrics about its progress and exposes them through JMX. Implied by
+     * {@link #getSolverMetricsFile()}.
+     *
+     * @return true if solver metrics should be recorded
+     */
+    public boolean shouldRecordSolverMetrics() {
+        return solverMetrics || solverMetricsFile != null;
+    }
+
+    /**
+     * Get the file to append the metrics of the pointer analysis to
+     *
+     * @return name of the JSON lines file, null if metrics should not be written to a file
+     */
+    public String getSolverMetricsFile() {
+        return solverMetricsFile;
+    }
+
+    /**
+     * If true then the inter-procedural data-flow analyses analyze independent parts of the call graph on several
+     * threads
+     *
+     * @return true if the data-flow analyses should run in parallel
+     */
+    public boolean shouldRunDataFlowInParallel() {
+        return parallelDataFlow;
+    }
+
+    /**
+     * If true then the intra-procedural data-flow analyses use a work-list ordered by reverse post-order, and only
+     * re-analyze basic blocks whose input changed
+     *
+     * @return true if the data-flow analyses should use a work-list
+     */
+    public boolean shouldUseDataFlowWorklist() {
+        return dataFlowWorklist;
+    }
+
+    /**
+     * If true then the inter-procedural data-flow analyses store procedure summaries and use them as initial guesses.
+     * Implied by {@link #getSummaryStoreFile()}.
+     *
+     * @return true if procedure summaries should be stored
+     */
+    public boolean shouldUseSummaryStore() {
+        return summaryStore || summaryStoreFile != null;
+    }
+
+    /**
+     * Get the file to read procedure summaries from and write them to
+     *
+     * @return name of the file, null if summaries are only kept for this run
+     */
+    public String getSummaryStoreFile() {
+        return summaryStoreFile;
+    }
+
+    /**
+     * Get the number of analyses of call graph nodes the inter-procedural data-flow analyses can nest on one thread
+     *
+     * @return maximum call depth
+     */
+    public int getDataFlowMaxCallDepth() {
+        return dataFlowMaxCallDepth;
+    }
+
     public Integer getOutputLevel() {
         return outputLevel;
     }
@@ -755,6 +1095,8 @@ public final class AccrueAnalysisOptions {
         sb.append("\tcfg - prints the cfg for the all methods to the tests folder prepended with : \"cfg_\"\n");
         sb.append("\tpdg - prints the pdg in graphviz dot format to the tests folder prepended with : \"pdg_\"\n");
         sb.append("\tbool - prints the results of an analysis determining which variables are boolean constants in graphviz dot format to the tests folder prepended with : \"bool_\"\n");
+        sb.append("\tdemand-pointsto - prints the allocation sites the variables of the entry method point to, computed on demand (see -demandBudget)\n");
+        sb.append("\tsnapshot - loads the points-to graph snapshot given by -pointsToSnapshot (saved by an earlier pointsto2 run) and prints it as text to the tests folder with the name: \"entryClassName_snapshot.txt\"\n");
         return sb.toString();
     }
 
@@ -794,6 +1136,43 @@ public final class AccrueAnalysisOptions {
         return outputDir;
     }
 
+    /**
+     * Get the file to save a snapshot of the points-to graph to, or to load it from for the snapshot analysis
+     *
+     * @return name of the snapshot file, null if no snapshot should be saved
+     */
+    public String getPointsToSnapshot() {
+        return pointsToSnapshot;
+    }
+
+    /**
+     * If true then the pointsto2 analysis saves its derivations with the snapshot, and resumes from the snapshot if
+     * the file exists
+     *
+     * @return true if the points-to analysis should resume from the snapshot of an earlier run
+     */
+    public boolean shouldResumePointsTo() {
+        return incrementalPointsTo;
+    }
+
+    /**
+     * Get the number of constraint evaluations a demand points-to query may use before the exhaustive analysis is run
+     *
+     * @return budget for each demand query, 0 to answer every query with the exhaustive analysis
+     */
+    public int getDemandBudget() {
+        return demandBudget;
+    }
+
+    /**
+     * Get the file holding the fingerprints of the points-to statements of the previous run
+     *
+     * @return name of the fingerprint file, null if statements should not be compared
+     */
+    public String getStatementFingerprints() {
+        return statementFingerprints;
+    }
+
     /**
      * If true then only one allocation will be made for each generated exception type. This will reduce the size of the
      * points-to graph (and speed up the points-to analysis), but result in a loss of precision for such exceptions.
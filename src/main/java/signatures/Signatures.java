@@ -63,7 +63,8 @@ public class Signatures {
     private static final SSAInstructionFactory I_FACTORY = Language.JAVA.instructionFactory();
     /**
      * Memoization map for signature so they do not have to be recomputed, note that the IR could be garbage collected,
-     * in which case it must be recomputed.
+     * in which case it must be recomputed. Only used while holding the lock on this object, since signatures may be
+     * requested by several threads (e.g., when methods are registered in parallel).
      */
     private final Map<IMethod, SoftReference<IR>> signatures = new HashMap<>();
 
@@ -74,7 +75,7 @@ public class Signatures {
      *            method to check
      * @return true if a signature exists for the given method
      */
-    public boolean hasSignature(IMethod actualMethod) {
+    public synchronized boolean hasSignature(IMethod actualMethod) {
         if (signatures.containsKey(actualMethod)) {
             return signatures.get(actualMethod) != null;
         }
@@ -106,7 +107,7 @@ public class Signatures {
      *            method to find the signature for
      * @return the signature IR or null if no signature is found
      */
-    public IR getSignatureIR(IMethod actualMethod) {
+    public synchronized IR getSignatureIR(IMethod actualMethod) {
         if (signatures.containsKey(actualMethod)) {
             SoftReference<IR> sigRef = signatures.get(actualMethod);
             if (sigRef == null) {
@@ -0,0 +1,143 @@
+package util;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+
+/**
+ * Thread-safe list of non-negative ints that can only be appended to. Elements never move, so a reader can remember an
+ * index and later read just the elements that were appended after it.
+ *
+ * A writer first reserves a range of indices, and then writes the elements into it, so a reserved index may not have
+ * been written yet. Readers should only look at the prefix of the list in which every element has been written, see
+ * {@link #writtenPrefixEnd(int)}.
+ *
+ * The list is stored in segments whose sizes double, so it never needs to be copied when it grows.
+ */
+public final class ConcurrentAppendOnlyIntList {
+
+    /**
+     * log_2 of the size of the first segment
+     */
+    private static final int LOG_FIRST_SEGMENT_SIZE = 2;
+
+    /**
+     * Enough segments to hold Integer.MAX_VALUE elements
+     */
+    private static final int NUM_SEGMENTS = 31 - LOG_FIRST_SEGMENT_SIZE;
+
+    /**
+     * Segment i has 2^(LOG_FIRST_SEGMENT_SIZE + i) entries. An entry holds the element plus one, so that 0 means that
+     * the entry has been reserved (or not) but not yet written.
+     */
+    private final AtomicReferenceArray<AtomicIntegerArray> segments = new AtomicReferenceArray<>(NUM_SEGMENTS);
+
+    /**
+     * Number of indices that have been reserved by writers
+     */
+    private final AtomicInteger reserved = new AtomicInteger(0);
+
+    private static int segmentFor(int index) {
+        return 31 - Integer.numberOfLeadingZeros((index >>> LOG_FIRST_SEGMENT_SIZE) + 1);
+    }
+
+    private static int offsetInSegment(int index, int segment) {
+        return index - (((1 << segment) - 1) << LOG_FIRST_SEGMENT_SIZE);
+    }
+
+    private AtomicIntegerArray ensureSegment(int segment) {
+        AtomicIntegerArray s = this.segments.get(segment);
+        if (s == null) {
+            this.segments.compareAndSet(segment, null, new AtomicIntegerArray(1 << (LOG_FIRST_SEGMENT_SIZE + segment)));
+            s = this.segments.get(segment);
+        }
+        return s;
+    }
+
+    private void write(int index, int value) {
+        assert value >= 0 : "Negative element " + value;
+        int segment = segmentFor(index);
+        ensureSegment(segment).set(offsetInSegment(index, segment), value + 1);
+    }
+
+    /**
+     * Append an element to the list
+     *
+     * @param value non-negative int to append
+     */
+    public void add(int value) {
+        write(this.reserved.getAndIncrement(), value);
+    }
+
+    /**
+     * Append all the elements of the set to the list. The set must not be modified concurrently.
+     *
+     * @param set set of non-negative ints to append
+     */
+    public void addAll(IntSet set) {
+        int size = set.size();
+        if (size == 0) {
+            return;
+        }
+        int index = this.reserved.getAndAdd(size);
+        IntIterator iter = set.intIterator();
+        while (iter.hasNext()) {
+            write(index++, iter.next());
+        }
+    }
+
+    /**
+     * Get the element at the given index, or -1 if that element has not been written yet.
+     */
+    public int get(int index) {
+        AtomicIntegerArray s = this.segments.get(segmentFor(index));
+        if (s == null) {
+            return -1;
+        }
+        return s.get(offsetInSegment(index, segmentFor(index))) - 1;
+    }
+
+    /**
+     * Find the end of the written prefix of the list, starting the search at index start. All elements with indices in
+     * [start, end) have been written.
+     *
+     * @param start index to start the search (which must be at most the end of the written prefix)
+     * @return index of the first element at or after start that has not been written
+     */
+    public int writtenPrefixEnd(int start) {
+        int limit = this.reserved.get();
+        int end = start;
+        while (end < limit && get(end) >= 0) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Iterate over the elements with indices in [start, end). All of these must have been written.
+     */
+    public IntIterator iterator(final int start, final int end) {
+        return new IntIterator() {
+            private int index = start;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < end;
+            }
+
+            @Override
+            public int next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int value = get(this.index++);
+                assert value >= 0 : "Element " + (this.index - 1) + " has not been written";
+                return value;
+            }
+        };
+    }
+}
@@ -17,6 +17,35 @@ public class Histogram {
         throw new RuntimeException("No idea what happened " + x);
     }
 
+    /**
+     * Add the counts of another histogram to this one
+     */
+    public void addAll(Histogram other) {
+        this.weightedTotal += other.weightedTotal;
+        for (int i = 0; i < this.keys.length; i++) {
+            this.counts[i] += other.counts[i];
+        }
+    }
+
+    /**
+     * Write the non-empty buckets as a JSON object mapping each range to its count, e.g., {"0-0": 3, "6-10": 1}
+     */
+    public String toJSON() {
+        StringBuilder sb = new StringBuilder("{");
+        int last = 0;
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.counts[i] != 0) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append("\"" + last + "-" + this.keys[i] + "\": " + this.counts[i]);
+            }
+            last = this.keys[i] + 1;
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer();
@@ -0,0 +1,737 @@
+package util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Unmodifiable hash map stored as a hash array mapped trie. The "modifying" operations ({@link #plus(Object, Object)},
+ * {@link #plusAll(Map)}, {@link #retainAll(Collection)} and {@link #merge(PersistentHashMap, ValueMerger)}) return a
+ * new map that shares every part of the trie that did not change with the original. Adding an entry copies at most
+ * one trie node per level (seven levels for 32 bit hashes), and merging two maps derived from a common map only visits
+ * the parts of the tries that differ.
+ * <p>
+ * Each trie node records the number of entries below it and the sum of their hash codes, so {@link #size()} and
+ * {@link #hashCode()} are constant time and unequal maps are usually detected without looking at their entries.
+ * <p>
+ * Keys and values must not be null.
+ *
+ * @param <K>
+ *            the type of keys maintained by this map
+ * @param <V>
+ *            the type of mapped values
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    /**
+     * Number of hash bits used at each level of the trie
+     */
+    private static final int BITS = 5;
+
+    /**
+     * The empty map
+     */
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashMap EMPTY = new PersistentHashMap<>(null);
+
+    /**
+     * Root of the trie, null if the map is empty
+     */
+    private final Node root;
+
+    /**
+     * Combines the values for a key in two maps
+     *
+     * @param <V>
+     *            type of values
+     */
+    public interface ValueMerger<V> {
+        /**
+         * Combine the values for a key. At most one of the arguments is null, meaning that the key is not in that map.
+         * Must return v1 (or an equal value) when v1 and v2 are the same object, since parts of the two maps that are
+         * the same object are not visited.
+         *
+         * @param v1
+         *            value in the first map, or null
+         * @param v2
+         *            value in the second map, or null
+         * @return non-null value for the key in the merged map
+         */
+        V merge(V v1, V v2);
+    }
+
+    private PersistentHashMap(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Get the empty map
+     *
+     * @return map with no entries
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Get a persistent map with the same entries as the given map
+     *
+     * @param m
+     *            map to copy, if this is already a persistent map it is returned
+     * @return persistent map with the entries of m
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> m) {
+        if (m instanceof PersistentHashMap) {
+            return (PersistentHashMap<K, V>) m;
+        }
+        return PersistentHashMap.<K, V> empty().plusAll(m);
+    }
+
+    private static PersistentHashMap<?, ?> make(Node root) {
+        return root == null || root.size == 0 ? EMPTY : new PersistentHashMap<>(root);
+    }
+
+    /**
+     * Get a map with the given key mapped to the given value and otherwise the same as this map
+     *
+     * @param key
+     *            non-null key
+     * @param value
+     *            non-null value
+     * @return the new map, or this map if it already maps the key to an equal value
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        assert key != null && value != null : "No null keys or values in a PersistentHashMap";
+        int hash = key.hashCode();
+        Node newRoot;
+        if (root == null) {
+            newRoot = new BitmapNode(bit(hash, 0), new Object[] { key, value });
+        }
+        else {
+            newRoot = root.put(key, hash, value, 0);
+        }
+        return newRoot == root ? this : (PersistentHashMap<K, V>) make(newRoot);
+    }
+
+    /**
+     * Get a map with the entries of this map and the given map, using the values in the given map for keys in both
+     *
+     * @param m
+     *            entries to add
+     * @return the new map, or this map if it already contains all the entries
+     */
+    public PersistentHashMap<K, V> plusAll(Map<? extends K, ? extends V> m) {
+        PersistentHashMap<K, V> result = this;
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            result = result.plus(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Get a map with only the entries of this map whose keys are in the given collection
+     *
+     * @param keys
+     *            keys to keep
+     * @return the new map, or this map if all its keys are in the collection
+     */
+    public PersistentHashMap<K, V> retainAll(Collection<?> keys) {
+        PersistentHashMap<K, V> result = empty();
+        boolean removed = false;
+        for (Map.Entry<K, V> e : entrySet()) {
+            if (keys.contains(e.getKey())) {
+                result = result.plus(e.getKey(), e.getValue());
+            }
+            else {
+                removed = true;
+            }
+        }
+        return removed ? result : this;
+    }
+
+    /**
+     * Get a map with the keys of this map and the given map, where the value for each key is the result of merging the
+     * values in the two maps. Parts of the two maps that are the same object are shared with the result without being
+     * visited.
+     *
+     * @param that
+     *            map to merge with
+     * @param merger
+     *            combines the values for each key
+     * @return merged map, this map or that map if the result has the same entries
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentHashMap<K, V> merge(PersistentHashMap<K, V> that, ValueMerger<V> merger) {
+        Node merged = mergeNodes(this.root, that.root, 0, (ValueMerger<Object>) merger);
+        if (merged == this.root) {
+            return this;
+        }
+        if (merged == that.root) {
+            return that;
+        }
+        return (PersistentHashMap<K, V>) make(merged);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        return (V) root.get(key, key.hashCode(), 0);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator<K, V>(root);
+            }
+
+            @Override
+            public int size() {
+                return PersistentHashMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        return root == null ? 0 : root.hashSum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof PersistentHashMap) {
+            Node other = ((PersistentHashMap<?, ?>) o).root;
+            if (root == null || other == null) {
+                return root == other;
+            }
+            return nodesEqual(root, other, 0);
+        }
+        return super.equals(o);
+    }
+
+    /**
+     * Node of the trie
+     */
+    private abstract static class Node {
+        /**
+         * Keys and values of this node. Each entry takes two elements: the key then the value, or null then a child
+         * node.
+         */
+        final Object[] array;
+        /**
+         * Number of entries in and below this node
+         */
+        final int size;
+        /**
+         * Sum of the hash codes of the entries in and below this node, as for {@link Map#hashCode()}
+         */
+        final int hashSum;
+
+        Node(Object[] array) {
+            this.array = array;
+            int s = 0;
+            int h = 0;
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    Node child = (Node) array[i + 1];
+                    s += child.size;
+                    h += child.hashSum;
+                }
+                else {
+                    s++;
+                    h += array[i].hashCode() ^ array[i + 1].hashCode();
+                }
+            }
+            this.size = s;
+            this.hashSum = h;
+        }
+
+        /**
+         * Get the value for the key, or null if there is none
+         */
+        abstract Object get(Object key, int hash, int shift);
+
+        /**
+         * Get a node with the key mapped to the value, this node if it already maps the key to an equal value
+         */
+        abstract Node put(Object key, int hash, Object value, int shift);
+    }
+
+    /**
+     * Node with up to 32 entries, one for each value of the next {@link #BITS} bits of the hash
+     */
+    private static final class BitmapNode extends Node {
+        /**
+         * Bit i is set if there is an entry for the value i of the next bits of the hash
+         */
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * index(bitmap, bit);
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).get(key, hash, shift + BITS);
+            }
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        @Override
+        Node put(Object key, int hash, Object value, int shift) {
+            int bit = bit(hash, shift);
+            int i = 2 * index(bitmap, bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = (Node) v;
+                Node newChild = child.put(key, hash, value, shift + BITS);
+                return newChild == child ? this : replace(i, null, newChild);
+            }
+            if (key.equals(k)) {
+                return value == v || value.equals(v) ? this : replace(i, k, value);
+            }
+            // Push the existing entry and the new one down a level
+            return replace(i, null, pair(k, v, k.hashCode(), key, value, hash, shift + BITS));
+        }
+
+        /**
+         * Copy of this node with the entry at the given position of the array replaced
+         */
+        BitmapNode replace(int i, Object key, Object value) {
+            Object[] newArray = array.clone();
+            newArray[i] = key;
+            newArray[i + 1] = value;
+            return new BitmapNode(bitmap, newArray);
+        }
+    }
+
+    /**
+     * Node for entries whose keys all have the same hash. Also used for single entries while tries are merged or
+     * compared, since such a node is correct at any level of the trie.
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            if (hash != this.hash) {
+                return null;
+            }
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return array[i + 1];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Node put(Object key, int hash, Object value, int shift) {
+            if (hash != this.hash) {
+                // Make this node the only child of a bitmap node at this level, then add the key to that
+                BitmapNode parent = new BitmapNode(bit(this.hash, shift), new Object[] { null, this });
+                return parent.put(key, hash, value, shift);
+            }
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    Object v = array[i + 1];
+                    if (value == v || value.equals(v)) {
+                        return this;
+                    }
+                    Object[] newArray = array.clone();
+                    newArray[i + 1] = value;
+                    return new CollisionNode(hash, newArray);
+                }
+            }
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return new CollisionNode(hash, newArray);
+        }
+    }
+
+    /**
+     * Bit for the given hash in a bitmap node at the given level
+     */
+    static int bit(int hash, int shift) {
+        // Shifts of 32 or more are taken mod 32 in Java, but hashes that are equal up to the last level are equal
+        return shift < 32 ? 1 << ((hash >>> shift) & 31) : 1;
+    }
+
+    /**
+     * Node at the given level containing two entries with different keys
+     */
+    static Node pair(Object k1, Object v1, int h1, Object k2, Object v2, int h2, int shift) {
+        if (h1 == h2) {
+            return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+        }
+        int i1 = (h1 >>> shift) & 31;
+        int i2 = (h2 >>> shift) & 31;
+        if (i1 == i2) {
+            return new BitmapNode(bit(h1, shift), new Object[] { null, pair(k1, v1, h1, k2, v2, h2, shift + BITS) });
+        }
+        Object[] array = i1 < i2 ? new Object[] { k1, v1, k2, v2 } : new Object[] { k2, v2, k1, v1 };
+        return new BitmapNode(bit(h1, shift) | bit(h2, shift), array);
+    }
+
+    /**
+     * Position of the entry for the given bit among the entries of a bitmap node
+     */
+    static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    /**
+     * Node for the entry or child at position i of a node's array
+     */
+    private static Node asNode(Object[] array, int i) {
+        Object k = array[i];
+        if (k == null) {
+            return (Node) array[i + 1];
+        }
+        return new CollisionNode(k.hashCode(), new Object[] { k, array[i + 1] });
+    }
+
+    /**
+     * Merge two nodes at the same position in two tries
+     *
+     * @param a
+     *            node from the first trie, or null
+     * @param b
+     *            node from the second trie, or null
+     * @param shift
+     *            level of the nodes
+     * @param merger
+     *            combines values for the same key
+     * @return merged node, a or b if it has the same entries as the merge
+     */
+    private static Node mergeNodes(Node a, Node b, int shift, ValueMerger<Object> merger) {
+        if (a == b) {
+            return a;
+        }
+        if (a == null) {
+            return mapValues(b, merger, false);
+        }
+        if (b == null) {
+            return mapValues(a, merger, true);
+        }
+        if (!(a instanceof BitmapNode) || !(b instanceof BitmapNode)) {
+            return mergeByLookup(a, b, shift, merger);
+        }
+
+        BitmapNode ba = (BitmapNode) a;
+        BitmapNode bb = (BitmapNode) b;
+        int union = ba.bitmap | bb.bitmap;
+        Object[] newArray = new Object[2 * Integer.bitCount(union)];
+        boolean sameAsA = union == ba.bitmap;
+        boolean sameAsB = union == bb.bitmap;
+        int i = 0;
+        for (int bits = union; bits != 0; bits &= bits - 1) {
+            int bit = Integer.lowestOneBit(bits);
+            int ia = (ba.bitmap & bit) == 0 ? -1 : 2 * index(ba.bitmap, bit);
+            int ib = (bb.bitmap & bit) == 0 ? -1 : 2 * index(bb.bitmap, bit);
+            if (ia >= 0 && ib >= 0 && ba.array[ia] != null && ba.array[ia] == bb.array[ib]) {
+                // Same key in both
+                Object va = ba.array[ia + 1];
+                Object vb = bb.array[ib + 1];
+                Object v = va == vb ? va : merger.merge(va, vb);
+                assert v != null : "Null merged value for " + ba.array[ia];
+                newArray[i] = ba.array[ia];
+                newArray[i + 1] = v;
+            }
+            else if (ia >= 0 && ib >= 0 && ba.array[ia] == null && bb.array[ib] == null) {
+                Node child = mergeNodes((Node) ba.array[ia + 1], (Node) bb.array[ib + 1], shift + BITS, merger);
+                newArray[i] = null;
+                newArray[i + 1] = child;
+            }
+            else if (ia >= 0 && ib >= 0) {
+                Object ka = ba.array[ia];
+                Object kb = bb.array[ib];
+                if (ka != null && kb != null && ka.equals(kb)) {
+                    Object v = merger.merge(ba.array[ia + 1], bb.array[ib + 1]);
+                    assert v != null : "Null merged value for " + ka;
+                    newArray[i] = ka;
+                    newArray[i + 1] = v;
+                }
+                else {
+                    // Different shapes, at least one is a single entry
+                    Node child = mergeNodes(asNode(ba.array, ia), asNode(bb.array, ib), shift + BITS, merger);
+                    newArray[i] = null;
+                    newArray[i + 1] = child;
+                }
+            }
+            else if (ia >= 0) {
+                copyMapped(ba.array, ia, newArray, i, merger, true);
+            }
+            else {
+                copyMapped(bb.array, ib, newArray, i, merger, false);
+            }
+            sameAsA &= ia >= 0 && newArray[i] == ba.array[ia] && newArray[i + 1] == ba.array[ia + 1];
+            sameAsB &= ib >= 0 && newArray[i] == bb.array[ib] && newArray[i + 1] == bb.array[ib + 1];
+            i += 2;
+        }
+        if (sameAsA) {
+            return a;
+        }
+        if (sameAsB) {
+            return b;
+        }
+        return new BitmapNode(union, newArray);
+    }
+
+    /**
+     * Copy the entry or child at position i of an array, merging the values with null
+     *
+     * @param first
+     *            whether the array is from the first trie being merged
+     */
+    private static void copyMapped(Object[] from, int i, Object[] to, int j, ValueMerger<Object> merger, boolean first) {
+        Object k = from[i];
+        if (k == null) {
+            to[j] = null;
+            to[j + 1] = mapValues((Node) from[i + 1], merger, first);
+        }
+        else {
+            Object v = first ? merger.merge(from[i + 1], null) : merger.merge(null, from[i + 1]);
+            assert v != null : "Null merged value for " + k;
+            to[j] = k;
+            to[j + 1] = v;
+        }
+    }
+
+    /**
+     * Merge each value of a node whose keys are only in one of the tries with null
+     *
+     * @param first
+     *            whether the node is from the first trie being merged
+     * @return node with the merged values, n if none of them changed
+     */
+    private static Node mapValues(Node n, ValueMerger<Object> merger, boolean first) {
+        Object[] newArray = null;
+        for (int i = 0; i < n.array.length; i += 2) {
+            Object old = n.array[i + 1];
+            Object v;
+            if (n.array[i] == null) {
+                v = mapValues((Node) old, merger, first);
+            }
+            else {
+                v = first ? merger.merge(old, null) : merger.merge(null, old);
+                assert v != null : "Null merged value for " + n.array[i];
+            }
+            if (v != old) {
+                if (newArray == null) {
+                    newArray = n.array.clone();
+                }
+                newArray[i + 1] = v;
+            }
+        }
+        if (newArray == null) {
+            return n;
+        }
+        if (n instanceof BitmapNode) {
+            return new BitmapNode(((BitmapNode) n).bitmap, newArray);
+        }
+        return new CollisionNode(((CollisionNode) n).hash, newArray);
+    }
+
+    /**
+     * Merge two nodes entry by entry, used when either is a collision node
+     */
+    private static Node mergeByLookup(Node a, Node b, int shift, ValueMerger<Object> merger) {
+        Node result = a;
+        EntryIterator<Object, Object> iter = new EntryIterator<>(b);
+        while (iter.hasNext()) {
+            Map.Entry<Object, Object> e = iter.next();
+            Object k = e.getKey();
+            Object va = a.get(k, k.hashCode(), shift);
+            Object v = va == null ? merger.merge(null, e.getValue()) : merger.merge(va, e.getValue());
+            assert v != null : "Null merged value for " + k;
+            result = result.put(k, k.hashCode(), v, shift);
+        }
+        iter = new EntryIterator<>(a);
+        while (iter.hasNext()) {
+            Map.Entry<Object, Object> e = iter.next();
+            Object k = e.getKey();
+            if (b.get(k, k.hashCode(), shift) == null) {
+                Object v = merger.merge(e.getValue(), null);
+                assert v != null : "Null merged value for " + k;
+                result = result.put(k, k.hashCode(), v, shift);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check whether two nodes at the same position in two tries have the same entries
+     *
+     * @param shift
+     *            level of the nodes
+     */
+    private static boolean nodesEqual(Node a, Node b, int shift) {
+        if (a == b) {
+            return true;
+        }
+        if (a.size != b.size || a.hashSum != b.hashSum) {
+            return false;
+        }
+        if (a instanceof BitmapNode && b instanceof BitmapNode) {
+            if (((BitmapNode) a).bitmap != ((BitmapNode) b).bitmap) {
+                // Bits are only set for non-empty parts of the trie, so some hash is only in one of them
+                return false;
+            }
+            for (int i = 0; i < a.array.length; i += 2) {
+                Object ka = a.array[i];
+                Object kb = b.array[i];
+                if (ka != null && kb != null) {
+                    if (!ka.equals(kb) || !a.array[i + 1].equals(b.array[i + 1])) {
+                        return false;
+                    }
+                }
+                else if (!nodesEqual(asNode(a.array, i), asNode(b.array, i), shift + BITS)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // Different kinds of node, compare entry by entry (the nodes have the same number of entries)
+        EntryIterator<Object, Object> iter = new EntryIterator<>(a);
+        while (iter.hasNext()) {
+            Map.Entry<Object, Object> e = iter.next();
+            Object k = e.getKey();
+            if (!e.getValue().equals(b.get(k, k.hashCode(), shift))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Iterator over the entries in and below a node
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        /**
+         * Nodes being iterated over, from the root down, 7 levels of bitmap nodes and a collision node at most
+         */
+        private final Node[] nodes = new Node[9];
+        /**
+         * Position of the next entry in each of the nodes
+         */
+        private final int[] positions = new int[9];
+        /**
+         * Index of the deepest node, -1 when done
+         */
+        private int depth;
+        /**
+         * Next entry to return, null when done
+         */
+        private Map.Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            if (root == null) {
+                depth = -1;
+            }
+            else {
+                nodes[0] = root;
+                depth = 0;
+            }
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Node n = nodes[depth];
+                int i = positions[depth];
+                if (i >= n.array.length) {
+                    nodes[depth] = null;
+                    positions[depth] = 0;
+                    depth--;
+                    continue;
+                }
+                positions[depth] = i + 2;
+                if (n.array[i] == null) {
+                    depth++;
+                    nodes[depth] = (Node) n.array[i + 1];
+                    positions[depth] = 0;
+                }
+                else {
+                    next = new SimpleImmutableEntry<>((K) n.array[i], (V) n.array[i + 1]);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> e = next;
+            advance();
+            return e;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package util.intmap;
 
 import java.lang.reflect.Field;
-import java.security.SecureRandom;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -882,96 +881,4 @@ public final class ConcurrentMonotonicIntHashMap<V> implements ConcurrentIntMap<
         }
 
     }
-
-    /*
-     * Some simple test code.
-     */
-    public static void main(String[] args) {
-        ConcurrentMonotonicIntHashMap<String> m = new ConcurrentMonotonicIntHashMap<>(4);
-        int testSize = 1000000;
-        for (int i = 0; i < testSize; i++) {
-            if (m.putIfAbsent(i, "val" + i) != null) {
-                throw new RuntimeException("putIfAbsent");
-            }
-        }
-        System.out.println("OK: A");
-
-        if (m.size() != testSize) {
-            throw new RuntimeException("size");
-        }
-
-        System.out.println("OK: B");
-
-        if (testSize > 10 && !m.put(10, "val" + 10).equals("val10")) {
-            throw new RuntimeException("put");
-        }
-        if (testSize >= 10 && !m.remove(9).equals("val9")) {
-            throw new RuntimeException("remove");
-        }
-        if (m.containsKey(9)) {
-            throw new RuntimeException("containsKey");
-        }
-        if (m.get(9) != null) {
-            throw new RuntimeException("get");
-        }
-        if (m.remove(9) != null) {
-            throw new RuntimeException("remove");
-        }
-
-        if (testSize > 10 && !m.putIfAbsent(11, "val11").equals("val11")) {
-            throw new RuntimeException("putIfAbsent");
-        }
-        if (testSize > 10 && m.size() != testSize - 1) {
-            throw new RuntimeException("size");
-        }
-        IntIterator iter = m.keyIterator();
-        int count = 0;
-        System.out.println("OK: C");
-
-        while (iter.hasNext()) {
-            int i = iter.next();
-            //System.out.println(i);
-            if (!m.get(i).equals("val" + i)) {
-                throw new RuntimeException("get");
-            }
-            if (!m.containsKey(i)) {
-                throw new RuntimeException("get");
-            }
-            count++;
-            //            if (count % 1000 == 0) {
-            //                //System.out.println(iter.next());
-            //            }
-        }
-        System.out.println("OK: D");
-        if (m.containsKey(testSize + 5)) {
-            throw new RuntimeException("containsKey");
-        }
-        if (m.get(testSize + 5) != null) {
-            throw new RuntimeException("get");
-        }
-        if (m.remove(testSize + 5) != null) {
-            throw new RuntimeException("remove");
-        }
-
-        if (testSize > 10 && count != testSize - 1) {
-            throw new RuntimeException("count is " + count);
-        }
-        if (m.max() != testSize - 1) {
-            throw new RuntimeException("max is " + m.max());
-        }
-        System.out.println("OK: " + m.max());
-
-        // print out states:
-        m.dumpStats();
-        // some simulation code to determine how long buckets get under certain load factors
-
-        System.out.println("\n\n\nTest with random keys");
-        SecureRandom rand = new SecureRandom();
-        m = new ConcurrentMonotonicIntHashMap<>(4);
-        for (int i = 0; i < testSize; i++) {
-            m.put(rand.nextInt(), "Dummy");
-        }
-        m.dumpStats();
-    }
-
 }
@@ -58,7 +58,6 @@ public class DenseIntMap<T> implements IntMap<T> {
             }
             // need to expand
             float newExtent = Math.max(array.length * getExpansionFactor() + 1, i + 1);
-            System.err.println("Extending to " + newExtent + " due to key " + i);
             Object[] tmp = new Object[(int) newExtent];
             System.arraycopy(array, 0, tmp, 0, array.length);
             this.array = tmp;
@@ -0,0 +1,652 @@
+package util.intset;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.IntSetAction;
+import com.ibm.wala.util.intset.MutableIntSet;
+
+/**
+ * A concurrent set of non-negative ints, represented as a bit vector. This set does not support removal of elements.
+ *
+ * The bit vector is split into fixed size chunks of 64-bit words, and only the chunks that contain at least one element
+ * are allocated. Chunks are grouped into fixed size pages of chunk slots, and the pages are found through a directory,
+ * which is an immutable pair of sorted arrays (page keys and pages) that is replaced (under a lock) whenever a new page
+ * is needed. A chunk is installed in an empty slot of its page with a compare and swap, so adding a chunk to an
+ * existing page does not copy the directory. Pages and chunks are never replaced once they are installed, so a thread
+ * holding an old directory still sees all modifications to the pages it contains. Words within a chunk are updated with
+ * a compare and swap, so adding elements to existing chunks does not need a lock. Only a new page copies the directory,
+ * so building a set with elements up to n copies at most (n / 2^LOG_BITS_PER_PAGE)^2 / 2 directory entries rather than
+ * (n / 2^LOG_BITS_PER_CHUNK)^2 / 2.
+ *
+ * When both sets are ConcurrentMonotonicIntBitSets, {@link #addAll(IntSet)} and {@link #addAllAndReturnAdded(IntSet)}
+ * work a word at a time rather than an element at a time, as do {@link #and(ConcurrentMonotonicIntBitSet)} and
+ * {@link #andNot(ConcurrentMonotonicIntBitSet)}.
+ */
+public final class ConcurrentMonotonicIntBitSet implements MutableIntSet {
+
+    /**
+     * log_2 of the number of bits in a word
+     */
+    private static final int LOG_BITS_PER_WORD = 6;
+
+    /**
+     * log_2 of the number of words in a chunk
+     */
+    private static final int LOG_WORDS_PER_CHUNK = 3;
+
+    /**
+     * Number of words in a chunk
+     */
+    private static final int WORDS_PER_CHUNK = 1 << LOG_WORDS_PER_CHUNK;
+
+    /**
+     * log_2 of the number of bits in a chunk
+     */
+    private static final int LOG_BITS_PER_CHUNK = LOG_BITS_PER_WORD + LOG_WORDS_PER_CHUNK;
+
+    /**
+     * log_2 of the number of chunk slots in a page
+     */
+    private static final int LOG_CHUNKS_PER_PAGE = 4;
+
+    /**
+     * Number of chunk slots in a page
+     */
+    private static final int CHUNKS_PER_PAGE = 1 << LOG_CHUNKS_PER_PAGE;
+
+    /**
+     * log_2 of the number of bits in a page
+     */
+    private static final int LOG_BITS_PER_PAGE = LOG_BITS_PER_CHUNK + LOG_CHUNKS_PER_PAGE;
+
+    /**
+     * Immutable map from page keys to pages. The page with key k holds the chunks for the elements in the range [k *
+     * 2^LOG_BITS_PER_PAGE, (k + 1) * 2^LOG_BITS_PER_PAGE). Slot s of the page is null or the chunk with key k *
+     * CHUNKS_PER_PAGE + s, which holds the elements in the range [key * 2^LOG_BITS_PER_CHUNK, (key + 1) *
+     * 2^LOG_BITS_PER_CHUNK).
+     */
+    private static final class Directory {
+        /**
+         * Sorted keys of the allocated pages
+         */
+        final int[] keys;
+        /**
+         * pages[i] is the page for keys[i]
+         */
+        final long[][][] pages;
+
+        Directory(int[] keys, long[][][] pages) {
+            this.keys = keys;
+            this.pages = pages;
+        }
+
+        /**
+         * Get the page with the given key, or null if there isn't one.
+         */
+        long[][] pageFor(int key) {
+            int n = this.keys.length;
+            if (n == 0) {
+                return null;
+            }
+            // The common case is that elements are added in roughly ascending order, so check the last page first
+            if (this.keys[n - 1] == key) {
+                return this.pages[n - 1];
+            }
+            int ind = Arrays.binarySearch(this.keys, 0, n - 1, key);
+            return ind >= 0 ? this.pages[ind] : null;
+        }
+
+        /**
+         * Get the chunk for the given element, or null if there isn't one.
+         */
+        long[] chunkFor(int i) {
+            long[][] page = pageFor(pageKey(i));
+            return page == null ? null : getSlot(page, slotInPage(i));
+        }
+
+        /**
+         * Create a new directory that also contains the given page. The key must not already be in the directory.
+         */
+        Directory insert(int key, long[][] page) {
+            int n = this.keys.length;
+            int ind = -(Arrays.binarySearch(this.keys, key) + 1);
+            assert ind >= 0 : "Page " + key + " already in directory";
+            int[] newKeys = new int[n + 1];
+            long[][][] newPages = new long[n + 1][][];
+            System.arraycopy(this.keys, 0, newKeys, 0, ind);
+            System.arraycopy(this.pages, 0, newPages, 0, ind);
+            newKeys[ind] = key;
+            newPages[ind] = page;
+            System.arraycopy(this.keys, ind, newKeys, ind + 1, n - ind);
+            System.arraycopy(this.pages, ind, newPages, ind + 1, n - ind);
+            return new Directory(newKeys, newPages);
+        }
+    }
+
+    private static final Directory EMPTY_DIRECTORY = new Directory(new int[0], new long[0][][]);
+
+    /**
+     * Current directory of pages. Only replaced while holding the lock on this set.
+     */
+    private volatile Directory directory = EMPTY_DIRECTORY;
+
+    public ConcurrentMonotonicIntBitSet() {
+        // Pages and chunks are allocated lazily
+    }
+
+    private static int pageKey(int i) {
+        return i >>> LOG_BITS_PER_PAGE;
+    }
+
+    private static int slotInPage(int i) {
+        return (i >>> LOG_BITS_PER_CHUNK) & (CHUNKS_PER_PAGE - 1);
+    }
+
+    private static int wordInChunk(int i) {
+        return (i >>> LOG_BITS_PER_WORD) & (WORDS_PER_CHUNK - 1);
+    }
+
+    /**
+     * Get the page for the key, creating it if needed.
+     */
+    private long[][] ensurePage(int key) {
+        long[][] p = this.directory.pageFor(key);
+        if (p != null) {
+            return p;
+        }
+        synchronized (this) {
+            Directory d = this.directory;
+            p = d.pageFor(key);
+            if (p == null) {
+                p = new long[CHUNKS_PER_PAGE][];
+                this.directory = d.insert(key, p);
+            }
+            return p;
+        }
+    }
+
+    /**
+     * Get the chunk in the given slot of a page, creating it if needed.
+     */
+    private static long[] ensureChunk(long[][] page, int slot) {
+        long[] c = getSlot(page, slot);
+        if (c != null) {
+            return c;
+        }
+        c = new long[WORDS_PER_CHUNK];
+        if (UNSAFE.compareAndSwapObject(page, slotOffset(slot), null, c)) {
+            return c;
+        }
+        // another thread installed the chunk first
+        return getSlot(page, slot);
+    }
+
+    /**
+     * Get the chunk for the element, creating it (and its page) if needed.
+     */
+    private long[] ensureChunk(int i) {
+        return ensureChunk(ensurePage(pageKey(i)), slotInPage(i));
+    }
+
+    private static long[] getSlot(long[][] page, int slot) {
+        return (long[]) UNSAFE.getObjectVolatile(page, slotOffset(slot));
+    }
+
+    /**
+     * Atomically set the given bits in a word of a chunk.
+     *
+     * @return the bits that were set by this call (i.e., were not already set)
+     */
+    private static long orWord(long[] chunk, int word, long bits) {
+        long offset = wordOffset(word);
+        long old;
+        do {
+            old = UNSAFE.getLongVolatile(chunk, offset);
+            if ((old | bits) == old) {
+                // nothing to add
+                return 0L;
+            }
+        } while (!UNSAFE.compareAndSwapLong(chunk, offset, old, old | bits));
+        return bits & ~old;
+    }
+
+    private static long getWord(long[] chunk, int word) {
+        return UNSAFE.getLongVolatile(chunk, wordOffset(word));
+    }
+
+    @Override
+    public boolean add(int i) {
+        assert i >= 0 : "Negative element " + i;
+        return orWord(ensureChunk(i), wordInChunk(i), 1L << i) != 0L;
+    }
+
+    @Override
+    public boolean contains(int i) {
+        if (i < 0) {
+            return false;
+        }
+        long[] c = this.directory.chunkFor(i);
+        return c != null && (getWord(c, wordInChunk(i)) & (1L << i)) != 0L;
+    }
+
+    @Override
+    public boolean addAll(IntSet set) {
+        if (set instanceof ConcurrentMonotonicIntBitSet) {
+            return addAllWords((ConcurrentMonotonicIntBitSet) set, null);
+        }
+        boolean changed = false;
+        IntIterator iter = set.intIterator();
+        while (iter.hasNext()) {
+            if (this.add(iter.next())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Add all the elements of set to this set, and return a new set containing exactly the elements that were added by
+     * this call (i.e., the elements of set that were not already in this set). If set is a
+     * ConcurrentMonotonicIntBitSet then the difference and the union are computed a word at a time.
+     *
+     * @param set elements to add
+     * @return the elements that this call added, never null
+     */
+    public ConcurrentMonotonicIntBitSet addAllAndReturnAdded(IntSet set) {
+        ConcurrentMonotonicIntBitSet added = new ConcurrentMonotonicIntBitSet();
+        if (set instanceof ConcurrentMonotonicIntBitSet) {
+            addAllWords((ConcurrentMonotonicIntBitSet) set, added);
+            return added;
+        }
+        IntIterator iter = set.intIterator();
+        while (iter.hasNext()) {
+            int i = iter.next();
+            if (this.add(i)) {
+                added.add(i);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Word-wise union of other into this set. If added is non-null then the bits that were newly set are also added to
+     * it.
+     *
+     * @return true if this set changed
+     */
+    private boolean addAllWords(ConcurrentMonotonicIntBitSet other, ConcurrentMonotonicIntBitSet added) {
+        boolean changed = false;
+        Directory od = other.directory;
+        for (int j = 0; j < od.keys.length; j++) {
+            long[][] srcPage = od.pages[j];
+            long[][] destPage = null;
+            long[][] addedPage = null;
+            for (int s = 0; s < CHUNKS_PER_PAGE; s++) {
+                long[] src = getSlot(srcPage, s);
+                if (src == null) {
+                    continue;
+                }
+                long[] dest = null;
+                long[] addedChunk = null;
+                for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                    long bits = getWord(src, w);
+                    if (bits == 0L) {
+                        continue;
+                    }
+                    if (dest == null) {
+                        if (destPage == null) {
+                            destPage = ensurePage(od.keys[j]);
+                        }
+                        dest = ensureChunk(destPage, s);
+                    }
+                    long diff = orWord(dest, w, bits);
+                    if (diff != 0L) {
+                        changed = true;
+                        if (added != null) {
+                            if (addedChunk == null) {
+                                if (addedPage == null) {
+                                    addedPage = added.ensurePage(od.keys[j]);
+                                }
+                                addedChunk = ensureChunk(addedPage, s);
+                            }
+                            orWord(addedChunk, w, diff);
+                        }
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Compute the elements of this set that are also in other, a word at a time.
+     *
+     * @param other set to intersect with
+     * @return a new set containing this set intersected with other
+     */
+    public ConcurrentMonotonicIntBitSet and(ConcurrentMonotonicIntBitSet other) {
+        return combineWords(other, false);
+    }
+
+    /**
+     * Compute the elements of this set that are not in other, a word at a time.
+     *
+     * @param other set of elements to exclude
+     * @return a new set containing the elements of this set that are not in other
+     */
+    public ConcurrentMonotonicIntBitSet andNot(ConcurrentMonotonicIntBitSet other) {
+        return combineWords(other, true);
+    }
+
+    /**
+     * Create a new set containing, for each word of this set, the word ANDed with the corresponding word of other (or
+     * its complement if complementOther is true).
+     */
+    private ConcurrentMonotonicIntBitSet combineWords(ConcurrentMonotonicIntBitSet other, boolean complementOther) {
+        ConcurrentMonotonicIntBitSet result = new ConcurrentMonotonicIntBitSet();
+        Directory d = this.directory;
+        Directory od = other.directory;
+        for (int j = 0; j < d.keys.length; j++) {
+            long[][] page = d.pages[j];
+            long[][] otherPage = od.pageFor(d.keys[j]);
+            long[][] resultPage = null;
+            for (int s = 0; s < CHUNKS_PER_PAGE; s++) {
+                long[] c = getSlot(page, s);
+                if (c == null) {
+                    continue;
+                }
+                long[] oc = otherPage == null ? null : getSlot(otherPage, s);
+                long[] resultChunk = null;
+                for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                    long otherBits = oc == null ? 0L : getWord(oc, w);
+                    long bits = getWord(c, w) & (complementOther ? ~otherBits : otherBits);
+                    if (bits == 0L) {
+                        continue;
+                    }
+                    if (resultChunk == null) {
+                        if (resultPage == null) {
+                            resultPage = result.ensurePage(d.keys[j]);
+                        }
+                        resultChunk = ensureChunk(resultPage, s);
+                    }
+                    orWord(resultChunk, w, bits);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        Directory d = this.directory;
+        int count = 0;
+        for (int j = 0; j < d.pages.length; j++) {
+            for (int s = 0; s < CHUNKS_PER_PAGE; s++) {
+                long[] c = getSlot(d.pages[j], s);
+                if (c == null) {
+                    continue;
+                }
+                for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                    count += Long.bitCount(getWord(c, w));
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        Directory d = this.directory;
+        for (int j = 0; j < d.pages.length; j++) {
+            for (int s = 0; s < CHUNKS_PER_PAGE; s++) {
+                long[] c = getSlot(d.pages[j], s);
+                if (c == null) {
+                    continue;
+                }
+                for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                    if (getWord(c, w) != 0L) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int max() {
+        Directory d = this.directory;
+        for (int j = d.pages.length - 1; j >= 0; j--) {
+            for (int s = CHUNKS_PER_PAGE - 1; s >= 0; s--) {
+                long[] c = getSlot(d.pages[j], s);
+                if (c == null) {
+                    continue;
+                }
+                for (int w = WORDS_PER_CHUNK - 1; w >= 0; w--) {
+                    long bits = getWord(c, w);
+                    if (bits != 0L) {
+                        return element(d.keys[j], s, w, Long.SIZE - 1 - Long.numberOfLeadingZeros(bits));
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int element(int key, int slot, int word, int bit) {
+        return (key << LOG_BITS_PER_PAGE) | (slot << LOG_BITS_PER_CHUNK) | (word << LOG_BITS_PER_WORD) | bit;
+    }
+
+    /**
+     * Iterates through the elements in ascending order. The iterator is weakly consistent: elements added in pages
+     * that are created after the iterator was created are not seen, and elements added in other chunks that are created
+     * after the iterator was created may or may not be seen.
+     */
+    @Override
+    public IntIterator intIterator() {
+        return new BitIterator(this.directory);
+    }
+
+    private static final class BitIterator implements IntIterator {
+        private final Directory d;
+        private int pageIndex = 0;
+        private int slot = 0;
+        private int wordIndex = -1;
+        /**
+         * Chunk the current word is in, null if the slot is empty
+         */
+        private long[] chunk = null;
+        /**
+         * Bits of the current word that haven't been returned yet
+         */
+        private long bits = 0L;
+
+        BitIterator(Directory d) {
+            this.d = d;
+            if (d.pages.length > 0) {
+                this.chunk = getSlot(d.pages[0], 0);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.bits == 0L) {
+                this.wordIndex++;
+                if (this.wordIndex == WORDS_PER_CHUNK || this.chunk == null) {
+                    // move to the next slot
+                    this.wordIndex = 0;
+                    this.slot++;
+                    if (this.slot == CHUNKS_PER_PAGE) {
+                        this.slot = 0;
+                        this.pageIndex++;
+                    }
+                    if (this.pageIndex >= this.d.pages.length) {
+                        this.wordIndex = WORDS_PER_CHUNK - 1;
+                        this.chunk = null;
+                        return false;
+                    }
+                    this.chunk = getSlot(this.d.pages[this.pageIndex], this.slot);
+                    if (this.chunk == null) {
+                        continue;
+                    }
+                }
+                this.bits = getWord(this.chunk, this.wordIndex);
+            }
+            return true;
+        }
+
+        @Override
+        public int next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int bit = Long.numberOfTrailingZeros(this.bits);
+            this.bits &= this.bits - 1;
+            return element(this.d.keys[this.pageIndex], this.slot, this.wordIndex, bit);
+        }
+    }
+
+    /* ******************************************************************
+     * Unsafe methods
+     */
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long WORDBASE;
+    private static final int WORDSHIFT;
+    private static final long SLOTBASE;
+    private static final int SLOTSHIFT;
+
+    static {
+        int ws;
+        int ss;
+        try {
+            Field f = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            UNSAFE = (sun.misc.Unsafe) f.get(null);
+            Class<?> wc = long[].class;
+            WORDBASE = UNSAFE.arrayBaseOffset(wc);
+            ws = UNSAFE.arrayIndexScale(wc);
+            Class<?> sc = long[][].class;
+            SLOTBASE = UNSAFE.arrayBaseOffset(sc);
+            ss = UNSAFE.arrayIndexScale(sc);
+        }
+        catch (Exception e) {
+            throw new Error(e);
+        }
+        if ((ws & (ws - 1)) != 0 || (ss & (ss - 1)) != 0) {
+            throw new Error("data type scale not a power of two");
+        }
+        WORDSHIFT = 31 - Integer.numberOfLeadingZeros(ws);
+        SLOTSHIFT = 31 - Integer.numberOfLeadingZeros(ss);
+    }
+
+    private static long wordOffset(int word) {
+        return ((long) word << WORDSHIFT) + WORDBASE;
+    }
+
+    private static long slotOffset(int slot) {
+        return ((long) slot << SLOTSHIFT) + SLOTBASE;
+    }
+
+    /*
+     * Simple and unsupported methods.
+     */
+
+    @Override
+    public boolean containsAny(IntSet set) {
+        IntIterator iter = set.intIterator();
+        while (iter.hasNext()) {
+            if (this.contains(iter.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public IntSet intersection(IntSet that) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IntSet union(IntSet that) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void foreach(IntSetAction action) {
+        IntIterator iter = this.intIterator();
+        while (iter.hasNext()) {
+            action.act(iter.next());
+        }
+    }
+
+    @Override
+    public void foreachExcluding(IntSet X, IntSetAction action) {
+        IntIterator iter = this.intIterator();
+        while (iter.hasNext()) {
+            int i = iter.next();
+            if (!X.contains(i)) {
+                action.act(i);
+            }
+        }
+    }
+
+    @Override
+    public boolean sameValue(IntSet that) {
+        return this.isSubset(that) && that.isSubset(this);
+    }
+
+    @Override
+    public boolean isSubset(IntSet that) {
+        IntIterator iter = this.intIterator();
+        while (iter.hasNext()) {
+            if (!that.contains(iter.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void copySet(IntSet set) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void intersectWith(IntSet set) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAllInIntersection(IntSet other, IntSet filter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(int i) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        IntIterator iter = this.intIterator();
+        while (iter.hasNext()) {
+            sb.append(iter.next());
+            if (iter.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
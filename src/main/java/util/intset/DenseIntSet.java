@@ -128,7 +128,7 @@ public class DenseIntSet implements IntSet {
      */
     @Override
     public final boolean contains(int x) {
-        if (elementBitArray == null) {
+        if (elementBitArray == null || x < 0 || intToBitArrayIndex(x) >= elementBitArray.length) {
             return false;
         }
         return testBit(x);
@@ -216,7 +216,8 @@ public class DenseIntSet implements IntSet {
             int bitIndex = 0;
             int currentInt = elementBitArray[0];
             int currentMask = 1;
-            while (ii <= this.max()) {
+            int max = this.max();
+            while (ii <= max) {
                 if ((currentInt & currentMask) != 0) {
                     sb.append(ii);
                     sb.append(" ");
@@ -224,7 +225,8 @@ public class DenseIntSet implements IntSet {
                 ii++;
                 if (++bitIndex % Integer.SIZE == 0) {
                     bitIndex = 0;
-                    currentInt = elementBitArray[++arrayIndex];
+                    arrayIndex++;
+                    currentInt = arrayIndex < elementBitArray.length ? elementBitArray[arrayIndex] : 0;
                     currentMask = 1;
                 }
                 else {
@@ -268,13 +270,24 @@ public class DenseIntSet implements IntSet {
 
             @Override
             public boolean hasNext() {
-                while (!valid && val <= max()) {
+                if (valid || elementBitArray == null) {
+                    return valid;
+                }
+                int limit = elementBitArray.length * Integer.SIZE;
+                while (val + 1 < limit) {
                     val++;
-                    if (testBit(val)) {
-                        valid = true;
+                    // bits of the current word from val upwards
+                    int bits = elementBitArray[intToBitArrayIndex(val)] >>> intToBitIndex(val);
+                    if (bits == 0) {
+                        // skip to the end of the word
+                        val |= Integer.SIZE - 1;
+                        continue;
                     }
+                    val += Integer.numberOfTrailingZeros(bits);
+                    valid = true;
+                    return true;
                 }
-                return valid;
+                return false;
             }
 
             @Override
@@ -323,14 +336,16 @@ public class DenseIntSet implements IntSet {
             int bitIndex = 0;
             int currentInt = elementBitArray[0];
             int currentMask = 1;
-            while (ii <= this.max()) {
+            int max = this.max();
+            while (ii <= max) {
                 if ((currentInt & currentMask) != 0) {
                     action.act(ii);
                 }
                 ii++;
                 if (++bitIndex % Integer.SIZE == 0) {
                     bitIndex = 0;
-                    currentInt = elementBitArray[++arrayIndex];
+                    arrayIndex++;
+                    currentInt = arrayIndex < elementBitArray.length ? elementBitArray[arrayIndex] : 0;
                     currentMask = 1;
                 }
                 else {
@@ -354,14 +369,16 @@ public class DenseIntSet implements IntSet {
             int bitIndex = 0;
             int currentInt = elementBitArray[0];
             int currentMask = 1;
-            while (ii <= this.max()) {
+            int max = this.max();
+            while (ii <= max) {
                 if ((currentInt & currentMask) != 0 && !X.contains(ii)) {
                     action.act(ii);
                 }
                 ii++;
                 if (++bitIndex % Integer.SIZE == 0) {
                     bitIndex = 0;
-                    currentInt = elementBitArray[++arrayIndex];
+                    arrayIndex++;
+                    currentInt = arrayIndex < elementBitArray.length ? elementBitArray[arrayIndex] : 0;
                     currentMask = 1;
                 }
                 else {
@@ -0,0 +1,163 @@
+package util.intset;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * Hash-consing table for int sets that will no longer be modified. Each set is replaced by a compact canonical set with
+ * the same elements, and sets with the same elements share a single canonical set. The canonical sets are returned as
+ * {@link ReadOnlyIntSet}s, so that one user of a shared set cannot change it for the others.
+ * <p>
+ * Each canonical set is either a sorted array ({@link MutableSparseIntSet}) or a bitmap ({@link MutableDenseIntSet}),
+ * whichever is smaller for the size and maximum element of the set.
+ * <p>
+ * Not thread-safe.
+ */
+public class IntSetInterner {
+    /**
+     * Approximate size (in bytes) of the object headers and fields of a set and its backing array
+     */
+    private static final int SET_OVERHEAD_BYTES = 32;
+    /**
+     * Approximate size (in bytes) of the read-only wrapper around each canonical set
+     */
+    private static final int WRAPPER_BYTES = 16;
+
+    /**
+     * Canonical sets, each also used as its own key
+     */
+    private final Map<Key, ReadOnlyIntSet> canonical = new HashMap<>();
+
+    /**
+     * Number of sets interned
+     */
+    private long numInterned = 0;
+    /**
+     * Number of canonical sets that are bitmaps
+     */
+    private long numBitmaps = 0;
+    /**
+     * Approximate number of bytes it would take to store a separate sorted array for each interned set
+     */
+    private long bytesUnshared = 0;
+    /**
+     * Approximate number of bytes used by the canonical sets
+     */
+    private long bytesShared = 0;
+
+    /**
+     * Get the canonical set with the same elements as s
+     *
+     * @param s non-empty set to intern, which must not be modified while this method runs
+     * @return read-only canonical set with the same elements as s
+     */
+    public ReadOnlyIntSet intern(IntSet s) {
+        assert !s.isEmpty();
+        this.numInterned++;
+        int size = s.size();
+        this.bytesUnshared += sparseBytes(size);
+
+        ReadOnlyIntSet shared = this.canonical.get(new Key(s));
+        if (shared != null) {
+            return shared;
+        }
+
+        int max = s.max();
+        MutableIntSet c;
+        if (denseBytes(max) < sparseBytes(size)) {
+            c = MutableDenseIntSet.createMutableDenseIntSet(max);
+            this.numBitmaps++;
+            this.bytesShared += denseBytes(max);
+        }
+        else {
+            c = MutableSparseIntSet.createMutableSparseIntSet(size);
+            this.bytesShared += sparseBytes(size);
+        }
+        IntIterator iter = s.intIterator();
+        while (iter.hasNext()) {
+            c.add(iter.next());
+        }
+        shared = new ReadOnlyIntSet(c);
+        this.bytesShared += WRAPPER_BYTES;
+        this.canonical.put(new Key(shared), shared);
+        return shared;
+    }
+
+    private static long sparseBytes(int size) {
+        return SET_OVERHEAD_BYTES + 4L * size;
+    }
+
+    private static long denseBytes(int max) {
+        return SET_OVERHEAD_BYTES + 4L * (max / 32 + 1);
+    }
+
+    /**
+     * Approximate number of bytes saved by sharing and encoding the interned sets, compared to a separate sorted array
+     * for each set
+     */
+    public long bytesSaved() {
+        return this.bytesUnshared - this.bytesShared;
+    }
+
+    /**
+     * Print the number of sets interned and the memory saved to standard error
+     *
+     * @param debugName name of the collection of sets
+     */
+    public void printStatistics(String debugName) {
+        System.err.println("   Shared sets for " + debugName + ": " + this.canonical.size() + " distinct out of "
+                + this.numInterned + " (" + this.numBitmaps + " bitmaps), approx " + bytesSaved() / 1000000
+                + "MB saved");
+    }
+
+    /**
+     * Wrapper for a set that compares the elements of the set
+     */
+    private static final class Key {
+        private final IntSet s;
+        private final int hashCode;
+
+        Key(IntSet s) {
+            this.s = s;
+            // Iteration order depends on the kind of set, so combine the elements in an order independent way
+            int h = s.size();
+            IntIterator iter = s.intIterator();
+            while (iter.hasNext()) {
+                int x = iter.next() * 0x9E3779B9;
+                h += x ^ (x >>> 16);
+            }
+            this.hashCode = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (this.hashCode != other.hashCode || this.s.size() != other.s.size()) {
+                return false;
+            }
+            IntIterator iter = this.s.intIterator();
+            while (iter.hasNext()) {
+                if (!other.s.contains(iter.next())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
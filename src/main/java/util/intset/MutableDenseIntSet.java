@@ -90,7 +90,6 @@ public class MutableDenseIntSet extends DenseIntSet implements MutableIntSet {
         if (elementBitArray == null) {
             int maxElem = Math.max(getInitialMaxElement(), value);
             elementBitArray = new int[intToBitArrayIndex(maxElem) + 1];
-            size = 1;
             setBit(value);
             return true;
         }
@@ -147,14 +146,14 @@ public class MutableDenseIntSet extends DenseIntSet implements MutableIntSet {
             throw new IllegalArgumentException("set == null");
         }
         if (set instanceof DenseIntSet) {
-            return addAll(set);
+            return addAll((DenseIntSet) set);
         }
         else {
-            int oldSize = size;
-            int setMax = set.max();
-            if (setMax > this.max()) {
-                extendCapacity(setMax);
+            if (set.isEmpty()) {
+                return false;
             }
+            int oldSize = size;
+            extendCapacity(set.max());
             set.foreach(new IntSetAction() {
                 @Override
                 public void act(int i) {
@@ -170,8 +169,35 @@ public class MutableDenseIntSet extends DenseIntSet implements MutableIntSet {
     }
 
 
+    /**
+     * Add all the elements of another dense set a word at a time
+     *
+     * @return true iff this set changes
+     */
+    private boolean addAll(DenseIntSet set) {
+        int[] other = set.elementBitArray;
+        if (other == null || set.size == 0) {
+            return false;
+        }
+        extendCapacity(other.length * Integer.SIZE - 1);
+        int oldSize = size;
+        for (int i = 0; i < other.length; i++) {
+            int x = this.elementBitArray[i];
+            int y = x | other[i];
+            if (y != x) {
+                this.elementBitArray[i] = y;
+                size += Integer.bitCount(y & ~x);
+            }
+        }
+        return size != oldSize;
+    }
+
     private void extendCapacity(int newMax) {
         int newLength = intToBitArrayIndex(newMax) + 1;
+        if (this.elementBitArray == null) {
+            this.elementBitArray = new int[Math.max(newLength, intToBitArrayIndex(getInitialMaxElement()) + 1)];
+            return;
+        }
         if (newLength <= this.elementBitArray.length) {
             return;
         }
@@ -0,0 +1,152 @@
+package util.intset;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe allocator of zeroed memory outside the Java heap. Memory is carved out of large direct
+ * {@link ByteBuffer}s (slabs) by bumping a pointer, and is never freed individually: it is released when the arena
+ * becomes unreachable and the slabs are garbage collected. The garbage collector only sees one small object per slab,
+ * however much memory is allocated.
+ * <p>
+ * Allocations are addressed by their absolute address, for use with {@link sun.misc.Unsafe}. The total size of the
+ * slabs is limited by the -XX:MaxDirectMemorySize JVM option.
+ */
+public final class OffHeapArena {
+    /**
+     * Size of a slab in bytes
+     */
+    private static final int SLAB_BYTES = 64 << 20;
+
+    /**
+     * Allocations larger than this get their own buffer rather than a part of a slab
+     */
+    private static final int MAX_SLAB_ALLOCATION = SLAB_BYTES >> 4;
+
+    /**
+     * Direct buffers allocated by this arena, kept so that they are not garbage collected. Guarded by this.
+     */
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+
+    /**
+     * Slab that small allocations are currently taken from
+     */
+    private volatile Slab current;
+
+    /**
+     * Total number of bytes in the buffers allocated by this arena
+     */
+    private final AtomicLong reservedBytes = new AtomicLong(0);
+
+    /**
+     * Total number of bytes handed out by this arena
+     */
+    private final AtomicLong allocatedBytes = new AtomicLong(0);
+
+    public OffHeapArena() {
+        this.current = this.newSlab();
+    }
+
+    /**
+     * Part of a slab that has not been allocated yet
+     */
+    private static final class Slab {
+        /**
+         * Address of the first byte of the slab
+         */
+        final long address;
+        /**
+         * Offset of the first byte that has not been allocated
+         */
+        final AtomicLong next = new AtomicLong(0);
+
+        Slab(long address) {
+            this.address = address;
+        }
+    }
+
+    /**
+     * Allocate zeroed memory aligned to 8 bytes
+     *
+     * @param bytes number of bytes to allocate
+     * @return absolute address of the memory
+     */
+    public long allocate(int bytes) {
+        assert bytes > 0;
+        // keep allocations aligned to 8 bytes
+        int size = (bytes + 7) & ~7;
+        this.allocatedBytes.addAndGet(size);
+        if (size > MAX_SLAB_ALLOCATION) {
+            return this.newBuffer(size);
+        }
+        while (true) {
+            Slab s = this.current;
+            long offset = s.next.getAndAdd(size);
+            if (offset + size <= SLAB_BYTES) {
+                return s.address + offset;
+            }
+            synchronized (this) {
+                if (this.current == s) {
+                    // The remainder of the slab is wasted, which is at most MAX_SLAB_ALLOCATION bytes
+                    this.current = this.newSlab();
+                }
+            }
+        }
+    }
+
+    private Slab newSlab() {
+        return new Slab(this.newBuffer(SLAB_BYTES));
+    }
+
+    /**
+     * Allocate a new direct buffer and return its address
+     */
+    private long newBuffer(int bytes) {
+        // allocateDirect zeroes the memory
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes);
+        synchronized (this) {
+            this.buffers.add(buffer);
+        }
+        this.reservedBytes.addAndGet(bytes);
+        return UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+    }
+
+    /**
+     * Total number of bytes handed out by {@link #allocate(int)}
+     */
+    public long allocatedBytes() {
+        return this.allocatedBytes.get();
+    }
+
+    /**
+     * Total number of bytes of direct memory held by this arena
+     */
+    public long reservedBytes() {
+        return this.reservedBytes.get();
+    }
+
+    /* ******************************************************************
+     * Unsafe methods
+     */
+    private static final sun.misc.Unsafe UNSAFE;
+    /**
+     * Offset of the field of a direct buffer holding the address of its memory
+     */
+    private static final long ADDRESS_OFFSET;
+
+    static {
+        try {
+            Field f = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            UNSAFE = (sun.misc.Unsafe) f.get(null);
+            ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        }
+        catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
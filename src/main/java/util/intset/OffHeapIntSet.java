@@ -0,0 +1,461 @@
+package util.intset;
+
+import java.lang.reflect.Field;
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.IntSetAction;
+import com.ibm.wala.util.intset.MutableIntSet;
+
+/**
+ * A concurrent set of non-negative ints whose elements are stored outside the Java heap, in memory from an
+ * {@link OffHeapArena}. This set does not support removal of elements. The Java object is the same size however many
+ * elements the set has, so the garbage collector does not need to trace (or copy) the elements.
+ * <p>
+ * The elements are in an open addressing hash table with linear probing. Each slot holds an element plus one, so that
+ * zero marks an empty slot. Elements are added by a compare and swap on an empty slot, without a lock. When the table
+ * is three quarters full it is copied to a table twice the size while holding the lock on this set. The copy replaces
+ * each empty slot of the old table with a forwarding marker, so an element can only be added to the old table before
+ * the copy reaches its slot, and is then copied. A thread that finds a marker waits for the copy to finish and adds
+ * the element to the new table. So each element is added to exactly one table by exactly one call to add, which is the
+ * only call to return true for it, and an element is always in the current table once add has returned.
+ * <p>
+ * Old tables are not freed (the arena cannot free memory), so the memory used by a set is at most about twice the size
+ * of its current table.
+ */
+public final class OffHeapIntSet implements MutableIntSet {
+    /**
+     * Number of slots in the first table of a set, must be a power of two
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    // Layout of a table: a header followed by the slots
+    private static final long CAPACITY_OFFSET = 0;
+    /**
+     * Number of slots that are used or about to be used
+     */
+    private static final long COUNT_OFFSET = 4;
+    private static final long SLOTS_OFFSET = 16;
+
+    /**
+     * Value of an empty slot of a table that has been copied to a larger table. Never an element plus one.
+     */
+    private static final int FORWARDED = -1;
+
+    // Results of insert
+    private static final int INSERTED = 0;
+    private static final int PRESENT = 1;
+    private static final int FULL = 2;
+    private static final int MOVED = 3;
+
+    private final OffHeapArena arena;
+
+    /**
+     * Address of the current table, or 0 if no element has been added. Only replaced while holding the lock on this
+     * set.
+     */
+    private volatile long table = 0;
+
+    /**
+     * Create a new empty set that will allocate its memory from the arena
+     *
+     * @param arena allocator for the elements
+     */
+    public OffHeapIntSet(OffHeapArena arena) {
+        this.arena = arena;
+    }
+
+    private static int capacity(long t) {
+        return UNSAFE.getInt(null, t + CAPACITY_OFFSET);
+    }
+
+    private static long slot(long t, int index) {
+        return t + SLOTS_OFFSET + 4L * index;
+    }
+
+    private static int firstIndex(int stored, int capacity) {
+        int h = stored * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+
+    private long allocateTable(int capacity) {
+        long t = this.arena.allocate((int) SLOTS_OFFSET + 4 * capacity);
+        UNSAFE.putInt(null, t + CAPACITY_OFFSET, capacity);
+        return t;
+    }
+
+    @Override
+    public boolean add(int i) {
+        assert i >= 0 : "Negative element " + i;
+        int stored = i + 1;
+        long t = this.table;
+        while (true) {
+            if (t == 0) {
+                t = this.createFirstTable();
+            }
+            int result = insert(t, stored);
+            if (result == FULL) {
+                t = this.resize(t);
+            }
+            else if (result == MOVED) {
+                t = this.currentTableAfterMove();
+            }
+            else {
+                // An element inserted into a table that is being copied is in the part not yet copied
+                return result == INSERTED;
+            }
+        }
+    }
+
+    private long createFirstTable() {
+        synchronized (this) {
+            if (this.table == 0) {
+                this.table = this.allocateTable(INITIAL_CAPACITY);
+            }
+            return this.table;
+        }
+    }
+
+    /**
+     * Try to insert into the table at address t
+     *
+     * @return INSERTED, PRESENT, FULL, or MOVED if the table is being copied to a larger table
+     */
+    private static int insert(long t, int stored) {
+        int capacity = capacity(t);
+        int index = firstIndex(stored, capacity);
+        for (int probes = 0; probes < capacity; probes++) {
+            long slot = slot(t, index);
+            int v = UNSAFE.getIntVolatile(null, slot);
+            if (v == stored) {
+                return PRESENT;
+            }
+            if (v == FORWARDED) {
+                return MOVED;
+            }
+            if (v == 0) {
+                if (!reserveSlot(t, capacity)) {
+                    return FULL;
+                }
+                if (UNSAFE.compareAndSwapInt(null, slot, 0, stored)) {
+                    return INSERTED;
+                }
+                releaseSlot(t);
+                v = UNSAFE.getIntVolatile(null, slot);
+                if (v == stored) {
+                    return PRESENT;
+                }
+                if (v == FORWARDED) {
+                    return MOVED;
+                }
+                // another element took the slot, keep probing
+            }
+            index = (index + 1) & (capacity - 1);
+        }
+        return FULL;
+    }
+
+    /**
+     * Count a slot as used, unless the table is three quarters full
+     */
+    private static boolean reserveSlot(long t, int capacity) {
+        int limit = capacity - (capacity >> 2);
+        while (true) {
+            int count = UNSAFE.getIntVolatile(null, t + COUNT_OFFSET);
+            if (count >= limit) {
+                return false;
+            }
+            if (UNSAFE.compareAndSwapInt(null, t + COUNT_OFFSET, count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static void releaseSlot(long t) {
+        while (true) {
+            int count = UNSAFE.getIntVolatile(null, t + COUNT_OFFSET);
+            if (UNSAFE.compareAndSwapInt(null, t + COUNT_OFFSET, count, count - 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replace the table at address t with a table twice the size, unless it has already been replaced
+     *
+     * @return address of the current table
+     */
+    private long resize(long t) {
+        synchronized (this) {
+            if (this.table != t) {
+                return this.table;
+            }
+            int capacity = capacity(t);
+            long newTable = this.allocateTable(2 * capacity);
+            int count = 0;
+            for (int j = 0; j < capacity; j++) {
+                // Forward an empty slot, or copy the element that was added to it first
+                long slot = slot(t, j);
+                int v;
+                do {
+                    v = UNSAFE.getIntVolatile(null, slot);
+                } while (v == 0 && !UNSAFE.compareAndSwapInt(null, slot, 0, FORWARDED));
+                if (v != 0) {
+                    // no other thread can see the new table yet, so no need for a compare and swap
+                    int index = firstIndex(v, 2 * capacity);
+                    while (UNSAFE.getInt(null, slot(newTable, index)) != 0) {
+                        index = (index + 1) & (2 * capacity - 1);
+                    }
+                    UNSAFE.putInt(null, slot(newTable, index), v);
+                    count++;
+                }
+            }
+            UNSAFE.putInt(null, newTable + COUNT_OFFSET, count);
+            this.table = newTable;
+            return newTable;
+        }
+    }
+
+    /**
+     * Wait for a resize in progress to finish
+     */
+    private long currentTableAfterMove() {
+        // the table is copied and replaced while holding the lock
+        synchronized (this) {
+            return this.table;
+        }
+    }
+
+    @Override
+    public boolean contains(int i) {
+        long t = this.table;
+        if (i < 0 || t == 0) {
+            return false;
+        }
+        int stored = i + 1;
+        int capacity = capacity(t);
+        int index = firstIndex(stored, capacity);
+        for (int probes = 0; probes < capacity; probes++) {
+            int v = UNSAFE.getIntVolatile(null, slot(t, index));
+            if (v == stored) {
+                return true;
+            }
+            if (v == 0 || v == FORWARDED) {
+                // An element is always before the first slot that was empty when it was added
+                return false;
+            }
+            index = (index + 1) & (capacity - 1);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean addAll(IntSet set) {
+        boolean changed = false;
+        IntIterator iter = set.intIterator();
+        while (iter.hasNext()) {
+            if (this.add(iter.next())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public int size() {
+        long t = this.table;
+        if (t == 0) {
+            return 0;
+        }
+        int capacity = capacity(t);
+        int count = 0;
+        for (int j = 0; j < capacity; j++) {
+            int v = UNSAFE.getIntVolatile(null, slot(t, j));
+            if (v != 0 && v != FORWARDED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !this.intIterator().hasNext();
+    }
+
+    @Override
+    public int max() {
+        int max = -1;
+        IntIterator iter = this.intIterator();
+        while (iter.hasNext()) {
+            max = Math.max(max, iter.next());
+        }
+        return max;
+    }
+
+    /**
+     * Iterates through the elements in no particular order. The iterator is weakly consistent: it iterates over the
+     * table that was current when it was created, and may or may not see elements added after that.
+     */
+    @Override
+    public IntIterator intIterator() {
+        return new TableIterator(this.table);
+    }
+
+    private static final class TableIterator implements IntIterator {
+        private final long t;
+        private final int capacity;
+        private int index = -1;
+        /**
+         * Next element plus one, or 0 if the next element has not been found yet
+         */
+        private int next = 0;
+
+        TableIterator(long t) {
+            this.t = t;
+            this.capacity = t == 0 ? 0 : capacity(t);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.next == 0) {
+                this.index++;
+                if (this.index >= this.capacity) {
+                    this.index = this.capacity;
+                    return false;
+                }
+                this.next = UNSAFE.getIntVolatile(null, slot(this.t, this.index));
+                if (this.next == FORWARDED) {
+                    this.next = 0;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int result = this.next - 1;
+            this.next = 0;
+            return result;
+        }
+    }
+
+    /* ******************************************************************
+     * Unsafe methods
+     */
+    private static final sun.misc.Unsafe UNSAFE;
+
+    static {
+        try {
+            Field f = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            UNSAFE = (sun.misc.Unsafe) f.get(null);
+        }
+        catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    /*
+     * Simple and unsupported methods.
+     */
+
+    @Override
+    public boolean containsAny(IntSet set) {
+        IntIterator iter = set.intIterator();
+        while (iter.hasNext()) {
+            if (this.contains(iter.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public IntSet intersection(IntSet that) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IntSet union(IntSet that) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void foreach(IntSetAction action) {
+        IntIterator iter = this.intIterator();
+        while (iter.hasNext()) {
+            action.act(iter.next());
+        }
+    }
+
+    @Override
+    public void foreachExcluding(IntSet X, IntSetAction action) {
+        IntIterator iter = this.intIterator();
+        while (iter.hasNext()) {
+            int i = iter.next();
+            if (!X.contains(i)) {
+                action.act(i);
+            }
+        }
+    }
+
+    @Override
+    public boolean sameValue(IntSet that) {
+        return this.isSubset(that) && that.isSubset(this);
+    }
+
+    @Override
+    public boolean isSubset(IntSet that) {
+        IntIterator iter = this.intIterator();
+        while (iter.hasNext()) {
+            if (!that.contains(iter.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void copySet(IntSet set) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void intersectWith(IntSet set) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAllInIntersection(IntSet other, IntSet filter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(int i) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        IntIterator iter = this.intIterator();
+        while (iter.hasNext()) {
+            sb.append(iter.next());
+            if (iter.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package util.intset;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.IntSetAction;
+import com.ibm.wala.util.intset.MutableIntSet;
+
+/**
+ * Read-only view of a set of integers with the {@link MutableIntSet} interface. Methods that would modify the set
+ * throw {@link UnsupportedOperationException}.
+ */
+public class ReadOnlyIntSet implements MutableIntSet {
+
+    /**
+     * Underlying set
+     */
+    private final IntSet s;
+
+    /**
+     * Read-only view of the given set, the set can still be modified through other references to it
+     *
+     * @param s underlying set
+     */
+    public ReadOnlyIntSet(IntSet s) {
+        assert s != null;
+        this.s = s;
+    }
+
+    @Override
+    public boolean contains(int i) {
+        return s.contains(i);
+    }
+
+    @Override
+    public boolean containsAny(IntSet set) {
+        return s.containsAny(set);
+    }
+
+    @Override
+    public IntSet intersection(IntSet that) {
+        return s.intersection(that);
+    }
+
+    @Override
+    public IntSet union(IntSet that) {
+        return s.union(that);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return s.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return s.size();
+    }
+
+    @Override
+    public IntIterator intIterator() {
+        return s.intIterator();
+    }
+
+    @Override
+    public void foreach(IntSetAction action) {
+        s.foreach(action);
+    }
+
+    @Override
+    public void foreachExcluding(IntSet X, IntSetAction action) {
+        s.foreachExcluding(X, action);
+    }
+
+    @Override
+    public int max() {
+        return s.max();
+    }
+
+    @Override
+    public boolean sameValue(IntSet that) {
+        return s.sameValue(that);
+    }
+
+    @Override
+    public boolean isSubset(IntSet that) {
+        return s.isSubset(that);
+    }
+
+    @Override
+    public void copySet(IntSet set) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(IntSet set) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean add(int i) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(int i) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void intersectWith(IntSet set) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAllInIntersection(IntSet other, IntSet filter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString() {
+        return s.toString();
+    }
+}
@@ -62,15 +62,15 @@ public class PrettyPrinter {
     /**
      * canonical copies of strings
      */
-    private static final Map<String, String> stringMemo = new HashMap<>();
+    private static final Map<String, String> stringMemo = AnalysisUtil.createConcurrentHashMap();
     /**
      * Map from type to pretty printed name
      */
-    private static final Map<TypeReference, String> typeMemo = new HashMap<>();
+    private static final Map<TypeReference, String> typeMemo = AnalysisUtil.createConcurrentHashMap();
     /**
      * Map from method to pretty printed name
      */
-    private static final Map<MethodReference, String> methodMemo = new HashMap<>();
+    private static final Map<MethodReference, String> methodMemo = AnalysisUtil.createConcurrentHashMap();
 
     /**
      * Map from local variable IDs to names
@@ -0,0 +1,105 @@
+package analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+import analysis.pointer.registrar.StatementRegistrationPass;
+import analysis.pointer.statements.StatementFactory;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ssa.IR;
+
+/**
+ * Build the IR for the methods of a test program on several threads at once with the concurrent IR cache (see
+ * {@link AnalysisUtil#useConcurrentIRCache()}), in which WALA's IR factory is called without a lock
+ */
+public class TestConcurrentIRCache extends TestCase {
+
+    private static final int NUM_THREADS = 8;
+
+    public static void testSameIR() throws ClassHierarchyException, IOException, InterruptedException {
+        AnalysisUtil.init("target/test-classes:target/classes/signatures",
+                          "test.pointer.NewAndCall",
+                          "tests/",
+                          NUM_THREADS,
+                          false,
+                          false);
+        StatementRegistrationPass pass = new StatementRegistrationPass(new StatementFactory(),
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       true);
+        pass.run();
+
+        // IR built one method at a time by WALA's SSA cache
+        final List<IMethod> methods = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        for (IMethod m : pass.getRegistrar().getRegisteredMethods()) {
+            if (m.isNative() || m.isAbstract() || AnalysisUtil.hasSignature(m)) {
+                continue;
+            }
+            IR ir = AnalysisUtil.getCache()
+                                .getSSACache()
+                                .findOrCreateIR(m, Everywhere.EVERYWHERE, AnalysisUtil.getOptions().getSSAOptions());
+            methods.add(m);
+            expected.add(Arrays.toString(ir.getInstructions()));
+        }
+        assertFalse(methods.isEmpty());
+
+        // The concurrent cache is empty after AnalysisUtil.init, so the threads below build the IR for every method
+        AnalysisUtil.useConcurrentIRCache();
+        // The IR each method got, every thread should get the same one
+        final ConcurrentMap<IMethod, IR> seen = new ConcurrentHashMap<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(NUM_THREADS);
+        for (int t = 0; t < NUM_THREADS; t++) {
+            final long seed = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        List<Integer> order = new ArrayList<>();
+                        for (int i = 0; i < methods.size(); i++) {
+                            order.add(i);
+                        }
+                        Collections.shuffle(order, new Random(seed));
+                        start.await();
+                        for (int i : order) {
+                            IR ir = AnalysisUtil.getIR(methods.get(i));
+                            IR existing = seen.putIfAbsent(methods.get(i), ir);
+                            assertTrue(existing == null || existing == ir);
+                            assertEquals(expected.get(i), Arrays.toString(ir.getInstructions()));
+                        }
+                    }
+                    catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(methods.size(), seen.size());
+    }
+}
@@ -0,0 +1,51 @@
+package analysis;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.types.Selector;
+import com.ibm.wala.types.TypeReference;
+
+/**
+ * Test the cache of virtual dispatch results, {@link DispatchCache}
+ */
+public class TestDispatchCache extends TestCase {
+
+    public static void testHitsAndMisses() throws ClassHierarchyException, IOException {
+        AnalysisUtil.init("target/test-classes:target/classes/signatures",
+                          "test.pointer.NewAndCall",
+                          "tests/",
+                          1,
+                          false,
+                          false);
+        DispatchCache.clear();
+        IClass object = AnalysisUtil.getClassHierarchy().lookupClass(TypeReference.JavaLangObject);
+        assertNotNull(object);
+        Selector toString = Selector.make("toString()Ljava/lang/String;");
+        Selector missing = Selector.make("noSuchMethod()V");
+
+        IMethod m = DispatchCache.resolveMethod(object, toString);
+        assertNotNull(m);
+        assertEquals(1, DispatchCache.numLockedLookups());
+        assertSame(m, DispatchCache.resolveMethod(object, toString));
+        assertEquals(1, DispatchCache.numLockedLookups());
+
+        // A selector that does not resolve is cached too
+        assertNull(DispatchCache.resolveMethod(object, missing));
+        assertEquals(2, DispatchCache.numLockedLookups());
+        assertNull(DispatchCache.resolveMethod(object, missing));
+        assertEquals(2, DispatchCache.numLockedLookups());
+
+        // Prewarming does not resolve a selector again, whether or not it resolved
+        DispatchCache.clear();
+        DispatchCache.prewarm(object, missing);
+        DispatchCache.prewarm(object, toString);
+        assertNull(DispatchCache.resolveMethod(object, missing));
+        assertSame(m, DispatchCache.resolveMethod(object, toString));
+        assertEquals(0, DispatchCache.numLockedLookups());
+    }
+}
@@ -0,0 +1,167 @@
+package analysis.dataflow.interprocedural;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import analysis.AnalysisUtil;
+import analysis.dataflow.interprocedural.exceptions.PreciseExceptionInterproceduralDataFlow;
+import analysis.dataflow.interprocedural.exceptions.PreciseExceptionResults;
+import analysis.dataflow.interprocedural.nonnull.NonNullInterProceduralDataFlow;
+import analysis.dataflow.interprocedural.nonnull.NonNullResults;
+import analysis.dataflow.interprocedural.reachability.ReachabilityInterProceduralDataFlow;
+import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.engine.PointsToAnalysisSingleThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.ReferenceVariableCache;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.registrar.StatementRegistrationPass;
+import analysis.pointer.statements.StatementFactory;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.ISSABasicBlock;
+import com.ibm.wala.ssa.SSACFG;
+
+/**
+ * Test reading and writing the {@link SummaryStore}, and that the results of the inter-procedural analyses are the
+ * same whether or not they use summaries
+ */
+public class TestSummaryStore extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.NewAndCall", "test.pointer.ExceptionalReturn",
+            "test.pointer.TryCallCatch", "test.pointer.ThrowCatch" };
+
+    private static Map<ExitType, String> output(String normal, String exceptional) {
+        Map<ExitType, String> output = new EnumMap<>(ExitType.class);
+        output.put(ExitType.NORMAL, normal);
+        output.put(ExitType.EXCEPTIONAL, exceptional);
+        return output;
+    }
+
+    public static void testWriteAndRead() throws IOException {
+        File file = File.createTempFile("summaries", ".txt");
+        assertTrue(file.delete());
+        try {
+            SummaryStore.enable(file);
+            SummaryStore store = SummaryStore.getInstance();
+            assertEquals(0, store.size());
+
+            Map<String, Map<ExitType, String>> summaries = new HashMap<>();
+            summaries.put("A\tm1\tContext\tREACHABLE", output("REACHABLE", "UNREACHABLE"));
+            summaries.put("A\tm2\tContext\tREACHABLE", output("UNREACHABLE", "REACHABLE"));
+            summaries.put("B\tm1\tContext\t", output("", "Primordial:Ljava/lang/Error"));
+            store.putAll(summaries);
+            store.remove("A\tm2\tContext\tREACHABLE");
+            store.write();
+
+            // A badly formed line is skipped
+            try (FileWriter out = new FileWriter(file, true)) {
+                out.write("A\tm3\tREACHABLE\n");
+            }
+
+            SummaryStore.enable(file);
+            SummaryStore read = SummaryStore.getInstance();
+            assertNotSame(store, read);
+            assertEquals(2, read.size());
+            assertEquals(output("REACHABLE", "UNREACHABLE"), read.get("A\tm1\tContext\tREACHABLE"));
+            assertEquals(output("", "Primordial:Ljava/lang/Error"), read.get("B\tm1\tContext\t"));
+            assertNull(read.get("A\tm2\tContext\tREACHABLE"));
+            assertNull(read.get("A\tm3\tREACHABLE"));
+
+            SummaryStore.disable();
+            assertNull(SummaryStore.getInstance());
+        }
+        finally {
+            SummaryStore.disable();
+            file.delete();
+        }
+    }
+
+    /**
+     * Run the reachability, non-null and precise exceptions analyses and describe the reachability and exceptions for
+     * every edge of every call graph node, in the order of the call graph
+     */
+    private static List<String> runAnalyses(PointsToGraph g, ReferenceVariableCache rvCache) {
+        ReachabilityInterProceduralDataFlow reachability = new ReachabilityInterProceduralDataFlow(g, rvCache, null);
+        reachability.runAnalysis();
+        ReachabilityResults r = reachability.getAnalysisResults();
+        NonNullInterProceduralDataFlow nonNull = new NonNullInterProceduralDataFlow(g, r, rvCache);
+        nonNull.runAnalysis();
+        NonNullResults nn = nonNull.getAnalysisResults();
+        PreciseExceptionInterproceduralDataFlow exceptions = new PreciseExceptionInterproceduralDataFlow(g,
+                                                                                                         nn,
+                                                                                                         r,
+                                                                                                         rvCache);
+        exceptions.runAnalysis();
+        PreciseExceptionResults ex = exceptions.getAnalysisResults();
+
+        List<String> results = new ArrayList<>();
+        for (CGNode n : g.getCallGraph()) {
+            IR ir = n.getIR();
+            if (ir == null) {
+                continue;
+            }
+            SSACFG cfg = ir.getControlFlowGraph();
+            for (ISSABasicBlock bb : cfg) {
+                for (ISSABasicBlock succ : cfg.getNormalSuccessors(bb)) {
+                    results.add(n + " " + bb.getNumber() + " -> " + succ.getNumber() + " "
+                            + r.isUnreachable(bb, succ, n));
+                }
+                for (ISSABasicBlock succ : cfg.getExceptionalSuccessors(bb)) {
+                    results.add(n + " " + bb.getNumber() + " -ex-> " + succ.getNumber() + " "
+                            + r.isUnreachable(bb, succ, n) + " " + ex.getExceptions(bb, succ, n));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The results are the same without the store, with an empty store, and with the summaries written by the previous
+     * run
+     */
+    public static void testSameResults() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            AnalysisUtil.init("target/test-classes:target/classes/signatures", test, "tests/", 1, false, false);
+            StatementRegistrationPass pass = new StatementRegistrationPass(new StatementFactory(),
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           true);
+            pass.run();
+            StatementRegistrar registrar = pass.getRegistrar();
+            PointsToGraph g = new PointsToAnalysisSingleThreaded(new ContextInsensitive()).solve(registrar);
+
+            List<String> expected = runAnalyses(g, registrar.getRvCache());
+            assertFalse(test, expected.isEmpty());
+
+            File file = File.createTempFile("summaries", ".txt");
+            assertTrue(file.delete());
+            try {
+                SummaryStore.enable(file);
+                assertEquals(test, expected, runAnalyses(g, registrar.getRvCache()));
+                assertTrue(test, file.exists());
+
+                SummaryStore.enable(file);
+                assertTrue(test, SummaryStore.getInstance().size() > 0);
+                assertEquals(test, expected, runAnalyses(g, registrar.getRvCache()));
+            }
+            finally {
+                SummaryStore.disable();
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package analysis.pointer.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.ibm.wala.util.intset.IntIterator;
+
+/**
+ * Test the index of dependencies used by the multi-threaded points-to analysis, {@link DependencyIndex}
+ */
+public class TestDependencyIndex extends TestCase {
+
+    private static List<Integer> snapshot(DependencyIndex index, int n) {
+        List<Integer> ids = new ArrayList<>();
+        IntIterator iter = index.dependentIdIterator(n);
+        while (iter.hasNext()) {
+            ids.add(iter.next());
+        }
+        return ids;
+    }
+
+    public static void testAddAndSnapshot() {
+        DependencyIndex index = new DependencyIndex(1);
+        assertFalse(index.dependentIdIterator(3).hasNext());
+
+        // enough elements to use the hash table rather than a linear scan
+        for (int i = 0; i < 100; i++) {
+            assertTrue(index.add(3, i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertFalse(index.add(3, i));
+        }
+        IntIterator before = index.dependentIdIterator(3);
+        assertTrue(index.add(3, 100));
+        int count = 0;
+        while (before.hasNext()) {
+            assertEquals(count, before.next());
+            count++;
+        }
+        assertEquals(100, count);
+        assertEquals(101, snapshot(index, 3).size());
+        assertFalse(index.dependentIdIterator(4).hasNext());
+
+        index.copyDependents(3, 4);
+        assertEquals(snapshot(index, 3), snapshot(index, 4));
+    }
+
+    /**
+     * Several threads add the same dependencies in different orders while others take snapshots. Each dependency must
+     * be reported as new exactly once, and no snapshot may contain a duplicate or lose an element seen by an earlier
+     * snapshot.
+     */
+    public static void testConcurrentAddAndSnapshot() throws InterruptedException {
+        final int numNodes = 4;
+        final int numIds = 2000;
+        final int numWriters = 4;
+        final int numReaders = 2;
+        final DependencyIndex index = new DependencyIndex(numWriters + numReaders);
+        final AtomicInteger inserted = new AtomicInteger();
+        final AtomicBoolean writersDone = new AtomicBoolean();
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < numWriters; t++) {
+            final List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < numIds; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, new Random(t));
+            writers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int id : order) {
+                        for (int n = 0; n < numNodes; n++) {
+                            if (index.add(n, id)) {
+                                inserted.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < numReaders; t++) {
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    int[] lastSize = new int[numNodes];
+                    while (!writersDone.get()) {
+                        for (int n = 0; n < numNodes; n++) {
+                            boolean[] seen = new boolean[numIds];
+                            int size = 0;
+                            IntIterator iter = index.dependentIdIterator(n);
+                            while (iter.hasNext()) {
+                                int id = iter.next();
+                                if (seen[id]) {
+                                    failures.add("duplicate " + id + " in node " + n);
+                                }
+                                seen[id] = true;
+                                size++;
+                            }
+                            if (size < lastSize[n]) {
+                                failures.add("snapshot of node " + n + " shrank from " + lastSize[n] + " to " + size);
+                            }
+                            lastSize[n] = size;
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Thread t : writers) {
+            t.start();
+        }
+        for (Thread t : readers) {
+            t.start();
+        }
+        start.countDown();
+        for (Thread t : writers) {
+            t.join();
+        }
+        writersDone.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+
+        assertEquals(failures.toString(), 0, failures.size());
+        assertEquals(numNodes * numIds, inserted.get());
+        for (int n = 0; n < numNodes; n++) {
+            List<Integer> ids = snapshot(index, n);
+            Collections.sort(ids);
+            assertEquals(numIds, ids.size());
+            for (int i = 0; i < numIds; i++) {
+                assertEquals(i, (int) ids.get(i));
+            }
+        }
+    }
+
+    /**
+     * A dependency reported as already present, including one found without the lock in the hash table of a node
+     * with many dependents, must already be visible to the threads that iterate over the dependents
+     */
+    public static void testExistingDependencyIsVisible() throws InterruptedException {
+        final int numIds = 1000;
+        final int numWriters = 4;
+        final DependencyIndex index = new DependencyIndex(numWriters);
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < numWriters; t++) {
+            final List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < numIds; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, new Random(t));
+            writers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int round = 0; round < 2; round++) {
+                        for (int id : order) {
+                            if (!index.add(0, id) && !snapshot(index, 0).contains(id)) {
+                                failures.add(id + " reported as present but not visible");
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread t : writers) {
+            t.start();
+        }
+        start.countDown();
+        for (Thread t : writers) {
+            t.join();
+        }
+        assertEquals(failures.toString(), 0, failures.size());
+        assertEquals(numIds, snapshot(index, 0).size());
+    }
+}
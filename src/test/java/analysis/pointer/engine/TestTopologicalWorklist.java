@@ -0,0 +1,83 @@
+package analysis.pointer.engine;
+
+import junit.framework.TestCase;
+import analysis.pointer.engine.PointsToAnalysis.StmtAndContext;
+
+/**
+ * Test the order in which the {@link TopologicalWorklist} returns (statement, context) pairs
+ */
+public class TestTopologicalWorklist extends TestCase {
+
+    /**
+     * Add a distinct pair for each node, in the given order
+     */
+    private static StmtAndContext[] addEntries(TopologicalWorklist w, int numNodes, int... nodes) {
+        StmtAndContext[] sacs = new StmtAndContext[numNodes];
+        for (int n : nodes) {
+            sacs[n] = new StmtAndContext(null, null);
+            w.add(sacs[n], null, n);
+        }
+        return sacs;
+    }
+
+    /**
+     * Check that the pairs come out in the order of the nodes that triggered them
+     */
+    private static void assertPolls(TopologicalWorklist w, StmtAndContext[] sacs, int... expectedNodes) {
+        for (int n : expectedNodes) {
+            assertFalse(w.isEmpty());
+            assertSame("expected the pair for node " + n, sacs[n], w.poll().fst());
+        }
+        assertTrue(w.isEmpty());
+        assertNull(w.poll());
+    }
+
+    public static void testOrderAfterSubsetEdges() {
+        TopologicalWorklist w = new TopologicalWorklist();
+        // 0 -> 1 -> 2 -> 3, with node 2000 beyond the initial array
+        w.recordSubsetEdge(0, 1);
+        w.recordSubsetEdge(1, 2);
+        w.recordSubsetEdge(2, 3);
+        w.recordSubsetEdge(3, 2000);
+        // already in order, no repair needed
+        w.recordSubsetEdge(0, 3);
+
+        StmtAndContext[] sacs = addEntries(w, 2001, 3, 2000, 1, 2, 0);
+        assertEquals(5, w.size());
+        assertPolls(w, sacs, 0, 1, 2, 3, 2000);
+    }
+
+    public static void testSamePositionIsLifo() {
+        TopologicalWorklist w = new TopologicalWorklist();
+        w.recordSubsetEdge(0, 1);
+        // 2 and 3 are both unordered, at the same position as 0
+        StmtAndContext[] sacs = addEntries(w, 4, 1, 2, 0, 3);
+        assertPolls(w, sacs, 3, 0, 2, 1);
+    }
+
+    public static void testOrderAfterRefresh() {
+        TopologicalWorklist w = new TopologicalWorklist();
+        // Recording the chain 0 -> 1 -> 2 backwards leaves 1 and 2 at the same position
+        w.recordSubsetEdge(1, 2);
+        w.recordSubsetEdge(0, 1);
+        assertFalse(w.needsRefresh());
+
+        // Enough out of order edges, between other nodes, to recompute the order
+        for (int i = 10; !w.needsRefresh(); i += 2) {
+            w.recordSubsetEdge(i, i + 1);
+        }
+
+        // The order a points-to graph would compute for the chain, with nodes from 3 onwards unordered
+        w.refresh(new int[] { 0, 1, 2 });
+        assertFalse(w.needsRefresh());
+
+        // Without the recomputation, the pair for 2 would come out before the pair for 1
+        StmtAndContext[] sacs = addEntries(w, 5, 1, 2, 0);
+        assertPolls(w, sacs, 0, 1, 2);
+
+        // Edges recorded after the recomputation still repair the order
+        w.recordSubsetEdge(2, 4);
+        sacs = addEntries(w, 5, 2, 4, 0, 1);
+        assertPolls(w, sacs, 0, 1, 2, 4);
+    }
+}
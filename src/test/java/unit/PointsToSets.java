@@ -0,0 +1,91 @@
+package unit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import analysis.AnalysisUtil;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.ReferenceVariableReplica;
+import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.registrar.StatementRegistrationPass;
+import analysis.pointer.statements.PointsToStatement;
+import analysis.pointer.statements.StatementFactory;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+
+/**
+ * Helpers for tests that compare the points-to graphs computed by different configurations of the points-to analysis
+ */
+class PointsToSets {
+
+    private PointsToSets() {
+        // only static methods
+    }
+
+    /**
+     * Initialize the analysis for the given test program and register its points-to statements
+     *
+     * @param testName fully qualified name of the class with the main method
+     * @param numThreads number of threads the analysis may use
+     * @return registrar holding the statements
+     */
+    static StatementRegistrar register(String testName, int numThreads) throws ClassHierarchyException, IOException {
+        AnalysisUtil.init("target/test-classes:target/classes/signatures",
+                          testName,
+                          "tests/",
+                          numThreads,
+                          false,
+                          false);
+        StatementRegistrationPass pass = new StatementRegistrationPass(new StatementFactory(),
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       true);
+        pass.run();
+        return pass.getRegistrar();
+    }
+
+    /**
+     * Describe the points-to set of the variable defined by each statement, in each context of its method. The
+     * descriptions are sorted so that graphs computed in different orders can be compared.
+     *
+     * @param g finished points-to graph
+     * @param registrar registrar holding the statements the graph was computed from
+     * @return one string per variable and context, sorted
+     */
+    static List<String> describe(PointsToGraph g, StatementRegistrar registrar) {
+        List<String> results = new ArrayList<>();
+        for (IMethod m : registrar.getRegisteredMethods()) {
+            for (Context c : g.getContexts(m)) {
+                for (PointsToStatement s : registrar.getStatementsForMethod(m)) {
+                    ReferenceVariable rv = s.getDef();
+                    if (rv == null) {
+                        continue;
+                    }
+                    List<String> pointsTo = new ArrayList<>();
+                    Iterator<InstanceKey> iter = g.pointsToIterator(new ReferenceVariableReplica(c, rv, g.getHaf()));
+                    while (iter.hasNext()) {
+                        String ik = iter.next().toString();
+                        if (!pointsTo.contains(ik)) {
+                            pointsTo.add(ik);
+                        }
+                    }
+                    Collections.sort(pointsTo);
+                    results.add(m + " " + c + " " + rv + " " + pointsTo);
+                }
+            }
+        }
+        Collections.sort(results);
+        return results;
+    }
+}
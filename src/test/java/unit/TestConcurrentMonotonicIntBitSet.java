@@ -0,0 +1,187 @@
+package unit;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+import util.intset.ConcurrentMonotonicIntBitSet;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * Test the bit set used to represent points-to sets, {@link ConcurrentMonotonicIntBitSet}
+ */
+public class TestConcurrentMonotonicIntBitSet extends TestCase {
+
+    public static void testAddContains() {
+        ConcurrentMonotonicIntBitSet s = new ConcurrentMonotonicIntBitSet();
+        assertTrue(s.isEmpty());
+        assertEquals(-1, s.max());
+
+        assertTrue(s.add(0));
+        assertTrue(s.add(63));
+        assertTrue(s.add(64));
+        assertTrue(s.add(100000));
+        assertTrue(s.add(511));
+        assertTrue(s.add(512));
+        assertFalse(s.add(64));
+
+        assertEquals(6, s.size());
+        assertEquals(100000, s.max());
+        assertTrue(s.contains(511));
+        assertFalse(s.contains(1));
+        assertFalse(s.contains(99999));
+        assertFalse(s.contains(-1));
+    }
+
+    public static void testIteratorAscending() {
+        ConcurrentMonotonicIntBitSet s = new ConcurrentMonotonicIntBitSet();
+        TreeSet<Integer> mirror = new TreeSet<>();
+        Random r = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            int x = r.nextInt(200000);
+            assertEquals(mirror.add(x), s.add(x));
+        }
+
+        IntIterator iter = s.intIterator();
+        for (Integer expected : mirror) {
+            assertTrue(iter.hasNext());
+            assertEquals(expected.intValue(), iter.next());
+        }
+        assertFalse(iter.hasNext());
+        assertEquals(mirror.size(), s.size());
+        assertEquals(mirror.last().intValue(), s.max());
+    }
+
+    /**
+     * One element per chunk, added in descending order so that every new page goes to the front of the directory and
+     * every new chunk goes to the front of its page
+     */
+    public static void testSparseDescending() {
+        ConcurrentMonotonicIntBitSet s = new ConcurrentMonotonicIntBitSet();
+        int n = 20000;
+        for (int k = n - 1; k >= 0; k--) {
+            assertTrue(s.add(k * 512 + k % 512));
+        }
+        assertEquals(n, s.size());
+        assertEquals((n - 1) * 512 + (n - 1) % 512, s.max());
+        IntIterator iter = s.intIterator();
+        for (int k = 0; k < n; k++) {
+            assertTrue(iter.hasNext());
+            assertEquals(k * 512 + k % 512, iter.next());
+        }
+        assertFalse(iter.hasNext());
+        assertFalse(s.contains(1));
+        assertFalse(s.contains(n * 512));
+
+        // Word-wise operations on sets with different pages and chunks
+        ConcurrentMonotonicIntBitSet t = new ConcurrentMonotonicIntBitSet();
+        for (int k = 0; k < 2 * n; k += 2) {
+            t.add(k * 512 + k % 512);
+        }
+        assertEquals(n / 2, s.and(t).size());
+        assertEquals(n / 2, s.andNot(t).size());
+        assertEquals(n / 2, s.addAllAndReturnAdded(t).size());
+        assertEquals(n + n / 2, s.size());
+    }
+
+    public static void testAddAllAndReturnAdded() {
+        ConcurrentMonotonicIntBitSet target = new ConcurrentMonotonicIntBitSet();
+        ConcurrentMonotonicIntBitSet source = new ConcurrentMonotonicIntBitSet();
+        for (int i = 0; i < 2000; i += 3) {
+            target.add(i);
+        }
+        for (int i = 0; i < 3000; i += 2) {
+            source.add(i);
+        }
+
+        ConcurrentMonotonicIntBitSet added = target.addAllAndReturnAdded(source);
+        for (int i = 0; i < 3000; i++) {
+            boolean inSource = i % 2 == 0;
+            boolean inOldTarget = i < 2000 && i % 3 == 0;
+            assertEquals(inSource || inOldTarget, target.contains(i));
+            assertEquals(inSource && !inOldTarget, added.contains(i));
+        }
+
+        // Adding again changes nothing
+        assertTrue(target.addAllAndReturnAdded(source).isEmpty());
+        assertFalse(target.addAll(source));
+
+        // Element-wise path for other set representations
+        MutableSparseIntSet sparse = MutableSparseIntSet.makeEmpty();
+        sparse.add(4);
+        sparse.add(5000);
+        added = target.addAllAndReturnAdded(sparse);
+        assertEquals(1, added.size());
+        assertTrue(added.contains(5000));
+    }
+
+    public static void testAndAndNot() {
+        ConcurrentMonotonicIntBitSet s = new ConcurrentMonotonicIntBitSet();
+        ConcurrentMonotonicIntBitSet t = new ConcurrentMonotonicIntBitSet();
+        for (int i = 0; i < 3000; i += 2) {
+            s.add(i);
+        }
+        for (int i = 0; i < 6000; i += 3) {
+            t.add(i);
+        }
+
+        ConcurrentMonotonicIntBitSet and = s.and(t);
+        ConcurrentMonotonicIntBitSet andNot = s.andNot(t);
+        for (int i = 0; i < 6000; i++) {
+            assertEquals(s.contains(i) && t.contains(i), and.contains(i));
+            assertEquals(s.contains(i) && !t.contains(i), andNot.contains(i));
+        }
+
+        // Neither argument is modified
+        assertEquals(1500, s.size());
+        assertEquals(2000, t.size());
+
+        assertTrue(s.and(new ConcurrentMonotonicIntBitSet()).isEmpty());
+        assertEquals(s.size(), s.andNot(new ConcurrentMonotonicIntBitSet()).size());
+    }
+
+    public static void testConcurrentAdds() throws InterruptedException {
+        final ConcurrentMonotonicIntBitSet s = new ConcurrentMonotonicIntBitSet();
+        final ConcurrentMonotonicIntBitSet[] added = new ConcurrentMonotonicIntBitSet[4];
+        final int range = 100000;
+        Thread[] threads = new Thread[added.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    // Every thread adds every element, some through bulk operations
+                    ConcurrentMonotonicIntBitSet mine = new ConcurrentMonotonicIntBitSet();
+                    ConcurrentMonotonicIntBitSet batch = new ConcurrentMonotonicIntBitSet();
+                    for (int i = 0; i < range; i++) {
+                        int x = (i * 7919 + id * 13) % range;
+                        if (x % 2 == 0) {
+                            if (s.add(x)) {
+                                mine.add(x);
+                            }
+                        }
+                        else {
+                            batch.add(x);
+                        }
+                    }
+                    mine.addAll(s.addAllAndReturnAdded(batch));
+                    added[id] = mine;
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(range, s.size());
+        // Each element was reported as added by exactly one thread
+        int total = 0;
+        for (ConcurrentMonotonicIntBitSet a : added) {
+            total += a.size();
+        }
+        assertEquals(range, total);
+    }
+}
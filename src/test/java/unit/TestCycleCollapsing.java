@@ -0,0 +1,54 @@
+package unit;
+
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.engine.PointsToAnalysisMultiThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.registrar.StatementRegistrar;
+
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+
+/**
+ * Compare the points-to graphs computed by the multi-threaded points-to analysis with and without cycle collapsing
+ * (see {@link PointsToGraph#setUseCycleCollapsing(boolean)}), for the test programs in test.pointer. The number of set
+ * propagations and the time taken by each solve are printed.
+ */
+public class TestCycleCollapsing extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.FieldToLocal", "test.pointer.LocalToField",
+            "test.pointer.LocalToArray", "test.pointer.ArrayToLocal", "test.pointer.NewAndCall", "test.pointer.Phi",
+            "test.pointer.Return", "test.pointer.SuperCall", "test.pointer.StaticFieldToLocal",
+            "test.pointer.ExceptionalReturn", "test.pointer.TryCallCatch" };
+
+    public static void testSameResults() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            StatementRegistrar registrar = PointsToSets.register(test, 4);
+
+            long start = System.currentTimeMillis();
+            PointsToGraph g = new PointsToAnalysisMultiThreaded(new ContextInsensitive()).solve(registrar);
+            long time = System.currentTimeMillis() - start;
+            List<String> expected = PointsToSets.describe(g, registrar);
+            assertFalse(test, expected.isEmpty());
+
+            PointsToGraph collapsed;
+            long collapsedTime;
+            PointsToGraph.setUseCycleCollapsing(true);
+            try {
+                start = System.currentTimeMillis();
+                collapsed = new PointsToAnalysisMultiThreaded(new ContextInsensitive()).solve(registrar);
+                collapsedTime = System.currentTimeMillis() - start;
+            }
+            finally {
+                PointsToGraph.setUseCycleCollapsing(false);
+            }
+            assertEquals(test, expected, PointsToSets.describe(collapsed, registrar));
+
+            System.err.println(test + ": " + g.propagationCount() + " set propagations in " + time + "ms, with "
+                    + collapsed.cycleRemovalCount() + " nodes collapsed " + collapsed.propagationCount()
+                    + " set propagations in " + collapsedTime + "ms");
+        }
+    }
+}
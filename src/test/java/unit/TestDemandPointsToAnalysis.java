@@ -0,0 +1,242 @@
+package unit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import analysis.AnalysisUtil;
+import analysis.pointer.analyses.AllocationName;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.analyses.TypeSensitive;
+import analysis.pointer.engine.DemandPointsToAnalysis;
+import analysis.pointer.engine.PointsToAnalysis;
+import analysis.pointer.engine.PointsToAnalysisSingleThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.ReferenceVariableReplica;
+import analysis.pointer.graph.TypeFilter;
+import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.registrar.StatementRegistrationPass;
+import analysis.pointer.statements.AllocSiteNodeFactory.AllocSiteNode;
+import analysis.pointer.statements.ExceptionAssignmentStatement;
+import analysis.pointer.statements.LocalToLocalStatement;
+import analysis.pointer.statements.PointsToStatement;
+import analysis.pointer.statements.StatementFactory;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+
+/**
+ * Compare the points-to sets computed on demand by {@link DemandPointsToAnalysis} against those of the exhaustive
+ * points-to analysis, for the test programs in test.pointer
+ */
+public class TestDemandPointsToAnalysis extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.FieldToLocal", "test.pointer.LocalToField",
+            "test.pointer.LocalToArray", "test.pointer.ArrayToLocal", "test.pointer.NewAndCall", "test.pointer.Return",
+            "test.pointer.SuperCall", "test.pointer.StaticFieldToLocal", "test.pointer.ExceptionalReturn",
+            "test.pointer.ClassCast", "test.pointer.ThrowCatch", "test.pointer.TryCallCatch", "test.pointer.Phi" };
+
+    private static StatementRegistrar register(String testName) throws ClassHierarchyException, IOException {
+        // The demand analysis gives up on calls to clone unless the special handling of clone is disabled
+        AnalysisUtil.init("target/test-classes:target/classes/signatures", testName, "tests/", 1, false, true);
+        StatementRegistrationPass pass = new StatementRegistrationPass(new StatementFactory(),
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       false,
+                                                                       true);
+        pass.run();
+        return pass.getRegistrar();
+    }
+
+    /**
+     * Demand analysis falling back on the context-insensitive exhaustive analysis
+     */
+    private static DemandPointsToAnalysis demandAnalysis(StatementRegistrar registrar, int budget) {
+        return new DemandPointsToAnalysis(registrar,
+                                          new PointsToAnalysisSingleThreaded(new ContextInsensitive()),
+                                          budget);
+    }
+
+    /**
+     * Variables defined by some statement of the program, including caught exceptions
+     */
+    private static Set<ReferenceVariable> definedVariables(StatementRegistrar registrar) {
+        return definedVariables(registrar, null);
+    }
+
+    /**
+     * Variables defined by some statement of the program (of the given method if it is not null), including caught
+     * exceptions
+     */
+    private static Set<ReferenceVariable> definedVariables(StatementRegistrar registrar, IMethod method) {
+        Set<ReferenceVariable> vars = new LinkedHashSet<>();
+        for (IMethod m : registrar.getRegisteredMethods()) {
+            if (method != null && !method.equals(m)) {
+                continue;
+            }
+            for (PointsToStatement s : registrar.getStatementsForMethod(m)) {
+                if (s.getDef() != null) {
+                    vars.add(s.getDef());
+                }
+                if (s instanceof ExceptionAssignmentStatement) {
+                    vars.add(((ExceptionAssignmentStatement) s).getCaughtException());
+                }
+            }
+        }
+        return vars;
+    }
+
+    /**
+     * The demand analysis ignores contexts and type filters, so its results include the allocation sites found by the
+     * exhaustive analysis. Asking again does no new work.
+     */
+    public static void testDemandIncludesExhaustive() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            StatementRegistrar registrar = register(test);
+            DemandPointsToAnalysis exhaustive = demandAnalysis(registrar, 0);
+            DemandPointsToAnalysis demand = demandAnalysis(registrar, Integer.MAX_VALUE);
+            Set<ReferenceVariable> vars = definedVariables(registrar);
+            for (ReferenceVariable rv : vars) {
+                Set<AllocSiteNode> expected = exhaustive.pointsTo(rv);
+                Set<AllocSiteNode> actual = demand.pointsTo(rv);
+                assertTrue(test + ": " + rv + " " + actual + " does not include " + expected,
+                           actual.containsAll(expected));
+            }
+            assertEquals(0, demand.getNumExhaustiveQueries());
+
+            long work = demand.getTotalWork();
+            for (ReferenceVariable rv : vars) {
+                demand.pointsTo(rv);
+            }
+            assertEquals(test, work, demand.getTotalWork());
+        }
+    }
+
+    /**
+     * A query over budget falls back on the exhaustive analysis, and so do all later queries
+     */
+    public static void testOverBudget() throws ClassHierarchyException, IOException {
+        StatementRegistrar registrar = register("test.pointer.SuperCall");
+        DemandPointsToAnalysis exhaustive = demandAnalysis(registrar, 0);
+        DemandPointsToAnalysis demand = demandAnalysis(registrar, 1);
+        Set<ReferenceVariable> vars = definedVariables(registrar);
+        for (ReferenceVariable rv : vars) {
+            assertTrue(rv.toString(), demand.pointsTo(rv).containsAll(exhaustive.pointsTo(rv)));
+        }
+        assertTrue(demand.getNumExhaustiveQueries() > 0);
+    }
+
+    /**
+     * Casts and caught exceptions only let through the objects that satisfy their type filters
+     */
+    public static void testTypeFilters() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            StatementRegistrar registrar = register(test);
+            DemandPointsToAnalysis demand = demandAnalysis(registrar, Integer.MAX_VALUE);
+            for (Map.Entry<ReferenceVariable, List<TypeFilter>> e : filters(registrar).entrySet()) {
+                if (e.getValue().contains(null)) {
+                    // Some definition is unfiltered
+                    continue;
+                }
+                for (AllocSiteNode o : demand.pointsTo(e.getKey())) {
+                    boolean satisfied = false;
+                    for (TypeFilter filter : e.getValue()) {
+                        satisfied |= filter.satisfies(o.getAllocatedClass());
+                    }
+                    assertTrue(test + ": " + e.getKey() + " points to " + o, satisfied);
+                }
+            }
+            assertEquals(0, demand.getNumExhaustiveQueries());
+        }
+    }
+
+    /**
+     * Type filter of each statement defining a variable, null for the statements that are not filtered
+     */
+    private static Map<ReferenceVariable, List<TypeFilter>> filters(StatementRegistrar registrar) {
+        Map<ReferenceVariable, List<TypeFilter>> filters = new LinkedHashMap<>();
+        for (IMethod m : registrar.getRegisteredMethods()) {
+            for (PointsToStatement s : registrar.getStatementsForMethod(m)) {
+                ReferenceVariable def = s.getDef();
+                TypeFilter filter = null;
+                if (s instanceof LocalToLocalStatement) {
+                    filter = ((LocalToLocalStatement) s).getFilter();
+                }
+                else if (s instanceof ExceptionAssignmentStatement) {
+                    def = ((ExceptionAssignmentStatement) s).getCaughtException();
+                    filter = ((ExceptionAssignmentStatement) s).getFilter();
+                }
+                if (def == null) {
+                    continue;
+                }
+                List<TypeFilter> defFilters = filters.get(def);
+                if (defFilters == null) {
+                    defFilters = new ArrayList<>();
+                    filters.put(def, defFilters);
+                }
+                defFilters.add(filter);
+            }
+        }
+        return filters;
+    }
+
+    /**
+     * Context-sensitive exhaustive analysis whose instance keys record their allocation sites
+     */
+    private static PointsToAnalysis typeSensitive() {
+        return new PointsToAnalysisSingleThreaded(new TypeSensitive(2, 1));
+    }
+
+    /**
+     * Allocation sites of the objects rv points to in the context in an exhaustive graph
+     */
+    private static Set<AllocSiteNode> sites(PointsToGraph g, ReferenceVariable rv, Context c) {
+        Set<AllocSiteNode> sites = new LinkedHashSet<>();
+        Iterator<InstanceKey> iter = g.pointsToIterator(new ReferenceVariableReplica(c, rv, g.getHaf()));
+        while (iter.hasNext()) {
+            sites.add(((AllocationName<?>) iter.next()).getAllocationSite());
+        }
+        return sites;
+    }
+
+    /**
+     * With a context-sensitive exhaustive analysis, the demand answer for a context includes the allocation sites of
+     * the exhaustive analysis in that context (the demand analysis merges contexts). Once a query falls back, the
+     * answer for a context is exactly the one of the exhaustive graph.
+     */
+    public static void testContexts() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            StatementRegistrar registrar = register(test);
+            PointsToGraph g = typeSensitive().solve(registrar);
+            DemandPointsToAnalysis demand = new DemandPointsToAnalysis(registrar, typeSensitive(), Integer.MAX_VALUE);
+            DemandPointsToAnalysis exhaustive = new DemandPointsToAnalysis(registrar, typeSensitive(), 0);
+            for (IMethod m : registrar.getRegisteredMethods()) {
+                for (ReferenceVariable rv : definedVariables(registrar, m)) {
+                    if (rv.isSingleton()) {
+                        continue;
+                    }
+                    for (Context c : g.getContexts(m)) {
+                        Set<AllocSiteNode> expected = sites(g, rv, c);
+                        Set<AllocSiteNode> actual = demand.pointsTo(rv, c);
+                        assertTrue(test + ": " + rv + " in " + c + " " + actual + " does not include " + expected,
+                                   actual.containsAll(expected));
+                        assertEquals(test + ": " + rv + " in " + c, expected, exhaustive.pointsTo(rv, c));
+                    }
+                }
+            }
+            assertEquals(0, demand.getNumExhaustiveQueries());
+        }
+    }
+}
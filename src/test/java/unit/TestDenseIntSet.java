@@ -0,0 +1,113 @@
+package unit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+import util.intmap.DenseIntMap;
+import util.intset.MutableDenseIntSet;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSetAction;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * Test the bit-array backed int sets {@link MutableDenseIntSet} and the dense int map {@link DenseIntMap}
+ */
+public class TestDenseIntSet extends TestCase {
+
+    public static void testAddCountsOnce() {
+        MutableDenseIntSet s = MutableDenseIntSet.makeEmpty();
+        assertTrue(s.add(5));
+        assertEquals(1, s.size());
+        assertFalse(s.add(5));
+        assertEquals(1, s.size());
+        assertTrue(s.add(100000));
+        assertEquals(2, s.size());
+    }
+
+    public static void testContainsOutOfRange() {
+        MutableDenseIntSet s = MutableDenseIntSet.makeEmpty();
+        assertFalse(s.contains(3));
+        s.add(3);
+        assertTrue(s.contains(3));
+        assertFalse(s.contains(-1));
+        assertFalse(s.contains(1 << 20));
+    }
+
+    public static void testAddAllDense() {
+        MutableDenseIntSet s1 = MutableDenseIntSet.makeEmpty();
+        MutableDenseIntSet s2 = MutableDenseIntSet.makeEmpty();
+        s1.add(1);
+        s1.add(40);
+        s2.add(40);
+        s2.add(5000);
+        // used to recurse forever
+        assertTrue(s1.addAll(s2));
+        assertEquals(3, s1.size());
+        assertTrue(s1.contains(5000));
+        assertFalse(s1.addAll(s2));
+        assertFalse(s1.addAll(MutableDenseIntSet.makeEmpty()));
+    }
+
+    public static void testAddAllSparse() {
+        MutableDenseIntSet s = MutableDenseIntSet.makeEmpty();
+        MutableSparseIntSet other = MutableSparseIntSet.makeEmpty();
+        assertFalse(s.addAll(other));
+        other.add(7);
+        other.add(70000);
+        assertTrue(s.addAll(other));
+        assertEquals(2, s.size());
+        assertTrue(s.contains(70000));
+    }
+
+    public static void testIterateAndForeach() {
+        MutableDenseIntSet s = MutableDenseIntSet.makeEmpty();
+        final TreeSet<Integer> mirror = new TreeSet<>();
+        Random r = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            int x = r.nextInt(10000);
+            assertEquals(mirror.add(x), s.add(x));
+        }
+        // the largest element is the last bit of the backing array
+        int last = 32 * 1000 - 1;
+        assertEquals(mirror.add(last), s.add(last));
+        assertEquals(mirror.size(), s.size());
+
+        IntIterator iter = s.intIterator();
+        for (Integer expected : mirror) {
+            assertTrue(iter.hasNext());
+            assertEquals(expected.intValue(), iter.next());
+        }
+        assertFalse(iter.hasNext());
+
+        final TreeSet<Integer> seen = new TreeSet<>();
+        s.foreach(new IntSetAction() {
+            @Override
+            public void act(int x) {
+                seen.add(x);
+            }
+        });
+        assertEquals(mirror, seen);
+        assertFalse(MutableDenseIntSet.makeEmpty().intIterator().hasNext());
+    }
+
+    public static void testMapGrowsQuietly() {
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured));
+        try {
+            DenseIntMap<String> m = new DenseIntMap<>();
+            for (int i = 0; i < 1000; i += 7) {
+                m.put(i, "v" + i);
+            }
+            assertEquals("v994", m.get(994));
+        }
+        finally {
+            System.setErr(err);
+        }
+        assertEquals(0, captured.size());
+    }
+}
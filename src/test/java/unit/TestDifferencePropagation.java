@@ -0,0 +1,61 @@
+package unit;
+
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.engine.PointsToAnalysisMultiThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.registrar.StatementRegistrar;
+
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+
+/**
+ * Compare the points-to graphs computed by the multi-threaded points-to analysis with and without difference
+ * propagation (see {@link PointsToGraph#setUseDifferencePropagation(boolean)}), for the test programs in test.pointer.
+ * Without cycle collapsing, new elements are propagated along each subset edge from the log of its source; with cycle
+ * collapsing statements also read the logs of the representatives of the nodes they read.
+ */
+public class TestDifferencePropagation extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.FieldToLocal", "test.pointer.LocalToField",
+            "test.pointer.LocalToArray", "test.pointer.ArrayToLocal", "test.pointer.NewAndCall", "test.pointer.Phi",
+            "test.pointer.Return", "test.pointer.SuperCall", "test.pointer.StaticFieldToLocal",
+            "test.pointer.ClassCast", "test.pointer.ExceptionalReturn", "test.pointer.TryCallCatch" };
+
+    private static PointsToGraph solve(StatementRegistrar registrar, boolean difference, boolean collapse) {
+        PointsToGraph.setUseDifferencePropagation(difference);
+        PointsToGraph.setUseCycleCollapsing(collapse);
+        try {
+            return new PointsToAnalysisMultiThreaded(new ContextInsensitive()).solve(registrar);
+        }
+        finally {
+            PointsToGraph.setUseDifferencePropagation(false);
+            PointsToGraph.setUseCycleCollapsing(false);
+        }
+    }
+
+    public static void testSameResults() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            StatementRegistrar registrar = PointsToSets.register(test, 4);
+            List<String> expected = PointsToSets.describe(solve(registrar, false, false), registrar);
+            assertFalse(test, expected.isEmpty());
+
+            assertEquals(test, expected, PointsToSets.describe(solve(registrar, true, false), registrar));
+            assertEquals(test, expected, PointsToSets.describe(solve(registrar, true, true), registrar));
+        }
+    }
+
+    /**
+     * Solving the same statements again with difference propagation gives the same graph, whatever order the threads
+     * happen to claim the logs in
+     */
+    public static void testRepeatable() throws ClassHierarchyException, IOException {
+        StatementRegistrar registrar = PointsToSets.register("test.pointer.LocalToArray", 8);
+        List<String> expected = PointsToSets.describe(solve(registrar, false, false), registrar);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected, PointsToSets.describe(solve(registrar, true, false), registrar));
+        }
+    }
+}
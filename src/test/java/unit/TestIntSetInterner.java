@@ -0,0 +1,87 @@
+package unit;
+
+import junit.framework.TestCase;
+import util.intset.IntSetInterner;
+import util.intset.ReadOnlyIntSet;
+
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * Test the sharing of identical sets, {@link IntSetInterner}
+ */
+public class TestIntSetInterner extends TestCase {
+
+    private static MutableSparseIntSet makeSet(int... elements) {
+        MutableSparseIntSet s = MutableSparseIntSet.makeEmpty();
+        for (int i : elements) {
+            s.add(i);
+        }
+        return s;
+    }
+
+    private static void assertSameElements(IntSet expected, IntSet actual) {
+        assertEquals(expected.size(), actual.size());
+        IntIterator iter = expected.intIterator();
+        while (iter.hasNext()) {
+            assertTrue(actual.contains(iter.next()));
+        }
+    }
+
+    public static void testIdenticalSetsShared() {
+        IntSetInterner interner = new IntSetInterner();
+        MutableSparseIntSet a = makeSet(3, 70, 5);
+        MutableSparseIntSet b = makeSet(5, 3, 70);
+        MutableSparseIntSet c = makeSet(3, 70);
+
+        ReadOnlyIntSet ca = interner.intern(a);
+        ReadOnlyIntSet cb = interner.intern(b);
+        ReadOnlyIntSet cc = interner.intern(c);
+        assertSame(ca, cb);
+        assertNotSame(ca, cc);
+        assertSameElements(a, ca);
+        assertSameElements(c, cc);
+        assertTrue(interner.bytesSaved() > 0);
+    }
+
+    public static void testDenseSetsUseBitmap() {
+        IntSetInterner interner = new IntSetInterner();
+        MutableSparseIntSet dense = MutableSparseIntSet.makeEmpty();
+        for (int i = 0; i < 1000; i += 2) {
+            dense.add(i);
+        }
+        ReadOnlyIntSet c = interner.intern(dense);
+        assertSameElements(dense, c);
+        assertFalse(c.contains(1));
+        assertFalse(c.contains(1000));
+        // 500 ints in a sorted array versus 32 ints in a bitmap
+        assertTrue(interner.bytesSaved() > 1000);
+    }
+
+    public static void testCanonicalSetsReadOnly() {
+        IntSetInterner interner = new IntSetInterner();
+        MutableSparseIntSet a = makeSet(1, 2);
+        ReadOnlyIntSet ca = interner.intern(a);
+        ReadOnlyIntSet cb = interner.intern(makeSet(2, 1));
+        try {
+            ca.add(3);
+            fail("Canonical set was modified");
+        }
+        catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            ca.remove(1);
+            fail("Canonical set was modified");
+        }
+        catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertSameElements(makeSet(1, 2), cb);
+
+        // changing the interned set does not change the canonical set
+        a.add(4);
+        assertFalse(ca.contains(4));
+    }
+}
@@ -0,0 +1,61 @@
+package unit;
+
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+import analysis.AnalysisUtil;
+import analysis.dataflow.interprocedural.InterproceduralDataFlow;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.engine.PointsToAnalysisSingleThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.registrar.StatementRegistrationPass;
+import analysis.pointer.statements.StatementFactory;
+
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+
+/**
+ * Compare the results of inter-procedural analyses that put every callee on the work-queue (see
+ * {@link InterproceduralDataFlow#setMaxCallDepth(int)}) against those of analyses with the default call depth, for the
+ * test programs in test.pointer
+ */
+public class TestMaxCallDepth extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.NewAndCall", "test.pointer.Return",
+            "test.pointer.SuperCall", "test.pointer.ExceptionalReturn", "test.pointer.TryCallCatch" };
+
+    public static void testSameResults() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            AnalysisUtil.init("target/test-classes:target/classes/signatures", test, "tests/", 4, false, false);
+            StatementRegistrationPass pass = new StatementRegistrationPass(new StatementFactory(),
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           true);
+            pass.run();
+            StatementRegistrar registrar = pass.getRegistrar();
+            PointsToGraph g = new PointsToAnalysisSingleThreaded(new ContextInsensitive()).solve(registrar);
+
+            List<String> expected = TestParallelDataFlow.runAnalyses(g, registrar.getRvCache());
+            assertFalse(test, expected.isEmpty());
+
+            // A callee is only analyzed directly from the work-queue, never nested in its caller's analysis
+            InterproceduralDataFlow.setMaxCallDepth(1);
+            try {
+                assertEquals(test, expected, TestParallelDataFlow.runAnalyses(g, registrar.getRvCache()));
+
+                // Every call into another SCC suspends the caller until that SCC is finished
+                InterproceduralDataFlow.setParallel(true);
+                assertEquals(test, expected, TestParallelDataFlow.runAnalyses(g, registrar.getRvCache()));
+            }
+            finally {
+                InterproceduralDataFlow.setParallel(false);
+                InterproceduralDataFlow.setMaxCallDepth(InterproceduralDataFlow.DEFAULT_MAX_CALL_DEPTH);
+            }
+        }
+    }
+}
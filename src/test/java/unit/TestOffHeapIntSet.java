@@ -0,0 +1,136 @@
+package unit;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import util.intset.OffHeapArena;
+import util.intset.OffHeapIntSet;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.engine.PointsToAnalysisMultiThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.registrar.StatementRegistrar;
+
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.intset.IntIterator;
+
+/**
+ * Test the points-to set stored outside the Java heap, {@link OffHeapIntSet}
+ */
+public class TestOffHeapIntSet extends TestCase {
+
+    public static void testAddContains() {
+        OffHeapIntSet s = new OffHeapIntSet(new OffHeapArena());
+        assertTrue(s.isEmpty());
+        assertEquals(0, s.size());
+        assertEquals(-1, s.max());
+        assertFalse(s.contains(0));
+
+        assertTrue(s.add(0));
+        assertTrue(s.add(63));
+        assertTrue(s.add(100000));
+        assertFalse(s.add(63));
+
+        assertFalse(s.isEmpty());
+        assertEquals(3, s.size());
+        assertEquals(100000, s.max());
+        assertTrue(s.contains(0));
+        assertFalse(s.contains(1));
+        assertFalse(s.contains(-1));
+    }
+
+    public static void testGrowth() {
+        OffHeapArena arena = new OffHeapArena();
+        OffHeapIntSet s = new OffHeapIntSet(arena);
+        Set<Integer> mirror = new HashSet<>();
+        Random r = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            int x = r.nextInt(50000);
+            assertEquals(mirror.add(x), s.add(x));
+        }
+        assertEquals(mirror.size(), s.size());
+        for (int x = 0; x < 50000; x++) {
+            assertEquals(mirror.contains(x), s.contains(x));
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        IntIterator iter = s.intIterator();
+        while (iter.hasNext()) {
+            assertTrue(seen.add(iter.next()));
+        }
+        assertEquals(mirror, seen);
+        assertTrue(arena.allocatedBytes() > 4L * mirror.size());
+    }
+
+    public static void testConcurrentAdds() throws InterruptedException {
+        final OffHeapIntSet s = new OffHeapIntSet(new OffHeapArena());
+        final AtomicInteger numAdded = new AtomicInteger(0);
+        final AtomicInteger numMissing = new AtomicInteger(0);
+        final int numThreads = 8;
+        final int range = 100000;
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            final int seed = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    Random r = new Random(seed);
+                    for (int i = 0; i < range; i++) {
+                        // every thread adds every element, in a different order
+                        int x = (i + seed * (range / numThreads)) % range;
+                        if (s.add(x)) {
+                            numAdded.incrementAndGet();
+                        }
+                        int y = r.nextInt(range);
+                        if (s.add(y)) {
+                            numAdded.incrementAndGet();
+                        }
+                        // an element is visible as soon as add returns
+                        if (!s.contains(x) || !s.contains(y)) {
+                            numMissing.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, numMissing.get());
+        assertEquals(range, s.size());
+        for (int x = 0; x < range; x++) {
+            assertTrue(s.contains(x));
+        }
+        // exactly one add of each element returns true, even when it races with a resize
+        assertEquals(range, numAdded.get());
+    }
+
+    /**
+     * Solving with off-heap sets gives the same graph, and the finished graph no longer uses any off-heap set
+     */
+    public static void testSolve() throws ClassHierarchyException, IOException {
+        StatementRegistrar registrar = PointsToSets.register("test.pointer.NewAndCall", 2);
+        PointsToGraph g = new PointsToAnalysisMultiThreaded(new ContextInsensitive()).solve(registrar);
+        PointsToGraph offHeap;
+        PointsToAnalysisMultiThreaded.setUseOffHeapSets(true);
+        try {
+            offHeap = new PointsToAnalysisMultiThreaded(new ContextInsensitive()).solve(registrar);
+        }
+        finally {
+            PointsToAnalysisMultiThreaded.setUseOffHeapSets(false);
+        }
+        assertEquals(PointsToSets.describe(g, registrar), PointsToSets.describe(offHeap, registrar));
+
+        IntIterator nodes = offHeap.getPointsToGraph().keyIterator();
+        while (nodes.hasNext()) {
+            int n = nodes.next();
+            assertFalse("points-to set of " + n, offHeap.getPointsToGraph().get(n) instanceof OffHeapIntSet);
+        }
+        // Sets created after the solve are stored in the Java heap
+        assertFalse(PointsToAnalysisMultiThreaded.makeConcurrentIntSet() instanceof OffHeapIntSet);
+    }
+}
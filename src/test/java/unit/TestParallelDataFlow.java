@@ -0,0 +1,126 @@
+package unit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import analysis.AnalysisUtil;
+import analysis.dataflow.interprocedural.InterproceduralDataFlow;
+import analysis.dataflow.interprocedural.nonnull.NonNullInterProceduralDataFlow;
+import analysis.dataflow.interprocedural.nonnull.NonNullResults;
+import analysis.dataflow.interprocedural.reachability.ReachabilityInterProceduralDataFlow;
+import analysis.dataflow.interprocedural.reachability.ReachabilityResults;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.engine.PointsToAnalysisSingleThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.ReferenceVariableCache;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.registrar.StatementRegistrationPass;
+import analysis.pointer.statements.StatementFactory;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.ISSABasicBlock;
+import com.ibm.wala.ssa.SSACFG;
+import com.ibm.wala.ssa.SSAInstruction;
+
+/**
+ * Compare the results of inter-procedural analyses run on several threads (see
+ * {@link InterproceduralDataFlow#setParallel(boolean)}) against those of the single-threaded analyses, for the test
+ * programs in test.pointer
+ */
+public class TestParallelDataFlow extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.NewAndCall", "test.pointer.Return",
+            "test.pointer.SuperCall", "test.pointer.ExceptionalReturn", "test.pointer.TryCallCatch" };
+
+    /**
+     * Run the reachability and non-null analyses and describe their results for every instruction of every call graph
+     * node, in the order of the call graph
+     */
+    static List<String> runAnalyses(PointsToGraph g, ReferenceVariableCache rvCache) {
+        return runAnalyses(g, rvCache, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Run the reachability and non-null analyses, pausing each of them after every given number of analyses of call
+     * graph nodes and resuming it (see {@link InterproceduralDataFlow#runAnalysis(int)}), and describe their results
+     * for every instruction of every call graph node, in the order of the call graph
+     */
+    static List<String> runAnalyses(PointsToGraph g, ReferenceVariableCache rvCache, int maxNodeAnalyses) {
+        ReachabilityInterProceduralDataFlow reachability = new ReachabilityInterProceduralDataFlow(g, rvCache, null);
+        while (!reachability.runAnalysis(maxNodeAnalyses)) {
+            // resume the paused analysis
+        }
+        ReachabilityResults r = reachability.getAnalysisResults();
+        NonNullInterProceduralDataFlow nonNull = new NonNullInterProceduralDataFlow(g, r, rvCache);
+        while (!nonNull.runAnalysis(maxNodeAnalyses)) {
+            // resume the paused analysis
+        }
+        NonNullResults nn = nonNull.getAnalysisResults();
+
+        List<String> results = new ArrayList<>();
+        for (CGNode n : g.getCallGraph()) {
+            IR ir = n.getIR();
+            if (ir == null) {
+                continue;
+            }
+            SSACFG cfg = ir.getControlFlowGraph();
+            for (ISSABasicBlock bb : cfg) {
+                for (ISSABasicBlock succ : cfg.getNormalSuccessors(bb)) {
+                    results.add(n + " " + bb.getNumber() + " -> " + succ.getNumber() + " "
+                            + r.isUnreachable(bb, succ, n));
+                }
+                for (ISSABasicBlock succ : cfg.getExceptionalSuccessors(bb)) {
+                    results.add(n + " " + bb.getNumber() + " -ex-> " + succ.getNumber() + " "
+                            + r.isUnreachable(bb, succ, n));
+                }
+            }
+            for (SSAInstruction i : ir.getInstructions()) {
+                if (i == null) {
+                    continue;
+                }
+                for (int j = 0; j < i.getNumberOfUses(); j++) {
+                    int use = i.getUse(j);
+                    results.add(n + " " + i.iindex + " v" + use + " " + nn.isNonNull(use, i, n, null));
+                }
+            }
+        }
+        return results;
+    }
+
+    public static void testSameResults() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            AnalysisUtil.init("target/test-classes:target/classes/signatures", test, "tests/", 4, false, false);
+            StatementRegistrationPass pass = new StatementRegistrationPass(new StatementFactory(),
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           true);
+            pass.run();
+            StatementRegistrar registrar = pass.getRegistrar();
+            PointsToGraph g = new PointsToAnalysisSingleThreaded(new ContextInsensitive()).solve(registrar);
+
+            List<String> serial = runAnalyses(g, registrar.getRvCache());
+            List<String> parallel;
+            List<String> paused;
+            InterproceduralDataFlow.setParallel(true);
+            try {
+                parallel = runAnalyses(g, registrar.getRvCache());
+                // Pause after every analysis of a call graph node
+                paused = runAnalyses(g, registrar.getRvCache(), 1);
+            }
+            finally {
+                InterproceduralDataFlow.setParallel(false);
+            }
+            assertFalse(test, serial.isEmpty());
+            assertEquals(test, serial, parallel);
+            assertEquals(test, serial, paused);
+        }
+    }
+}
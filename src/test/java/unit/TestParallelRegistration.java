@@ -0,0 +1,60 @@
+package unit;
+
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.engine.PointsToAnalysisMultiThreaded;
+import analysis.pointer.registrar.StatementFingerprints;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.registrar.StatementRegistrationPass;
+
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+
+/**
+ * Compare the statements registered, and the points-to graphs computed from them, when methods are registered by one
+ * thread and by a pool of threads (see {@link StatementRegistrationPass#setParallelRegistration(boolean)})
+ */
+public class TestParallelRegistration extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.FieldToLocal", "test.pointer.LocalToArray",
+            "test.pointer.NewAndCall", "test.pointer.SuperCall", "test.pointer.StaticFieldToLocal",
+            "test.pointer.ClassCast", "test.pointer.ExceptionalReturn", "test.pointer.TryCallCatch" };
+
+    private static StatementRegistrar registerInParallel(String test) throws ClassHierarchyException, IOException {
+        StatementRegistrationPass.setParallelRegistration(true);
+        try {
+            return PointsToSets.register(test, 8);
+        }
+        finally {
+            StatementRegistrationPass.setParallelRegistration(false);
+        }
+    }
+
+    private static List<String> describePointsTo(StatementRegistrar registrar) {
+        return PointsToSets.describe(new PointsToAnalysisMultiThreaded(new ContextInsensitive()).solve(registrar),
+                                     registrar);
+    }
+
+    public static void testSameStatements() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            StatementRegistrar registrar = PointsToSets.register(test, 8);
+            StatementFingerprints expected = StatementFingerprints.compute(registrar);
+            List<String> expectedPointsTo = describePointsTo(registrar);
+
+            // Register the same program several times, the threads register the methods in a different order each time
+            for (int i = 0; i < 5; i++) {
+                StatementRegistrar parallel = registerInParallel(test);
+                StatementFingerprints fingerprints = StatementFingerprints.compute(parallel);
+                fingerprints.compareTo(expected);
+                assertTrue(test, fingerprints.getAddedMethods().isEmpty());
+                assertTrue(test, fingerprints.getRemovedMethods().isEmpty());
+                assertTrue(test, fingerprints.getChangedMethods().isEmpty());
+                assertEquals(test, registrar.size(), parallel.size());
+
+                assertEquals(test, expectedPointsTo, describePointsTo(parallel));
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package unit;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import util.PersistentHashMap;
+import util.PersistentHashMap.ValueMerger;
+
+/**
+ * Test the hash array mapped trie used for variable contexts, {@link PersistentHashMap}
+ */
+public class TestPersistentHashMap extends TestCase {
+
+    /**
+     * Key with a chosen hash code, to force collisions
+     */
+    private static final class Key {
+        private final int id;
+        private final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public String toString() {
+            return "K" + id;
+        }
+    }
+
+    /**
+     * Adds the values, treating a missing value as -1000 so that keys in only one map are visible in the result
+     */
+    private static final ValueMerger<Integer> SUM = new ValueMerger<Integer>() {
+        @Override
+        public Integer merge(Integer v1, Integer v2) {
+            if (v1 == v2) {
+                return v1;
+            }
+            return (v1 == null ? -1000 : v1) + (v2 == null ? -1000 : v2);
+        }
+    };
+
+    private static Integer sum(Integer v1, Integer v2) {
+        return SUM.merge(v1, v2);
+    }
+
+    public static void testPlusGet() {
+        PersistentHashMap<Integer, Integer> m = PersistentHashMap.empty();
+        Map<Integer, Integer> mirror = new HashMap<>();
+        Random r = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            // Mostly small keys, like value numbers, and some large and negative ones
+            int k = i % 10 == 0 ? r.nextInt() : r.nextInt(400);
+            int v = r.nextInt(5);
+            PersistentHashMap<Integer, Integer> old = m;
+            m = m.plus(k, v);
+            Integer previous = mirror.put(k, v);
+            if (previous != null && previous == v) {
+                assertSame(old, m);
+            }
+            else {
+                assertEquals(previous, old.get(k));
+            }
+        }
+        assertEquals(mirror.size(), m.size());
+        assertEquals(mirror, m);
+        assertEquals(m, mirror);
+        assertEquals(mirror.hashCode(), m.hashCode());
+        assertEquals(mirror.keySet(), m.keySet());
+        for (int k = -10; k < 500; k++) {
+            assertEquals(mirror.get(k), m.get(k));
+            assertEquals(mirror.containsKey(k), m.containsKey(k));
+        }
+    }
+
+    public static void testUnchangedByPlus() {
+        PersistentHashMap<Integer, Integer> m = PersistentHashMap.empty();
+        for (int i = 0; i < 100; i++) {
+            m = m.plus(i, i);
+        }
+        PersistentHashMap<Integer, Integer> m2 = m.plus(37, 0).plus(1000, 1);
+        assertEquals(100, m.size());
+        assertEquals(Integer.valueOf(37), m.get(37));
+        assertNull(m.get(1000));
+        assertEquals(101, m2.size());
+        assertEquals(Integer.valueOf(0), m2.get(37));
+        assertFalse(m.equals(m2));
+    }
+
+    public static void testCollisions() {
+        PersistentHashMap<Key, Integer> m = PersistentHashMap.empty();
+        Map<Key, Integer> mirror = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            // At most 8 different hashes, differing only in high bits
+            Key k = new Key(i, (i % 8) << 29);
+            m = m.plus(k, i);
+            mirror.put(k, i);
+        }
+        assertEquals(mirror, m);
+        assertEquals(mirror.hashCode(), m.hashCode());
+        m = m.plus(new Key(5, 5 << 29), -5);
+        assertEquals(Integer.valueOf(-5), m.get(new Key(5, 5 << 29)));
+        assertNull(m.get(new Key(5, 0)));
+        assertEquals(200, m.size());
+    }
+
+    public static void testMerge() {
+        Random r = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            PersistentHashMap<Integer, Integer> base = PersistentHashMap.empty();
+            for (int i = 0; i < r.nextInt(300); i++) {
+                base = base.plus(r.nextInt(1000), r.nextInt(10));
+            }
+            // Two maps derived from a common map, as facts on two branches are
+            PersistentHashMap<Integer, Integer> m1 = base;
+            PersistentHashMap<Integer, Integer> m2 = base;
+            for (int i = 0; i < r.nextInt(20); i++) {
+                m1 = m1.plus(r.nextInt(1200), r.nextInt(10));
+            }
+            for (int i = 0; i < r.nextInt(20); i++) {
+                m2 = m2.plus(r.nextInt(1200), r.nextInt(10));
+            }
+
+            Map<Integer, Integer> expected = new HashMap<>();
+            Set<Integer> keys = new HashSet<>(m1.keySet());
+            keys.addAll(m2.keySet());
+            for (Integer k : keys) {
+                expected.put(k, sum(m1.get(k), m2.get(k)));
+            }
+            PersistentHashMap<Integer, Integer> merged = m1.merge(m2, SUM);
+            assertEquals(expected, merged);
+            assertEquals(expected.hashCode(), merged.hashCode());
+        }
+    }
+
+    public static void testMergeSharesStructure() {
+        PersistentHashMap<Integer, Integer> m = PersistentHashMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            m = m.plus(i, 1);
+        }
+        assertSame(m, m.merge(m, SUM));
+
+        ValueMerger<Integer> max = new ValueMerger<Integer>() {
+            @Override
+            public Integer merge(Integer v1, Integer v2) {
+                if (v1 == null) {
+                    return v2;
+                }
+                if (v2 == null) {
+                    return v1;
+                }
+                return v1 >= v2 ? v1 : v2;
+            }
+        };
+        PersistentHashMap<Integer, Integer> smaller = m.plus(500, 0);
+        assertSame(m, m.merge(smaller, max));
+        assertSame(m, smaller.merge(m, max));
+        assertSame(m, m.merge(PersistentHashMap.<Integer, Integer> empty(), max));
+    }
+
+    public static void testMergeCollisions() {
+        PersistentHashMap<Key, Integer> m1 = PersistentHashMap.empty();
+        PersistentHashMap<Key, Integer> m2 = PersistentHashMap.empty();
+        Map<Key, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 60; i++) {
+            Key k = new Key(i, (i % 4) << 30 | (i % 3));
+            if (i % 3 != 0) {
+                m1 = m1.plus(k, i);
+            }
+            if (i % 2 != 0) {
+                m2 = m2.plus(k, 2 * i);
+            }
+        }
+        for (Key k : m1.keySet()) {
+            expected.put(k, sum(m1.get(k), m2.get(k)));
+        }
+        for (Key k : m2.keySet()) {
+            expected.put(k, sum(m1.get(k), m2.get(k)));
+        }
+        assertEquals(expected, m1.merge(m2, SUM));
+    }
+
+    public static void testEqualsDifferentHistories() {
+        PersistentHashMap<Integer, Integer> m1 = PersistentHashMap.empty();
+        PersistentHashMap<Integer, Integer> m2 = PersistentHashMap.empty();
+        for (int i = 0; i < 500; i++) {
+            m1 = m1.plus(i, i % 7);
+            m2 = m2.plus(499 - i, (499 - i) % 7);
+        }
+        assertNotSame(m1, m2);
+        assertEquals(m1, m2);
+        assertEquals(m1.hashCode(), m2.hashCode());
+        assertFalse(m1.equals(m2.plus(3, 4)));
+        assertFalse(m1.equals(m2.plus(1000, 4)));
+    }
+
+    public static void testRetainAll() {
+        PersistentHashMap<Integer, Integer> m = PersistentHashMap.empty();
+        for (int i = 0; i < 100; i++) {
+            m = m.plus(i, i);
+        }
+        Set<Integer> even = new HashSet<>();
+        for (int i = 0; i < 200; i += 2) {
+            even.add(i);
+        }
+        PersistentHashMap<Integer, Integer> retained = m.retainAll(even);
+        assertEquals(50, retained.size());
+        assertTrue(even.containsAll(retained.keySet()));
+        assertEquals(100, m.size());
+        assertSame(retained, retained.retainAll(even));
+        assertTrue(m.retainAll(new HashSet<Integer>()).isEmpty());
+    }
+}
@@ -0,0 +1,229 @@
+package unit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import analysis.pointer.analyses.RecordingHeapAbstractionFactory;
+import analysis.pointer.analyses.TypeSensitive;
+import analysis.pointer.engine.PointsToAnalysisMultiThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.graph.PointsToGraphSnapshot;
+import analysis.pointer.graph.PointsToResults;
+import analysis.pointer.graph.ReferenceVariableReplica;
+import analysis.pointer.registrar.ReferenceVariableFactory.ReferenceVariable;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.statements.PointsToStatement;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * Test writing and loading a points-to graph snapshot, {@link PointsToGraphSnapshot}
+ */
+public class TestPointsToGraphSnapshot extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.FieldToLocal", "test.pointer.LocalToArray",
+            "test.pointer.NewAndCall", "test.pointer.SuperCall", "test.pointer.StaticFieldToLocal",
+            "test.pointer.ExceptionalReturn", "test.pointer.TryCallCatch" };
+
+    private static MutableSparseIntSet makeSet(int... elements) {
+        MutableSparseIntSet s = MutableSparseIntSet.makeEmpty();
+        for (int i : elements) {
+            s.add(i);
+        }
+        return s;
+    }
+
+    private static void assertIterates(IntIterator iter, int... expected) {
+        for (int x : expected) {
+            assertTrue(iter.hasNext());
+            assertEquals(x, iter.next());
+        }
+        assertFalse(iter.hasNext());
+    }
+
+    private static PointsToGraphSnapshot writeAndLoad(PointsToGraphSnapshot.Builder b) throws IOException {
+        File file = File.createTempFile("snapshot", ".ptg");
+        file.deleteOnExit();
+        b.write(file);
+        return PointsToGraphSnapshot.load(file);
+    }
+
+    public static void testRoundTrip() throws IOException {
+        MutableSparseIntSet shared = makeSet(30, 10, 20);
+        PointsToGraphSnapshot.Builder b = new PointsToGraphSnapshot.Builder();
+        b.addPointsToSet(1, shared);
+        b.addPointsToSet(2, makeSet());
+        // e.g. a node collapsed into node 1, which shares its set
+        b.addPointsToSet(4, shared);
+        b.addPointsToSet(7, makeSet(20));
+        b.addInstanceKey(10, "ik10");
+        b.addInstanceKey(20, "ik20 \u00e9");
+        b.addInstanceKey(30, "ik30");
+        b.addGraphNode(1, "n1");
+        b.addGraphNode(4, "n4");
+        b.addGraphNode(7, "n7");
+        b.addCallGraphNode(0, "main", makeSet(3, 1));
+        b.addCallGraphNode(1, "foo", makeSet());
+        b.addCallGraphNode(3, "bar", makeSet(3));
+        PointsToGraphSnapshot s = writeAndLoad(b);
+
+        assertEquals(3, s.numPointsToGraphNodes());
+        assertIterates(s.pointsToGraphNodeIterator(), 1, 4, 7);
+        assertIterates(s.pointsToIntIterator(1), 10, 20, 30);
+        assertIterates(s.pointsToIntIterator(4), 10, 20, 30);
+        assertIterates(s.pointsToIntIterator(7), 20);
+        assertIterates(s.pointsToIntIterator(2));
+        assertEquals(3, s.pointsToSetSize(4));
+        assertEquals(0, s.pointsToSetSize(5));
+        assertTrue(s.pointsTo(4, 30));
+        assertFalse(s.pointsTo(7, 10));
+        assertFalse(s.pointsTo(8, 20));
+
+        assertEquals("ik20 \u00e9", s.instanceKeyDescription(20));
+        assertNull(s.instanceKeyDescription(11));
+        assertEquals("n4", s.graphNodeDescription(4));
+        assertNull(s.graphNodeDescription(2));
+
+        assertEquals(3, s.numCallGraphNodes());
+        assertEquals("bar", s.callGraphNodeDescription(3));
+        assertIterates(s.callGraphSuccessors(0), 1, 3);
+        assertIterates(s.callGraphSuccessors(1));
+        assertIterates(s.callGraphSuccessors(3), 3);
+        assertIterates(s.callGraphSuccessors(2));
+
+        StringWriter text = new StringWriter();
+        s.writeText(text);
+        assertTrue(text.toString().contains("n4\n\tik10\n\tik20 \u00e9\n\tik30\n"));
+        assertTrue(text.toString().contains("main\n\t-> foo\n\t-> bar\n"));
+    }
+
+    public static void testEmpty() throws IOException {
+        PointsToGraphSnapshot s = writeAndLoad(new PointsToGraphSnapshot.Builder());
+        assertEquals(0, s.numPointsToGraphNodes());
+        assertEquals(0, s.numCallGraphNodes());
+        assertFalse(s.pointsToGraphNodeIterator().hasNext());
+        assertFalse(s.pointsTo(0, 0));
+    }
+
+    public static void testOutOfOrder() {
+        PointsToGraphSnapshot.Builder b = new PointsToGraphSnapshot.Builder();
+        b.addInstanceKey(5, "ik5");
+        try {
+            b.addInstanceKey(5, "again");
+            fail("Entries must be added in increasing order");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Describe the call graph nodes, and the points-to set of the variable defined by each statement in each call graph
+     * node, sorted so that graphs from different runs can be compared
+     */
+    private static List<String> describe(PointsToResults g, StatementRegistrar registrar) {
+        List<String> results = new ArrayList<>();
+        for (CGNode n : g.getCallGraph()) {
+            results.add(n.getMethod() + " " + n.getContext());
+            if (!registrar.getRegisteredMethods().contains(n.getMethod())) {
+                continue;
+            }
+            for (PointsToStatement s : registrar.getStatementsForMethod(n.getMethod())) {
+                ReferenceVariable rv = s.getDef();
+                if (rv == null) {
+                    continue;
+                }
+                List<String> pointsTo = new ArrayList<>();
+                Iterator<InstanceKey> iter = g.pointsToIterator(new ReferenceVariableReplica(n.getContext(),
+                                                                                             rv,
+                                                                                             g.getHaf()));
+                while (iter.hasNext()) {
+                    String ik = iter.next().toString();
+                    if (!pointsTo.contains(ik)) {
+                        pointsTo.add(ik);
+                    }
+                }
+                Collections.sort(pointsTo);
+                results.add(n.getMethod() + " " + n.getContext() + " " + rv + " " + pointsTo);
+            }
+        }
+        Collections.sort(results);
+        return results;
+    }
+
+    /**
+     * Save the graph of a context-sensitive analysis, rebuild it after registering the program again, and compare the
+     * points-to sets and the call graph to the ones of the analysis
+     */
+    public static void testRebuild() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            StatementRegistrar registrar = PointsToSets.register(test, 1);
+            RecordingHeapAbstractionFactory haf = new RecordingHeapAbstractionFactory(new TypeSensitive(2, 1));
+            PointsToGraph g = new PointsToAnalysisMultiThreaded(haf).solve(registrar);
+            List<String> expected = describe(g, registrar);
+            File file = File.createTempFile("snapshot", ".ptg");
+            file.deleteOnExit();
+            PointsToGraphSnapshot.write(g, file);
+
+            // A later run has its own class hierarchy, statements and allocation sites
+            StatementRegistrar later = PointsToSets.register(test, 1);
+            PointsToResults rebuilt = PointsToGraphSnapshot.load(file).rebuild(later, new TypeSensitive(2, 1));
+            assertEquals(test, expected, describe(rebuilt, later));
+        }
+    }
+
+    /**
+     * Solve the points-to analysis for a program, resuming from a snapshot written with derivations for the previous
+     * program
+     */
+    private static PointsToGraph resume(String previous, String test) throws ClassHierarchyException, IOException {
+        File file = File.createTempFile("snapshot", ".ptg");
+        file.deleteOnExit();
+        try {
+            PointsToAnalysisMultiThreaded.setRecordDerivations(true);
+            StatementRegistrar registrar = PointsToSets.register(previous, 1);
+            RecordingHeapAbstractionFactory haf = new RecordingHeapAbstractionFactory(new TypeSensitive(2, 1));
+            PointsToGraphSnapshot.write(new PointsToAnalysisMultiThreaded(haf).solve(registrar), file);
+
+            PointsToGraphSnapshot snapshot = PointsToGraphSnapshot.load(file);
+            assertTrue(snapshot.hasDerivations());
+            PointsToAnalysisMultiThreaded.setResumeFrom(snapshot);
+            StatementRegistrar later = PointsToSets.register(test, 1);
+            haf = new RecordingHeapAbstractionFactory(new TypeSensitive(2, 1));
+            return new PointsToAnalysisMultiThreaded(haf).solve(later);
+        }
+        finally {
+            PointsToAnalysisMultiThreaded.setRecordDerivations(false);
+            PointsToAnalysisMultiThreaded.setResumeFrom(null);
+        }
+    }
+
+    /**
+     * Resume the analysis of a program from a snapshot of the same program, and from a snapshot of a different program
+     * (so that the statements of the entry point changed), and compare the graphs to the ones solved from scratch
+     */
+    public static void testResume() throws ClassHierarchyException, IOException {
+        for (int i = 0; i < TESTS.length; i++) {
+            String test = TESTS[i];
+            StatementRegistrar registrar = PointsToSets.register(test, 1);
+            PointsToGraph g = new PointsToAnalysisMultiThreaded(new TypeSensitive(2, 1)).solve(registrar);
+            List<String> expected = describe(g, registrar);
+
+            PointsToGraph resumed = resume(test, test);
+            assertEquals(test, expected, describe(resumed, resumed.getRegistrar()));
+            String previous = TESTS[(i + 1) % TESTS.length];
+            resumed = resume(previous, test);
+            assertEquals(previous + " to " + test, expected, describe(resumed, resumed.getRegistrar()));
+        }
+    }
+}
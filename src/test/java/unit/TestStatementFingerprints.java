@@ -0,0 +1,64 @@
+package unit;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+import analysis.pointer.registrar.StatementFingerprints;
+
+/**
+ * Test reading, saving and comparing the fingerprints of registered statements, {@link StatementFingerprints}
+ */
+public class TestStatementFingerprints extends TestCase {
+
+    private static StatementFingerprints read(String contents) throws IOException {
+        File file = File.createTempFile("fingerprints", ".txt");
+        file.deleteOnExit();
+        try (Writer out = new FileWriter(file)) {
+            out.write(contents);
+        }
+        return StatementFingerprints.read(file);
+    }
+
+    public static void testCompare() throws IOException {
+        StatementFingerprints before = read("a()\n\tx = y\n\tx = y\n\tz = new A\n" + "b()\n\treturn x\n" + "c()\n");
+        StatementFingerprints now = read("a()\n\tx = y\n\tz = new B\n" + "c()\n" + "d()\n\tv = w\n\tv = w\n");
+        now.compareTo(before);
+        assertEquals(1, now.getAddedMethods().size());
+        assertTrue(now.getAddedMethods().contains("d()"));
+        assertEquals(1, now.getRemovedMethods().size());
+        assertTrue(now.getRemovedMethods().contains("b()"));
+        assertEquals(1, now.getChangedMethods().size());
+        assertTrue(now.getChangedMethods().contains("a()"));
+        // z = new B in a(), and both copies of v = w in d()
+        assertEquals(3, now.getNumAddedStatements());
+        // one copy of x = y and z = new A in a(), and return x in b()
+        assertEquals(3, now.getNumRemovedStatements());
+    }
+
+    public static void testSaveAndRead() throws IOException {
+        StatementFingerprints before = read("a()\n\tx = y\n\tx = y\n" + "b()\n");
+        File file = File.createTempFile("fingerprints", ".txt");
+        file.deleteOnExit();
+        before.save(file);
+        StatementFingerprints now = StatementFingerprints.read(file);
+        now.compareTo(before);
+        assertTrue(now.getAddedMethods().isEmpty());
+        assertTrue(now.getRemovedMethods().isEmpty());
+        assertTrue(now.getChangedMethods().isEmpty());
+        assertEquals(0, now.getNumAddedStatements());
+        assertEquals(0, now.getNumRemovedStatements());
+    }
+
+    public static void testMalformed() throws IOException {
+        try {
+            read("\tx = y\n");
+            fail("A statement must follow a method");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package unit;
+
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.engine.PointsToAnalysisSingleThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.registrar.StatementRegistrar;
+
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+
+/**
+ * Compare the points-to graphs computed by the single-threaded points-to analysis with the LIFO queues and with the
+ * topological worklist (see {@link PointsToAnalysisSingleThreaded#setUseTopologicalWorklist(boolean)}), for the test
+ * programs in test.pointer. The number of (statement, context) pairs processed, the number of set propagations and
+ * the time taken by each solve are printed.
+ */
+public class TestTopologicalWorklistResults extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.FieldToLocal", "test.pointer.LocalToField",
+            "test.pointer.LocalToArray", "test.pointer.ArrayToLocal", "test.pointer.NewAndCall", "test.pointer.Phi",
+            "test.pointer.Return", "test.pointer.SuperCall", "test.pointer.StaticFieldToLocal",
+            "test.pointer.ExceptionalReturn", "test.pointer.TryCallCatch" };
+
+    public static void testSameResults() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            StatementRegistrar registrar = PointsToSets.register(test, 1);
+
+            PointsToAnalysisSingleThreaded lifo = new PointsToAnalysisSingleThreaded(new ContextInsensitive());
+            long start = System.currentTimeMillis();
+            PointsToGraph g = lifo.solve(registrar);
+            long time = System.currentTimeMillis() - start;
+            List<String> expected = PointsToSets.describe(g, registrar);
+            assertFalse(test, expected.isEmpty());
+
+            PointsToAnalysisSingleThreaded topological = new PointsToAnalysisSingleThreaded(new ContextInsensitive());
+            PointsToGraph ordered;
+            long orderedTime;
+            PointsToAnalysisSingleThreaded.setUseTopologicalWorklist(true);
+            try {
+                start = System.currentTimeMillis();
+                ordered = topological.solve(registrar);
+                orderedTime = System.currentTimeMillis() - start;
+            }
+            finally {
+                PointsToAnalysisSingleThreaded.setUseTopologicalWorklist(false);
+            }
+            assertEquals(test, expected, PointsToSets.describe(ordered, registrar));
+
+            System.err.println(test + ": LIFO " + lifo.getNumProcessed() + " pairs " + g.propagationCount()
+                    + " set propagations in " + time + "ms, topological " + topological.getNumProcessed() + " pairs "
+                    + ordered.propagationCount() + " set propagations in " + orderedTime + "ms");
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package unit;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.engine.PointsToAnalysisMultiThreaded;
+import analysis.pointer.engine.PointsToAnalysisSingleThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.registrar.StatementRegistrar;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.intset.IntIterator;
+
+/**
+ * Test numbering instance keys in per-type blocks (see {@link PointsToGraph#setGroupInstanceKeysByType(boolean)}):
+ * every block holds instance keys of a single concrete type, and filtering by block gives the same points-to graph as
+ * filtering each instance key
+ */
+public class TestTypeBlocks extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.ClassCast", "test.pointer.ThrowCatch",
+            "test.pointer.TryCallCatch", "test.pointer.ExceptionalReturn", "test.pointer.FieldToLocal",
+            "test.pointer.LocalToArray", "test.pointer.SuperCall" };
+
+    /**
+     * Number of instance key numbers in a block, see PointsToGraph.TYPE_BLOCK_SIZE
+     */
+    private static final int TYPE_BLOCK_SIZE = 16;
+
+    /**
+     * Check that all the instance keys with numbers in the same block have the same concrete type
+     *
+     * @return number of blocks used
+     */
+    private static int checkBlocks(String test, PointsToGraph g) {
+        Map<Integer, IClass> blockTypes = new HashMap<>();
+        IntIterator iter = g.instanceKeyIterator();
+        while (iter.hasNext()) {
+            int ik = iter.next();
+            IClass type = g.lookupInstanceKey(ik).getConcreteType();
+            IClass existing = blockTypes.put(ik / TYPE_BLOCK_SIZE, type);
+            assertTrue(test + ": " + ik + " " + type + " in a block of " + existing,
+                       existing == null || existing.equals(type));
+        }
+        return blockTypes.size();
+    }
+
+    public static void testSameResults() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            StatementRegistrar registrar = PointsToSets.register(test, 4);
+            PointsToGraph g = new PointsToAnalysisSingleThreaded(new ContextInsensitive()).solve(registrar);
+            List<String> expected = PointsToSets.describe(g, registrar);
+            assertFalse(test, expected.isEmpty());
+
+            PointsToGraph.setGroupInstanceKeysByType(true);
+            try {
+                PointsToGraph single = new PointsToAnalysisSingleThreaded(new ContextInsensitive()).solve(registrar);
+                assertEquals(test, expected, PointsToSets.describe(single, registrar));
+                assertTrue(test, checkBlocks(test, single) > 0);
+
+                PointsToGraph multi = new PointsToAnalysisMultiThreaded(new ContextInsensitive()).solve(registrar);
+                assertEquals(test, expected, PointsToSets.describe(multi, registrar));
+                checkBlocks(test, multi);
+
+                // Bit sets are filtered a word at a time using the per-block bitmaps
+                PointsToAnalysisMultiThreaded.setUseBitSetPointsToSets(true);
+                PointsToGraph bits = new PointsToAnalysisMultiThreaded(new ContextInsensitive()).solve(registrar);
+                assertEquals(test, expected, PointsToSets.describe(bits, registrar));
+                checkBlocks(test, bits);
+            }
+            finally {
+                PointsToGraph.setGroupInstanceKeysByType(false);
+                PointsToAnalysisMultiThreaded.setUseBitSetPointsToSets(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package unit;
+
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+import analysis.AnalysisUtil;
+import analysis.dataflow.DataFlow;
+import analysis.pointer.analyses.ContextInsensitive;
+import analysis.pointer.engine.PointsToAnalysisSingleThreaded;
+import analysis.pointer.graph.PointsToGraph;
+import analysis.pointer.registrar.StatementRegistrar;
+import analysis.pointer.registrar.StatementRegistrationPass;
+import analysis.pointer.statements.StatementFactory;
+
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+
+/**
+ * Compare the results of data-flow analyses solved with the work-list (see {@link DataFlow#setUseWorklist(boolean)})
+ * against those solved by iterating over the strongly connected components of each control flow graph, for the test
+ * programs in test.pointer
+ */
+public class TestWorklistDataFlow extends TestCase {
+
+    private static final String[] TESTS = { "test.pointer.NewAndCall", "test.pointer.Return",
+            "test.pointer.SuperCall", "test.pointer.ExceptionalReturn", "test.pointer.TryCallCatch",
+            "test.pointer.ThrowCatch", "test.pointer.Phi" };
+
+    public static void testSameResults() throws ClassHierarchyException, IOException {
+        for (String test : TESTS) {
+            AnalysisUtil.init("target/test-classes:target/classes/signatures", test, "tests/", 4, false, false);
+            StatementRegistrationPass pass = new StatementRegistrationPass(new StatementFactory(),
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           false,
+                                                                           true);
+            pass.run();
+            StatementRegistrar registrar = pass.getRegistrar();
+            PointsToGraph g = new PointsToAnalysisSingleThreaded(new ContextInsensitive()).solve(registrar);
+
+            List<String> sccs = TestParallelDataFlow.runAnalyses(g, registrar.getRvCache());
+            List<String> worklist;
+            DataFlow.setUseWorklist(true);
+            try {
+                worklist = TestParallelDataFlow.runAnalyses(g, registrar.getRvCache());
+            }
+            finally {
+                DataFlow.setUseWorklist(false);
+            }
+            assertFalse(test, sccs.isEmpty());
+            assertEquals(test, sccs, worklist);
+        }
+    }
+}